@@ -0,0 +1,104 @@
+package org.intelligentindustry.benchmarks;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.intelligentindustry.AlarmEngine;
+import org.intelligentindustry.Conveyor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One alarm evaluation batch after RunningSpeed of {@code changed} conveyors was written. With {@code transitions}
+ * every write crosses all limits, so every rule of a changed conveyor posts an event; without, the values move
+ * below the lowest limit and the batch only evaluates. The periodic evaluation is pushed out of the way so only the
+ * benchmark runs batches.
+ * <p>
+ * Transitions always toggle the same conveyors: nobody acknowledges, so their conditions stay retained and keep
+ * their event nodes, and the benchmark measures posting rather than the one-off creation of those nodes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class AlarmEvaluationBenchmark {
+
+    @Param({"10000"})
+    public int fleetSize;
+
+    @Param({"1000"})
+    public int changed;
+
+    @Param({"2", "20"})
+    public int rules;
+
+    @Param({"false", "true"})
+    public boolean transitions;
+
+    private DemoServerFixture fixture;
+    private AlarmEngine engine;
+    private List<Conveyor> conveyors;
+    private int next;
+    private long round;
+
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder spec = new StringBuilder();
+        for (int i = 0; i < rules; i++) {
+            spec.append("Limit").append(i).append(":RunningSpeed>").append(10 + i * 0.1).append(":500;");
+        }
+
+        Map<String, String> settings = new HashMap<>();
+        settings.put("demo.fleet.count", Integer.toString(fleetSize));
+        settings.put("demo.simulation.time-scale", "0");
+        settings.put(AlarmEngine.RULES, spec.toString());
+        settings.put(AlarmEngine.INTERVAL_MILLIS, Long.toString(TimeUnit.DAYS.toMillis(1)));
+
+        fixture = DemoServerFixture.start(settings);
+        engine = fixture.getNamespace().getAlarmEngine();
+        conveyors = fixture.getNamespace().getFleet().getConveyors();
+
+        engine.evaluate();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fixture.stop();
+    }
+
+    @Benchmark
+    public void evaluate() {
+        round++;
+
+        // alternate above and below all limits, or stay below them with a value that still changes
+        double value = transitions ? (round % 2 == 0 ? 0.0 : 20.0) : 5.0 + (round % 2);
+
+        if (transitions) {
+            next = 0;
+        }
+
+        for (int i = 0; i < changed; i++) {
+            conveyors.get(next).getRunningSpeed().setValue(new DataValue(new Variant(value)));
+            next = (next + 1) % conveyors.size();
+        }
+
+        engine.evaluate();
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.intelligentindustry.benchmarks;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseDirection;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseResultMask;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.ViewDescription;
+import org.intelligentindustry.BrowseIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+/**
+ * A complete browse of the IntelligentIndustry folder, following continuation points, for fleets of various sizes,
+ * with and without the browse index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BrowseBenchmark {
+
+    private static final ViewDescription VIEW = new ViewDescription(NodeId.NULL_VALUE, DateTime.MIN_VALUE, uint(0));
+
+    @Param({"100", "10000"})
+    public int fleetSize;
+
+    @Param({"1000"})
+    public int maxReferencesPerRequest;
+
+    @Param({"false", "true"})
+    public boolean index;
+
+    private DemoServerFixture fixture;
+    private OpcUaClient client;
+    private List<BrowseDescription> browseDescriptions;
+
+    @Setup
+    public void setup() throws Exception {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("demo.fleet.count", Integer.toString(fleetSize));
+        settings.put(BrowseIndex.ENABLED, Boolean.toString(index));
+
+        fixture = DemoServerFixture.start(settings);
+        client = fixture.connect();
+
+        NodeId folderId = new NodeId(fixture.getNamespace().getNamespaceIndex(), "IntelligentIndustry");
+
+        browseDescriptions = Collections.singletonList(new BrowseDescription(
+            folderId,
+            BrowseDirection.Forward,
+            Identifiers.HierarchicalReferences,
+            true,
+            uint(0),
+            uint(BrowseResultMask.All.getValue())
+        ));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        client.disconnect().get();
+        fixture.stop();
+    }
+
+    @Benchmark
+    public int browseFolder() throws Exception {
+        BrowseResult result = client.browse(VIEW, uint(maxReferencesPerRequest), browseDescriptions)
+            .get().getResults()[0];
+
+        int references = result.getReferences().length;
+        ByteString continuationPoint = result.getContinuationPoint();
+
+        while (continuationPoint != null && continuationPoint.isNotNull()) {
+            result = client.browseNext(false, Collections.singletonList(continuationPoint)).get().getResults()[0];
+            references += result.getReferences().length;
+            continuationPoint = result.getContinuationPoint();
+        }
+
+        return references;
+    }
+
+}
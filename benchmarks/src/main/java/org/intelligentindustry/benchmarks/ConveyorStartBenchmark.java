@@ -0,0 +1,83 @@
+package org.intelligentindustry.benchmarks;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallMethodRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallResponse;
+import org.intelligentindustry.Conveyor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round-trip latency of conveyor_start() calls, cycling through the fleet. Profiles are kept short so most calls
+ * actually start a conveyor rather than hit the already-running path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ConveyorStartBenchmark {
+
+    private DemoServerFixture fixture;
+    private OpcUaClient client;
+    private List<List<CallMethodRequest>> requests;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("demo.fleet.count", "1000");
+        settings.put("demo.profile.ramp-up-ms", "50");
+        settings.put("demo.profile.plateau-ms", "50");
+        settings.put("demo.profile.ramp-down-ms", "50");
+        settings.put("demo.simulation.tick-ms", "10");
+
+        fixture = DemoServerFixture.start(settings);
+        client = fixture.connect();
+
+        requests = fixture.getNamespace().getFleet().getConveyors().stream()
+            .map(this::startRequest)
+            .collect(Collectors.toList());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        client.disconnect().get();
+        fixture.stop();
+    }
+
+    @Benchmark
+    public CallResponse callConveyorStart() throws Exception {
+        List<CallMethodRequest> request = requests.get(next);
+        next = (next + 1) % requests.size();
+
+        return client.call(request).get();
+    }
+
+    private List<CallMethodRequest> startRequest(Conveyor conveyor) {
+        return Collections.singletonList(new CallMethodRequest(
+            conveyor.getNodeId(),
+            conveyor.getStartMethod().getNodeId(),
+            new Variant[0]
+        ));
+    }
+
+}
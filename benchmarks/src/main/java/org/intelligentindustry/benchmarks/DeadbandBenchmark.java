@@ -0,0 +1,182 @@
+package org.intelligentindustry.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaMonitoredItem;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscription;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExtensionObject;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.DataChangeTrigger;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.DeadbandType;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MonitoringMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.DataChangeFilter;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemCreateRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoringParameters;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.intelligentindustry.ConveyorFleet;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+/**
+ * Notifications per second a client receives while the server jitters RunningSpeed of every conveyor by small
+ * steps, without a filter, with an absolute or percent deadband of 0.5 (2.5% of the 0-20 EURange), and with
+ * coalescing.
+ * <p>
+ * Each operation writes every conveyor once and then pauses for {@code pauseMs}, so the change rate is the same for
+ * every filter and the publisher is not starved by the writer. The primary score is the rate of write rounds; the
+ * {@code notifications} counter is the delivered notification rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class DeadbandBenchmark {
+
+    private static final AtomicLong NOTIFICATIONS = new AtomicLong();
+
+    @Param({"none", "absolute", "percent", "coalesce"})
+    public String filter;
+
+    @Param({"100"})
+    public int conveyors;
+
+    @Param({"10"})
+    public int pauseMs;
+
+    private DemoServerFixture fixture;
+    private OpcUaClient client;
+    private UaVariableNode[] runningSpeeds;
+    private double[] values;
+
+    @Setup
+    public void setup() throws Exception {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("demo.fleet.count", String.valueOf(conveyors));
+        settings.put("demo.subscription.mode", "push");
+        settings.put("demo.subscription.coalesce", String.valueOf(filter.equals("coalesce")));
+        settings.put("demo.history.enabled", "false");
+        settings.put("demo.simulation.time-scale", "0");
+
+        fixture = DemoServerFixture.start(settings);
+        client = fixture.connect();
+
+        ConveyorFleet fleet = fixture.getNamespace().getFleet();
+        runningSpeeds = new UaVariableNode[conveyors];
+        values = new double[conveyors];
+
+        UaSubscription subscription = client.getSubscriptionManager().createSubscription(1000.0).get();
+
+        List<MonitoredItemCreateRequest> requests = new ArrayList<>();
+        for (int i = 0; i < conveyors; i++) {
+            runningSpeeds[i] = fleet.get(i).getRunningSpeed();
+            values[i] = 10.0;
+
+            requests.add(new MonitoredItemCreateRequest(
+                new ReadValueId(runningSpeeds[i].getNodeId(), AttributeId.Value.uid(), null, QualifiedName.NULL_VALUE),
+                MonitoringMode.Reporting,
+                new MonitoringParameters(uint(i), 100.0, filter(), uint(100), true)
+            ));
+        }
+
+        List<UaMonitoredItem> monitoredItems = subscription.createMonitoredItems(
+            TimestampsToReturn.Both,
+            requests,
+            (item, index) -> item.setValueConsumer(v -> NOTIFICATIONS.incrementAndGet())
+        ).get();
+
+        for (UaMonitoredItem item : monitoredItems) {
+            if (item.getStatusCode().isBad()) {
+                throw new IllegalStateException("monitored item rejected: " + item.getStatusCode());
+            }
+        }
+
+        // let the initial values drain
+        Thread.sleep(1000);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        client.disconnect().get();
+        fixture.stop();
+    }
+
+    @Benchmark
+    public void jitter(Notifications notifications) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (int i = 0; i < runningSpeeds.length; i++) {
+            values[i] = Math.max(0.0, Math.min(20.0, values[i] + (random.nextBoolean() ? 0.05 : -0.05)));
+            runningSpeeds[i].setValue(new DataValue(new Variant(values[i])));
+        }
+
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(pauseMs));
+    }
+
+    private ExtensionObject filter() {
+        DeadbandType deadbandType;
+
+        if (filter.equals("absolute")) {
+            deadbandType = DeadbandType.Absolute;
+        } else if (filter.equals("percent")) {
+            deadbandType = DeadbandType.Percent;
+        } else {
+            return null;
+        }
+
+        return ExtensionObject.encode(
+            client.getStaticSerializationContext(),
+            new DataChangeFilter(
+                DataChangeTrigger.StatusValue,
+                uint(deadbandType.getValue()),
+                deadbandType == DeadbandType.Absolute ? 0.5 : 2.5
+            )
+        );
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Notifications {
+
+        private long start;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            start = NOTIFICATIONS.get();
+        }
+
+        public long notifications() {
+            return NOTIFICATIONS.get() - start;
+        }
+
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.intelligentindustry.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.util.EndpointUtil;
+import org.intelligentindustry.App;
+import org.intelligentindustry.DemoNamespace;
+
+/**
+ * An in-process demo server with {@link DemoNamespace}, plus a way to connect clients to it over loopback.
+ * <p>
+ * Settings are applied as system properties before the namespace is created, so every benchmark fork gets exactly
+ * the configuration it asks for.
+ */
+public class DemoServerFixture {
+
+    public static final String ENDPOINT_URL = "opc.tcp://localhost:12686/milo";
+
+    private final OpcUaServer server;
+    private final DemoNamespace namespace;
+
+    private DemoServerFixture(OpcUaServer server, DemoNamespace namespace) {
+        this.server = server;
+        this.namespace = namespace;
+    }
+
+    public static DemoServerFixture start(Map<String, String> settings)
+        throws ExecutionException, InterruptedException {
+
+        settings.forEach(System::setProperty);
+
+        // benchmarks must not depend on, or collide with, a scrape endpoint of a running server
+        if (!settings.containsKey("demo.metrics.port")) {
+            System.setProperty("demo.metrics.port", "0");
+        }
+        if (!settings.containsKey("demo.history.directory")) {
+            System.setProperty("demo.history.directory", "target/history");
+        }
+
+        OpcUaServer server = App.createServer();
+        DemoNamespace namespace = new DemoNamespace(server);
+
+        namespace.startup();
+        server.startup().get();
+
+        return new DemoServerFixture(server, namespace);
+    }
+
+    public OpcUaServer getServer() {
+        return server;
+    }
+
+    public DemoNamespace getNamespace() {
+        return namespace;
+    }
+
+    public OpcUaClient connect() throws UaException, ExecutionException, InterruptedException {
+        return connect(ENDPOINT_URL);
+    }
+
+    /**
+     * Connect an anonymous client without security to {@code endpointUrl}, which need not be a fixture.
+     */
+    public static OpcUaClient connect(String endpointUrl) throws UaException, ExecutionException, InterruptedException {
+        OpcUaClient client = OpcUaClient.create(
+            endpointUrl,
+            endpoints -> endpoints.stream()
+                .filter(e -> SecurityPolicy.None.getUri().equals(e.getSecurityPolicyUri()))
+                .findFirst()
+                .map(e -> EndpointUtil.updateUrl(e, "localhost")),
+            configBuilder -> configBuilder.build()
+        );
+
+        client.connect().get();
+
+        return client;
+    }
+
+    public void stop() throws ExecutionException, InterruptedException {
+        namespace.shutdown();
+        server.shutdown().get();
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.intelligentindustry.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.intelligentindustry.DerivedVariables;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads all derived KPIs of a number of conveyors in one Read, with UptimeRatio and EnergyEstimate cached for a
+ * second or recomputed on every read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class DerivedReadBenchmark {
+
+    @Param({"1", "100"})
+    public int conveyors;
+
+    @Param({"0", "1000"})
+    public long maxAgeMillis;
+
+    private DemoServerFixture fixture;
+    private OpcUaClient client;
+    private List<ReadValueId> readValueIds;
+
+    @Setup
+    public void setup() throws Exception {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("demo.fleet.count", Integer.toString(conveyors));
+        settings.put(DerivedVariables.ENABLED, "true");
+        settings.put(DerivedVariables.MAX_AGE_MILLIS, Long.toString(maxAgeMillis));
+
+        fixture = DemoServerFixture.start(settings);
+        client = fixture.connect();
+
+        readValueIds = new ArrayList<>();
+
+        for (int i = 0; i < conveyors; i++) {
+            NodeId conveyorId = fixture.getNamespace().getFleet().get(i).getNodeId();
+
+            for (String name : DerivedVariables.NAMES) {
+                readValueIds.add(new ReadValueId(
+                    new NodeId(conveyorId.getNamespaceIndex(), conveyorId.getIdentifier() + "/" + name),
+                    AttributeId.Value.uid(),
+                    null,
+                    QualifiedName.NULL_VALUE
+                ));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        client.disconnect().get();
+        fixture.stop();
+    }
+
+    @Benchmark
+    public ReadResponse readDerived() throws Exception {
+        return client.read(0.0, TimestampsToReturn.Both, readValueIds).get();
+    }
+
+}
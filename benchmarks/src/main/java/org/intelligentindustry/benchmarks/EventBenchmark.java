@@ -0,0 +1,89 @@
+package org.intelligentindustry.benchmarks;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.model.nodes.objects.BaseEventTypeNode;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.intelligentindustry.Conveyor;
+import org.intelligentindustry.EventEmitter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.ushort;
+
+/**
+ * Posting events on the server's EventBus: creating, posting and deleting an event node per event, against the pooled
+ * templates of {@link EventEmitter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class EventBenchmark {
+
+    private DemoServerFixture fixture;
+    private OpcUaServer server;
+    private Conveyor conveyor;
+    private EventEmitter.Template template;
+
+    @Setup
+    public void setup() throws Exception {
+        fixture = DemoServerFixture.start(Collections.emptyMap());
+        server = fixture.getServer();
+        conveyor = fixture.getNamespace().getFleet().get(0);
+        template = fixture.getNamespace().getEventEmitter().template("Object Dropoff Event", "Object Dropoff", 2);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fixture.stop();
+    }
+
+    @Benchmark
+    public void postEventNode() throws Exception {
+        BaseEventTypeNode eventNode = server.getEventFactory().createEvent(
+            new NodeId(1, UUID.randomUUID()),
+            Identifiers.BaseEventType
+        );
+
+        eventNode.setBrowseName(new QualifiedName(1, "Object Dropoff Event"));
+        eventNode.setDisplayName(LocalizedText.english("Object Dropoff Event"));
+        eventNode.setEventId(ByteString.of(new byte[]{0, 1, 2, 3}));
+        eventNode.setEventType(Identifiers.BaseEventType);
+        eventNode.setSourceNode(conveyor.getNodeId());
+        eventNode.setSourceName(conveyor.getName());
+        eventNode.setTime(DateTime.now());
+        eventNode.setReceiveTime(DateTime.NULL_VALUE);
+        eventNode.setMessage(LocalizedText.english("Object Dropoff"));
+        eventNode.setSeverity(ushort(2));
+
+        server.getEventBus().post(eventNode);
+
+        eventNode.delete();
+    }
+
+    @Benchmark
+    public void emitPooledEvent() throws Exception {
+        template.emit(conveyor.getNodeId(), conveyor.getName());
+    }
+
+}
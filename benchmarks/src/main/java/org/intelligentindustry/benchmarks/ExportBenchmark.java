@@ -0,0 +1,70 @@
+package org.intelligentindustry.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.intelligentindustry.ChangeExport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a RunningSpeed write on the writing thread, without export and with the gzip file sink. Four threads
+ * write concurrently, as the simulation workers and ingest connections would; with {@code drop} the buffer may
+ * overflow and drop, with {@code block} writers wait for the export thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+public class ExportBenchmark {
+
+    @Param({"", "file"})
+    public String sinks;
+
+    @Param({"drop", "block"})
+    public String overflow;
+
+    private DemoServerFixture fixture;
+    private UaVariableNode runningSpeed;
+
+    @Setup
+    public void setup() throws Exception {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("demo.simulation.time-scale", "0");
+        settings.put(ChangeExport.SINKS, sinks);
+        settings.put(ChangeExport.OVERFLOW, overflow);
+        settings.put(ChangeExport.FILE, "target/export/changes.lp.gz");
+
+        fixture = DemoServerFixture.start(settings);
+        runningSpeed = fixture.getNamespace().getFleet().get(0).getRunningSpeed();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fixture.stop();
+    }
+
+    @Benchmark
+    public void write() {
+        runningSpeed.setValue(new DataValue(new Variant(Math.random() * 20)));
+    }
+
+}
@@ -0,0 +1,178 @@
+package org.intelligentindustry.benchmarks;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.intelligentindustry.IngestPort;
+import org.intelligentindustry.ServerMetrics;
+
+/**
+ * Feeds RunningSpeed values into a demo server's ingest port over loopback, the way a PLC gateway would.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar org.intelligentindustry.benchmarks.IngestSender [options]}
+ * <pre>
+ * --port P             ingest port of the server (default 14840)
+ * --transport T        udp or tcp (default udp)
+ * --embedded           start a demo server in-process with the ingest port enabled; demo.* system properties
+ *                      configure it
+ * --conveyors N        conveyors to write RunningSpeed of, tags 1, 4, 7, ... (default 1000)
+ * --rate R             frames per second (default 100000)
+ * --frames-per-packet F frames per datagram or write (default 1000, at most 3275 over UDP)
+ * --duration S         seconds to run (default 10)
+ * </pre>
+ * Every frame carries a new value and the current time. With {@code --embedded} the frames applied and rejected by
+ * the server are printed next to the frames sent; over UDP the difference is what the socket dropped.
+ */
+public class IngestSender {
+
+    private static final int TAGS_PER_CONVEYOR = IngestPort.TAGS_PER_CONVEYOR;
+    private static final int RUNNING_SPEED = 1;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                usage("unexpected argument " + args[i]);
+            }
+
+            String name = args[i].substring(2);
+
+            if (name.equals("embedded")) {
+                options.put(name, "true");
+            } else if (i + 1 < args.length) {
+                options.put(name, args[++i]);
+            } else {
+                usage("missing value for " + args[i]);
+            }
+        }
+
+        int port = intOption(options, "port", 14840);
+        String transport = options.getOrDefault("transport", "udp");
+        int conveyors = intOption(options, "conveyors", 1000);
+        int rate = intOption(options, "rate", 100_000);
+        int framesPerPacket = intOption(options, "frames-per-packet", 1000);
+        int duration = intOption(options, "duration", 10);
+
+        if (!transport.equals("udp") && !transport.equals("tcp")) {
+            usage("--transport must be udp or tcp: " + transport);
+        }
+        if (transport.equals("udp")) {
+            framesPerPacket = Math.min(framesPerPacket, 65507 / IngestPort.FRAME_SIZE);
+        }
+
+        DemoServerFixture fixture = null;
+
+        if (options.containsKey("embedded")) {
+            Map<String, String> settings = new HashMap<>();
+            settings.put(IngestPort.PORT, Integer.toString(port));
+            settings.put(IngestPort.TRANSPORT, transport);
+            if (System.getProperty("demo.fleet.count") == null) {
+                settings.put("demo.fleet.count", Integer.toString(conveyors));
+            }
+            fixture = DemoServerFixture.start(settings);
+        }
+
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", port);
+
+        try (WritableByteChannel channel = transport.equals("udp") ?
+            DatagramChannel.open().connect(address) : SocketChannel.open(address)) {
+
+            long sent = send(channel, conveyors, rate, Math.max(1, framesPerPacket), duration);
+
+            System.out.printf("sent %d frames in %d s, %.1f frames/s%n", sent, duration, sent / (double) duration);
+
+            if (fixture != null) {
+                // let the server drain what is still in flight
+                Thread.sleep(500);
+
+                ServerMetrics metrics = fixture.getNamespace().getMetrics();
+
+                System.out.printf(
+                    "server applied %d, rejected %d, batch p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                    metrics.getIngestedFrames(), metrics.getIngestRejectedFrames(),
+                    metrics.getIngestBatchDuration().getValueAtQuantile(0.5) / 1e6,
+                    metrics.getIngestBatchDuration().getValueAtQuantile(0.99) / 1e6,
+                    metrics.getIngestBatchDuration().getMax() / 1e6
+                );
+            }
+        } finally {
+            if (fixture != null) {
+                fixture.stop();
+            }
+        }
+
+        System.exit(0);
+    }
+
+    private static long send(
+        WritableByteChannel channel,
+        int conveyors,
+        int rate,
+        int framesPerPacket,
+        int duration) throws Exception {
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(framesPerPacket * IngestPort.FRAME_SIZE)
+            .order(ByteOrder.BIG_ENDIAN);
+
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) * framesPerPacket / Math.max(1, rate);
+        long endNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(duration);
+        long next = System.nanoTime();
+        long sent = 0;
+        int conveyor = 0;
+
+        while (System.nanoTime() < endNanos) {
+            buffer.clear();
+
+            long now = System.currentTimeMillis();
+
+            for (int i = 0; i < framesPerPacket; i++) {
+                buffer.putInt(conveyor * TAGS_PER_CONVEYOR + RUNNING_SPEED);
+                buffer.putLong(now);
+                buffer.putDouble((sent + i) % 2000 / 100.0);
+
+                conveyor = (conveyor + 1) % conveyors;
+            }
+
+            buffer.flip();
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            sent += framesPerPacket;
+            next += periodNanos;
+
+            LockSupport.parkNanos(next - System.nanoTime());
+        }
+
+        return sent;
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            usage("--" + name + " must be a number: " + value);
+            return defaultValue;
+        }
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("usage: IngestSender [--port P] [--transport udp|tcp] [--embedded] [--conveyors N] " +
+            "[--rate R] [--frames-per-packet F] [--duration S]");
+        System.exit(2);
+    }
+
+}
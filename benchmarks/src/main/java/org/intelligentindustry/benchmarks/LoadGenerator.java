@@ -0,0 +1,476 @@
+package org.intelligentindustry.benchmarks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaMonitoredItem;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscription;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExpandedNodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExtensionObject;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseDirection;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseResultMask;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MonitoringMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallMethodRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.ContentFilter;
+import org.eclipse.milo.opcua.stack.core.types.structured.EventFilter;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemCreateRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoringParameters;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.SimpleAttributeOperand;
+import org.intelligentindustry.DemoNamespace;
+import org.intelligentindustry.LatencyHistogram;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+/**
+ * Drives a demo server over loopback the way a plant full of clients would, and reports throughput and latencies.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar org.intelligentindustry.benchmarks.LoadGenerator [options]}
+ * <pre>
+ * --endpoint URL      server to connect to (default opc.tcp://localhost:12686/milo)
+ * --embedded          start a demo server in-process instead; demo.* system properties configure it
+ * --sessions N        client sessions (default 4)
+ * --items M           RunningSpeed monitored items per session (default 100)
+ * --call-rate R       conveyor_start() calls per second over all sessions (default 10)
+ * --write-rate W      RunningSpeed writes per second over all sessions (default 100)
+ * --events            subscribe every session to events of the Server object
+ * --publishing-ms P   publishing interval of every subscription (default 100)
+ * --sampling-ms S     sampling interval of every monitored item (default 0, the fastest the server allows)
+ * --duration S        seconds to run (default 30)
+ * --report S          seconds between progress lines (default 5)
+ * </pre>
+ * Write-to-notification latency is measured from sending a Write with a unique value until a session receives that
+ * value, call latency is the round trip of conveyor_start(), and event latency is the time from an event's Time
+ * field until it arrives. Writes whose value no session has received a few publishing intervals after the run are
+ * reported as unacknowledged. Only localhost endpoints are accepted.
+ */
+public class LoadGenerator {
+
+    private static final NodeId SERVER_OBJECT = Identifiers.Server;
+
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final LatencyHistogram callLatency = new LatencyHistogram();
+    private final LatencyHistogram eventLatency = new LatencyHistogram();
+
+    private final LongAdder notifications = new LongAdder();
+    private final LongAdder events = new LongAdder();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    // written value -> nanoTime it was sent
+    private final Map<Double, Long> pendingWrites = new ConcurrentHashMap<>();
+    private final AtomicLong writeSequence = new AtomicLong();
+
+    private final List<OpcUaClient> clients = new ArrayList<>();
+    private final List<Conveyor> conveyors = new ArrayList<>();
+
+    private final Map<String, String> options;
+
+    private LoadGenerator(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                usage("unexpected argument " + args[i]);
+            }
+
+            String name = args[i].substring(2);
+
+            if (name.equals("embedded") || name.equals("events")) {
+                options.put(name, "true");
+            } else if (i + 1 < args.length) {
+                options.put(name, args[++i]);
+            } else {
+                usage("missing value for " + args[i]);
+            }
+        }
+
+        DemoServerFixture fixture = null;
+
+        if (options.containsKey("embedded")) {
+            fixture = DemoServerFixture.start(new HashMap<>());
+        }
+
+        try {
+            new LoadGenerator(options).run();
+        } finally {
+            if (fixture != null) {
+                fixture.stop();
+            }
+        }
+
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        String endpoint = options.getOrDefault("endpoint", DemoServerFixture.ENDPOINT_URL);
+        int sessions = intOption("sessions", 4);
+        int items = intOption("items", 100);
+        int callRate = intOption("call-rate", 10);
+        int writeRate = intOption("write-rate", 100);
+        int duration = intOption("duration", 30);
+        int report = intOption("report", 5);
+
+        if (report <= 0) {
+            usage("--report must be greater than 0: " + report);
+        }
+        if (!endpoint.matches("opc\\.tcp://(localhost|127\\.0\\.0\\.1|\\[::1\\])(:\\d+)?(/.*)?")) {
+            usage("only localhost endpoints are supported: " + endpoint);
+        }
+
+        for (int i = 0; i < sessions; i++) {
+            clients.add(DemoServerFixture.connect(endpoint));
+        }
+
+        discoverConveyors(clients.get(0), Math.max(1, items));
+
+        System.out.printf(
+            "%d sessions, %d items each on %d conveyors, %d calls/s, %d writes/s, events %s, %d s%n",
+            sessions, items, conveyors.size(), callRate, writeRate,
+            options.containsKey("events") ? "on" : "off", duration
+        );
+
+        for (OpcUaClient client : clients) {
+            subscribe(client, items);
+        }
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "load-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        AtomicInteger next = new AtomicInteger();
+
+        if (callRate > 0) {
+            long periodNanos = TimeUnit.SECONDS.toNanos(1) / callRate;
+            scheduler.scheduleAtFixedRate(() -> call(next.getAndIncrement()), 0, periodNanos, TimeUnit.NANOSECONDS);
+        }
+        if (writeRate > 0) {
+            long periodNanos = TimeUnit.SECONDS.toNanos(1) / writeRate;
+            scheduler.scheduleAtFixedRate(() -> write(next.getAndIncrement()), 0, periodNanos, TimeUnit.NANOSECONDS);
+        }
+
+        long startNanos = System.nanoTime();
+        long[] last = new long[4];
+
+        for (int elapsed = report; elapsed <= duration; elapsed += report) {
+            Thread.sleep(Math.max(0, startNanos + TimeUnit.SECONDS.toNanos(elapsed) - System.nanoTime()) / 1_000_000);
+
+            long[] now = {notifications.sum(), events.sum(), calls.sum(), writes.sum()};
+
+            System.out.printf(
+                "%4d s  notifications/s %9.1f  events/s %8.1f  calls/s %7.1f  writes/s %8.1f  errors %d%n",
+                elapsed,
+                (now[0] - last[0]) / (double) report, (now[1] - last[1]) / (double) report,
+                (now[2] - last[2]) / (double) report, (now[3] - last[3]) / (double) report,
+                errors.sum()
+            );
+
+            last = now;
+        }
+
+        scheduler.shutdownNow();
+
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+        // give the last writes a few publishing intervals to be notified before counting them as unacknowledged
+        long graceNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(3L * intOption("publishing-ms", 100));
+        while (!pendingWrites.isEmpty() && System.nanoTime() < graceNanos) {
+            Thread.sleep(10);
+        }
+
+        System.out.println();
+        System.out.printf(
+            "%-24s %12s %10s %10s %10s %10s%n", "", "per second", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        printLatency("write-to-notification", writeLatency, seconds);
+        printLatency("conveyor_start() call", callLatency, seconds);
+        printLatency("event delivery", eventLatency, seconds);
+        System.out.printf("%-24s %12.1f%n", "notifications", notifications.sum() / seconds);
+        System.out.printf("%-24s %12d%n", "errors", errors.sum());
+        System.out.printf("%-24s %12d%n", "unacknowledged writes", pendingWrites.size());
+
+        for (OpcUaClient client : clients) {
+            client.disconnect().get();
+        }
+    }
+
+    /**
+     * Breadth-first browse below IntelligentIndustry for up to {@code limit} conveyors that have a conveyor_start().
+     */
+    private void discoverConveyors(OpcUaClient client, int limit) throws Exception {
+        int namespaceIndex = client.getNamespaceTable().getIndex(DemoNamespace.NAMESPACE_URI).intValue();
+        NodeId conveyorType = new NodeId(namespaceIndex, "ObjectTypes/ConveyorType");
+
+        Deque<NodeId> folders = new ArrayDeque<>();
+        folders.add(new NodeId(namespaceIndex, "IntelligentIndustry"));
+
+        while (!folders.isEmpty() && conveyors.size() < limit) {
+            for (ReferenceDescription child : browse(client, folders.poll(), Identifiers.HierarchicalReferences)) {
+                NodeId childId = toNodeId(client, child.getNodeId());
+
+                if (childId == null || childId.getNamespaceIndex().intValue() != namespaceIndex ||
+                    child.getNodeClass() != NodeClass.Object) {
+                    continue;
+                }
+
+                if (conveyorType.equals(toNodeId(client, child.getTypeDefinition()))) {
+                    Conveyor conveyor = components(client, childId);
+
+                    if (conveyor != null && conveyors.size() < limit) {
+                        conveyors.add(conveyor);
+                    }
+                } else {
+                    folders.add(childId);
+                }
+            }
+        }
+
+        if (conveyors.isEmpty()) {
+            throw new IllegalStateException("no conveyors found below IntelligentIndustry");
+        }
+    }
+
+    private Conveyor components(OpcUaClient client, NodeId conveyorId) throws Exception {
+        NodeId runningSpeed = null;
+        NodeId start = null;
+
+        for (ReferenceDescription component : browse(client, conveyorId, Identifiers.HasComponent)) {
+            String name = component.getBrowseName().getName();
+
+            if ("RunningSpeed".equals(name)) {
+                runningSpeed = toNodeId(client, component.getNodeId());
+            } else if ("conveyor_start()".equals(name)) {
+                start = toNodeId(client, component.getNodeId());
+            }
+        }
+
+        return runningSpeed != null && start != null ? new Conveyor(conveyorId, runningSpeed, start) : null;
+    }
+
+    private void subscribe(OpcUaClient client, int items) throws Exception {
+        UaSubscription subscription = client.getSubscriptionManager()
+            .createSubscription(intOption("publishing-ms", 100)).get();
+        double samplingInterval = intOption("sampling-ms", 0);
+
+        List<MonitoredItemCreateRequest> requests = new ArrayList<>();
+
+        for (int i = 0; i < items; i++) {
+            requests.add(new MonitoredItemCreateRequest(
+                new ReadValueId(conveyors.get(i % conveyors.size()).runningSpeed, AttributeId.Value.uid(), null,
+                    QualifiedName.NULL_VALUE),
+                MonitoringMode.Reporting,
+                new MonitoringParameters(uint(i), samplingInterval, null, uint(10), true)
+            ));
+        }
+
+        if (options.containsKey("events")) {
+            EventFilter eventFilter = new EventFilter(
+                new SimpleAttributeOperand[]{
+                    new SimpleAttributeOperand(
+                        Identifiers.BaseEventType,
+                        new QualifiedName[]{new QualifiedName(0, "Time")},
+                        AttributeId.Value.uid(),
+                        null
+                    )
+                },
+                new ContentFilter(null)
+            );
+
+            requests.add(new MonitoredItemCreateRequest(
+                new ReadValueId(SERVER_OBJECT, AttributeId.EventNotifier.uid(), null, QualifiedName.NULL_VALUE),
+                MonitoringMode.Reporting,
+                new MonitoringParameters(
+                    uint(items), 0.0, ExtensionObject.encode(client.getStaticSerializationContext(), eventFilter),
+                    uint(10000), true)
+            ));
+        }
+
+        List<UaMonitoredItem> monitoredItems = subscription.createMonitoredItems(
+            TimestampsToReturn.Both,
+            requests,
+            (item, index) -> {
+                if (index < items) {
+                    item.setValueConsumer(this::onValue);
+                } else {
+                    item.setEventConsumer(this::onEvent);
+                }
+            }
+        ).get();
+
+        for (UaMonitoredItem item : monitoredItems) {
+            if (item.getStatusCode().isBad()) {
+                throw new IllegalStateException("monitored item rejected: " + item.getStatusCode());
+            }
+        }
+    }
+
+    private void onValue(DataValue value) {
+        notifications.increment();
+
+        Object v = value.getValue().getValue();
+        Long sentNanos = v instanceof Double ? pendingWrites.remove(v) : null;
+
+        if (sentNanos != null) {
+            writeLatency.record(System.nanoTime() - sentNanos);
+        }
+    }
+
+    private void onEvent(Variant[] fields) {
+        events.increment();
+
+        Object time = fields.length > 0 ? fields[0].getValue() : null;
+
+        if (time instanceof DateTime) {
+            long millis = System.currentTimeMillis() - ((DateTime) time).getJavaTime();
+
+            eventLatency.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+
+    private void call(int n) {
+        OpcUaClient client = clients.get(n % clients.size());
+        Conveyor conveyor = conveyors.get(n % conveyors.size());
+        long startNanos = System.nanoTime();
+
+        client.call(new CallMethodRequest(conveyor.objectId, conveyor.start, new Variant[0])).whenComplete((r, e) -> {
+            if (e != null || r.getStatusCode().isBad()) {
+                errors.increment();
+            } else {
+                callLatency.record(System.nanoTime() - startNanos);
+                calls.increment();
+            }
+        });
+    }
+
+    private void write(int n) {
+        OpcUaClient client = clients.get(n % clients.size());
+        Conveyor conveyor = conveyors.get(n % conveyors.size());
+
+        // every write gets a value the simulation never produces, so its notification can be recognized
+        Double value = 1_000_000.0 + writeSequence.incrementAndGet();
+        pendingWrites.put(value, System.nanoTime());
+
+        client.writeValue(conveyor.runningSpeed, new DataValue(new Variant(value), null, null)).whenComplete((s, e) -> {
+            if (e != null || s.isBad()) {
+                pendingWrites.remove(value);
+                errors.increment();
+            } else {
+                writes.increment();
+            }
+        });
+    }
+
+    private List<ReferenceDescription> browse(OpcUaClient client, NodeId nodeId, NodeId referenceType)
+        throws Exception {
+
+        BrowseResult result = client.browse(new BrowseDescription(
+            nodeId,
+            BrowseDirection.Forward,
+            referenceType,
+            true,
+            uint(0),
+            uint(BrowseResultMask.All.getValue())
+        )).get();
+
+        List<ReferenceDescription> references = new ArrayList<>();
+        Collections.addAll(references, result.getReferences() != null ?
+            result.getReferences() : new ReferenceDescription[0]);
+
+        ByteString continuationPoint = result.getContinuationPoint();
+
+        while (continuationPoint != null && continuationPoint.isNotNull()) {
+            result = client.browseNext(false, Collections.singletonList(continuationPoint)).get().getResults()[0];
+
+            if (result.getStatusCode().isBad() || result.getReferences() == null) {
+                throw new IllegalStateException("BrowseNext of " + nodeId + " failed: " + result.getStatusCode());
+            }
+
+            Collections.addAll(references, result.getReferences());
+            continuationPoint = result.getContinuationPoint();
+        }
+
+        return references;
+    }
+
+    private static NodeId toNodeId(OpcUaClient client, ExpandedNodeId expandedNodeId) {
+        return expandedNodeId == null ? null : expandedNodeId.toNodeId(client.getNamespaceTable()).orElse(null);
+    }
+
+    private static void printLatency(String name, LatencyHistogram histogram, double seconds) {
+        System.out.printf(
+            "%-24s %12.1f %10.3f %10.3f %10.3f %10.3f%n",
+            name,
+            histogram.getCount() / seconds,
+            histogram.getValueAtQuantile(0.5) / 1e6,
+            histogram.getValueAtQuantile(0.99) / 1e6,
+            histogram.getValueAtQuantile(0.999) / 1e6,
+            histogram.getMax() / 1e6
+        );
+    }
+
+    private int intOption(String name, int defaultValue) {
+        String value = options.get(name);
+
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            usage("--" + name + " must be a number: " + value);
+            return defaultValue;
+        }
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("usage: LoadGenerator [--endpoint URL | --embedded] [--sessions N] [--items M] " +
+            "[--call-rate R] [--write-rate W] [--events] [--publishing-ms P] [--sampling-ms S] [--duration S] " +
+            "[--report S]");
+        System.exit(2);
+    }
+
+    private static class Conveyor {
+
+        final NodeId objectId;
+        final NodeId runningSpeed;
+        final NodeId start;
+
+        Conveyor(NodeId objectId, NodeId runningSpeed, NodeId start) {
+            this.objectId = objectId;
+            this.runningSpeed = runningSpeed;
+            this.start = start;
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.intelligentindustry.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reports the retained heap per tag of conveyors materialized as UaNodes versus virtual conveyors backed by arrays.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar org.intelligentindustry.benchmarks.MemoryFootprint <nodes|virtual> <tags>}.
+ * Every conveyor contributes three tags (Motors, RunningSpeed, Dropoffs). The heap of a server with a single conveyor
+ * is measured first and subtracted, so only the cost of the additional tags is reported. History is disabled, as it
+ * would otherwise dominate the node-per-variable figure with one ring file per conveyor.
+ */
+public class MemoryFootprint {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2 || !(args[0].equals("nodes") || args[0].equals("virtual"))) {
+            System.err.println("usage: MemoryFootprint <nodes|virtual> <tags>");
+            System.exit(2);
+        }
+
+        boolean virtual = args[0].equals("virtual");
+        int tags = Integer.parseInt(args[1]);
+        int conveyors = (tags + 2) / 3;
+
+        long baseline = measure(1, 0);
+        long used = virtual ? measure(1, conveyors) : measure(conveyors, 0);
+
+        System.out.printf("%s: %d tags, %,d bytes retained, %.1f bytes per tag%n",
+            args[0], conveyors * 3L, used - baseline, (double) (used - baseline) / (conveyors * 3L));
+
+        System.exit(0);
+    }
+
+    private static long measure(int fleetCount, int virtualCount) throws Exception {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("demo.fleet.count", String.valueOf(fleetCount));
+        settings.put("demo.virtual.count", String.valueOf(virtualCount));
+        settings.put("demo.history.enabled", "false");
+
+        DemoServerFixture fixture = DemoServerFixture.start(settings);
+
+        try {
+            return usedHeapAfterGc();
+        } finally {
+            fixture.stop();
+        }
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+
+        // collect until the figure settles; a single System.gc() can leave floating garbage behind
+        for (int i = 0; i < 5; i++) {
+            memory.gc();
+            Thread.sleep(200);
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+
+        return used;
+    }
+
+}
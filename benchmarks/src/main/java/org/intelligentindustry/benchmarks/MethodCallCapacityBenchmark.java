@@ -0,0 +1,134 @@
+package org.intelligentindustry.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallMethodRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallResponse;
+import org.intelligentindustry.Conveyor;
+import org.intelligentindustry.ServerTuning;
+import org.intelligentindustry.SimulationEngine;
+import org.intelligentindustry.VirtualThreads;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to complete a wave of {@code inFlight} concurrent conveyor_setpoints() calls whose handlers block for the
+ * acknowledge time, with requests served by the SDK's shared pool (one platform thread per blocked call), by a
+ * fixed pool of {@code poolThreads} platform threads, or by virtual threads.
+ * <p>
+ * Ideally a wave takes one acknowledge time. A fixed pool serialises the wave into {@code inFlight / poolThreads}
+ * rounds; the shared pool keeps up by creating a platform thread per call, as the peak thread count printed after
+ * each iteration shows. The virtual mode needs JDK 21 or later and fails its setup on older JDKs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class MethodCallCapacityBenchmark {
+
+    @Param({"shared", "pool", "virtual"})
+    public String threads;
+
+    @Param({"1000", "10000"})
+    public int inFlight;
+
+    @Param({"200"})
+    public int poolThreads;
+
+    @Param({"100"})
+    public int acknowledgeMs;
+
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    private DemoServerFixture fixture;
+    private OpcUaClient client;
+    private List<CallMethodRequest> request;
+
+    @Setup
+    public void setup() throws Exception {
+        if ("virtual".equals(threads) && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException("virtual threads need JDK 21 or later");
+        }
+
+        Map<String, String> settings = new HashMap<>();
+        settings.put("demo.fleet.count", "1");
+        settings.put(SimulationEngine.ACKNOWLEDGE_MILLIS, String.valueOf(acknowledgeMs));
+        settings.put(VirtualThreads.ENABLED, String.valueOf("virtual".equals(threads)));
+        if ("pool".equals(threads)) {
+            settings.put(ServerTuning.EXECUTOR_THREADS, String.valueOf(poolThreads));
+        }
+
+        fixture = DemoServerFixture.start(settings);
+        client = fixture.connect();
+
+        Conveyor conveyor = fixture.getNamespace().getFleet().get(0);
+        NodeId folderId = new NodeId(fixture.getNamespace().getNamespaceIndex(), "IntelligentIndustry");
+        NodeId methodId = new NodeId(
+            fixture.getNamespace().getNamespaceIndex(), "IntelligentIndustry/conveyor_setpoints()");
+
+        // a valid batch that changes nothing: keep the current speed, no command
+        request = Collections.singletonList(new CallMethodRequest(
+            folderId,
+            methodId,
+            new Variant[]{
+                new Variant(new NodeId[]{conveyor.getNodeId()}),
+                new Variant(new Double[]{Double.NaN}),
+                new Variant(new Integer[0])
+            }
+        ));
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeakThreads() {
+        threadBean.resetPeakThreadCount();
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportPeakThreads() {
+        System.out.println("peak threads: " + threadBean.getPeakThreadCount());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        client.disconnect().get();
+        fixture.stop();
+    }
+
+    @Benchmark
+    public int callWave() throws Exception {
+        List<CompletableFuture<CallResponse>> calls = new ArrayList<>(inFlight);
+
+        for (int i = 0; i < inFlight; i++) {
+            calls.add(client.call(request));
+        }
+
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).get();
+
+        return calls.size();
+    }
+
+}
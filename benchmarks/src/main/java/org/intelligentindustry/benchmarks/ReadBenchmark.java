@@ -0,0 +1,74 @@
+package org.intelligentindustry.benchmarks;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Value reads of a conveyor's RunningSpeed over loopback, with and without the audit filter installed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ReadBenchmark {
+
+    @Param({"false", "true"})
+    public boolean audit;
+
+    private DemoServerFixture fixture;
+    private OpcUaClient client;
+    private List<ReadValueId> readValueIds;
+
+    @Setup
+    public void setup() throws Exception {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("demo.audit.enabled", Boolean.toString(audit));
+        settings.put("demo.audit.file", "target/audit/audit.log");
+
+        fixture = DemoServerFixture.start(settings);
+        client = fixture.connect();
+
+        readValueIds = Collections.singletonList(new ReadValueId(
+            fixture.getNamespace().getFleet().get(0).getRunningSpeed().getNodeId(),
+            AttributeId.Value.uid(),
+            null,
+            QualifiedName.NULL_VALUE
+        ));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        client.disconnect().get();
+        fixture.stop();
+    }
+
+    @Benchmark
+    public ReadResponse readRunningSpeed() throws Exception {
+        return client.read(0.0, TimestampsToReturn.Both, readValueIds).get();
+    }
+
+}
@@ -0,0 +1,178 @@
+package org.intelligentindustry.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.intelligentindustry.Conveyor;
+import org.intelligentindustry.DemoNamespace;
+import org.intelligentindustry.ReplayEngine;
+import org.intelligentindustry.RollingFileSink;
+
+/**
+ * Replays a recording that the export has already rolled over, {@code changes.lp.gz.1}, and checks that every record
+ * in it is applied.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar org.intelligentindustry.benchmarks.ReplayRolledExportTest [options]}
+ * <pre>
+ * --fleet N           conveyors in the fleet, one RunningSpeed record each (default 100)
+ * --directory D       where the recording is written (default target/replay-rolled)
+ * </pre>
+ * The recording is written with the compressing {@link RollingFileSink} the {@code file} export sink uses, sized so
+ * that the records roll into {@code .1}, and replayed at full speed onto an in-process server whose simulation clock
+ * is stopped. The run exits with status 1 unless the replay applied every record and RunningSpeed of every conveyor
+ * holds its recorded value.
+ */
+public class ReplayRolledExportTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                usage("unexpected argument " + args[i]);
+            }
+
+            options.put(args[i].substring(2), args[++i]);
+        }
+
+        int fleet = Math.max(1, intOption(options, "fleet", 100));
+        File directory = new File(options.getOrDefault("directory", "target/replay-rolled"));
+
+        Map<String, String> settings = new HashMap<>();
+        settings.put("demo.fleet.count", Integer.toString(fleet));
+        settings.put("demo.history.enabled", "false");
+        settings.put("demo.simulation.time-scale", "0");
+
+        DemoServerFixture fixture = DemoServerFixture.start(settings);
+        boolean passed;
+
+        try {
+            DemoNamespace namespace = fixture.getNamespace();
+            List<Conveyor> conveyors = namespace.getFleet().getConveyors();
+            File rolled = record(directory, conveyors);
+
+            ReplayEngine replay = new ReplayEngine(
+                rolled, 0, false, 10, namespace::getFleet, namespace.getEventEmitter(), namespace.getMetrics());
+
+            long replayedBefore = namespace.getMetrics().getReplayedRecords();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+
+            replay.startup();
+            try {
+                while (namespace.getMetrics().getReplayedRecords() - replayedBefore < conveyors.size() &&
+                    System.nanoTime() < deadline) {
+
+                    Thread.sleep(10);
+                }
+            } finally {
+                replay.shutdown();
+            }
+
+            long replayed = namespace.getMetrics().getReplayedRecords() - replayedBefore;
+            int wrong = 0;
+
+            for (int i = 0; i < conveyors.size(); i++) {
+                DataValue value = conveyors.get(i).getRunningSpeed().getValue();
+                Object speed = value != null ? value.getValue().getValue() : null;
+
+                if (!(speed instanceof Number) || ((Number) speed).doubleValue() != speed(i)) {
+                    wrong++;
+                }
+            }
+
+            passed = replayed == conveyors.size() && wrong == 0;
+
+            System.out.printf("replayed %d of %d records from %s, %d conveyors with the wrong RunningSpeed: %s%n",
+                replayed, conveyors.size(), rolled, wrong, passed ? "PASSED" : "FAILED");
+        } finally {
+            fixture.stop();
+        }
+
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Write one RunningSpeed record per conveyor and roll them into {@code changes.lp.gz.1} with one more record.
+     *
+     * @return the rolled file.
+     */
+    private static File record(File directory, List<Conveyor> conveyors) throws Exception {
+        File file = new File(directory, "changes.lp.gz");
+
+        for (String suffix : new String[]{"", ".1", ".2"}) {
+            File old = new File(file.getPath() + suffix);
+            if (old.exists() && !old.delete()) {
+                throw new IllegalStateException("could not delete " + old);
+            }
+        }
+
+        List<String> lines = new ArrayList<>();
+        long bytes = 0;
+        long timestamp = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+
+        for (int i = 0; i < conveyors.size(); i++) {
+            String node = escape(conveyors.get(i).getRunningSpeed().getNodeId().toParseableString());
+            String line = "opcua_value,node=" + node + " value=" + speed(i) + " " + (timestamp + i);
+
+            lines.add(line);
+            bytes += line.length() + 1;
+        }
+
+        RollingFileSink sink = new RollingFileSink(file, bytes, 2, true);
+
+        try {
+            for (String line : lines) {
+                sink.write(line);
+            }
+
+            // over the limit now, so this one rolls the records above into .1
+            sink.write("# rolled");
+        } finally {
+            sink.close();
+        }
+
+        return new File(file.getPath() + ".1");
+    }
+
+    private static double speed(int conveyor) {
+        return 10.0 + (conveyor % 50) * 0.5;
+    }
+
+    private static String escape(String tag) {
+        StringBuilder escaped = new StringBuilder();
+
+        for (int i = 0; i < tag.length(); i++) {
+            char c = tag.charAt(i);
+
+            if (c == ',' || c == ' ' || c == '=') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+
+        return escaped.toString();
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            usage("--" + name + " must be a number: " + value);
+            return defaultValue;
+        }
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("usage: ReplayRolledExportTest [--fleet N] [--directory D]");
+        System.exit(2);
+    }
+
+}
@@ -0,0 +1,72 @@
+package org.intelligentindustry.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.intelligentindustry.Conveyor;
+import org.intelligentindustry.SimulationEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One simulation tick with every conveyor of the fleet running. The simulation clock is stopped so that only the
+ * benchmark advances it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class SimulationTickBenchmark {
+
+    @Param({"1000", "10000"})
+    public int fleetSize;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private DemoServerFixture fixture;
+    private SimulationEngine engine;
+
+    @Setup
+    public void setup() throws Exception {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("demo.fleet.count", Integer.toString(fleetSize));
+        settings.put("demo.simulation.time-scale", "0");
+        settings.put("demo.simulation.threads", Integer.toString(threads));
+        settings.put("demo.simulation.tick-ms", "10");
+        settings.put("demo.profile.ramp-up-ms", "1000");
+        // keep every conveyor on its ramp and plateau for the whole run
+        settings.put("demo.profile.plateau-ms", Long.toString(TimeUnit.DAYS.toMillis(365)));
+
+        fixture = DemoServerFixture.start(settings);
+        engine = fixture.getNamespace().getSimulationEngine();
+
+        for (Conveyor conveyor : fixture.getNamespace().getFleet().getConveyors()) {
+            engine.start(conveyor);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fixture.stop();
+    }
+
+    @Benchmark
+    public void tick() {
+        engine.tick();
+    }
+
+}
@@ -0,0 +1,504 @@
+package org.intelligentindustry.benchmarks;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Field;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaMonitoredItem;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscription;
+import org.eclipse.milo.opcua.sdk.server.api.AbstractNodeManager;
+import org.eclipse.milo.opcua.sdk.server.api.AddressSpaceManager;
+import org.eclipse.milo.opcua.sdk.server.api.NodeManager;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MonitoringMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallMethodRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemCreateRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoringParameters;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.intelligentindustry.Conveyor;
+import org.intelligentindustry.DemoNamespace;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+/**
+ * Runs a demo server in-process under steady load for hours and fails if its heap, threads or nodes keep growing.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar org.intelligentindustry.benchmarks.SoakTest [options]}
+ * <pre>
+ * --fleet N           conveyors in the fleet (default 100)
+ * --event-rate E      bogus events posted per second by the server (default 100)
+ * --sessions N        client sessions (default 4)
+ * --items M           RunningSpeed monitored items per session (default 100)
+ * --call-rate R       conveyor_start() and conveyor_stop() calls per second over all sessions (default 10)
+ * --write-rate W      RunningSpeed writes per second over all sessions (default 100)
+ * --publishing-ms P   publishing interval of every subscription (default 1000)
+ * --duration S        seconds to run (default 3600)
+ * --sample S          seconds between samples (default 60)
+ * --warmup S          seconds of samples left out of the trends (default 300)
+ * --max-heap-growth H MB per hour the heap after GC may grow by (default 16)
+ * --max-thread-growth T live threads per hour the thread count may grow by (default 5)
+ * --max-node-growth G nodes per hour the address space may grow by (default 50)
+ * --csv FILE          also write the samples to FILE
+ * </pre>
+ * Every sample forces a full GC and records the heap after it, live and newly started threads, the nodes of every node
+ * manager of the server, including the one the EventFactory creates event nodes in, the count, total and longest
+ * duration of the collections since the previous sample, and the allocation rate. Collections are observed through GC
+ * notifications, leaving out the forced ones, and the allocation rate is the heap growth between samples plus what
+ * those collections freed. Other demo.* system properties configure the server as usual.
+ * <p>
+ * Growth is the least-squares slope of the samples taken after the warmup, so a one-off step such as a cache filling
+ * up counts for little while a steady leak does not go away. The run exits with status 1 if any slope exceeds its
+ * threshold, so the report of two builds can be compared and a regression fails the run.
+ */
+public class SoakTest {
+
+    private static final String[] COLUMNS = {
+        "seconds", "heap_mb", "threads", "started", "nodes", "gc_count", "gc_ms", "gc_max_ms", "alloc_mb_s"
+    };
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    // collections since the previous sample, forced ones excluded
+    private final LongAdder gcCount = new LongAdder();
+    private final LongAdder gcMillis = new LongAdder();
+    private final LongAdder gcFreedBytes = new LongAdder();
+    private final AtomicLong gcMaxMillis = new AtomicLong();
+    private final NotificationListener gcListener = this::onCollection;
+
+    private final List<OpcUaClient> clients = new ArrayList<>();
+    private final List<double[]> samples = new ArrayList<>();
+
+    private final Map<String, String> options;
+
+    private DemoServerFixture fixture;
+    private List<Conveyor> conveyors;
+    private NodeId[] stopMethods;
+
+    private SoakTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                usage("unexpected argument " + args[i]);
+            } else if (i + 1 < args.length) {
+                options.put(args[i].substring(2), args[++i]);
+            } else {
+                usage("missing value for " + args[i]);
+            }
+        }
+
+        boolean passed = new SoakTest(options).run();
+
+        System.exit(passed ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        int sessions = intOption("sessions", 4);
+        int items = intOption("items", 100);
+        int callRate = intOption("call-rate", 10);
+        int writeRate = intOption("write-rate", 100);
+        int duration = intOption("duration", 3600);
+        int sample = Math.max(1, intOption("sample", 60));
+        int warmup = intOption("warmup", 300);
+
+        Map<String, String> settings = new HashMap<>();
+        settings.put("demo.fleet.count", Integer.toString(Math.max(1, intOption("fleet", 100))));
+        settings.put(DemoNamespace.EVENT_RATE, Integer.toString(intOption("event-rate", 100)));
+
+        fixture = DemoServerFixture.start(settings);
+
+        try {
+            conveyors = fixture.getNamespace().getFleet().getConveyors();
+            stopMethods = new NodeId[conveyors.size()];
+
+            int namespaceIndex = fixture.getNamespace().getNamespaceIndex().intValue();
+
+            for (int i = 0; i < stopMethods.length; i++) {
+                stopMethods[i] = conveyors.get(i).getObjectNode()
+                    .findNode(new QualifiedName(namespaceIndex, "conveyor_stop()"),
+                        r -> Identifiers.HasComponent.equals(r.getReferenceTypeId()))
+                    .map(UaNode::getNodeId)
+                    .orElseThrow(() -> new IllegalStateException("conveyor without conveyor_stop()"));
+            }
+
+            for (int i = 0; i < sessions; i++) {
+                OpcUaClient client = fixture.connect();
+                clients.add(client);
+                subscribe(client, items);
+            }
+
+            System.out.printf(
+                "%d conveyors, %d events/s, %d sessions, %d items each, %d calls/s, %d writes/s, %d s%n",
+                conveyors.size(), intOption("event-rate", 100), sessions, items, callRate, writeRate, duration
+            );
+
+            return soak(callRate, writeRate, duration, sample, warmup);
+        } finally {
+            for (OpcUaClient client : clients) {
+                client.disconnect().get();
+            }
+
+            fixture.stop();
+        }
+    }
+
+    private boolean soak(int callRate, int writeRate, int duration, int sample, int warmup) throws Exception {
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "soak-load");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        AtomicInteger next = new AtomicInteger();
+
+        if (callRate > 0) {
+            long periodNanos = TimeUnit.SECONDS.toNanos(1) / callRate;
+            scheduler.scheduleAtFixedRate(() -> call(next.getAndIncrement()), 0, periodNanos, TimeUnit.NANOSECONDS);
+        }
+        if (writeRate > 0) {
+            long periodNanos = TimeUnit.SECONDS.toNanos(1) / writeRate;
+            scheduler.scheduleAtFixedRate(() -> write(next.getAndIncrement()), 0, periodNanos, TimeUnit.NANOSECONDS);
+        }
+
+        List<NotificationEmitter> emitters = listenForCollections();
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        PrintWriter csv = csvWriter();
+
+        System.out.println();
+        System.out.printf("%8s %9s %8s %8s %9s %9s %9s %10s %11s%n", (Object[]) COLUMNS);
+
+        memory.gc();
+        long startNanos = System.nanoTime();
+        long lastHeap = memory.getHeapMemoryUsage().getUsed();
+        long lastStarted = threads.getTotalStartedThreadCount();
+        long lastNanos = startNanos;
+
+        for (int elapsed = sample; elapsed <= duration; elapsed += sample) {
+            Thread.sleep(Math.max(0, startNanos + TimeUnit.SECONDS.toNanos(elapsed) - System.nanoTime()) / 1_000_000);
+
+            long heapBeforeGc = memory.getHeapMemoryUsage().getUsed();
+            long collections = gcCount.sumThenReset();
+            long collectionMillis = gcMillis.sumThenReset();
+            long freed = gcFreedBytes.sumThenReset();
+            long maxMillis = gcMaxMillis.getAndSet(0);
+            long nanos = System.nanoTime();
+
+            memory.gc();
+
+            long heap = memory.getHeapMemoryUsage().getUsed();
+            long started = threads.getTotalStartedThreadCount();
+            double allocated = Math.max(0, heapBeforeGc - lastHeap + freed);
+
+            double[] row = {
+                elapsed,
+                heap / (1024.0 * 1024.0),
+                threads.getThreadCount(),
+                started - lastStarted,
+                nodeCount(),
+                collections,
+                collectionMillis,
+                maxMillis,
+                allocated / (1024.0 * 1024.0) / ((nanos - lastNanos) / 1e9)
+            };
+
+            samples.add(row);
+
+            System.out.printf(
+                "%8d %9.1f %8d %8d %9d %9d %9d %10d %11.1f%n",
+                (long) row[0], row[1], (long) row[2], (long) row[3], (long) row[4],
+                (long) row[5], (long) row[6], (long) row[7], row[8]
+            );
+
+            if (csv != null) {
+                csv.printf("%d,%.3f,%d,%d,%d,%d,%d,%d,%.3f%n",
+                    (long) row[0], row[1], (long) row[2], (long) row[3], (long) row[4],
+                    (long) row[5], (long) row[6], (long) row[7], row[8]);
+                csv.flush();
+            }
+
+            lastHeap = heap;
+            lastStarted = started;
+            lastNanos = nanos;
+        }
+
+        scheduler.shutdownNow();
+
+        for (NotificationEmitter emitter : emitters) {
+            emitter.removeNotificationListener(gcListener);
+        }
+
+        if (csv != null) {
+            csv.close();
+        }
+
+        System.out.println();
+        System.out.printf("calls %d, writes %d, errors %d%n", calls.sum(), writes.sum(), errors.sum());
+
+        boolean heapOk = checkTrend("heap after GC", "MB", 1, warmup, doubleOption("max-heap-growth", 16));
+        boolean threadsOk = checkTrend("live threads", "threads", 2, warmup, doubleOption("max-thread-growth", 5));
+        boolean nodesOk = checkTrend("address space", "nodes", 4, warmup, doubleOption("max-node-growth", 50));
+
+        boolean passed = heapOk && threadsOk && nodesOk;
+
+        System.out.println(passed ? "PASSED" : "FAILED");
+
+        return passed;
+    }
+
+    /**
+     * @return the nodes of every node manager registered with the server: the namespaces, and the EventFactory's, so
+     * event nodes that are created but never deleted show up as growth.
+     */
+    @SuppressWarnings("unchecked")
+    private long nodeCount() throws ReflectiveOperationException {
+        // the SDK does not expose its node managers
+        Field field = AddressSpaceManager.class.getDeclaredField("nodeManagers");
+        field.setAccessible(true);
+
+        List<NodeManager<UaNode>> nodeManagers =
+            (List<NodeManager<UaNode>>) field.get(fixture.getServer().getAddressSpaceManager());
+
+        long nodes = 0;
+
+        for (NodeManager<UaNode> nodeManager : nodeManagers) {
+            if (nodeManager instanceof AbstractNodeManager) {
+                nodes += ((AbstractNodeManager<UaNode>) nodeManager).getNodes().size();
+            }
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Listen to every collector, so the collections between samples are counted.
+     */
+    private List<NotificationEmitter> listenForCollections() {
+        List<NotificationEmitter> emitters = new ArrayList<>();
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                ((NotificationEmitter) gc).addNotificationListener(gcListener, null, null);
+                emitters.add((NotificationEmitter) gc);
+            }
+        }
+
+        return emitters;
+    }
+
+    /**
+     * Count a collection, its duration and the heap it freed, unless it was forced by sampling.
+     */
+    private void onCollection(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+
+        GarbageCollectionNotificationInfo info =
+            GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+
+        if ("System.gc()".equals(info.getGcCause())) {
+            return;
+        }
+
+        long freed = 0;
+
+        for (Map.Entry<String, MemoryUsage> before : info.getGcInfo().getMemoryUsageBeforeGc().entrySet()) {
+            MemoryUsage after = info.getGcInfo().getMemoryUsageAfterGc().get(before.getKey());
+
+            if (after != null) {
+                freed += before.getValue().getUsed() - after.getUsed();
+            }
+        }
+
+        long duration = info.getGcInfo().getDuration();
+
+        gcCount.increment();
+        gcMillis.add(duration);
+        gcFreedBytes.add(freed);
+        gcMaxMillis.accumulateAndGet(duration, Math::max);
+    }
+
+    /**
+     * Print the growth per hour of column {@code column} after the warmup.
+     *
+     * @return whether it stayed within {@code maxPerHour}, or there were too few samples to tell.
+     */
+    private boolean checkTrend(String name, String unit, int column, int warmup, double maxPerHour) {
+        double n = 0;
+        double sumT = 0;
+        double sumV = 0;
+        double sumTT = 0;
+        double sumTV = 0;
+
+        for (double[] row : samples) {
+            if (row[0] <= warmup) {
+                continue;
+            }
+
+            double t = row[0] / 3600.0;
+
+            n++;
+            sumT += t;
+            sumV += row[column];
+            sumTT += t * t;
+            sumTV += t * row[column];
+        }
+
+        if (n < 3) {
+            System.out.printf("%-16s %12s  (fewer than 3 samples after warmup)%n", name, "n/a");
+            return true;
+        }
+
+        double slope = (n * sumTV - sumT * sumV) / (n * sumTT - sumT * sumT);
+        boolean ok = slope <= maxPerHour;
+
+        System.out.printf(
+            "%-16s %+12.2f %s/h  limit %.2f  %s%n", name, slope, unit, maxPerHour, ok ? "ok" : "EXCEEDED");
+
+        return ok;
+    }
+
+    private void subscribe(OpcUaClient client, int items) throws Exception {
+        UaSubscription subscription = client.getSubscriptionManager()
+            .createSubscription(intOption("publishing-ms", 1000)).get();
+
+        List<MonitoredItemCreateRequest> requests = new ArrayList<>();
+
+        for (int i = 0; i < items; i++) {
+            requests.add(new MonitoredItemCreateRequest(
+                new ReadValueId(conveyors.get(i % conveyors.size()).getRunningSpeed().getNodeId(),
+                    AttributeId.Value.uid(), null, QualifiedName.NULL_VALUE),
+                MonitoringMode.Reporting,
+                new MonitoringParameters(uint(i), 0.0, null, uint(10), true)
+            ));
+        }
+
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        List<UaMonitoredItem> monitoredItems = subscription.createMonitoredItems(
+            TimestampsToReturn.Both,
+            requests,
+            (item, index) -> item.setValueConsumer(value -> {})
+        ).get();
+
+        for (UaMonitoredItem item : monitoredItems) {
+            if (item.getStatusCode().isBad()) {
+                throw new IllegalStateException("monitored item rejected: " + item.getStatusCode());
+            }
+        }
+    }
+
+    /**
+     * Start and stop every conveyor in turn, so every call does work instead of finding the conveyor running.
+     */
+    private void call(int n) {
+        OpcUaClient client = clients.get(n % clients.size());
+        int index = n / 2 % conveyors.size();
+        Conveyor conveyor = conveyors.get(index);
+
+        CallMethodRequest request = n % 2 == 0 ?
+            new CallMethodRequest(conveyor.getNodeId(), conveyor.getStartMethod().getNodeId(), new Variant[0]) :
+            new CallMethodRequest(conveyor.getNodeId(), stopMethods[index], new Variant[]{new Variant(false)});
+
+        client.call(request).whenComplete((r, e) -> {
+            if (e != null || r.getStatusCode().isBad()) {
+                errors.increment();
+            } else {
+                calls.increment();
+            }
+        });
+    }
+
+    private void write(int n) {
+        OpcUaClient client = clients.get(n % clients.size());
+        Conveyor conveyor = conveyors.get(n % conveyors.size());
+
+        client.writeValue(conveyor.getRunningSpeed().getNodeId(), new DataValue(new Variant((double) (n % 100))))
+            .whenComplete((s, e) -> {
+                if (e != null || s.isBad()) {
+                    errors.increment();
+                } else {
+                    writes.increment();
+                }
+            });
+    }
+
+    private PrintWriter csvWriter() throws IOException {
+        String file = options.get("csv");
+
+        if (file == null) {
+            return null;
+        }
+
+        PrintWriter csv = new PrintWriter(Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8));
+        csv.println(String.join(",", COLUMNS));
+
+        return csv;
+    }
+
+    private int intOption(String name, int defaultValue) {
+        return (int) doubleOption(name, defaultValue);
+    }
+
+    private double doubleOption(String name, double defaultValue) {
+        String value = options.get(name);
+
+        try {
+            return value != null ? Double.parseDouble(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            usage("--" + name + " must be a number: " + value);
+            return defaultValue;
+        }
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("usage: SoakTest [--fleet N] [--event-rate E] [--sessions N] [--items M] " +
+            "[--call-rate R] [--write-rate W] [--publishing-ms P] [--duration S] [--sample S] [--warmup S] " +
+            "[--max-heap-growth H] [--max-thread-growth T] [--max-node-growth G] [--csv FILE]");
+        System.exit(2);
+    }
+
+}
@@ -0,0 +1,199 @@
+package org.intelligentindustry.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.management.OperatingSystemMXBean;
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaMonitoredItem;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscription;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MonitoringMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemCreateRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoringParameters;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.intelligentindustry.Conveyor;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+/**
+ * Measures the CPU time a server spends per 10,000 monitored items, with the polling and the push subscription model.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar org.intelligentindustry.benchmarks.SubscriptionCpuCost [options]}
+ * <pre>
+ * --mode M            polling, push or both (default both)
+ * --items N           monitored items, one per conveyor RunningSpeed (default 10000)
+ * --change-rate C     RunningSpeed values changed per second over all items (default 1000, 0 for an idle plant)
+ * --sampling-ms S     sampling interval of every monitored item (default 100)
+ * --publishing-ms P   publishing interval of the subscription (default 1000)
+ * --warmup S          seconds to run before measuring (default 10)
+ * --duration S        seconds to measure (default 30)
+ * </pre>
+ * The server and a single client run in-process with history disabled and no conveyor running, so the only work is
+ * the changes written at the fixed rate, their sampling and their delivery. Process CPU time over the measurement is
+ * reported as CPU milliseconds per second of wall time, in total and per 10,000 items, along with the notification
+ * rate. The client's share is the same in both modes as long as the notification rates match, so the difference
+ * between the modes is the server's.
+ */
+public class SubscriptionCpuCost {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                usage("unexpected argument " + args[i]);
+            }
+
+            options.put(args[i].substring(2), args[++i]);
+        }
+
+        String mode = options.getOrDefault("mode", "both");
+
+        if (!mode.equals("polling") && !mode.equals("push") && !mode.equals("both")) {
+            usage("--mode must be polling, push or both: " + mode);
+        }
+
+        System.out.printf("%-8s %10s %12s %14s %18s%n",
+            "mode", "items", "cpu ms/s", "cpu ms/s/10k", "notifications/s");
+
+        for (String m : mode.equals("both") ? new String[]{"polling", "push"} : new String[]{mode}) {
+            measure(m, options);
+        }
+
+        System.exit(0);
+    }
+
+    private static void measure(String mode, Map<String, String> options) throws Exception {
+        int items = Math.max(1, intOption(options, "items", 10000));
+        int changeRate = intOption(options, "change-rate", 1000);
+        int samplingMillis = intOption(options, "sampling-ms", 100);
+        int publishingMillis = intOption(options, "publishing-ms", 1000);
+        int warmup = intOption(options, "warmup", 10);
+        int duration = Math.max(1, intOption(options, "duration", 30));
+
+        Map<String, String> settings = new HashMap<>();
+        settings.put("demo.fleet.count", Integer.toString(items));
+        settings.put("demo.subscription.mode", mode);
+        settings.put("demo.history.enabled", "false");
+
+        DemoServerFixture fixture = DemoServerFixture.start(settings);
+        OpcUaClient client = fixture.connect();
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cpu-cost-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<UaVariableNode> runningSpeeds = new ArrayList<>();
+            for (Conveyor conveyor : fixture.getNamespace().getFleet().getConveyors()) {
+                runningSpeeds.add(conveyor.getRunningSpeed());
+            }
+
+            LongAdder notifications = new LongAdder();
+            subscribe(client, runningSpeeds, publishingMillis, samplingMillis, notifications);
+
+            if (changeRate > 0) {
+                AtomicInteger next = new AtomicInteger();
+                long periodNanos = TimeUnit.SECONDS.toNanos(1) / changeRate;
+
+                scheduler.scheduleAtFixedRate(() -> {
+                    int n = next.getAndIncrement();
+                    UaVariableNode node = runningSpeeds.get(n % runningSpeeds.size());
+
+                    node.setValue(new DataValue(new Variant((double) (n % 1000))));
+                }, 0, periodNanos, TimeUnit.NANOSECONDS);
+            }
+
+            Thread.sleep(TimeUnit.SECONDS.toMillis(warmup));
+
+            OperatingSystemMXBean os = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+            long startNanos = System.nanoTime();
+            long startCpu = os.getProcessCpuTime();
+            long startNotifications = notifications.sum();
+
+            Thread.sleep(TimeUnit.SECONDS.toMillis(duration));
+
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            double cpuMillisPerSecond = (os.getProcessCpuTime() - startCpu) / 1e6 / seconds;
+
+            System.out.printf("%-8s %10d %12.1f %14.1f %18.1f%n",
+                mode, items, cpuMillisPerSecond, cpuMillisPerSecond * 10000 / items,
+                (notifications.sum() - startNotifications) / seconds);
+        } finally {
+            scheduler.shutdownNow();
+            client.disconnect().get();
+            fixture.stop();
+        }
+    }
+
+    private static void subscribe(
+        OpcUaClient client,
+        List<UaVariableNode> nodes,
+        int publishingMillis,
+        int samplingMillis,
+        LongAdder notifications) throws Exception {
+
+        UaSubscription subscription = client.getSubscriptionManager().createSubscription(publishingMillis).get();
+
+        // stay well below the server's monitored items per call
+        for (int from = 0; from < nodes.size(); from += 1000) {
+            List<MonitoredItemCreateRequest> requests = new ArrayList<>();
+
+            for (int i = from; i < Math.min(from + 1000, nodes.size()); i++) {
+                requests.add(new MonitoredItemCreateRequest(
+                    new ReadValueId(nodes.get(i).getNodeId(), AttributeId.Value.uid(), null, QualifiedName.NULL_VALUE),
+                    MonitoringMode.Reporting,
+                    new MonitoringParameters(uint(i), (double) samplingMillis, null, uint(10), true)
+                ));
+            }
+
+            List<UaMonitoredItem> monitoredItems = subscription.createMonitoredItems(
+                TimestampsToReturn.Both,
+                requests,
+                (item, index) -> item.setValueConsumer(v -> notifications.increment())
+            ).get();
+
+            for (UaMonitoredItem item : monitoredItems) {
+                if (item.getStatusCode().isBad()) {
+                    throw new IllegalStateException("monitored item rejected: " + item.getStatusCode());
+                }
+            }
+        }
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            usage("--" + name + " must be a number: " + value);
+            return defaultValue;
+        }
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("usage: SubscriptionCpuCost [--mode polling|push|both] [--items N] [--change-rate C] " +
+            "[--sampling-ms S] [--publishing-ms P] [--warmup S] [--duration S]");
+        System.exit(2);
+    }
+
+}
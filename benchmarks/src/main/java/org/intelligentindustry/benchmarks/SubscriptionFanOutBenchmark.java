@@ -0,0 +1,113 @@
+package org.intelligentindustry.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaMonitoredItem;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscription;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MonitoringMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemCreateRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoringParameters;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+/**
+ * Time from a server-side RunningSpeed write until every monitored item on it has delivered the new value to the
+ * client, for the polling and push subscription models.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class SubscriptionFanOutBenchmark {
+
+    @Param({"polling", "push"})
+    public String mode;
+
+    @Param({"1", "100", "1000"})
+    public int items;
+
+    private DemoServerFixture fixture;
+    private OpcUaClient client;
+    private UaVariableNode runningSpeed;
+
+    private volatile CountDownLatch pending = new CountDownLatch(0);
+    private double value;
+
+    @Setup
+    public void setup() throws Exception {
+        fixture = DemoServerFixture.start(Collections.singletonMap("demo.subscription.mode", mode));
+        client = fixture.connect();
+
+        runningSpeed = fixture.getNamespace().getFleet().get(0).getRunningSpeed();
+
+        UaSubscription subscription = client.getSubscriptionManager().createSubscription(0.0).get();
+
+        List<MonitoredItemCreateRequest> requests = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            requests.add(new MonitoredItemCreateRequest(
+                new ReadValueId(runningSpeed.getNodeId(), AttributeId.Value.uid(), null, QualifiedName.NULL_VALUE),
+                MonitoringMode.Reporting,
+                new MonitoringParameters(uint(i), 0.0, null, uint(1), true)
+            ));
+        }
+
+        List<UaMonitoredItem> monitoredItems = subscription.createMonitoredItems(
+            TimestampsToReturn.Both,
+            requests,
+            (item, index) -> item.setValueConsumer(v -> pending.countDown())
+        ).get();
+
+        if (monitoredItems.size() != items) {
+            throw new IllegalStateException("created " + monitoredItems.size() + " of " + items + " items");
+        }
+
+        // let the initial values drain
+        Thread.sleep(1000);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        client.disconnect().get();
+        fixture.stop();
+    }
+
+    @Benchmark
+    public void writeAndAwaitFanOut() throws Exception {
+        CountDownLatch latch = new CountDownLatch(items);
+        pending = latch;
+
+        value += 1.0;
+        runningSpeed.setValue(new DataValue(new Variant(value)));
+
+        if (!latch.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException(latch.getCount() + " of " + items + " notifications missing");
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+package org.intelligentindustry.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallMethodRequest;
+import org.intelligentindustry.Conveyor;
+import org.intelligentindustry.LatencyHistogram;
+
+/**
+ * Fires growing waves of concurrent conveyor_start() calls at an in-process server and checks that the number of
+ * live threads does not grow with them.
+ * <p>
+ * Usage: {@code java -cp benchmarks.jar org.intelligentindustry.benchmarks.ThreadCountLoadTest [options]}
+ * <pre>
+ * --fleet N           conveyors in the fleet (default 5000)
+ * --sessions N        client sessions the calls are spread over (default 4)
+ * --waves LIST        comma-separated numbers of concurrent calls per wave (default 100,1000,10000,20000)
+ * --max-growth T      threads the peak may grow by from the first wave to the last (default 8)
+ * </pre>
+ * Every wave issues all of its calls at once, cycling through the fleet, and waits for all of them to return; a
+ * conveyor that is already running answers without starting again. Before each wave the JVM's peak thread count is
+ * reset, so the peak printed per wave is the most threads alive at any time during it. Since conveyors are driven by
+ * the simulation engine's fixed pool rather than a thread per call, the peak should stay flat however large the wave.
+ * The run exits with status 1 if the peak of the last wave exceeds that of the first by more than
+ * {@code --max-growth}.
+ */
+public class ThreadCountLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                usage("unexpected argument " + args[i]);
+            }
+
+            options.put(args[i].substring(2), args[++i]);
+        }
+
+        int fleet = intOption(options, "fleet", 5000);
+        int sessions = Math.max(1, intOption(options, "sessions", 4));
+        int maxGrowth = intOption(options, "max-growth", 8);
+        String[] waves = options.getOrDefault("waves", "100,1000,10000,20000").split(",");
+
+        Map<String, String> settings = new HashMap<>();
+        settings.put("demo.fleet.count", Integer.toString(fleet));
+
+        DemoServerFixture fixture = DemoServerFixture.start(settings);
+        List<OpcUaClient> clients = new ArrayList<>();
+        boolean passed;
+
+        try {
+            for (int i = 0; i < sessions; i++) {
+                clients.add(fixture.connect());
+            }
+
+            List<Conveyor> conveyors = fixture.getNamespace().getFleet().getConveyors();
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+            System.out.printf("%d conveyors, %d sessions%n%n", conveyors.size(), sessions);
+            System.out.printf("%10s %10s %10s %10s %10s %10s%n",
+                "calls", "before", "peak", "after", "p99 ms", "errors");
+
+            int firstPeak = -1;
+            int lastPeak = -1;
+
+            for (String wave : waves) {
+                int calls = Integer.parseInt(wave.trim());
+
+                int before = threads.getThreadCount();
+                threads.resetPeakThreadCount();
+
+                LatencyHistogram latency = new LatencyHistogram();
+                LongAdder errors = new LongAdder();
+                List<CompletableFuture<?>> futures = new ArrayList<>(calls);
+
+                for (int n = 0; n < calls; n++) {
+                    Conveyor conveyor = conveyors.get(n % conveyors.size());
+                    long startNanos = System.nanoTime();
+
+                    futures.add(clients.get(n % sessions).call(new CallMethodRequest(
+                        conveyor.getNodeId(), conveyor.getStartMethod().getNodeId(), new Variant[0]
+                    )).whenComplete((r, e) -> {
+                        if (e != null || r.getStatusCode().isBad()) {
+                            errors.increment();
+                        } else {
+                            latency.record(System.nanoTime() - startNanos);
+                        }
+                    }));
+                }
+
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                    .exceptionally(e -> null)
+                    .get(5, TimeUnit.MINUTES);
+
+                int peak = threads.getPeakThreadCount();
+
+                System.out.printf("%10d %10d %10d %10d %10.3f %10d%n",
+                    calls, before, peak, threads.getThreadCount(),
+                    latency.getValueAtQuantile(0.99) / 1e6, errors.sum());
+
+                if (firstPeak < 0) {
+                    firstPeak = peak;
+                }
+                lastPeak = peak;
+            }
+
+            passed = lastPeak - firstPeak <= maxGrowth;
+
+            System.out.println();
+            System.out.printf("peak threads grew by %d from the first wave to the last, limit %d: %s%n",
+                lastPeak - firstPeak, maxGrowth, passed ? "PASSED" : "FAILED");
+        } finally {
+            for (OpcUaClient client : clients) {
+                client.disconnect().get();
+            }
+
+            fixture.stop();
+        }
+
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        } catch (NumberFormatException e) {
+            usage("--" + name + " must be a number: " + value);
+            return defaultValue;
+        }
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("usage: ThreadCountLoadTest [--fleet N] [--sessions N] [--waves LIST] [--max-growth T]");
+        System.exit(2);
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.intelligentindustry.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowsePath;
+import org.eclipse.milo.opcua.stack.core.types.structured.RelativePath;
+import org.eclipse.milo.opcua.stack.core.types.structured.RelativePathElement;
+import org.eclipse.milo.opcua.stack.core.types.structured.TranslateBrowsePathsToNodeIdsResponse;
+import org.intelligentindustry.BrowseIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolves Objects/IntelligentIndustry/Conveyor-n/RunningSpeed for a batch of conveyors spread over the fleet, with
+ * and without the browse index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class TranslateBrowsePathBenchmark {
+
+    @Param({"100", "10000"})
+    public int fleetSize;
+
+    @Param({"100"})
+    public int pathsPerRequest;
+
+    @Param({"false", "true"})
+    public boolean index;
+
+    private DemoServerFixture fixture;
+    private OpcUaClient client;
+    private List<BrowsePath> browsePaths;
+
+    @Setup
+    public void setup() throws Exception {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("demo.fleet.count", Integer.toString(fleetSize));
+        settings.put(BrowseIndex.ENABLED, Boolean.toString(index));
+
+        fixture = DemoServerFixture.start(settings);
+        client = fixture.connect();
+
+        int namespaceIndex = fixture.getNamespace().getNamespaceIndex().intValue();
+        int stride = Math.max(1, fleetSize / pathsPerRequest);
+
+        browsePaths = new ArrayList<>();
+
+        for (int i = 0; i < pathsPerRequest; i++) {
+            int conveyor = i * stride % fleetSize + 1;
+
+            browsePaths.add(new BrowsePath(Identifiers.ObjectsFolder, new RelativePath(new RelativePathElement[]{
+                element(new QualifiedName(namespaceIndex, "IntelligentIndustry")),
+                element(new QualifiedName(namespaceIndex, "Conveyor-" + conveyor)),
+                element(new QualifiedName(namespaceIndex, "RunningSpeed"))
+            })));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        client.disconnect().get();
+        fixture.stop();
+    }
+
+    @Benchmark
+    public TranslateBrowsePathsToNodeIdsResponse translate() throws Exception {
+        return client.translateBrowsePaths(browsePaths).get();
+    }
+
+    private static RelativePathElement element(QualifiedName targetName) {
+        return new RelativePathElement(Identifiers.HierarchicalReferences, false, true, targetName);
+    }
+
+}
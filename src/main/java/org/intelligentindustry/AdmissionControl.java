@@ -0,0 +1,406 @@
+package org.intelligentindustry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.milo.opcua.sdk.server.AbstractLifecycle;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.Session;
+import org.eclipse.milo.opcua.sdk.server.SessionListener;
+import org.eclipse.milo.opcua.sdk.server.subscriptions.Subscription;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.serialization.UaRequestMessage;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExpandedNodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseNextRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.CreateMonitoredItemsRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.CreateSessionRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.CreateSessionResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.CreateSubscriptionRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.ModifyMonitoredItemsRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.RegisterNodesRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.RequestHeader;
+import org.eclipse.milo.opcua.stack.core.types.structured.SetMonitoringModeRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.TranslateBrowsePathsToNodeIdsRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.WriteRequest;
+import org.eclipse.milo.opcua.stack.server.UaStackServer;
+import org.eclipse.milo.opcua.stack.server.services.ServiceRequest;
+import org.eclipse.milo.opcua.stack.server.services.ServiceRequestHandler;
+import org.intelligentindustry.ServerMetrics.Rejection;
+import org.intelligentindustry.ServerMetrics.SessionCounters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Turns requests away, per session and for the server as a whole, before they reach the SDK, so one client cannot
+ * queue up work that every other session then waits behind.
+ * <p>
+ * Three limits apply, each per session and globally, and each off when 0: requests in flight, methods called per
+ * second (a token bucket holding {@code burst-ms} worth of calls, which a Call with more methods than that empties)
+ * and monitored items. A request over a limit of its session fails with Bad_TooManyOperations, the client's own
+ * doing; over a global limit with Bad_ResourceUnavailable, as the server is busy. Nothing is queued.
+ * <p>
+ * Sessions are told apart by the authentication token of the request. Tokens are learnt from the CreateSession
+ * responses and forgotten when the session closes, so only live sessions get per-session state and metrics; a request
+ * with any other token is charged to the global limits alone and left for the SDK to reject. Monitored items are
+ * counted over the subscriptions the server holds when items are created, so concurrent creates may overshoot a limit
+ * by a request. Publish, Republish and the services that delete or end things are never limited. Rejections are
+ * counted per session and reason in {@link ServerMetrics}, labelled with a session number and the client address, and
+ * the first rejection of a session for each reason is logged.
+ */
+public class AdmissionControl extends AbstractLifecycle {
+
+    public static final String MAX_IN_FLIGHT = "demo.admission.max-in-flight";
+    public static final String SESSION_MAX_IN_FLIGHT = "demo.admission.session.max-in-flight";
+    public static final String CALLS_PER_SECOND = "demo.admission.calls-per-second";
+    public static final String SESSION_CALLS_PER_SECOND = "demo.admission.session.calls-per-second";
+    public static final String BURST_MILLIS = "demo.admission.burst-ms";
+    public static final String MAX_MONITORED_ITEMS = "demo.admission.max-monitored-items";
+    public static final String SESSION_MAX_MONITORED_ITEMS = "demo.admission.session.max-monitored-items";
+
+    private static final List<ExpandedNodeId> LIMITED_SERVICES = Arrays.asList(
+        ReadRequest.TYPE_ID,
+        WriteRequest.TYPE_ID,
+        CallRequest.TYPE_ID,
+        HistoryReadRequest.TYPE_ID,
+        BrowseRequest.TYPE_ID,
+        BrowseNextRequest.TYPE_ID,
+        TranslateBrowsePathsToNodeIdsRequest.TYPE_ID,
+        RegisterNodesRequest.TYPE_ID,
+        CreateSubscriptionRequest.TYPE_ID,
+        CreateMonitoredItemsRequest.TYPE_ID,
+        ModifyMonitoredItemsRequest.TYPE_ID,
+        SetMonitoringModeRequest.TYPE_ID
+    );
+
+    private static final long SWEEP_MILLIS = 60_000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ConcurrentMap<NodeId, SessionState> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<NodeId, NodeId> tokens = new ConcurrentHashMap<>();
+    private final Set<NodeId> liveTokens = ConcurrentHashMap.newKeySet();
+    private final SessionListener sessionListener = new SessionListener() {
+        @Override
+        public void onSessionClosed(Session session) {
+            forget(session);
+        }
+    };
+    private final AtomicInteger sessionNumber = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final List<Runnable> restore = new ArrayList<>();
+
+    private final OpcUaServer server;
+    private final ServerMetrics metrics;
+    private final int maxInFlight;
+    private final int sessionMaxInFlight;
+    private final double callsPerSecond;
+    private final double sessionCallsPerSecond;
+    private final long burstMillis;
+    private final int maxMonitoredItems;
+    private final int sessionMaxMonitoredItems;
+    private final TokenBucket calls;
+
+    private ScheduledFuture<?> sweep;
+
+    public AdmissionControl(
+        OpcUaServer server,
+        ServerMetrics metrics,
+        int maxInFlight,
+        int sessionMaxInFlight,
+        double callsPerSecond,
+        double sessionCallsPerSecond,
+        long burstMillis,
+        int maxMonitoredItems,
+        int sessionMaxMonitoredItems) {
+
+        this.server = server;
+        this.metrics = metrics;
+        this.maxInFlight = maxInFlight;
+        this.sessionMaxInFlight = sessionMaxInFlight;
+        this.callsPerSecond = callsPerSecond;
+        this.sessionCallsPerSecond = sessionCallsPerSecond;
+        this.burstMillis = Math.max(1, burstMillis);
+        this.maxMonitoredItems = maxMonitoredItems;
+        this.sessionMaxMonitoredItems = sessionMaxMonitoredItems;
+
+        calls = callsPerSecond > 0 ? bucket(callsPerSecond) : null;
+    }
+
+    /**
+     * @return the configured admission control, or {@code null} if no limit is set.
+     */
+    public static AdmissionControl fromSettings(OpcUaServer server, ServerMetrics metrics) {
+        AdmissionControl admissionControl = new AdmissionControl(
+            server,
+            metrics,
+            Settings.getInt(MAX_IN_FLIGHT, 0),
+            Settings.getInt(SESSION_MAX_IN_FLIGHT, 0),
+            Settings.getDouble(CALLS_PER_SECOND, 0.0),
+            Settings.getDouble(SESSION_CALLS_PER_SECOND, 0.0),
+            Settings.getLong(BURST_MILLIS, 1000),
+            Settings.getInt(MAX_MONITORED_ITEMS, 0),
+            Settings.getInt(SESSION_MAX_MONITORED_ITEMS, 0)
+        );
+
+        return admissionControl.isLimited() ? admissionControl : null;
+    }
+
+    private boolean isLimited() {
+        return maxInFlight > 0 || sessionMaxInFlight > 0 || callsPerSecond > 0 || sessionCallsPerSecond > 0 ||
+            maxMonitoredItems > 0 || sessionMaxMonitoredItems > 0;
+    }
+
+    @Override
+    protected synchronized void onStartup() {
+        UaStackServer stackServer = server.getStackServer();
+        Set<String> paths = new LinkedHashSet<>();
+
+        server.getConfig().getEndpoints().forEach(endpoint -> paths.add(endpoint.getPath()));
+
+        for (String path : paths) {
+            for (ExpandedNodeId typeId : LIMITED_SERVICES) {
+                ServiceRequestHandler handler = stackServer.getServiceHandler(path, typeId);
+
+                if (handler != null) {
+                    stackServer.addServiceHandler(path, typeId, request -> admit(handler, request));
+                    restore.add(() -> stackServer.addServiceHandler(path, typeId, handler));
+                }
+            }
+
+            ServiceRequestHandler createSession = stackServer.getServiceHandler(path, CreateSessionRequest.TYPE_ID);
+
+            if (createSession != null) {
+                stackServer.addServiceHandler(path, CreateSessionRequest.TYPE_ID, request -> {
+                    request.getFuture().thenAccept(this::remember);
+                    createSession.handle(request);
+                });
+                restore.add(() -> stackServer.addServiceHandler(path, CreateSessionRequest.TYPE_ID, createSession));
+            }
+        }
+
+        server.getSessionManager().addSessionListener(sessionListener);
+        restore.add(() -> server.getSessionManager().removeSessionListener(sessionListener));
+
+        sweep = server.getScheduledExecutorService().scheduleWithFixedDelay(
+            this::sweep, SWEEP_MILLIS, SWEEP_MILLIS, TimeUnit.MILLISECONDS);
+
+        logger.info(
+            "Admission control on {}: in flight {}/{} per session, calls/s {}/{} per session, " +
+                "monitored items {}/{} per session (0 = unlimited)",
+            paths, maxInFlight, sessionMaxInFlight, callsPerSecond, sessionCallsPerSecond,
+            maxMonitoredItems, sessionMaxMonitoredItems
+        );
+    }
+
+    @Override
+    protected synchronized void onShutdown() {
+        if (sweep != null) {
+            sweep.cancel(false);
+        }
+
+        restore.forEach(Runnable::run);
+        restore.clear();
+    }
+
+    private void admit(ServiceRequestHandler handler, ServiceRequest service) throws UaException {
+        UaRequestMessage request = service.getRequest();
+        RequestHeader header = request.getRequestHeader();
+        NodeId token = header != null && header.getAuthenticationToken() != null ?
+            header.getAuthenticationToken() : NodeId.NULL_VALUE;
+
+        // an unknown token gets no state of its own, so made-up tokens cannot grow the map or the metrics
+        SessionState session = liveTokens.contains(token) ?
+            sessions.computeIfAbsent(token, t -> newSession(service)) : null;
+
+        int sessionInFlight = 0;
+        if (session != null) {
+            session.lastSeenNanos = System.nanoTime();
+            sessionInFlight = session.counters.enter();
+        }
+        int serverInFlight = inFlight.incrementAndGet();
+
+        service.getFuture().whenComplete((response, failure) -> {
+            if (session != null) {
+                session.counters.exit();
+            }
+            inFlight.decrementAndGet();
+        });
+
+        if (session != null && sessionMaxInFlight > 0 && sessionInFlight > sessionMaxInFlight) {
+            reject(service, session, Rejection.IN_FLIGHT, false);
+        } else if (maxInFlight > 0 && serverInFlight > maxInFlight) {
+            reject(service, session, Rejection.IN_FLIGHT, true);
+        } else if (request instanceof CallRequest) {
+            admitCall(handler, service, session, (CallRequest) request);
+        } else if (request instanceof CreateMonitoredItemsRequest) {
+            admitMonitoredItems(handler, service, session, (CreateMonitoredItemsRequest) request);
+        } else {
+            handler.handle(service);
+        }
+    }
+
+    private void admitCall(
+        ServiceRequestHandler handler,
+        ServiceRequest service,
+        SessionState session,
+        CallRequest request) throws UaException {
+
+        int methods = request.getMethodsToCall() != null ? request.getMethodsToCall().length : 0;
+
+        if (methods == 0) {
+            handler.handle(service);
+        } else if (session != null && session.calls != null && !session.calls.tryAcquire(methods)) {
+            reject(service, session, Rejection.CALL_RATE, false);
+        } else if (calls != null && !calls.tryAcquire(methods)) {
+            if (session != null && session.calls != null) {
+                session.calls.release(methods);
+            }
+            reject(service, session, Rejection.CALL_RATE, true);
+        } else {
+            handler.handle(service);
+        }
+    }
+
+    private void admitMonitoredItems(
+        ServiceRequestHandler handler,
+        ServiceRequest service,
+        SessionState session,
+        CreateMonitoredItemsRequest request) throws UaException {
+
+        int items = request.getItemsToCreate() != null ? request.getItemsToCreate().length : 0;
+        Subscription target = server.getSubscriptions().get(request.getSubscriptionId());
+
+        if (items == 0 || target == null) {
+            // the SDK reports what is wrong with the request
+            handler.handle(service);
+            return;
+        }
+
+        Session owner = target.getSession();
+        long sessionItems = 0;
+        long serverItems = 0;
+
+        for (Subscription subscription : server.getSubscriptions().values()) {
+            int size = subscription.getMonitoredItems().size();
+
+            serverItems += size;
+            if (subscription.getSession() == owner) {
+                sessionItems += size;
+            }
+        }
+
+        if (session != null && sessionMaxMonitoredItems > 0 && sessionItems + items > sessionMaxMonitoredItems) {
+            reject(service, session, Rejection.MONITORED_ITEMS, false);
+        } else if (maxMonitoredItems > 0 && serverItems + items > maxMonitoredItems) {
+            reject(service, session, Rejection.MONITORED_ITEMS, true);
+        } else {
+            handler.handle(service);
+        }
+    }
+
+    private void reject(ServiceRequest service, SessionState session, Rejection reason, boolean global) {
+        metrics.admissionRejected();
+
+        if (session != null && session.counters.rejected(reason)) {
+            logger.warn(
+                "Rejecting requests of session {} from {}: {} limit {} reached",
+                session.label, session.counters.getClient(), global ? "server" : "session", reason.getLabel()
+            );
+        }
+
+        service.setServiceFault(new UaException(global ?
+            StatusCodes.Bad_ResourceUnavailable : StatusCodes.Bad_TooManyOperations));
+    }
+
+    private SessionState newSession(ServiceRequest service) {
+        String label = Integer.toString(sessionNumber.incrementAndGet());
+        String client = service.getClientAddress() != null ? service.getClientAddress().getHostAddress() : "unknown";
+
+        return new SessionState(
+            label,
+            metrics.sessionCounters(label, client),
+            sessionCallsPerSecond > 0 ? bucket(sessionCallsPerSecond) : null
+        );
+    }
+
+    private void remember(Object response) {
+        if (response instanceof CreateSessionResponse) {
+            CreateSessionResponse created = (CreateSessionResponse) response;
+
+            if (created.getAuthenticationToken() != null && created.getSessionId() != null) {
+                tokens.put(created.getSessionId(), created.getAuthenticationToken());
+                liveTokens.add(created.getAuthenticationToken());
+            }
+        }
+    }
+
+    private void forget(Session closed) {
+        NodeId token = tokens.remove(closed.getSessionId());
+
+        if (token != null) {
+            liveTokens.remove(token);
+
+            SessionState session = sessions.remove(token);
+            if (session != null) {
+                metrics.removeSessionCounters(session.label);
+            }
+        }
+    }
+
+    private TokenBucket bucket(double tokensPerSecond) {
+        return new TokenBucket(tokensPerSecond, tokensPerSecond * burstMillis / 1000.0);
+    }
+
+    /**
+     * Forget sessions that have been idle for longer than any session may live, in case a close went unnoticed.
+     */
+    private void sweep() {
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(
+            (long) server.getConfig().getLimits().getMaxSessionTimeout().doubleValue() + SWEEP_MILLIS);
+        long now = System.nanoTime();
+
+        sessions.entrySet().removeIf(entry -> {
+            SessionState session = entry.getValue();
+
+            if (session.counters.getInFlight() == 0 && now - session.lastSeenNanos > idleNanos) {
+                liveTokens.remove(entry.getKey());
+                tokens.values().remove(entry.getKey());
+                metrics.removeSessionCounters(session.label);
+                return true;
+            }
+
+            return false;
+        });
+    }
+
+    private static final class SessionState {
+
+        final String label;
+        final SessionCounters counters;
+        final TokenBucket calls;
+
+        volatile long lastSeenNanos = System.nanoTime();
+
+        SessionState(String label, SessionCounters counters, TokenBucket calls) {
+            this.label = label;
+            this.counters = counters;
+            this.calls = calls;
+        }
+
+    }
+
+}
@@ -0,0 +1,717 @@
+package org.intelligentindustry;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.milo.opcua.sdk.server.AbstractLifecycle;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.Session;
+import org.eclipse.milo.opcua.sdk.server.api.AccessContext;
+import org.eclipse.milo.opcua.sdk.server.api.methods.MethodInvocationHandler;
+import org.eclipse.milo.opcua.sdk.server.items.BaseMonitoredItem;
+import org.eclipse.milo.opcua.sdk.server.items.MonitoredEventItem;
+import org.eclipse.milo.opcua.sdk.server.model.methods.ConditionRefresh2Method;
+import org.eclipse.milo.opcua.sdk.server.model.methods.ConditionRefreshMethod;
+import org.eclipse.milo.opcua.sdk.server.model.nodes.objects.AlarmConditionTypeNode;
+import org.eclipse.milo.opcua.sdk.server.model.nodes.objects.BaseEventTypeNode;
+import org.eclipse.milo.opcua.sdk.server.model.nodes.variables.TwoStateVariableTypeNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaMethodNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.sdk.server.subscriptions.Subscription;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DiagnosticInfo;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallMethodRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.CallMethodResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.ushort;
+
+/**
+ * Limit alarms on conveyor variables, posted as AlarmConditionType events.
+ * <p>
+ * Rules are configured as {@code name:Variable<op>limit:severity}, separated by semicolons, e.g.
+ * {@code SpeedHigh:RunningSpeed>18:500;MotorsFault:Motors<1:900}. Variables are Motors, RunningSpeed and Dropoffs;
+ * operators are {@code > >= < <= == !=}. Every rule applies to every conveyor of the fleet.
+ * <p>
+ * Evaluation is incremental: a Value change of a watched variable only marks its conveyor dirty, and every
+ * {@code interval-ms} the dirty conveyors are evaluated in one batch, reading each variable once for all rules.
+ * The duration of each batch is recorded in {@link ServerMetrics}. An event is posted whenever a condition becomes
+ * active or inactive, and when it is acknowledged or confirmed.
+ * <p>
+ * Conditions are not materialized as nodes: their ConditionId is {@code <conveyor>/Alarms/<rule>}, which is the
+ * NodeId of every event they post. Acknowledge and Confirm calls on that id are answered by
+ * {@link #getInvocationHandler(NodeId, NodeId)}.
+ * <p>
+ * While running, the engine answers ConditionRefresh and ConditionRefresh2 on ConditionType in place of the SDK, which
+ * only posts an empty RefreshStart/RefreshEnd pair to every subscription. The current state of every retained
+ * condition is sent between a RefreshStartEvent and a RefreshEndEvent, to the event items of the given subscription
+ * only, or to the one given monitored item.
+ */
+public class AlarmEngine extends AbstractLifecycle {
+
+    public static final String RULES = "demo.alarms.rules";
+    public static final String INTERVAL_MILLIS = "demo.alarms.interval-ms";
+
+    private static final Pattern RULE = Pattern.compile(
+        "\\s*(\\w+)\\s*:\\s*(\\w+)\\s*(>=|<=|==|!=|>|<)\\s*([-+0-9.eE]+)\\s*:\\s*(\\d+)\\s*");
+
+    private static final String[] VARIABLES = {"Motors", "RunningSpeed", "Dropoffs"};
+
+    private static final LocalizedText ENABLED = LocalizedText.english("Enabled");
+    private static final LocalizedText ACTIVE = LocalizedText.english("Active");
+    private static final LocalizedText INACTIVE = LocalizedText.english("Inactive");
+    private static final LocalizedText ACKNOWLEDGED = LocalizedText.english("Acknowledged");
+    private static final LocalizedText UNACKNOWLEDGED = LocalizedText.english("Unacknowledged");
+    private static final LocalizedText CONFIRMED = LocalizedText.english("Confirmed");
+    private static final LocalizedText UNCONFIRMED = LocalizedText.english("Unconfirmed");
+    private static final LocalizedText PROCESS_CLASS = LocalizedText.english("Process");
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Queue<ConveyorAlarms> dirty = new ConcurrentLinkedQueue<>();
+    private final Map<NodeId, Condition> conditions = new ConcurrentHashMap<>();
+    private final MethodInvocationHandler acknowledgeHandler = this::acknowledge;
+    private final MethodInvocationHandler confirmHandler = this::confirm;
+
+    private final OpcUaServer server;
+    private final EventEmitter eventEmitter;
+    private final ServerMetrics metrics;
+    private final List<Rule> rules;
+    private final long intervalMillis;
+    private final int namespaceIndex;
+
+    private int activeCount;
+    private volatile ScheduledFuture<?> evaluation;
+
+    private UaMethodNode refreshMethod;
+    private UaMethodNode refresh2Method;
+    private MethodInvocationHandler sdkRefreshHandler;
+    private MethodInvocationHandler sdkRefresh2Handler;
+
+    /**
+     * @param namespaceIndex index of the namespace the conveyors live in, used for the BrowseName of conditions.
+     */
+    public AlarmEngine(
+        OpcUaServer server,
+        EventEmitter eventEmitter,
+        ServerMetrics metrics,
+        List<Rule> rules,
+        long intervalMillis,
+        int namespaceIndex) {
+
+        this.server = server;
+        this.eventEmitter = eventEmitter;
+        this.metrics = metrics;
+        this.rules = rules;
+        this.intervalMillis = intervalMillis;
+        this.namespaceIndex = namespaceIndex;
+    }
+
+    /**
+     * @return an engine for the configured rules, or {@code null} if there are none.
+     */
+    public static AlarmEngine fromSettings(
+        OpcUaServer server,
+        EventEmitter eventEmitter,
+        ServerMetrics metrics,
+        int namespaceIndex) {
+
+        List<Rule> rules = parseRules(Settings.getString(RULES, ""));
+
+        if (rules.isEmpty()) {
+            return null;
+        }
+
+        return new AlarmEngine(
+            server, eventEmitter, metrics, rules, Settings.getLong(INTERVAL_MILLIS, 100), namespaceIndex);
+    }
+
+    static List<Rule> parseRules(String value) {
+        List<Rule> rules = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+
+        for (String spec : value.split(";")) {
+            if (spec.trim().isEmpty()) {
+                continue;
+            }
+
+            Matcher matcher = RULE.matcher(spec);
+
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Invalid alarm rule '" + spec + "' in " + RULES);
+            }
+
+            int variable = -1;
+            for (int i = 0; i < VARIABLES.length; i++) {
+                if (VARIABLES[i].equals(matcher.group(2))) {
+                    variable = i;
+                }
+            }
+
+            if (variable < 0) {
+                throw new IllegalArgumentException("Unknown variable '" + matcher.group(2) + "' in " + RULES);
+            }
+
+            if (!names.add(matcher.group(1))) {
+                // the condition node of a conveyor is named after its rule
+                throw new IllegalArgumentException("Duplicate alarm rule name '" + matcher.group(1) + "' in " + RULES);
+            }
+
+            rules.add(new Rule(
+                matcher.group(1),
+                variable,
+                matcher.group(3),
+                Double.parseDouble(matcher.group(4)),
+                Integer.parseInt(matcher.group(5))
+            ));
+        }
+
+        return rules;
+    }
+
+    @Override
+    protected void onStartup() {
+        evaluation = server.getScheduledExecutorService().scheduleWithFixedDelay(() -> {
+            try {
+                evaluate();
+            } catch (Throwable t) {
+                logger.error("Error evaluating alarms: {}", t.getMessage(), t);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+
+        refreshMethod = methodNode(Identifiers.ConditionType_ConditionRefresh);
+        if (refreshMethod != null) {
+            sdkRefreshHandler = refreshMethod.getInvocationHandler();
+            refreshMethod.setInvocationHandler(new RefreshMethod(refreshMethod));
+        }
+
+        refresh2Method = methodNode(Identifiers.ConditionType_ConditionRefresh2);
+        if (refresh2Method != null) {
+            sdkRefresh2Handler = refresh2Method.getInvocationHandler();
+            refresh2Method.setInvocationHandler(new Refresh2Method(refresh2Method));
+        }
+
+        logger.info("Evaluating {} alarm rules every {} ms: {}", rules.size(), intervalMillis, rules);
+    }
+
+    @Override
+    protected void onShutdown() {
+        if (evaluation != null) {
+            evaluation.cancel(false);
+        }
+
+        if (refreshMethod != null) {
+            refreshMethod.setInvocationHandler(sdkRefreshHandler);
+        }
+        if (refresh2Method != null) {
+            refresh2Method.setInvocationHandler(sdkRefresh2Handler);
+        }
+
+        synchronized (this) {
+            for (Condition condition : conditions.values()) {
+                if (condition.eventNode != null) {
+                    condition.eventNode.delete();
+                    condition.eventNode = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Create the conditions of every rule for {@code conveyor} and start watching the variables they refer to. The
+     * conveyor is evaluated in the next batch.
+     */
+    public void watch(Conveyor conveyor) {
+        UaVariableNode[] variables = {conveyor.getMotors(), conveyor.getRunningSpeed(), conveyor.getDropoffs()};
+        ConveyorAlarms alarms = new ConveyorAlarms(conveyor, variables, rules.size());
+
+        boolean[] watched = new boolean[VARIABLES.length];
+
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            NodeId conditionId = new NodeId(
+                conveyor.getNodeId().getNamespaceIndex(),
+                conveyor.getNodeId().getIdentifier() + "/Alarms/" + rule.name
+            );
+
+            alarms.conditions[i] = new Condition(conditionId, rule, alarms);
+            conditions.put(conditionId, alarms.conditions[i]);
+
+            if (!watched[rule.variable]) {
+                watched[rule.variable] = true;
+
+                variables[rule.variable].addAttributeObserver((node, attributeId, value) -> {
+                    if (attributeId == AttributeId.Value) {
+                        alarms.markDirty();
+                    }
+                });
+            }
+        }
+
+        alarms.markDirty();
+    }
+
+    /**
+     * Evaluate every conveyor that changed since the last batch. Called periodically; safe to call directly.
+     */
+    public synchronized void evaluate() {
+        long startNanos = System.nanoTime();
+        int evaluated = 0;
+        double[] values = new double[VARIABLES.length];
+
+        ConveyorAlarms alarms;
+        while ((alarms = dirty.poll()) != null) {
+            // clear first, so a change during evaluation marks the conveyor again
+            alarms.dirty.set(false);
+
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Double.NaN;
+            }
+
+            for (Condition condition : alarms.conditions) {
+                int variable = condition.rule.variable;
+
+                if (Double.isNaN(values[variable])) {
+                    values[variable] = valueOf(alarms.variables[variable].getValue());
+                }
+
+                boolean active = condition.rule.test(values[variable]);
+
+                if (active != condition.active) {
+                    transition(condition, active, values[variable]);
+                }
+            }
+
+            evaluated++;
+        }
+
+        if (evaluated > 0) {
+            metrics.getAlarmEvaluationDuration().record(System.nanoTime() - startNanos);
+        }
+    }
+
+    public synchronized int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * @return the handler for Acknowledge or Confirm on one of this engine's conditions, if {@code objectId} is one.
+     */
+    public Optional<MethodInvocationHandler> getInvocationHandler(NodeId objectId, NodeId methodId) {
+        if (!conditions.containsKey(objectId)) {
+            return Optional.empty();
+        }
+
+        if (Identifiers.AcknowledgeableConditionType_Acknowledge.equals(methodId)) {
+            return Optional.of(acknowledgeHandler);
+        } else if (Identifiers.AcknowledgeableConditionType_Confirm.equals(methodId)) {
+            return Optional.of(confirmHandler);
+        } else {
+            return Optional.of((context, request) -> result(new StatusCode(StatusCodes.Bad_MethodInvalid)));
+        }
+    }
+
+    private UaMethodNode methodNode(NodeId methodId) {
+        Optional<UaNode> node = server.getAddressSpaceManager().getManagedNode(methodId);
+
+        if (node.isPresent() && node.get() instanceof UaMethodNode) {
+            return (UaMethodNode) node.get();
+        }
+
+        logger.warn("{} not found, ConditionRefresh stays with the SDK", methodId);
+        return null;
+    }
+
+    /**
+     * Send the current state of every retained condition to the event items of one subscription of
+     * {@code session}, framed by a RefreshStartEvent and a RefreshEndEvent.
+     *
+     * @param monitoredItemId the only item to refresh, or {@code null} for all event items of the subscription.
+     */
+    private synchronized void refresh(Session session, UInteger subscriptionId, UInteger monitoredItemId)
+        throws UaException {
+
+        Subscription subscription = session != null ?
+            session.getSubscriptionManager().getSubscription(subscriptionId) : null;
+
+        if (subscription == null) {
+            throw new UaException(StatusCodes.Bad_SubscriptionIdInvalid);
+        }
+
+        List<MonitoredEventItem> items = new ArrayList<>();
+
+        for (BaseMonitoredItem<?> item : subscription.getMonitoredItems().values()) {
+            if (item instanceof MonitoredEventItem &&
+                (monitoredItemId == null || monitoredItemId.equals(item.getId()))) {
+
+                items.add((MonitoredEventItem) item);
+            }
+        }
+
+        if (monitoredItemId != null && items.isEmpty()) {
+            throw new UaException(StatusCodes.Bad_MonitoredItemIdInvalid);
+        }
+
+        BaseEventTypeNode start = refreshEvent(Identifiers.RefreshStartEventType, "RefreshStart");
+        BaseEventTypeNode end = refreshEvent(Identifiers.RefreshEndEventType, "RefreshEnd");
+
+        try {
+            deliver(items, start);
+
+            for (Condition condition : conditions.values()) {
+                // only retained conditions keep an event node
+                if (condition.eventNode != null) {
+                    deliver(items, condition.eventNode);
+                }
+            }
+
+            deliver(items, end);
+        } finally {
+            start.delete();
+            end.delete();
+        }
+    }
+
+    private BaseEventTypeNode refreshEvent(NodeId eventType, String name) throws UaException {
+        BaseEventTypeNode node = server.getEventFactory().createEvent(
+            new NodeId(namespaceIndex, UUID.randomUUID()), eventType);
+
+        DateTime now = DateTime.now();
+
+        node.setBrowseName(new QualifiedName(namespaceIndex, name));
+        node.setDisplayName(LocalizedText.english(name));
+        node.setEventId(eventEmitter.nextEventId());
+        node.setEventType(eventType);
+        node.setSourceNode(Identifiers.Server);
+        node.setSourceName("Server");
+        node.setTime(now);
+        node.setReceiveTime(now);
+        node.setMessage(LocalizedText.english(name));
+        node.setSeverity(ushort(1));
+
+        return node;
+    }
+
+    private void deliver(List<MonitoredEventItem> items, BaseEventTypeNode node) {
+        for (MonitoredEventItem item : items) {
+            item.onEvent(node);
+        }
+
+        metrics.eventPosted();
+    }
+
+    private void transition(Condition condition, boolean active, double value) {
+        condition.active = active;
+
+        if (active) {
+            condition.acked = false;
+            condition.confirmed = false;
+            activeCount++;
+        } else {
+            activeCount--;
+        }
+
+        Rule rule = condition.rule;
+        String message = active ?
+            String.format("%s %s: %s = %s (limit %s %s)",
+                condition.alarms.conveyor.getName(), rule.name, VARIABLES[rule.variable], value, rule.operator,
+                rule.limit) :
+            String.format("%s %s: %s = %s, back to normal",
+                condition.alarms.conveyor.getName(), rule.name, VARIABLES[rule.variable], value);
+
+        post(condition, message, null);
+    }
+
+    private synchronized CallMethodResult acknowledge(AccessContext context, CallMethodRequest request) {
+        Condition condition = conditions.get(request.getObjectId());
+        StatusCode status = checkEventId(condition, request);
+
+        if (status.isGood() && condition.acked) {
+            status = new StatusCode(StatusCodes.Bad_ConditionBranchAlreadyAcked);
+        }
+
+        if (!status.isGood()) {
+            return result(status);
+        }
+
+        condition.acked = true;
+        post(condition, condition.alarms.conveyor.getName() + " " + condition.rule.name + " acknowledged",
+            comment(request));
+
+        return result(StatusCode.GOOD);
+    }
+
+    private synchronized CallMethodResult confirm(AccessContext context, CallMethodRequest request) {
+        Condition condition = conditions.get(request.getObjectId());
+        StatusCode status = checkEventId(condition, request);
+
+        if (status.isGood() && condition.confirmed) {
+            status = new StatusCode(StatusCodes.Bad_ConditionBranchAlreadyConfirmed);
+        } else if (status.isGood() && !condition.acked) {
+            // confirming follows acknowledging
+            status = new StatusCode(StatusCodes.Bad_InvalidState);
+        }
+
+        if (!status.isGood()) {
+            return result(status);
+        }
+
+        condition.confirmed = true;
+        post(condition, condition.alarms.conveyor.getName() + " " + condition.rule.name + " confirmed",
+            comment(request));
+
+        return result(StatusCode.GOOD);
+    }
+
+    private StatusCode checkEventId(Condition condition, CallMethodRequest request) {
+        Variant[] inputs = request.getInputArguments();
+
+        if (inputs == null || inputs.length != 2 || !(inputs[0].getValue() instanceof ByteString)) {
+            return new StatusCode(StatusCodes.Bad_ArgumentsMissing);
+        }
+
+        if (condition == null || !inputs[0].getValue().equals(condition.eventId)) {
+            return new StatusCode(StatusCodes.Bad_EventIdUnknown);
+        }
+
+        return StatusCode.GOOD;
+    }
+
+    private static LocalizedText comment(CallMethodRequest request) {
+        Object comment = request.getInputArguments()[1].getValue();
+
+        return comment instanceof LocalizedText ? (LocalizedText) comment : LocalizedText.NULL_VALUE;
+    }
+
+    private static CallMethodResult result(StatusCode status) {
+        return new CallMethodResult(status, new StatusCode[0], new DiagnosticInfo[0], new Variant[0]);
+    }
+
+    /**
+     * Post the current state of {@code condition}. The event node takes the ConditionId as its NodeId, so it cannot
+     * be shared between conditions; creating one is expensive, so it is kept while the condition is retained and
+     * dropped once it is inactive, acknowledged and confirmed. Posting is synchronous and guarded by the engine, so
+     * the node can be updated in place for the next event.
+     */
+    private void post(Condition condition, String message, LocalizedText comment) {
+        Conveyor conveyor = condition.alarms.conveyor;
+        Rule rule = condition.rule;
+        AlarmConditionTypeNode node = condition.eventNode;
+
+        if (node == null) {
+            try {
+                node = (AlarmConditionTypeNode) server.getEventFactory().createEvent(
+                    condition.conditionId, Identifiers.AlarmConditionType);
+            } catch (UaException e) {
+                logger.error("Could not create alarm event for {}: {}", condition.conditionId, e.getMessage(), e);
+                return;
+            }
+
+            node.setBrowseName(new QualifiedName(namespaceIndex, rule.name));
+            node.setDisplayName(LocalizedText.english(rule.name));
+            node.setEventType(Identifiers.AlarmConditionType);
+            node.setSourceNode(conveyor.getNodeId());
+            node.setSourceName(conveyor.getName());
+            node.setSeverity(ushort(rule.severity));
+            node.setLastSeverity(ushort(rule.severity));
+            node.setConditionClassId(Identifiers.ProcessConditionClassType);
+            node.setConditionClassName(PROCESS_CLASS);
+            node.setConditionName(rule.name);
+            node.setBranchId(NodeId.NULL_VALUE);
+            node.setQuality(StatusCode.GOOD);
+            setState(node.getEnabledStateNode(), true, ENABLED, ENABLED);
+
+            condition.eventNode = node;
+        }
+
+        boolean retain = condition.active || !condition.acked || !condition.confirmed;
+
+        try {
+            DateTime now = DateTime.now();
+            condition.eventId = eventEmitter.nextEventId();
+
+            node.setEventId(condition.eventId);
+            node.setTime(now);
+            node.setReceiveTime(now);
+            node.setMessage(LocalizedText.english(message));
+            node.setRetain(retain);
+            node.setComment(comment != null ? comment : LocalizedText.NULL_VALUE);
+
+            setState(node.getActiveStateNode(), condition.active, ACTIVE, INACTIVE);
+            setState(node.getAckedStateNode(), condition.acked, ACKNOWLEDGED, UNACKNOWLEDGED);
+            setState(node.getConfirmedStateNode(), condition.confirmed, CONFIRMED, UNCONFIRMED);
+
+            //noinspection UnstableApiUsage
+            server.getEventBus().post(node);
+            metrics.eventPosted();
+        } finally {
+            if (!retain) {
+                node.delete();
+                condition.eventNode = null;
+            }
+        }
+    }
+
+    private static void setState(TwoStateVariableTypeNode state, boolean id, LocalizedText on, LocalizedText off) {
+        // optional states are only present if the event factory instantiated them
+        if (state != null) {
+            state.setValue(new DataValue(new Variant(id ? on : off)));
+            state.setId(id);
+        }
+    }
+
+    private static double valueOf(DataValue value) {
+        Object v = value != null ? value.getValue().getValue() : null;
+
+        if (v instanceof Number) {
+            return ((Number) v).doubleValue();
+        } else if (v instanceof Boolean) {
+            return (Boolean) v ? 1.0 : 0.0;
+        } else {
+            return Double.NaN;
+        }
+    }
+
+    private final class RefreshMethod extends ConditionRefreshMethod {
+
+        private RefreshMethod(UaMethodNode node) {
+            super(node);
+        }
+
+        @Override
+        protected void invoke(InvocationContext context, UInteger subscriptionId) throws UaException {
+            refresh(context.getSession().orElse(null), subscriptionId, null);
+        }
+
+    }
+
+    private final class Refresh2Method extends ConditionRefresh2Method {
+
+        private Refresh2Method(UaMethodNode node) {
+            super(node);
+        }
+
+        @Override
+        protected void invoke(InvocationContext context, UInteger subscriptionId, UInteger monitoredItemId)
+            throws UaException {
+
+            refresh(context.getSession().orElse(null), subscriptionId, monitoredItemId);
+        }
+
+    }
+
+    public static final class Rule {
+
+        private final String name;
+        private final int variable;
+        private final String operator;
+        private final double limit;
+        private final int severity;
+
+        Rule(String name, int variable, String operator, double limit, int severity) {
+            this.name = name;
+            this.variable = variable;
+            this.operator = operator;
+            this.limit = limit;
+            this.severity = Math.max(1, Math.min(1000, severity));
+        }
+
+        boolean test(double value) {
+            if (Double.isNaN(value)) {
+                return false;
+            }
+
+            switch (operator) {
+                case ">":
+                    return value > limit;
+                case ">=":
+                    return value >= limit;
+                case "<":
+                    return value < limit;
+                case "<=":
+                    return value <= limit;
+                case "==":
+                    return value == limit;
+                default:
+                    return value != limit;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name + ":" + VARIABLES[variable] + operator + limit + ":" + severity;
+        }
+
+    }
+
+    private final class ConveyorAlarms {
+
+        private final AtomicBoolean dirty = new AtomicBoolean();
+
+        private final Conveyor conveyor;
+        private final UaVariableNode[] variables;
+        private final Condition[] conditions;
+
+        private ConveyorAlarms(Conveyor conveyor, UaVariableNode[] variables, int ruleCount) {
+            this.conveyor = conveyor;
+            this.variables = variables;
+            this.conditions = new Condition[ruleCount];
+        }
+
+        void markDirty() {
+            if (dirty.compareAndSet(false, true)) {
+                AlarmEngine.this.dirty.add(this);
+            }
+        }
+
+    }
+
+    private static final class Condition {
+
+        private final NodeId conditionId;
+        private final Rule rule;
+        private final ConveyorAlarms alarms;
+
+        // guarded by the engine
+        private boolean active;
+        private boolean acked = true;
+        private boolean confirmed = true;
+        private ByteString eventId;
+        private AlarmConditionTypeNode eventNode;
+
+        private Condition(NodeId conditionId, Rule rule, ConveyorAlarms alarms) {
+            this.conditionId = conditionId;
+            this.rule = rule;
+            this.alarms = alarms;
+        }
+
+    }
+
+}
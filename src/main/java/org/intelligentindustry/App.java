@@ -2,6 +2,7 @@ package org.intelligentindustry;
 
 import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
 import org.eclipse.milo.opcua.sdk.server.api.config.OpcUaServerConfig;
+import org.eclipse.milo.opcua.sdk.server.api.config.OpcUaServerConfigBuilder;
 import org.eclipse.milo.opcua.stack.core.types.structured.BuildInfo;
 
 import java.util.LinkedHashSet;
@@ -17,9 +18,9 @@ import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
 import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
 import org.eclipse.milo.opcua.stack.core.types.enumerated.MessageSecurityMode;
 import org.eclipse.milo.opcua.stack.server.EndpointConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-
-import static com.google.common.collect.Lists.newArrayList;
 import static org.eclipse.milo.opcua.sdk.server.api.config.OpcUaServerConfig.USER_TOKEN_POLICY_ANONYMOUS;
 
 /**
@@ -32,15 +33,43 @@ public class App
 
     private static final int TCP_BIND_PORT = 12686;
 
+    private static final Logger logger = LoggerFactory.getLogger(App.class);
+
     public static void main( String[] args ) throws InterruptedException, ExecutionException
     {
         System.out.println( "Hello World!" );
 
-        OpcUaServer server;
+        OpcUaServer server = createServer();
+
+       DemoNamespace ns = new DemoNamespace(server);
+
+        ns.startup();
+
+        server.startup().get();
+
+        StringBuilder summary = new StringBuilder("Effective settings:");
+        Settings.getEffectiveSettings().forEach((key, value) ->
+            summary.append(System.lineSeparator()).append("  ").append(key).append(" = ").append(value));
+        logger.info(summary.toString());
+
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> future.complete(null)));
+
+        future.get();
+
+    }
+
+    /**
+     * Build the OPC UA server with the demo endpoints, without adding any namespace or starting it. Executors created
+     * from the {@link ServerTuning} settings are shut down once the server has shut down.
+     */
+    public static OpcUaServer createServer() {
+        ServerTuning tuning = ServerTuning.fromSettings(TCP_BIND_PORT);
 
-        OpcUaServerConfig serverConfig = OpcUaServerConfig.builder()
+        OpcUaServerConfigBuilder builder = OpcUaServerConfig.builder()
             .setApplicationName(LocalizedText.english("Intelligent Industry Demo Server"))
-            .setEndpoints(createEndpointConfigurations())
+            .setEndpoints(createEndpointConfigurations(tuning))
             .setBuildInfo(
                 new BuildInfo(
                     "urn:intelligent-industry:demo-server",
@@ -49,30 +78,26 @@ public class App
                     OpcUaServer.SDK_VERSION,
                     "", DateTime.now()))
             .setProductUri("urn:intelligent-industry:demo-server")
-            .setApplicationUri("urn:intelligent-industry:demo-server")
-            .build();
+            .setApplicationUri("urn:intelligent-industry:demo-server");
 
-        server = new OpcUaServer(serverConfig);
+        tuning.apply(builder);
 
-       DemoNamespace ns = new DemoNamespace(server);
-
-        ns.startup();
+        logger.info("Server: {}", tuning.describe());
 
-        server.startup().get();
-
-        final CompletableFuture<Void> future = new CompletableFuture<>();
-
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> future.complete(null)));
-
-        future.get();
+        OpcUaServerConfig serverConfig = builder.build();
 
+        return new OpcUaServer(serverConfig) {
+            @Override
+            public CompletableFuture<OpcUaServer> shutdown() {
+                return super.shutdown().whenComplete((server, ex) -> tuning.shutdown());
+            }
+        };
     }
 
-    static private Set<EndpointConfiguration> createEndpointConfigurations() {
+    static private Set<EndpointConfiguration> createEndpointConfigurations(ServerTuning tuning) {
         Set<EndpointConfiguration> endpointConfigurations = new LinkedHashSet<>();
 
-        List<String> bindAddresses = newArrayList();
-        bindAddresses.add("0.0.0.0");
+        List<String> bindAddresses = tuning.getBindAddresses();
 
         Set<String> hostnames = new LinkedHashSet<>();
         hostnames.add(HostnameUtil.getHostname());
@@ -92,7 +117,9 @@ public class App
                     .setSecurityPolicy(SecurityPolicy.None)
                     .setSecurityMode(MessageSecurityMode.None);
 
-                endpointConfigurations.add(buildTcpEndpoint(noSecurityBuilder));
+                for (int port : tuning.getPorts()) {
+                    endpointConfigurations.add(buildTcpEndpoint(noSecurityBuilder, port));
+                }
 
 
 
@@ -113,17 +140,19 @@ public class App
                     .setSecurityPolicy(SecurityPolicy.None)
                     .setSecurityMode(MessageSecurityMode.None);
 
-                endpointConfigurations.add(buildTcpEndpoint(discoveryBuilder));
+                for (int port : tuning.getPorts()) {
+                    endpointConfigurations.add(buildTcpEndpoint(discoveryBuilder, port));
+                }
             }
         }
 
         return endpointConfigurations;
     }
 
-    private static EndpointConfiguration buildTcpEndpoint(EndpointConfiguration.Builder base) {
+    private static EndpointConfiguration buildTcpEndpoint(EndpointConfiguration.Builder base, int port) {
         return base.copy()
             .setTransportProfile(TransportProfile.TCP_UASC_UABINARY)
-            .setBindPort(TCP_BIND_PORT)
+            .setBindPort(port)
             .build();
     }
 
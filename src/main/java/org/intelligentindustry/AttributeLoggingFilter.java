@@ -1,7 +1,9 @@
 package org.intelligentindustry;
 
+import java.util.Optional;
 import java.util.function.Predicate;
 
+import org.eclipse.milo.opcua.sdk.server.Session;
 import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilter;
 import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilterContext.GetAttributeContext;
 import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilterContext.SetAttributeContext;
@@ -9,18 +11,32 @@ import org.eclipse.milo.opcua.stack.core.AttributeId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Records external attribute reads and writes. With an {@link AuditLog} the access is handed off to its background
+ * writer; without one it is logged synchronously.
+ */
 public class AttributeLoggingFilter implements AttributeFilter {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final Predicate<AttributeId> attributePredicate;
+    private final AuditLog auditLog;
 
     public AttributeLoggingFilter() {
         this(attributeId -> true);
     }
 
     public AttributeLoggingFilter(Predicate<AttributeId> attributePredicate) {
+        this(attributePredicate, null);
+    }
+
+    public AttributeLoggingFilter(AuditLog auditLog) {
+        this(attributeId -> true, auditLog);
+    }
+
+    public AttributeLoggingFilter(Predicate<AttributeId> attributePredicate, AuditLog auditLog) {
         this.attributePredicate = attributePredicate;
+        this.auditLog = auditLog;
     }
 
     @Override
@@ -28,11 +44,18 @@ public class AttributeLoggingFilter implements AttributeFilter {
         Object value = ctx.getAttribute(attributeId);
 
         // only log external reads
-        if (attributePredicate.test(attributeId) && ctx.getSession().isPresent()) {
-            logger.info(
-                "get nodeId={} attributeId={} value={}",
-                ctx.getNode().getNodeId(), attributeId, value
-            );
+        Optional<Session> session = ctx.getSession();
+
+        if (session.isPresent() && attributePredicate.test(attributeId)) {
+            if (auditLog != null) {
+                auditLog.record(
+                    AuditRecord.GET, ctx.getNode().getNodeId(), attributeId, session.get().getSessionId(), value);
+            } else {
+                logger.info(
+                    "get nodeId={} attributeId={} value={}",
+                    ctx.getNode().getNodeId(), attributeId, value
+                );
+            }
         }
 
         return value;
@@ -41,11 +64,18 @@ public class AttributeLoggingFilter implements AttributeFilter {
     @Override
     public void setAttribute(SetAttributeContext ctx, AttributeId attributeId, Object value) {
         // only log external writes
-        if (attributePredicate.test(attributeId) && ctx.getSession().isPresent()) {
-            logger.info(
-                "set nodeId={} attributeId={} value={}",
-                ctx.getNode().getNodeId(), attributeId, value
-            );
+        Optional<Session> session = ctx.getSession();
+
+        if (session.isPresent() && attributePredicate.test(attributeId)) {
+            if (auditLog != null) {
+                auditLog.record(
+                    AuditRecord.SET, ctx.getNode().getNodeId(), attributeId, session.get().getSessionId(), value);
+            } else {
+                logger.info(
+                    "set nodeId={} attributeId={} value={}",
+                    ctx.getNode().getNodeId(), attributeId, value
+                );
+            }
         }
 
         ctx.setAttribute(attributeId, value);
@@ -0,0 +1,38 @@
+package org.intelligentindustry;
+
+import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilter;
+import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilterContext.GetAttributeContext;
+import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilterContext.SetAttributeContext;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+
+/**
+ * Counts external reads and writes of a node's Value attribute. One instance per node, so counting never needs a
+ * lookup.
+ */
+public class AttributeMetricsFilter implements AttributeFilter {
+
+    private final ServerMetrics.NodeCounters counters;
+
+    public AttributeMetricsFilter(ServerMetrics.NodeCounters counters) {
+        this.counters = counters;
+    }
+
+    @Override
+    public Object getAttribute(GetAttributeContext ctx, AttributeId attributeId) {
+        if (attributeId == AttributeId.Value && ctx.getSession().isPresent()) {
+            counters.read();
+        }
+
+        return ctx.getAttribute(attributeId);
+    }
+
+    @Override
+    public void setAttribute(SetAttributeContext ctx, AttributeId attributeId, Object value) {
+        if (attributeId == AttributeId.Value && ctx.getSession().isPresent()) {
+            counters.write();
+        }
+
+        ctx.setAttribute(attributeId, value);
+    }
+
+}
@@ -0,0 +1,231 @@
+package org.intelligentindustry;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.milo.opcua.sdk.server.AbstractLifecycle;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects attribute reads and writes from {@link AttributeLoggingFilter} into a {@link RingBuffer} and writes
+ * them to a {@link RollingFileSink} from a background thread, one tab-separated line per record:
+ * <pre>timestamp  G|S  session  nodeId  attribute  value [status]</pre>
+ * Each attribute can be sampled so that only every n-th access is recorded; a rate of 0 disables it.
+ */
+public class AuditLog extends AbstractLifecycle {
+
+    public static final String ENABLED = "demo.audit.enabled";
+    public static final String FILE = "demo.audit.file";
+    public static final String BUFFER_SIZE = "demo.audit.buffer-size";
+    public static final String MAX_FILE_BYTES = "demo.audit.max-file-bytes";
+    public static final String MAX_FILES = "demo.audit.max-files";
+    public static final String SAMPLE_RATE_PREFIX = "demo.audit.sample-rate.";
+
+    private static final int DRAIN_BATCH = 1024;
+    private static final long DROP_REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final int[] sampleRates = new int[AttributeId.values().length + 1];
+    private final AtomicLongArray sampleCounters = new AtomicLongArray(sampleRates.length);
+
+    private final RingBuffer<AuditRecord> buffer;
+    private final LongAdder dropped = new LongAdder();
+    private final File file;
+    private final long maxFileBytes;
+    private final int maxFiles;
+
+    private final StringBuilder line = new StringBuilder(256);
+
+    private volatile boolean running;
+    private volatile boolean disabled;
+    private volatile Thread writerThread;
+
+    private long lastReportedDrops;
+    private long lastDropReportNanos;
+
+    public AuditLog(File file, int bufferSize, long maxFileBytes, int maxFiles) {
+        this.buffer = new RingBuffer<>(bufferSize, AuditRecord::new, AuditRecord::clear);
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+
+        for (AttributeId attributeId : AttributeId.values()) {
+            sampleRates[attributeId.id()] = 1;
+        }
+    }
+
+    /**
+     * @return the configured audit log, or {@code null} if auditing is disabled.
+     */
+    public static AuditLog fromSettings() {
+        if (!Settings.getBoolean(ENABLED, false)) {
+            return null;
+        }
+
+        AuditLog auditLog = new AuditLog(
+            new File(Settings.getString(FILE, "audit/audit.log")),
+            Settings.getInt(BUFFER_SIZE, 65536),
+            Settings.getLong(MAX_FILE_BYTES, 64L * 1024 * 1024),
+            Settings.getInt(MAX_FILES, 5)
+        );
+
+        for (AttributeId attributeId : AttributeId.values()) {
+            auditLog.setSampleRate(attributeId, Settings.getInt(SAMPLE_RATE_PREFIX + attributeId.name(), 1));
+        }
+
+        return auditLog;
+    }
+
+    /**
+     * Record every {@code rate}-th access to {@code attributeId}; 0 disables recording for that attribute.
+     */
+    public void setSampleRate(AttributeId attributeId, int rate) {
+        sampleRates[attributeId.id()] = Math.max(0, rate);
+    }
+
+    /**
+     * @return {@code false} if the record was sampled out, dropped because the buffer is full, or auditing was
+     * disabled because the audit file could not be opened or written.
+     */
+    public boolean record(char operation, NodeId nodeId, AttributeId attributeId, NodeId sessionId, Object value) {
+        int id = attributeId.id();
+        int rate = sampleRates[id];
+
+        if (disabled || rate == 0 || (rate > 1 && sampleCounters.getAndIncrement(id) % rate != 0)) {
+            return false;
+        }
+
+        long position = buffer.claim();
+
+        if (position < 0) {
+            dropped.increment();
+            return false;
+        }
+
+        buffer.get(position).set(operation, System.currentTimeMillis(), nodeId, attributeId, sessionId, value);
+        buffer.publish(position);
+
+        return true;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    protected void onStartup() {
+        RollingFileSink sink;
+
+        try {
+            sink = new RollingFileSink(file, maxFileBytes, maxFiles);
+        } catch (IOException e) {
+            // auditing is optional; serve without it rather than fail the namespace
+            logger.error("Could not open audit file {}, auditing disabled: {}", file, e.getMessage(), e);
+            disabled = true;
+            return;
+        }
+
+        running = true;
+
+        writerThread = new Thread(() -> writeLoop(sink), "audit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        logger.info("Auditing attribute access to {} (buffer of {} records)", file, buffer.capacity());
+    }
+
+    @Override
+    protected void onShutdown() {
+        running = false;
+
+        if (writerThread == null) {
+            return;
+        }
+
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop(RollingFileSink sink) {
+        try {
+            while (running) {
+                if (buffer.drain(record -> write(sink, record), DRAIN_BATCH) == 0) {
+                    sink.flush();
+                    reportDrops();
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                }
+            }
+
+            while (buffer.drain(record -> write(sink, record), DRAIN_BATCH) > 0) {
+                // drain what is left before closing
+            }
+
+            sink.close();
+        } catch (Throwable t) {
+            // nothing drains the buffer any more, so stop filling it
+            disabled = true;
+            logger.error("Audit writer stopped, auditing disabled: {}", t.getMessage(), t);
+
+            try {
+                sink.close();
+            } catch (IOException e) {
+                logger.warn("Could not close audit file {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private void write(RollingFileSink sink, AuditRecord record) {
+        line.setLength(0);
+        line.append(Instant.ofEpochMilli(record.getTimestamp())).append('\t')
+            .append(record.getOperation()).append('\t')
+            .append(record.getSessionId() != null ? record.getSessionId().toParseableString() : "-").append('\t')
+            .append(record.getNodeId().toParseableString()).append('\t')
+            .append(record.getAttributeId()).append('\t');
+
+        Object value = record.getValue();
+
+        if (value instanceof DataValue) {
+            DataValue dataValue = (DataValue) value;
+            line.append(dataValue.getValue().getValue()).append('\t').append(dataValue.getStatusCode());
+        } else {
+            line.append(value);
+        }
+
+        try {
+            sink.write(line);
+        } catch (IOException e) {
+            throw new IllegalStateException("could not write audit record", e);
+        }
+    }
+
+    private void reportDrops() {
+        long now = System.nanoTime();
+
+        if (now - lastDropReportNanos < DROP_REPORT_INTERVAL_NANOS) {
+            return;
+        }
+
+        lastDropReportNanos = now;
+
+        long drops = dropped.sum();
+
+        if (drops > lastReportedDrops) {
+            logger.warn("Audit buffer full, dropped {} records ({} total)", drops - lastReportedDrops, drops);
+            lastReportedDrops = drops;
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package org.intelligentindustry;
+
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+
+/**
+ * A reusable slot in the audit {@link RingBuffer}. Producers only copy references into it; formatting happens on the
+ * writer thread.
+ */
+public final class AuditRecord {
+
+    public static final char GET = 'G';
+    public static final char SET = 'S';
+
+    char operation;
+    long timestamp;
+    NodeId nodeId;
+    AttributeId attributeId;
+    NodeId sessionId;
+    Object value;
+
+    public char getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return the time the attribute was accessed, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public NodeId getNodeId() {
+        return nodeId;
+    }
+
+    public AttributeId getAttributeId() {
+        return attributeId;
+    }
+
+    public NodeId getSessionId() {
+        return sessionId;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    void set(
+        char operation,
+        long timestamp,
+        NodeId nodeId,
+        AttributeId attributeId,
+        NodeId sessionId,
+        Object value) {
+
+        this.operation = operation;
+        this.timestamp = timestamp;
+        this.nodeId = nodeId;
+        this.attributeId = attributeId;
+        this.sessionId = sessionId;
+        this.value = value;
+    }
+
+    void clear() {
+        nodeId = null;
+        attributeId = null;
+        sessionId = null;
+        value = null;
+    }
+
+}
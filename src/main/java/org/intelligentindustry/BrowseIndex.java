@@ -0,0 +1,939 @@
+package org.intelligentindustry;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.eclipse.milo.opcua.sdk.core.Reference;
+import org.eclipse.milo.opcua.sdk.server.AbstractLifecycle;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.UaNodeManager;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.serialization.UaRequestMessage;
+import org.eclipse.milo.opcua.stack.core.serialization.UaResponseMessage;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DiagnosticInfo;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExpandedNodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseDirection;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.BrowseResultMask;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseNextRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseNextResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowsePath;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowsePathResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowsePathTarget;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.BrowseResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReferenceDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.RelativePathElement;
+import org.eclipse.milo.opcua.stack.core.types.structured.RequestHeader;
+import org.eclipse.milo.opcua.stack.core.types.structured.ResponseHeader;
+import org.eclipse.milo.opcua.stack.core.types.structured.TranslateBrowsePathsToNodeIdsRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.TranslateBrowsePathsToNodeIdsResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.ViewDescription;
+import org.eclipse.milo.opcua.stack.server.UaStackServer;
+import org.eclipse.milo.opcua.stack.server.services.ServiceRequest;
+import org.eclipse.milo.opcua.stack.server.services.ServiceRequestHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Answers Browse, BrowseNext and TranslateBrowsePathsToNodeIds for {@link DemoNamespace} nodes from an index of
+ * their hierarchical children, instead of letting the SDK scan and read every reference of a node per request.
+ * <p>
+ * The children of a node with at least {@code index-threshold} of them are indexed on first use: its hierarchical
+ * forward references in order, with the node class of every target, and a map from browse name to child. Attributes
+ * that can change, such as the DisplayName, are read from the target when a page is built. Each hop of a browse
+ * path is then a single map lookup, and a page of a large folder is built from a slice of its children.
+ * Continuation points carry the position and filter of the next page, so paging holds no state per session. Hops
+ * through smaller nodes scan their few references instead, and nothing is cached for them.
+ * <p>
+ * An entry is dropped when its node's reference count changes, and the namespace also calls
+ * {@link #invalidate(NodeId)} whenever it adds children to a node. A hit on a child that has since been removed or
+ * renamed drops the entry of its parent and falls back to the SDK.
+ * <p>
+ * Anything the index cannot answer exactly is passed on to the SDK unchanged: views, inverse or non-hierarchical
+ * references, browse names that are not unique below their parent, children in other namespaces and browsing
+ * folders with fewer than {@code index-threshold} children. Requests the index answers completely are still passed
+ * through the SDK with nothing to do, so the session is validated exactly as before.
+ */
+public class BrowseIndex extends AbstractLifecycle {
+
+    public static final String ENABLED = "demo.browse.index";
+    public static final String THRESHOLD = "demo.browse.index-threshold";
+
+    private static final int CONTINUATION_MAGIC = 0x42495831;
+    private static final int CONTINUATION_SIZE = 26;
+    private static final int AMBIGUOUS = -1;
+
+    private static final int RESULT_REFERENCE_TYPE = BrowseResultMask.ReferenceTypeId.getValue();
+    private static final int RESULT_IS_FORWARD = BrowseResultMask.IsForward.getValue();
+    private static final int RESULT_NODE_CLASS = BrowseResultMask.NodeClass.getValue();
+    private static final int RESULT_BROWSE_NAME = BrowseResultMask.BrowseName.getValue();
+    private static final int RESULT_DISPLAY_NAME = BrowseResultMask.DisplayName.getValue();
+    private static final int RESULT_TYPE_DEFINITION = BrowseResultMask.TypeDefinition.getValue();
+    private static final int RESULT_ALL = BrowseResultMask.All.getValue();
+
+    /**
+     * Hierarchical reference types that can be answered from the index; the position of a type is its key in
+     * continuation points.
+     */
+    private static final List<NodeId> FILTER_TYPES = Arrays.asList(
+        Identifiers.HierarchicalReferences,
+        Identifiers.HasChild,
+        Identifiers.Aggregates,
+        Identifiers.Organizes,
+        Identifiers.HasComponent,
+        Identifiers.HasProperty,
+        Identifiers.HasOrderedComponent,
+        Identifiers.HasSubtype,
+        Identifiers.HasEventSource,
+        Identifiers.HasNotifier
+    );
+
+    /**
+     * Every concrete hierarchical reference type with itself and its supertypes.
+     */
+    private static final Map<NodeId, Set<NodeId>> SUPERTYPES = new HashMap<>();
+
+    /**
+     * Non-hierarchical reference types found on nodes of the namespace.
+     */
+    private static final Set<NodeId> NON_HIERARCHICAL = new HashSet<>(Arrays.asList(
+        Identifiers.HasTypeDefinition,
+        Identifiers.HasModellingRule,
+        Identifiers.GeneratesEvent,
+        Identifiers.AlwaysGeneratesEvent,
+        Identifiers.HasEncoding,
+        Identifiers.HasDescription
+    ));
+
+    static {
+        supertypes(Identifiers.Organizes, Identifiers.HierarchicalReferences);
+        supertypes(Identifiers.HasComponent, Identifiers.Aggregates, Identifiers.HasChild,
+            Identifiers.HierarchicalReferences);
+        supertypes(Identifiers.HasProperty, Identifiers.Aggregates, Identifiers.HasChild,
+            Identifiers.HierarchicalReferences);
+        supertypes(Identifiers.HasOrderedComponent, Identifiers.HasComponent, Identifiers.Aggregates,
+            Identifiers.HasChild, Identifiers.HierarchicalReferences);
+        supertypes(Identifiers.HasSubtype, Identifiers.HasChild, Identifiers.HierarchicalReferences);
+        supertypes(Identifiers.HasEventSource, Identifiers.HierarchicalReferences);
+        supertypes(Identifiers.HasNotifier, Identifiers.HasEventSource, Identifiers.HierarchicalReferences);
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ConcurrentMap<NodeId, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Entry> entriesById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<NodeId, ConcurrentMap<QualifiedName, Link>> links = new ConcurrentHashMap<>();
+    private final AtomicInteger entryNumber = new AtomicInteger();
+
+    private final Map<String, ServiceRequestHandler> browseHandlers = new HashMap<>();
+    private final Map<String, ServiceRequestHandler> browseNextHandlers = new HashMap<>();
+    private final Map<String, ServiceRequestHandler> translateHandlers = new HashMap<>();
+
+    private final OpcUaServer server;
+    private final UaNodeManager nodeManager;
+    private final ServerMetrics metrics;
+    private final int threshold;
+
+    public BrowseIndex(OpcUaServer server, UaNodeManager nodeManager, ServerMetrics metrics, int threshold) {
+        this.server = server;
+        this.nodeManager = nodeManager;
+        this.metrics = metrics;
+        this.threshold = Math.max(1, threshold);
+    }
+
+    /**
+     * @return the configured index, or {@code null} if it is disabled.
+     */
+    public static BrowseIndex fromSettings(OpcUaServer server, UaNodeManager nodeManager, ServerMetrics metrics) {
+        if (!Settings.getBoolean(ENABLED, false)) {
+            return null;
+        }
+
+        return new BrowseIndex(server, nodeManager, metrics, Settings.getInt(THRESHOLD, 100));
+    }
+
+    /**
+     * Drop the indexed children of {@code parentId}; call after adding or removing references of the node.
+     */
+    public void invalidate(NodeId parentId) {
+        Entry entry = entries.remove(parentId);
+
+        if (entry != null) {
+            entriesById.remove(entry.id);
+        }
+    }
+
+    /**
+     * Index {@code child} below a node of another namespace, e.g. the Objects folder, for browse path translation.
+     * Browsing that node is left to the SDK.
+     */
+    public void link(NodeId parentId, NodeId referenceTypeId, UaNode child) {
+        links.computeIfAbsent(parentId, id -> new ConcurrentHashMap<>())
+            .put(child.getBrowseName(), new Link(referenceTypeId, child.getNodeId()));
+    }
+
+    @Override
+    protected synchronized void onStartup() {
+        UaStackServer stackServer = server.getStackServer();
+        Set<String> paths = new LinkedHashSet<>();
+
+        server.getConfig().getEndpoints().forEach(endpoint -> paths.add(endpoint.getPath()));
+
+        for (String path : paths) {
+            ServiceRequestHandler browse = stackServer.getServiceHandler(path, BrowseRequest.TYPE_ID);
+            ServiceRequestHandler browseNext = stackServer.getServiceHandler(path, BrowseNextRequest.TYPE_ID);
+            ServiceRequestHandler translate =
+                stackServer.getServiceHandler(path, TranslateBrowsePathsToNodeIdsRequest.TYPE_ID);
+
+            if (browse != null) {
+                browseHandlers.put(path, browse);
+                stackServer.addServiceHandler(path, BrowseRequest.TYPE_ID, request -> browse(browse, request));
+            }
+            if (browseNext != null) {
+                browseNextHandlers.put(path, browseNext);
+                stackServer.addServiceHandler(path, BrowseNextRequest.TYPE_ID, request ->
+                    browseNext(browseNext, request));
+            }
+            if (translate != null) {
+                translateHandlers.put(path, translate);
+                stackServer.addServiceHandler(path, TranslateBrowsePathsToNodeIdsRequest.TYPE_ID, request ->
+                    translate(translate, request));
+            }
+        }
+
+        logger.info("Browse index on {}: paged listing of folders with at least {} children", paths, threshold);
+    }
+
+    @Override
+    protected synchronized void onShutdown() {
+        UaStackServer stackServer = server.getStackServer();
+
+        browseHandlers.forEach((path, handler) ->
+            stackServer.addServiceHandler(path, BrowseRequest.TYPE_ID, handler));
+        browseNextHandlers.forEach((path, handler) ->
+            stackServer.addServiceHandler(path, BrowseNextRequest.TYPE_ID, handler));
+        translateHandlers.forEach((path, handler) ->
+            stackServer.addServiceHandler(path, TranslateBrowsePathsToNodeIdsRequest.TYPE_ID, handler));
+
+        browseHandlers.clear();
+        browseNextHandlers.clear();
+        translateHandlers.clear();
+
+        entries.clear();
+        entriesById.clear();
+    }
+
+    private void browse(ServiceRequestHandler handler, ServiceRequest service) throws UaException {
+        BrowseRequest request = (BrowseRequest) service.getRequest();
+        BrowseDescription[] descriptions = request.getNodesToBrowse();
+        ViewDescription view = request.getView();
+
+        if (descriptions == null || descriptions.length == 0 ||
+            descriptions.length > server.getConfig().getLimits().getMaxNodesPerBrowse().longValue() ||
+            view != null && view.getViewId() != null && view.getViewId().isNotNull()) {
+
+            handler.handle(service);
+            return;
+        }
+
+        long maxReferences = request.getRequestedMaxReferencesPerNode() != null ?
+            request.getRequestedMaxReferencesPerNode().longValue() : 0;
+        int pageSize = maxReferences == 0 || maxReferences > Integer.MAX_VALUE ?
+            Integer.MAX_VALUE : (int) maxReferences;
+
+        BrowseResult[] results = new BrowseResult[descriptions.length];
+        List<BrowseDescription> remaining = new ArrayList<>();
+
+        for (int i = 0; i < descriptions.length; i++) {
+            results[i] = browse(descriptions[i], pageSize);
+
+            if (results[i] == null) {
+                remaining.add(descriptions[i]);
+            }
+        }
+
+        if (remaining.size() == descriptions.length) {
+            metrics.browseIndexMisses(remaining.size());
+            handler.handle(service);
+            return;
+        }
+
+        metrics.browseIndexHits(descriptions.length - remaining.size());
+        metrics.browseIndexMisses(remaining.size());
+
+        BrowseRequest rest = new BrowseRequest(
+            request.getRequestHeader(),
+            view,
+            request.getRequestedMaxReferencesPerNode(),
+            remaining.toArray(new BrowseDescription[0])
+        );
+
+        forward(handler, service, rest, response -> new BrowseResponse(
+            responseHeader(request.getRequestHeader()),
+            merge(results, response != null ? ((BrowseResponse) response).getResults() : null),
+            new DiagnosticInfo[0]
+        ));
+    }
+
+    private void browseNext(ServiceRequestHandler handler, ServiceRequest service) throws UaException {
+        BrowseNextRequest request = (BrowseNextRequest) service.getRequest();
+        ByteString[] continuationPoints = request.getContinuationPoints();
+
+        if (continuationPoints == null || continuationPoints.length == 0) {
+            handler.handle(service);
+            return;
+        }
+
+        boolean release = Boolean.TRUE.equals(request.getReleaseContinuationPoints());
+        BrowseResult[] results = new BrowseResult[continuationPoints.length];
+        List<ByteString> remaining = new ArrayList<>();
+
+        for (int i = 0; i < continuationPoints.length; i++) {
+            ByteBuffer buffer = continuationPoint(continuationPoints[i]);
+
+            if (buffer == null) {
+                remaining.add(continuationPoints[i]);
+            } else if (release) {
+                results[i] = new BrowseResult(StatusCode.GOOD, null, null);
+            } else {
+                results[i] = browseNext(buffer);
+            }
+        }
+
+        if (remaining.size() == continuationPoints.length) {
+            metrics.browseIndexMisses(remaining.size());
+            handler.handle(service);
+            return;
+        }
+
+        metrics.browseIndexHits(continuationPoints.length - remaining.size());
+        metrics.browseIndexMisses(remaining.size());
+
+        BrowseNextRequest rest = new BrowseNextRequest(
+            request.getRequestHeader(),
+            request.getReleaseContinuationPoints(),
+            remaining.toArray(new ByteString[0])
+        );
+
+        forward(handler, service, rest, response -> new BrowseNextResponse(
+            responseHeader(request.getRequestHeader()),
+            merge(results, response != null ? ((BrowseNextResponse) response).getResults() : null),
+            new DiagnosticInfo[0]
+        ));
+    }
+
+    private void translate(ServiceRequestHandler handler, ServiceRequest service) throws UaException {
+        TranslateBrowsePathsToNodeIdsRequest request = (TranslateBrowsePathsToNodeIdsRequest) service.getRequest();
+        BrowsePath[] browsePaths = request.getBrowsePaths();
+
+        if (browsePaths == null || browsePaths.length == 0 || browsePaths.length >
+            server.getConfig().getLimits().getMaxNodesPerTranslateBrowsePathsToNodeIds().longValue()) {
+
+            handler.handle(service);
+            return;
+        }
+
+        BrowsePathResult[] results = new BrowsePathResult[browsePaths.length];
+        List<BrowsePath> remaining = new ArrayList<>();
+
+        for (int i = 0; i < browsePaths.length; i++) {
+            results[i] = translate(browsePaths[i]);
+
+            if (results[i] == null) {
+                remaining.add(browsePaths[i]);
+            }
+        }
+
+        if (remaining.size() == browsePaths.length) {
+            metrics.browseIndexMisses(remaining.size());
+            handler.handle(service);
+            return;
+        }
+
+        metrics.browseIndexHits(browsePaths.length - remaining.size());
+        metrics.browseIndexMisses(remaining.size());
+
+        TranslateBrowsePathsToNodeIdsRequest rest = new TranslateBrowsePathsToNodeIdsRequest(
+            request.getRequestHeader(),
+            remaining.toArray(new BrowsePath[0])
+        );
+
+        forward(handler, service, rest, response -> {
+            BrowsePathResult[] forwarded = response != null ?
+                ((TranslateBrowsePathsToNodeIdsResponse) response).getResults() : null;
+
+            for (int i = 0, j = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    results[i] = forwarded != null && j < forwarded.length ? forwarded[j++] :
+                        new BrowsePathResult(new StatusCode(StatusCodes.Bad_InternalError), new BrowsePathTarget[0]);
+                }
+            }
+
+            return new TranslateBrowsePathsToNodeIdsResponse(
+                responseHeader(request.getRequestHeader()),
+                results,
+                new DiagnosticInfo[0]
+            );
+        });
+    }
+
+    /**
+     * @return the first page of references of the node, or {@code null} if the index cannot answer it.
+     */
+    private BrowseResult browse(BrowseDescription description, int pageSize) {
+        int filter = FILTER_TYPES.indexOf(description.getReferenceTypeId());
+
+        if (filter < 0 || description.getBrowseDirection() != BrowseDirection.Forward) {
+            return null;
+        }
+
+        Entry entry = entry(description.getNodeId());
+
+        if (entry == null || !entry.complete) {
+            return null;
+        }
+
+        return page(
+            entry,
+            0,
+            filter,
+            Boolean.TRUE.equals(description.getIncludeSubtypes()),
+            description.getNodeClassMask() != null ? description.getNodeClassMask().intValue() : 0,
+            description.getResultMask() != null ? description.getResultMask().intValue() : RESULT_ALL,
+            pageSize
+        );
+    }
+
+    private BrowseResult browseNext(ByteBuffer buffer) {
+        Entry entry = entriesById.get(buffer.getInt());
+        int offset = buffer.getInt();
+        int filter = buffer.get();
+        boolean includeSubtypes = buffer.get() != 0;
+        int nodeClassMask = buffer.getInt();
+        int resultMask = buffer.getInt();
+        int pageSize = buffer.getInt();
+
+        if (entry == null || offset < 0 || offset > entry.targets.length ||
+            filter < 0 || filter >= FILTER_TYPES.size() || pageSize <= 0 ||
+            entry.referenceCount != referenceCount(entry.parentId)) {
+
+            // the children changed since the first page
+            return new BrowseResult(new StatusCode(StatusCodes.Bad_ContinuationPointInvalid), null, null);
+        }
+
+        BrowseResult result = page(entry, offset, filter, includeSubtypes, nodeClassMask, resultMask, pageSize);
+
+        return result != null ?
+            result : new BrowseResult(new StatusCode(StatusCodes.Bad_ContinuationPointInvalid), null, null);
+    }
+
+    /**
+     * @return the page, or {@code null} if a child on it has been removed since the entry was built.
+     */
+    private BrowseResult page(
+        Entry entry,
+        int offset,
+        int filter,
+        boolean includeSubtypes,
+        int nodeClassMask,
+        int resultMask,
+        int pageSize) {
+
+        NodeId filterType = FILTER_TYPES.get(filter);
+        int count = entry.targets.length;
+        List<ReferenceDescription> page = new ArrayList<>();
+        int next;
+
+        if (entry.matchesAll(filterType, includeSubtypes, nodeClassMask)) {
+            int end = (int) Math.min((long) offset + pageSize, count);
+
+            for (int i = offset; i < end; i++) {
+                page.add(describe(entry, i, resultMask));
+            }
+            next = end;
+        } else {
+            next = offset;
+
+            while (next < count && page.size() < pageSize) {
+                if (entry.matches(next, filterType, includeSubtypes, nodeClassMask)) {
+                    page.add(describe(entry, next, resultMask));
+                }
+                next++;
+            }
+            while (next < count && !entry.matches(next, filterType, includeSubtypes, nodeClassMask)) {
+                next++;
+            }
+        }
+
+        if (page.contains(null)) {
+            invalidate(entry.parentId);
+            return null;
+        }
+
+        ByteString continuationPoint = null;
+
+        if (next < count) {
+            continuationPoint = ByteString.of(ByteBuffer.allocate(CONTINUATION_SIZE)
+                .putInt(CONTINUATION_MAGIC)
+                .putInt(entry.id)
+                .putInt(next)
+                .put((byte) filter)
+                .put((byte) (includeSubtypes ? 1 : 0))
+                .putInt(nodeClassMask)
+                .putInt(resultMask)
+                .putInt(pageSize)
+                .array());
+        }
+
+        return new BrowseResult(StatusCode.GOOD, continuationPoint, page.toArray(new ReferenceDescription[0]));
+    }
+
+    /**
+     * @return the description of child {@code i} with the current attributes of its target, or {@code null} if the
+     * target is gone.
+     */
+    private ReferenceDescription describe(Entry entry, int i, int resultMask) {
+        UaNode target = nodeManager.getNode(entry.targets[i]).orElse(null);
+
+        if (target == null) {
+            return null;
+        }
+
+        return new ReferenceDescription(
+            (resultMask & RESULT_REFERENCE_TYPE) != 0 ? entry.referenceTypeIds[i] : NodeId.NULL_VALUE,
+            (resultMask & RESULT_IS_FORWARD) != 0,
+            target.getNodeId().expanded(),
+            (resultMask & RESULT_BROWSE_NAME) != 0 ? target.getBrowseName() : QualifiedName.NULL_VALUE,
+            (resultMask & RESULT_DISPLAY_NAME) != 0 ? target.getDisplayName() : LocalizedText.NULL_VALUE,
+            (resultMask & RESULT_NODE_CLASS) != 0 ? target.getNodeClass() : NodeClass.Unspecified,
+            (resultMask & RESULT_TYPE_DEFINITION) != 0 ? typeDefinition(target) : ExpandedNodeId.NULL_VALUE
+        );
+    }
+
+    /**
+     * @return the target of the path, or {@code null} if the index cannot resolve it.
+     */
+    private BrowsePathResult translate(BrowsePath browsePath) {
+        RelativePathElement[] elements = browsePath.getRelativePath() != null ?
+            browsePath.getRelativePath().getElements() : null;
+
+        if (elements == null || elements.length == 0 || browsePath.getStartingNode() == null) {
+            return null;
+        }
+
+        NodeId current = browsePath.getStartingNode();
+
+        for (RelativePathElement element : elements) {
+            QualifiedName targetName = element.getTargetName();
+
+            if (Boolean.TRUE.equals(element.getIsInverse()) || targetName == null || targetName.isNull() ||
+                !FILTER_TYPES.contains(element.getReferenceTypeId())) {
+
+                return null;
+            }
+
+            NodeId child = child(
+                current,
+                targetName,
+                element.getReferenceTypeId(),
+                Boolean.TRUE.equals(element.getIncludeSubtypes())
+            );
+
+            if (child == null) {
+                return null;
+            }
+
+            current = child;
+        }
+
+        return new BrowsePathResult(
+            StatusCode.GOOD,
+            new BrowsePathTarget[]{new BrowsePathTarget(current.expanded(), UInteger.MAX)}
+        );
+    }
+
+    private NodeId child(NodeId parentId, QualifiedName name, NodeId filterType, boolean includeSubtypes) {
+        Map<QualifiedName, Link> linked = links.get(parentId);
+
+        if (linked != null) {
+            Link link = linked.get(name);
+
+            return link != null && matches(link.referenceTypeId, filterType, includeSubtypes) &&
+                nodeManager.containsNode(link.target) ? link.target : null;
+        }
+
+        Entry entry = entry(parentId);
+
+        if (entry == null) {
+            return scanChild(parentId, name, filterType, includeSubtypes);
+        }
+
+        Integer index = entry.byName.get(name);
+
+        if (index == null || index == AMBIGUOUS ||
+            !matches(entry.referenceTypeIds[index], filterType, includeSubtypes)) {
+
+            return null;
+        }
+
+        UaNode target = nodeManager.getNode(entry.targets[index]).orElse(null);
+
+        if (target == null || !name.equals(target.getBrowseName())) {
+            invalidate(parentId);
+            return null;
+        }
+
+        return target.getNodeId();
+    }
+
+    /**
+     * Find the child of a node too small to be indexed by scanning its references.
+     *
+     * @return the only child with that name, or {@code null} if there is none, more than one, or one the index
+     * cannot see.
+     */
+    private NodeId scanChild(NodeId parentId, QualifiedName name, NodeId filterType, boolean includeSubtypes) {
+        UaNode parent = nodeManager.getNode(parentId).orElse(null);
+
+        if (parent == null) {
+            return null;
+        }
+
+        NodeId found = null;
+
+        for (Reference reference : parent.getReferences()) {
+            if (!reference.isForward() || !matches(reference.getReferenceTypeId(), filterType, includeSubtypes)) {
+                continue;
+            }
+
+            UaNode target = reference.getTargetNodeId().toNodeId(server.getNamespaceTable())
+                .flatMap(nodeManager::getNode)
+                .orElse(null);
+
+            if (target == null) {
+                // in another namespace; it may have the name too
+                return null;
+            }
+
+            if (name.equals(target.getBrowseName())) {
+                if (found != null && !found.equals(target.getNodeId())) {
+                    return null;
+                }
+                found = target.getNodeId();
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * @return the entry of {@code nodeId}, or {@code null} if it has fewer than {@code threshold} children.
+     */
+    private Entry entry(NodeId nodeId) {
+        if (nodeId == null) {
+            return null;
+        }
+
+        Entry entry = entries.get(nodeId);
+
+        if (entry != null && entry.referenceCount != referenceCount(nodeId)) {
+            // references were added or removed without an invalidate()
+            invalidate(nodeId);
+            entry = null;
+        }
+
+        return entry != null ? entry : entries.computeIfAbsent(nodeId, this::build);
+    }
+
+    private int referenceCount(NodeId nodeId) {
+        Collection<Reference> references = nodeManager.getReferenceMap().get(nodeId);
+
+        return references != null ? references.size() : 0;
+    }
+
+    private Entry build(NodeId parentId) {
+        UaNode parent = nodeManager.getNode(parentId).orElse(null);
+        int referenceCount = referenceCount(parentId);
+
+        // every child takes a reference, so this rules out most nodes without a scan
+        if (parent == null || referenceCount < threshold) {
+            return null;
+        }
+
+        List<NodeId> referenceTypeIds = new ArrayList<>();
+        List<NodeId> targets = new ArrayList<>();
+        List<NodeClass> nodeClasses = new ArrayList<>();
+        Map<QualifiedName, Integer> byName = new HashMap<>();
+        boolean complete = true;
+
+        for (Reference reference : parent.getReferences()) {
+            if (!reference.isForward() || NON_HIERARCHICAL.contains(reference.getReferenceTypeId())) {
+                continue;
+            }
+            if (!SUPERTYPES.containsKey(reference.getReferenceTypeId())) {
+                complete = false;
+                continue;
+            }
+
+            UaNode target = reference.getTargetNodeId().toNodeId(server.getNamespaceTable())
+                .flatMap(nodeManager::getNode)
+                .orElse(null);
+
+            if (target == null) {
+                // in another namespace or not there yet; browsing the parent is left to the SDK
+                complete = false;
+                continue;
+            }
+
+            // the same child referenced twice is not ambiguous
+            NodeId targetId = target.getNodeId();
+            byName.merge(target.getBrowseName(), targets.size(), (a, b) ->
+                a != AMBIGUOUS && targets.get(a).equals(targetId) ? a : AMBIGUOUS);
+
+            referenceTypeIds.add(reference.getReferenceTypeId());
+            targets.add(target.getNodeId());
+            nodeClasses.add(target.getNodeClass());
+        }
+
+        if (targets.size() < threshold) {
+            return null;
+        }
+
+        Entry entry = new Entry(
+            entryNumber.incrementAndGet(),
+            parentId,
+            referenceCount,
+            referenceTypeIds.toArray(new NodeId[0]),
+            targets.toArray(new NodeId[0]),
+            nodeClasses.toArray(new NodeClass[0]),
+            byName,
+            complete
+        );
+
+        entriesById.put(entry.id, entry);
+
+        return entry;
+    }
+
+    private static ExpandedNodeId typeDefinition(UaNode node) {
+        if (node.getNodeClass() != NodeClass.Object && node.getNodeClass() != NodeClass.Variable) {
+            return ExpandedNodeId.NULL_VALUE;
+        }
+
+        for (Reference reference : node.getReferences()) {
+            if (reference.isForward() && Identifiers.HasTypeDefinition.equals(reference.getReferenceTypeId())) {
+                return reference.getTargetNodeId();
+            }
+        }
+
+        return ExpandedNodeId.NULL_VALUE;
+    }
+
+    private static boolean matches(NodeId referenceTypeId, NodeId filterType, boolean includeSubtypes) {
+        if (includeSubtypes) {
+            Set<NodeId> supertypes = SUPERTYPES.get(referenceTypeId);
+
+            return supertypes != null && supertypes.contains(filterType);
+        }
+
+        return referenceTypeId.equals(filterType);
+    }
+
+    /**
+     * @return the continuation point positioned after its magic number, or {@code null} if it was not handed out
+     * by this index.
+     */
+    private static ByteBuffer continuationPoint(ByteString continuationPoint) {
+        byte[] bytes = continuationPoint != null ? continuationPoint.bytesOrEmpty() : new byte[0];
+
+        if (bytes.length != CONTINUATION_SIZE) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        return buffer.getInt() == CONTINUATION_MAGIC ? buffer : null;
+    }
+
+    private static BrowseResult[] merge(BrowseResult[] results, BrowseResult[] forwarded) {
+        for (int i = 0, j = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = forwarded != null && j < forwarded.length ? forwarded[j++] :
+                    new BrowseResult(new StatusCode(StatusCodes.Bad_InternalError), null, null);
+            }
+        }
+
+        return results;
+    }
+
+    private static ResponseHeader responseHeader(RequestHeader requestHeader) {
+        return new ResponseHeader(
+            DateTime.now(),
+            requestHeader.getRequestHandle(),
+            StatusCode.GOOD,
+            null,
+            null,
+            null
+        );
+    }
+
+    /**
+     * Hand what the index could not answer to the SDK and complete {@code original} with the merged response. The
+     * rest may be empty: the SDK then validates the session and reports Bad_NothingToDo, and the merge is called
+     * with {@code null}.
+     */
+    private static void forward(
+        ServiceRequestHandler handler,
+        ServiceRequest original,
+        UaRequestMessage rest,
+        Function<UaResponseMessage, UaResponseMessage> merge) {
+
+        ServiceRequest request = new ServiceRequest(
+            original.getServer(),
+            rest,
+            original.getEndpoint(),
+            original.getSecureChannelId(),
+            original.getClientAddress(),
+            original.getClientCertificateBytes()
+        );
+
+        request.getFuture().whenComplete((response, failure) -> {
+            if (response != null) {
+                original.setResponse(merge.apply(response));
+                return;
+            }
+
+            Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            UaException exception = cause instanceof UaException ?
+                (UaException) cause : new UaException(StatusCodes.Bad_InternalError, cause);
+
+            if (exception.getStatusCode().getValue() == StatusCodes.Bad_NothingToDo) {
+                original.setResponse(merge.apply(null));
+            } else {
+                original.setServiceFault(exception);
+            }
+        });
+
+        try {
+            handler.handle(request);
+        } catch (UaException e) {
+            request.setServiceFault(e);
+        }
+    }
+
+    private static void supertypes(NodeId referenceTypeId, NodeId... supertypes) {
+        Set<NodeId> types = new HashSet<>(Arrays.asList(supertypes));
+        types.add(referenceTypeId);
+
+        SUPERTYPES.put(referenceTypeId, types);
+    }
+
+    private static final class Link {
+
+        final NodeId referenceTypeId;
+        final NodeId target;
+
+        Link(NodeId referenceTypeId, NodeId target) {
+            this.referenceTypeId = referenceTypeId;
+            this.target = target;
+        }
+
+    }
+
+    /**
+     * The hierarchical forward references of one node, in the order the node holds them. Only what cannot change
+     * without changing the references is kept: reference types, targets and their node classes.
+     */
+    private static final class Entry {
+
+        final int id;
+        final NodeId parentId;
+        final int referenceCount;
+        final NodeId[] referenceTypeIds;
+        final NodeId[] targets;
+        final NodeClass[] nodeClasses;
+        final Map<QualifiedName, Integer> byName;
+        final boolean complete;
+        final Set<NodeId> referenceTypes = new HashSet<>();
+        final int nodeClassBits;
+
+        Entry(
+            int id,
+            NodeId parentId,
+            int referenceCount,
+            NodeId[] referenceTypeIds,
+            NodeId[] targets,
+            NodeClass[] nodeClasses,
+            Map<QualifiedName, Integer> byName,
+            boolean complete) {
+
+            this.id = id;
+            this.parentId = parentId;
+            this.referenceCount = referenceCount;
+            this.referenceTypeIds = referenceTypeIds;
+            this.targets = targets;
+            this.nodeClasses = nodeClasses;
+            this.byName = byName;
+            this.complete = complete;
+
+            int classes = 0;
+
+            for (int i = 0; i < targets.length; i++) {
+                referenceTypes.add(referenceTypeIds[i]);
+                classes |= nodeClasses[i].getValue();
+            }
+
+            nodeClassBits = classes;
+        }
+
+        boolean matches(int i, NodeId filterType, boolean includeSubtypes, int nodeClassMask) {
+            return BrowseIndex.matches(referenceTypeIds[i], filterType, includeSubtypes) &&
+                (nodeClassMask == 0 || (nodeClassMask & nodeClasses[i].getValue()) != 0);
+        }
+
+        /**
+         * @return whether every child passes the filter, so a page is a plain slice of the children.
+         */
+        boolean matchesAll(NodeId filterType, boolean includeSubtypes, int nodeClassMask) {
+            if (nodeClassMask != 0 && (nodeClassBits & ~nodeClassMask) != 0) {
+                return false;
+            }
+
+            for (NodeId referenceType : referenceTypes) {
+                if (!BrowseIndex.matches(referenceType, filterType, includeSubtypes)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,449 @@
+package org.intelligentindustry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import org.eclipse.milo.opcua.sdk.server.AbstractLifecycle;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.model.nodes.objects.BaseEventTypeNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exports value changes of watched variables and every event posted on the server's EventBus to local sinks.
+ * <p>
+ * Producers only copy references into a {@link RingBuffer}; a background thread drains it in batches of up
+ * to {@code batch-size} records, formats each as one line of line protocol and hands it to every sink:
+ * <pre>
+ * opcua_value,node=ns\=1;s\=.../RunningSpeed value=12.5 1700000000000000000
+ * opcua_event,source=ns\=1;s\=...,type=i\=2041 severity=2i,source_name="Conveyor-1",message="Object Dropoff" 1700...
+ * </pre>
+ * Sinks are flushed every {@code flush-ms}. When the buffer is full a record is dropped and counted, or - with the
+ * {@code block} overflow policy - the producer waits for room, which trades write latency for completeness.
+ * Sinks are a rolling gzip file, a TCP connection and stdout.
+ */
+public class ChangeExport extends AbstractLifecycle {
+
+    public static final String SINKS = "demo.export.sinks";
+    public static final String BUFFER_SIZE = "demo.export.buffer-size";
+    public static final String BATCH_SIZE = "demo.export.batch-size";
+    public static final String FLUSH_MILLIS = "demo.export.flush-ms";
+    public static final String OVERFLOW = "demo.export.overflow";
+    public static final String FILE = "demo.export.file";
+    public static final String MAX_FILE_BYTES = "demo.export.max-file-bytes";
+    public static final String MAX_FILES = "demo.export.max-files";
+    public static final String TCP_HOST = "demo.export.tcp.host";
+    public static final String TCP_PORT = "demo.export.tcp.port";
+
+    private static final long TCP_RETRY_MILLIS = 5000;
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long DROP_REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final RingBuffer<ExportRecord> buffer;
+    private final OpcUaServer server;
+    private final ServerMetrics metrics;
+    private final List<SinkFactory> sinkFactories;
+    private final int batchSize;
+    private final long flushNanos;
+    private final boolean block;
+
+    private final StringBuilder line = new StringBuilder(256);
+
+    private volatile boolean running;
+    private volatile Thread exportThread;
+
+    private List<ExportSink> sinks;
+    private long lastReportedDrops;
+    private long lastDropReportNanos;
+
+    public ChangeExport(
+        OpcUaServer server,
+        ServerMetrics metrics,
+        List<SinkFactory> sinkFactories,
+        int bufferSize,
+        int batchSize,
+        long flushMillis,
+        boolean block) {
+
+        this.buffer = new RingBuffer<>(bufferSize, ExportRecord::new, ExportRecord::clear);
+        this.server = server;
+        this.metrics = metrics;
+        this.sinkFactories = sinkFactories;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushMillis));
+        this.block = block;
+    }
+
+    /**
+     * @return the configured export, or {@code null} if no sinks are configured.
+     */
+    public static ChangeExport fromSettings(OpcUaServer server, ServerMetrics metrics) {
+        List<SinkFactory> sinkFactories = new ArrayList<>();
+
+        for (String sink : Settings.getString(SINKS, "").split(",")) {
+            switch (sink.trim()) {
+                case "":
+                    break;
+                case "file": {
+                    File file = new File(Settings.getString(FILE, "export/changes.lp.gz"));
+                    long maxFileBytes = Settings.getLong(MAX_FILE_BYTES, 256L * 1024 * 1024);
+                    int maxFiles = Settings.getInt(MAX_FILES, 5);
+                    sinkFactories.add(() -> new RollingFileSink(file, maxFileBytes, maxFiles, true));
+                    break;
+                }
+                case "tcp": {
+                    String host = Settings.getString(TCP_HOST, "127.0.0.1");
+                    int port = Settings.getInt(TCP_PORT, 8094);
+                    sinkFactories.add(() -> new TcpLineSink(host, port, TCP_RETRY_MILLIS));
+                    break;
+                }
+                case "stdout":
+                    sinkFactories.add(() -> new StdoutSink(System.out));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown export sink '" + sink.trim() + "' in " + SINKS);
+            }
+        }
+
+        if (sinkFactories.isEmpty()) {
+            return null;
+        }
+
+        String overflow = Settings.getString(OVERFLOW, "drop");
+
+        if (!overflow.equals("drop") && !overflow.equals("block")) {
+            throw new IllegalArgumentException("Unknown overflow policy '" + overflow + "' in " + OVERFLOW);
+        }
+
+        return new ChangeExport(
+            server,
+            metrics,
+            sinkFactories,
+            Settings.getInt(BUFFER_SIZE, 65536),
+            Settings.getInt(BATCH_SIZE, 1024),
+            Settings.getLong(FLUSH_MILLIS, 1000),
+            overflow.equals("block")
+        );
+    }
+
+    /**
+     * Export every Value change of {@code node} from now on.
+     */
+    public void watch(UaVariableNode node) {
+        node.addAttributeObserver((n, attributeId, value) -> {
+            if (attributeId == AttributeId.Value && value instanceof DataValue) {
+                DataValue dataValue = (DataValue) value;
+                DateTime sourceTime = dataValue.getSourceTime();
+
+                offer(
+                    ExportRecord.VALUE,
+                    sourceTime != null && !sourceTime.isNull() ? sourceTime.getJavaTime() : System.currentTimeMillis(),
+                    n.getNodeId(),
+                    dataValue.getValue().getValue(),
+                    dataValue.getStatusCode(),
+                    null,
+                    null,
+                    0
+                );
+            }
+        });
+    }
+
+    /**
+     * Called by the EventBus for every event posted on the server. Event nodes may be pooled and reused as soon as
+     * this returns, so only their field values are kept. Offering is thread-safe, so posters are not serialized.
+     */
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onEvent(BaseEventTypeNode event) {
+        DateTime time = event.getTime();
+        LocalizedText message = event.getMessage();
+
+        offer(
+            ExportRecord.EVENT,
+            time != null && !time.isNull() ? time.getJavaTime() : System.currentTimeMillis(),
+            event.getSourceNode(),
+            message != null ? message.getText() : null,
+            null,
+            event.getEventType(),
+            event.getSourceName(),
+            event.getSeverity() != null ? event.getSeverity().intValue() : 0
+        );
+    }
+
+    public long getDroppedCount() {
+        return metrics.getExportDropped();
+    }
+
+    @Override
+    protected void onStartup() {
+        List<ExportSink> opened = new ArrayList<>();
+
+        for (SinkFactory factory : sinkFactories) {
+            try {
+                opened.add(factory.open());
+            } catch (IOException e) {
+                throw new IllegalStateException("could not open export sink: " + e.getMessage(), e);
+            }
+        }
+
+        sinks = opened;
+        running = true;
+
+        exportThread = new Thread(this::exportLoop, "change-export");
+        exportThread.setDaemon(true);
+        exportThread.start();
+
+        //noinspection UnstableApiUsage
+        server.getEventBus().register(this);
+
+        logger.info(
+            "Exporting changes and events to {} sinks (buffer of {} records, batches of {}, {} on overflow)",
+            sinks.size(), buffer.capacity(), batchSize, block ? "block" : "drop"
+        );
+    }
+
+    @Override
+    protected void onShutdown() {
+        //noinspection UnstableApiUsage
+        server.getEventBus().unregister(this);
+
+        running = false;
+
+        try {
+            exportThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void offer(
+        char kind,
+        long timestamp,
+        NodeId nodeId,
+        Object value,
+        StatusCode status,
+        NodeId eventType,
+        String sourceName,
+        int severity) {
+
+        long position;
+
+        while ((position = buffer.claim()) < 0) {
+            if (!block || !running) {
+                metrics.exportDropped();
+                return;
+            }
+
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+
+        buffer.get(position).set(kind, timestamp, nodeId, value, status, eventType, sourceName, severity);
+        buffer.publish(position);
+    }
+
+    private void exportLoop() {
+        long lastFlushNanos = System.nanoTime();
+
+        try {
+            while (running) {
+                int drained = buffer.drain(this::write, batchSize);
+                metrics.exported(drained);
+
+                long now = System.nanoTime();
+
+                if (now - lastFlushNanos >= flushNanos) {
+                    flush();
+                    reportDrops();
+                    lastFlushNanos = now;
+                }
+
+                if (drained == 0) {
+                    LockSupport.parkNanos(Math.min(flushNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+                }
+            }
+
+            int drained;
+            while ((drained = buffer.drain(this::write, batchSize)) > 0) {
+                // export what is left before closing
+                metrics.exported(drained);
+            }
+
+            flush();
+        } catch (Throwable t) {
+            // producers drop from now on instead of waiting for room that never comes
+            running = false;
+            logger.error("Change export stopped, dropping further records: {}", t.getMessage(), t);
+        } finally {
+            for (ExportSink sink : sinks) {
+                try {
+                    sink.close();
+                } catch (IOException e) {
+                    logger.warn("Could not close export sink: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void write(ExportRecord record) {
+        line.setLength(0);
+
+        if (record.getKind() == ExportRecord.VALUE) {
+            line.append("opcua_value,node=");
+            appendTag(record.getNodeId());
+            line.append(" value=");
+            appendField(record.getValue());
+
+            StatusCode status = record.getStatus();
+
+            if (status != null && !status.isGood()) {
+                line.append(",status=").append(status.getValue()).append('i');
+            }
+        } else {
+            line.append("opcua_event,source=");
+            appendTag(record.getNodeId());
+            line.append(",type=");
+            appendTag(record.getEventType());
+            line.append(" severity=").append(record.getSeverity()).append('i');
+            line.append(",source_name=");
+            appendString(record.getSourceName());
+            line.append(",message=");
+            appendString(record.getValue());
+        }
+
+        line.append(' ').append(TimeUnit.MILLISECONDS.toNanos(record.getTimestamp()));
+
+        for (ExportSink sink : sinks) {
+            try {
+                sink.write(line);
+            } catch (IOException e) {
+                logger.warn("Could not write to export sink: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void appendTag(NodeId nodeId) {
+        String value = nodeId != null ? nodeId.toParseableString() : "-";
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == ',' || c == ' ' || c == '=') {
+                line.append('\\');
+            }
+            line.append(c);
+        }
+    }
+
+    private void appendField(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                // line protocol has no literal for these
+                appendString(value);
+            } else {
+                line.append(d);
+            }
+        } else if (value instanceof Number) {
+            line.append(((Number) value).longValue()).append('i');
+        } else if (value instanceof Boolean) {
+            line.append(value);
+        } else {
+            appendString(value);
+        }
+    }
+
+    private void appendString(Object value) {
+        String text = value != null ? value.toString() : "";
+
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                line.append('\\');
+            }
+            line.append(c == '\n' ? ' ' : c);
+        }
+        line.append('"');
+    }
+
+    private void flush() {
+        for (ExportSink sink : sinks) {
+            try {
+                sink.flush();
+            } catch (IOException e) {
+                logger.warn("Could not flush export sink: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void reportDrops() {
+        long now = System.nanoTime();
+
+        if (now - lastDropReportNanos < DROP_REPORT_INTERVAL_NANOS) {
+            return;
+        }
+
+        lastDropReportNanos = now;
+
+        long drops = metrics.getExportDropped();
+
+        if (drops > lastReportedDrops) {
+            logger.warn("Export buffer full, dropped {} records ({} total)", drops - lastReportedDrops, drops);
+            lastReportedDrops = drops;
+        }
+    }
+
+    /**
+     * Opens a sink on the export thread's behalf when the export starts.
+     */
+    public interface SinkFactory {
+
+        ExportSink open() throws IOException;
+
+    }
+
+    private static final class StdoutSink implements ExportSink {
+
+        private final PrintStream out;
+
+        private StdoutSink(PrintStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(CharSequence line) {
+            out.append(line).append('\n');
+        }
+
+        @Override
+        public void flush() {
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+            out.flush();
+        }
+
+    }
+
+}
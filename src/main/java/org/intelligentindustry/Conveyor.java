@@ -0,0 +1,68 @@
+package org.intelligentindustry;
+
+import org.eclipse.milo.opcua.sdk.server.nodes.UaMethodNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaObjectNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+
+/**
+ * A single ConveyorType instance and the instance nodes that belong to it.
+ */
+public class Conveyor {
+
+    private final int number;
+    private final UaObjectNode objectNode;
+    private final UaVariableNode motors;
+    private final UaVariableNode runningSpeed;
+    private final UaVariableNode dropoffs;
+    private final UaMethodNode startMethod;
+
+    public Conveyor(
+        int number,
+        UaObjectNode objectNode,
+        UaVariableNode motors,
+        UaVariableNode runningSpeed,
+        UaVariableNode dropoffs,
+        UaMethodNode startMethod) {
+
+        this.number = number;
+        this.objectNode = objectNode;
+        this.motors = motors;
+        this.runningSpeed = runningSpeed;
+        this.dropoffs = dropoffs;
+        this.startMethod = startMethod;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public String getName() {
+        return objectNode.getBrowseName().getName();
+    }
+
+    public NodeId getNodeId() {
+        return objectNode.getNodeId();
+    }
+
+    public UaObjectNode getObjectNode() {
+        return objectNode;
+    }
+
+    public UaVariableNode getMotors() {
+        return motors;
+    }
+
+    public UaVariableNode getRunningSpeed() {
+        return runningSpeed;
+    }
+
+    public UaVariableNode getDropoffs() {
+        return dropoffs;
+    }
+
+    public UaMethodNode getStartMethod() {
+        return startMethod;
+    }
+
+}
@@ -0,0 +1,47 @@
+package org.intelligentindustry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+
+/**
+ * The conveyors instantiated by {@link DemoNamespace}, addressable by number and by object NodeId.
+ */
+public class ConveyorFleet {
+
+    private final Conveyor[] conveyors;
+    private final Map<NodeId, Conveyor> byNodeId;
+
+    public ConveyorFleet(Conveyor[] conveyors) {
+        this.conveyors = conveyors;
+        this.byNodeId = new ConcurrentHashMap<>(conveyors.length * 2);
+
+        for (Conveyor conveyor : conveyors) {
+            byNodeId.put(conveyor.getNodeId(), conveyor);
+        }
+    }
+
+    public int size() {
+        return conveyors.length;
+    }
+
+    /**
+     * @param index zero-based position in the fleet.
+     */
+    public Conveyor get(int index) {
+        return conveyors[index];
+    }
+
+    public Conveyor find(NodeId objectId) {
+        return byNodeId.get(objectId);
+    }
+
+    public List<Conveyor> getConveyors() {
+        return Collections.unmodifiableList(Arrays.asList(conveyors));
+    }
+
+}
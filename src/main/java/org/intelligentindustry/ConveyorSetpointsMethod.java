@@ -0,0 +1,172 @@
+package org.intelligentindustry;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.milo.opcua.sdk.core.ValueRanks;
+import org.eclipse.milo.opcua.sdk.server.api.methods.AbstractMethodInvocationHandler;
+import org.eclipse.milo.opcua.sdk.server.api.methods.InvalidArgumentException;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaMethodNode;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.structured.Argument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+/**
+ * conveyor_setpoints() on the IntelligentIndustry folder: target speeds and start/stop commands for many conveyors
+ * in one call.
+ * <p>
+ * The whole batch is validated first. If any entry is invalid nothing is applied, {@code applied} is false and
+ * {@code results} tells which entries were rejected. Conveyors unknown to the fleet or not yet registered with the
+ * simulation engine are rejected here too, so a batch is never applied in part. Otherwise the batch is handed to the
+ * simulation engine in one step, see {@link SimulationEngine#apply(Conveyor[], double[], int[])}.
+ */
+public class ConveyorSetpointsMethod extends AbstractMethodInvocationHandler {
+
+    private static final UInteger[] ONE_DIMENSION = new UInteger[]{uint(0)};
+
+    public static final Argument CONVEYORS = new Argument(
+        "conveyors",
+        Identifiers.NodeId,
+        ValueRanks.OneDimension,
+        ONE_DIMENSION,
+        new LocalizedText("Object NodeIds of the conveyors")
+    );
+
+    public static final Argument TARGET_SPEEDS = new Argument(
+        "target_speeds",
+        Identifiers.Double,
+        ValueRanks.OneDimension,
+        ONE_DIMENSION,
+        new LocalizedText("Plateau speed per conveyor, NaN to keep the current one; empty for no speed changes")
+    );
+
+    public static final Argument COMMANDS = new Argument(
+        "commands",
+        Identifiers.Int32,
+        ValueRanks.OneDimension,
+        ONE_DIMENSION,
+        new LocalizedText("Command per conveyor: 0 none, 1 start, 2 stop, 3 abort; empty for no commands")
+    );
+
+    public static final Argument APPLIED = new Argument(
+        "applied",
+        Identifiers.Boolean,
+        ValueRanks.Scalar,
+        null,
+        new LocalizedText("Whether the batch was applied; false if any entry was rejected")
+    );
+
+    public static final Argument RESULTS = new Argument(
+        "results",
+        Identifiers.StatusCode,
+        ValueRanks.OneDimension,
+        ONE_DIMENSION,
+        new LocalizedText("The result per conveyor")
+    );
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ConveyorFleet fleet;
+    private final SimulationEngine simulationEngine;
+
+    public ConveyorSetpointsMethod(UaMethodNode node, ConveyorFleet fleet, SimulationEngine simulationEngine) {
+        super(node);
+        this.fleet = fleet;
+        this.simulationEngine = simulationEngine;
+    }
+
+    @Override
+    public Argument[] getInputArguments() {
+        return new Argument[]{CONVEYORS, TARGET_SPEEDS, COMMANDS};
+    }
+
+    @Override
+    public Argument[] getOutputArguments() {
+        return new Argument[]{APPLIED, RESULTS};
+    }
+
+    @Override
+    protected Variant[] invoke(InvocationContext invocationContext, Variant[] inputValues) throws UaException {
+        long startNanos = System.nanoTime();
+
+        NodeId[] conveyorIds = inputValues[0].getValue() instanceof NodeId[] ?
+            (NodeId[]) inputValues[0].getValue() : new NodeId[0];
+        Double[] targetSpeeds = inputValues[1].getValue() instanceof Double[] ?
+            (Double[]) inputValues[1].getValue() : new Double[0];
+        Integer[] commands = inputValues[2].getValue() instanceof Integer[] ?
+            (Integer[]) inputValues[2].getValue() : new Integer[0];
+
+        int count = conveyorIds.length;
+
+        if ((targetSpeeds.length != 0 && targetSpeeds.length != count) ||
+            (commands.length != 0 && commands.length != count)) {
+
+            throw new InvalidArgumentException(new StatusCode[]{
+                StatusCode.GOOD,
+                targetSpeeds.length != 0 && targetSpeeds.length != count ?
+                    new StatusCode(StatusCodes.Bad_InvalidArgument) : StatusCode.GOOD,
+                commands.length != 0 && commands.length != count ?
+                    new StatusCode(StatusCodes.Bad_InvalidArgument) : StatusCode.GOOD
+            });
+        }
+
+        Conveyor[] conveyors = new Conveyor[count];
+        double[] speeds = new double[targetSpeeds.length];
+        int[] codes = new int[commands.length];
+        StatusCode[] results = new StatusCode[count];
+        Set<NodeId> seen = new HashSet<>();
+        boolean valid = true;
+
+        for (int i = 0; i < count; i++) {
+            conveyors[i] = conveyorIds[i] != null ? fleet.find(conveyorIds[i]) : null;
+
+            if (i < speeds.length) {
+                speeds[i] = targetSpeeds[i] != null ? targetSpeeds[i] : Double.NaN;
+            }
+            if (i < codes.length) {
+                codes[i] = commands[i] != null ? commands[i] : SimulationEngine.COMMAND_NONE;
+            }
+
+            StatusCode status = StatusCode.GOOD;
+
+            if (conveyors[i] == null || !simulationEngine.isRegistered(conveyors[i])) {
+                status = new StatusCode(StatusCodes.Bad_NodeIdUnknown);
+            } else if (!seen.add(conveyorIds[i])) {
+                status = new StatusCode(StatusCodes.Bad_InvalidArgument);
+            } else if (i < speeds.length && (speeds[i] < 0 || Double.isInfinite(speeds[i]))) {
+                status = new StatusCode(StatusCodes.Bad_OutOfRange);
+            } else if (i < codes.length &&
+                (codes[i] < SimulationEngine.COMMAND_NONE || codes[i] > SimulationEngine.COMMAND_ABORT)) {
+                status = new StatusCode(StatusCodes.Bad_InvalidArgument);
+            }
+
+            results[i] = status;
+            valid &= status.isGood();
+        }
+
+        if (valid) {
+            // every conveyor was checked to be registered above, so apply() takes each entry
+            simulationEngine.apply(conveyors, speeds, codes);
+            simulationEngine.awaitAcknowledge();
+        }
+
+        logger.info(
+            "{} setpoints on {} {} in {} us",
+            count, invocationContext.getObjectId(), valid ? "applied" : "rejected",
+            (System.nanoTime() - startNanos) / 1000
+        );
+
+        return new Variant[]{new Variant(valid), new Variant(results)};
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.intelligentindustry;
+
+import org.eclipse.milo.opcua.sdk.core.ValueRanks;
+import org.eclipse.milo.opcua.sdk.server.api.methods.AbstractMethodInvocationHandler;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaMethodNode;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.structured.Argument;
+
+
+public class ConveyorStopMethod extends AbstractMethodInvocationHandler {
+
+    public static final Argument ABORT = new Argument(
+        "abort",
+        Identifiers.Boolean,
+        ValueRanks.Scalar,
+        null,
+        new LocalizedText("Stop immediately instead of ramping down")
+    );
+
+    public static final Argument STOP_RESULT = new Argument(
+        "stop_result",
+        Identifiers.String,
+        ValueRanks.Any,
+        null,
+        new LocalizedText("The result of the stop command")
+    );
+
+    private final Conveyor conveyor;
+    private final SimulationEngine simulationEngine;
+
+    public ConveyorStopMethod(UaMethodNode node, Conveyor conveyor, SimulationEngine simulationEngine) {
+        super(node);
+        this.conveyor = conveyor;
+        this.simulationEngine = simulationEngine;
+    }
+
+    @Override
+    public Argument[] getInputArguments() {
+        return new Argument[]{ABORT};
+    }
+
+    @Override
+    public Argument[] getOutputArguments() {
+        return new Argument[]{STOP_RESULT};
+    }
+
+    @Override
+    protected Variant[] invoke(InvocationContext invocationContext, Variant[] inputValues) throws UaException {
+        boolean abort = Boolean.TRUE.equals(inputValues[0].getValue());
+
+        boolean stopped = abort ?
+            simulationEngine.abort(conveyor) :
+            simulationEngine.stop(conveyor);
+
+        if (stopped) {
+            simulationEngine.awaitAcknowledge();
+        }
+
+        return new Variant[]{new Variant(stopped ? "Stop succeeded." : "Conveyor is not running.")};
+    }
+
+}
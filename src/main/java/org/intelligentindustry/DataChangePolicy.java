@@ -0,0 +1,305 @@
+package org.intelligentindustry;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+
+import org.eclipse.milo.opcua.sdk.server.AbstractLifecycle;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.UaNodeManager;
+import org.eclipse.milo.opcua.sdk.server.items.BaseMonitoredItem;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.sdk.server.subscriptions.Subscription;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.serialization.UaRequestMessage;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExtensionObject;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.DataChangeTrigger;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.DeadbandType;
+import org.eclipse.milo.opcua.stack.core.types.structured.CreateMonitoredItemsRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.DataChangeFilter;
+import org.eclipse.milo.opcua.stack.core.types.structured.ModifyMonitoredItemsRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemCreateRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemModifyRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoringParameters;
+import org.eclipse.milo.opcua.stack.core.types.structured.Range;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.eclipse.milo.opcua.stack.server.UaStackServer;
+import org.eclipse.milo.opcua.stack.server.services.ServiceRequest;
+import org.eclipse.milo.opcua.stack.server.services.ServiceRequestHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+/**
+ * Applies deadband and coalescing policy to monitored items on the Value of {@link DemoNamespace} variables.
+ * <p>
+ * The SDK evaluates absolute deadbands but rejects percent deadbands outright. This policy wraps the
+ * CreateMonitoredItems and ModifyMonitoredItems services and turns a percent deadband into the equivalent absolute
+ * one, using the EURange property of the monitored variable, before the SDK sees the request. Variables without an
+ * EURange keep the percent filter and get Bad_MonitoredItemFilterUnsupported as before.
+ * <p>
+ * Optionally, items that ask for no filter get a default percent deadband, and every item is coalesced: its queue
+ * is forced to a single slot that discards the oldest value, so each publish carries only the latest change.
+ */
+public class DataChangePolicy extends AbstractLifecycle {
+
+    public static final String COALESCE = "demo.subscription.coalesce";
+    public static final String DEFAULT_PERCENT_DEADBAND = "demo.subscription.default-percent-deadband";
+
+    private static final QualifiedName EU_RANGE = new QualifiedName(0, "EURange");
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Map<String, ServiceRequestHandler> createHandlers = new HashMap<>();
+    private final Map<String, ServiceRequestHandler> modifyHandlers = new HashMap<>();
+
+    private final OpcUaServer server;
+    private final UaNodeManager nodeManager;
+    private final boolean coalesce;
+    private final double defaultPercentDeadband;
+
+    public DataChangePolicy(
+        OpcUaServer server,
+        UaNodeManager nodeManager,
+        boolean coalesce,
+        double defaultPercentDeadband) {
+
+        this.server = server;
+        this.nodeManager = nodeManager;
+        this.coalesce = coalesce;
+        this.defaultPercentDeadband = defaultPercentDeadband;
+    }
+
+    public static DataChangePolicy fromSettings(OpcUaServer server, UaNodeManager nodeManager) {
+        return new DataChangePolicy(
+            server,
+            nodeManager,
+            Settings.getBoolean(COALESCE, false),
+            Settings.getDouble(DEFAULT_PERCENT_DEADBAND, 0.0)
+        );
+    }
+
+    @Override
+    protected synchronized void onStartup() {
+        UaStackServer stackServer = server.getStackServer();
+        Set<String> paths = new LinkedHashSet<>();
+
+        server.getConfig().getEndpoints().forEach(endpoint -> paths.add(endpoint.getPath()));
+
+        for (String path : paths) {
+            ServiceRequestHandler create = stackServer.getServiceHandler(path, CreateMonitoredItemsRequest.TYPE_ID);
+            ServiceRequestHandler modify = stackServer.getServiceHandler(path, ModifyMonitoredItemsRequest.TYPE_ID);
+
+            if (create != null) {
+                createHandlers.put(path, create);
+                stackServer.addServiceHandler(path, CreateMonitoredItemsRequest.TYPE_ID, request ->
+                    delegate(create, request, rewrite((CreateMonitoredItemsRequest) request.getRequest())));
+            }
+            if (modify != null) {
+                modifyHandlers.put(path, modify);
+                stackServer.addServiceHandler(path, ModifyMonitoredItemsRequest.TYPE_ID, request ->
+                    delegate(modify, request, rewrite((ModifyMonitoredItemsRequest) request.getRequest())));
+            }
+        }
+
+        logger.info(
+            "Data change policy on {}: percent deadbands, coalesce={}, default percent deadband={}",
+            paths, coalesce, defaultPercentDeadband
+        );
+    }
+
+    @Override
+    protected synchronized void onShutdown() {
+        UaStackServer stackServer = server.getStackServer();
+
+        createHandlers.forEach((path, handler) ->
+            stackServer.addServiceHandler(path, CreateMonitoredItemsRequest.TYPE_ID, handler));
+        modifyHandlers.forEach((path, handler) ->
+            stackServer.addServiceHandler(path, ModifyMonitoredItemsRequest.TYPE_ID, handler));
+
+        createHandlers.clear();
+        modifyHandlers.clear();
+    }
+
+    private CreateMonitoredItemsRequest rewrite(CreateMonitoredItemsRequest request) {
+        MonitoredItemCreateRequest[] items = request.getItemsToCreate();
+
+        if (items == null) {
+            return request;
+        }
+
+        MonitoredItemCreateRequest[] rewritten = new MonitoredItemCreateRequest[items.length];
+        boolean changed = false;
+
+        for (int i = 0; i < items.length; i++) {
+            MonitoredItemCreateRequest item = items[i];
+            MonitoringParameters parameters = rewrite(item.getItemToMonitor(), item.getRequestedParameters());
+
+            rewritten[i] = parameters == item.getRequestedParameters() ? item : new MonitoredItemCreateRequest(
+                item.getItemToMonitor(),
+                item.getMonitoringMode(),
+                parameters
+            );
+            changed |= rewritten[i] != item;
+        }
+
+        return !changed ? request : new CreateMonitoredItemsRequest(
+            request.getRequestHeader(),
+            request.getSubscriptionId(),
+            request.getTimestampsToReturn(),
+            rewritten
+        );
+    }
+
+    private ModifyMonitoredItemsRequest rewrite(ModifyMonitoredItemsRequest request) {
+        MonitoredItemModifyRequest[] items = request.getItemsToModify();
+        Subscription subscription = server.getSubscriptions().get(request.getSubscriptionId());
+
+        if (items == null || subscription == null) {
+            return request;
+        }
+
+        Map<?, BaseMonitoredItem<?>> monitoredItems = subscription.getMonitoredItems();
+        MonitoredItemModifyRequest[] rewritten = new MonitoredItemModifyRequest[items.length];
+        boolean changed = false;
+
+        for (int i = 0; i < items.length; i++) {
+            MonitoredItemModifyRequest item = items[i];
+            BaseMonitoredItem<?> monitoredItem = monitoredItems.get(item.getMonitoredItemId());
+            MonitoringParameters parameters = monitoredItem == null ?
+                item.getRequestedParameters() :
+                rewrite(monitoredItem.getReadValueId(), item.getRequestedParameters());
+
+            rewritten[i] = parameters == item.getRequestedParameters() ? item :
+                new MonitoredItemModifyRequest(item.getMonitoredItemId(), parameters);
+            changed |= rewritten[i] != item;
+        }
+
+        return !changed ? request : new ModifyMonitoredItemsRequest(
+            request.getRequestHeader(),
+            request.getSubscriptionId(),
+            request.getTimestampsToReturn(),
+            rewritten
+        );
+    }
+
+    private MonitoringParameters rewrite(ReadValueId readValueId, MonitoringParameters parameters) {
+        if (parameters == null || !AttributeId.Value.isEqual(readValueId.getAttributeId())) {
+            return parameters;
+        }
+
+        UaNode node = nodeManager.getNode(readValueId.getNodeId()).orElse(null);
+
+        if (!(node instanceof UaVariableNode)) {
+            return parameters;
+        }
+
+        ExtensionObject filter = parameters.getFilter();
+        boolean unfiltered = filter == null || filter.isNull();
+        Object decoded = unfiltered ? null : filter.decodeOrNull(server.getSerializationContext());
+
+        if (decoded instanceof DataChangeFilter) {
+            DataChangeFilter dataChangeFilter = (DataChangeFilter) decoded;
+            Double percent = dataChangeFilter.getDeadbandValue();
+
+            // out-of-range percentages are left for the SDK to reject
+            if (dataChangeFilter.getDeadbandType().intValue() == DeadbandType.Percent.getValue() &&
+                percent != null && percent >= 0.0 && percent <= 100.0) {
+
+                Range range = euRange((UaVariableNode) node);
+
+                if (range != null) {
+                    filter = absoluteDeadband(dataChangeFilter.getTrigger(), percent, range);
+                }
+            }
+        } else if (unfiltered && defaultPercentDeadband > 0) {
+            Range range = euRange((UaVariableNode) node);
+
+            if (range != null) {
+                filter = absoluteDeadband(DataChangeTrigger.StatusValue, defaultPercentDeadband, range);
+            }
+        }
+
+        if (filter == parameters.getFilter() && !coalesce) {
+            return parameters;
+        }
+
+        return new MonitoringParameters(
+            parameters.getClientHandle(),
+            parameters.getSamplingInterval(),
+            filter,
+            coalesce ? uint(1) : parameters.getQueueSize(),
+            coalesce ? Boolean.TRUE : parameters.getDiscardOldest()
+        );
+    }
+
+    private ExtensionObject absoluteDeadband(DataChangeTrigger trigger, double percent, Range range) {
+        double deadband = percent / 100.0 * (range.getHigh() - range.getLow());
+
+        return ExtensionObject.encode(
+            server.getSerializationContext(),
+            new DataChangeFilter(trigger, uint(DeadbandType.Absolute.getValue()), deadband)
+        );
+    }
+
+    private Range euRange(UaVariableNode node) {
+        UaNode property = node.findNode(EU_RANGE, reference ->
+            reference.isForward() && reference.getReferenceTypeId().equals(Identifiers.HasProperty)).orElse(null);
+
+        if (!(property instanceof UaVariableNode)) {
+            return null;
+        }
+
+        Object value = ((UaVariableNode) property).getValue().getValue().getValue();
+
+        if (value instanceof ExtensionObject) {
+            value = ((ExtensionObject) value).decodeOrNull(server.getSerializationContext());
+        }
+
+        if (value instanceof Range && ((Range) value).getLow() != null && ((Range) value).getHigh() != null) {
+            return (Range) value;
+        }
+
+        return null;
+    }
+
+    private static void delegate(ServiceRequestHandler handler, ServiceRequest original, UaRequestMessage rewritten)
+        throws UaException {
+
+        if (rewritten == original.getRequest()) {
+            handler.handle(original);
+            return;
+        }
+
+        ServiceRequest request = new ServiceRequest(
+            original.getServer(),
+            rewritten,
+            original.getEndpoint(),
+            original.getSecureChannelId(),
+            original.getClientAddress(),
+            original.getClientCertificateBytes()
+        );
+
+        request.getFuture().whenComplete((response, failure) -> {
+            if (response != null) {
+                original.setResponse(response);
+            } else {
+                Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+
+                original.setServiceFault(cause instanceof UaException ?
+                    (UaException) cause : new UaException(StatusCodes.Bad_InternalError, cause));
+            }
+        });
+
+        handler.handle(request);
+    }
+
+}
@@ -1,8 +1,23 @@
 package org.intelligentindustry;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.Random;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 import org.eclipse.milo.opcua.sdk.core.AccessLevel;
 import org.eclipse.milo.opcua.sdk.core.Reference;
@@ -11,7 +26,7 @@ import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
 import org.eclipse.milo.opcua.sdk.server.api.DataItem;
 import org.eclipse.milo.opcua.sdk.server.api.ManagedNamespaceWithLifecycle;
 import org.eclipse.milo.opcua.sdk.server.api.MonitoredItem;
-import org.eclipse.milo.opcua.sdk.server.model.nodes.objects.BaseEventTypeNode;
+import org.eclipse.milo.opcua.sdk.server.api.methods.MethodInvocationHandler;
 import org.eclipse.milo.opcua.sdk.server.model.nodes.objects.ServerTypeNode;
 import org.eclipse.milo.opcua.sdk.server.nodes.UaFolderNode;
 import org.eclipse.milo.opcua.sdk.server.nodes.UaMethodNode;
@@ -23,43 +38,203 @@ import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilters;
 import org.eclipse.milo.opcua.sdk.server.util.SubscriptionModel;
 import org.eclipse.milo.opcua.stack.core.BuiltinReferenceType;
 import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
 import org.eclipse.milo.opcua.stack.core.UaException;
-import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
 import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
-import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExtensionObject;
 import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
 import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
 import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
 import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadDetails;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.Range;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.ubyte;
 
-import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.ushort;
-
 public class DemoNamespace extends ManagedNamespaceWithLifecycle {
 
     public static final String NAMESPACE_URI = "urn:intelligentindustry:demo-server";
+    public static final String METRICS_REFRESH_MILLIS = "demo.metrics.refresh-ms";
+    public static final String EVENT_RATE = "demo.events.rate";
+
     private final SubscriptionModel subscriptionModel;
+    private final PushSubscriptionModel pushSubscriptionModel;
     private final Random random = new Random();
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private volatile Thread eventThread;
     private volatile boolean keepPostingEvents = true;
 
-    private UaObjectNode myConveyor ;
-    private UaVariableNode runningSpeedType;
-    
+    private final FleetConfig fleetConfig;
+    private final PlantModel plantModel;
+    private final SimulationEngine simulationEngine;
+    private final AlarmEngine alarmEngine;
+    private final IngestPort ingestPort;
+    private final ChangeExport changeExport;
+    private final ReplayEngine replayEngine;
+    private final BrowseIndex browseIndex;
+    private final AdmissionControl admissionControl;
+    private final DerivedVariables derivedVariables;
+    private final AuditLog auditLog;
+    private final HistoryStore historyStore;
+    private final VirtualConveyors virtualConveyors;
+    private final ServerMetrics metrics;
+    private final EventEmitter eventEmitter;
+    private final EventEmitter.Template conveyorStartedEvent;
+    private final EventEmitter.Template objectDropoffEvent;
+    private final List<Runnable> diagnosticUpdates = new CopyOnWriteArrayList<>();
+    private volatile ConveyorFleet fleet;
+    private Conveyor myConveyor;
+
     public DemoNamespace(OpcUaServer server) {
+        this(server, FleetConfig.fromSettings());
+    }
+
+    public DemoNamespace(OpcUaServer server, FleetConfig fleetConfig) {
         super(server, NAMESPACE_URI);
 
+        this.fleetConfig = fleetConfig;
+
+        long loadNanos = System.nanoTime();
+
+        try {
+            plantModel = PlantModel.fromSettings(fleetConfig);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load plant model: " + e.getMessage(), e);
+        }
+
+        logger.info(
+            "Loaded plant model {} in {} ms: {} folders, {} conveyors",
+            plantModel.getSource(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadNanos),
+            plantModel.getFolderCount(), plantModel.getConveyorCount()
+        );
+
+        metrics = new ServerMetrics(server);
+
+        derivedVariables = DerivedVariables.fromSettings(metrics, SpeedProfile.fromSettings());
+
         subscriptionModel = new SubscriptionModel(server, this);
 
         getLifecycleManager().addLifecycle(subscriptionModel);
 
+        if (PushSubscriptionModel.isEnabled()) {
+            pushSubscriptionModel = new PushSubscriptionModel(
+                server,
+                getNodeManager(),
+                subscriptionModel,
+                nodeId -> derivedVariables != null && derivedVariables.isDerived(nodeId)
+            );
+
+            getLifecycleManager().addLifecycle(pushSubscriptionModel);
+        } else {
+            pushSubscriptionModel = null;
+        }
+
+        auditLog = AuditLog.fromSettings();
+
+        if (auditLog != null) {
+            getLifecycleManager().addLifecycle(auditLog);
+        }
+
+        historyStore = HistoryStore.fromSettings(server);
+
+        if (historyStore != null) {
+            getLifecycleManager().addLifecycle(historyStore);
+        }
+
+        virtualConveyors = VirtualConveyors.fromSettings(
+            server,
+            newNodeId("IntelligentIndustry"),
+            newNodeId("ObjectTypes/VirtualConveyorType"),
+            getNamespaceIndex().intValue()
+        );
+
+        if (virtualConveyors != null) {
+            getLifecycleManager().addLifecycle(virtualConveyors);
+        }
+
+        eventEmitter = new EventEmitter(server, metrics);
+        conveyorStartedEvent = eventEmitter.template("Conveyor Started Event", "Conveyor Started!", 2);
+        objectDropoffEvent = eventEmitter.template("Object Dropoff Event", "Object Dropoff", 2);
+
+        getLifecycleManager().addLifecycle(eventEmitter);
+
+        simulationEngine = SimulationEngine.fromSettings(metrics, objectDropoffEvent);
+
+        getLifecycleManager().addLifecycle(simulationEngine);
+
+        changeExport = ChangeExport.fromSettings(server, metrics);
+
+        if (changeExport != null) {
+            getLifecycleManager().addLifecycle(changeExport);
+        }
+
+        alarmEngine = AlarmEngine.fromSettings(server, eventEmitter, metrics, getNamespaceIndex().intValue());
+
+        if (alarmEngine != null) {
+            getLifecycleManager().addLifecycle(alarmEngine);
+        }
+
+        getLifecycleManager().addLifecycle(DataChangePolicy.fromSettings(server, getNodeManager()));
+
+        browseIndex = BrowseIndex.fromSettings(server, getNodeManager(), metrics);
+
+        if (browseIndex != null) {
+            getLifecycleManager().addLifecycle(browseIndex);
+        }
+
+        // added after the other service wrappers, so requests are turned away before any of them runs
+        admissionControl = AdmissionControl.fromSettings(server, metrics);
+
+        if (admissionControl != null) {
+            getLifecycleManager().addLifecycle(admissionControl);
+        }
+
+        MetricsEndpoint metricsEndpoint = MetricsEndpoint.fromSettings(metrics);
+
+        if (metricsEndpoint != null) {
+            getLifecycleManager().addLifecycle(metricsEndpoint);
+        }
+
         getLifecycleManager().addStartupTask(this::createAndAddNodes);
 
+        // added after the nodes are built, so these start once there is a fleet to feed
+        ingestPort = IngestPort.fromSettings(this::getFleet, virtualConveyors, metrics);
+
+        if (ingestPort != null) {
+            getLifecycleManager().addLifecycle(ingestPort);
+        }
+
+        replayEngine = ReplayEngine.fromSettings(this::getFleet, eventEmitter, metrics);
+
+        if (replayEngine != null) {
+            getLifecycleManager().addLifecycle(replayEngine);
+        }
+
+        getLifecycleManager().addLifecycle(new Lifecycle() {
+            private ScheduledFuture<?> refresh;
+
+            @Override
+            public void startup() {
+                long refreshMillis = Settings.getLong(METRICS_REFRESH_MILLIS, 1000);
+
+                refresh = getServer().getScheduledExecutorService().scheduleAtFixedRate(
+                    DemoNamespace.this::refreshDiagnostics,
+                    refreshMillis, refreshMillis, TimeUnit.MILLISECONDS
+                );
+            }
+
+            @Override
+            public void shutdown() {
+                refresh.cancel(false);
+            }
+        });
+
         getLifecycleManager().addLifecycle(new Lifecycle() {
             @Override
             public void startup() {
@@ -69,8 +244,10 @@ public class DemoNamespace extends ManagedNamespaceWithLifecycle {
             public void shutdown() {
                 try {
                     keepPostingEvents = false;
-                    eventThread.interrupt();
-                    eventThread.join();
+                    if (eventThread != null) {
+                        eventThread.interrupt();
+                        eventThread.join();
+                    }
                 } catch (InterruptedException ignored) {
                     // ignored
                 }
@@ -79,56 +256,47 @@ public class DemoNamespace extends ManagedNamespaceWithLifecycle {
         
     }
 
-    private void startBogusEventNotifier() {
+    private void startBogusEventNotifier(int rate) {
         // Set the EventNotifier bit on Server Node for Events.
         UaNode serverNode = getServer()
             .getAddressSpaceManager()
             .getManagedNode(Identifiers.Server)
             .orElse(null);
 
-            myConveyor.setEventNotifier(ubyte(1));
+            myConveyor.getObjectNode().setEventNotifier(ubyte(1));
         if (serverNode instanceof ServerTypeNode) {
             ((ServerTypeNode) serverNode).setEventNotifier(ubyte(1));
 
-            // Post a bogus Event every couple seconds
-            eventThread = new Thread(() -> {
+            // Post bogus events at the configured rate, cycling through the conveyors as sources
+            eventThread = VirtualThreads.newThread("bogus-event-poster", () -> {
+                long intervalNanos = Math.max(1, TimeUnit.SECONDS.toNanos(1) / rate);
+                long next = System.nanoTime();
+                int source = 0;
+
                 while (keepPostingEvents) {
-                    try {
-                        BaseEventTypeNode eventNode = getServer().getEventFactory().createEvent(
-                            newNodeId(UUID.randomUUID()),
-                            Identifiers.BaseEventType
-                        );
-
-
-                        eventNode.setBrowseName(new QualifiedName(1, "Object Dropoff Event"));
-                        eventNode.setDisplayName(LocalizedText.english("Object Dropoff Event"));
-                        eventNode.setEventId(ByteString.of(new byte[]{0, 1, 2, 3}));
-                        eventNode.setEventType(Identifiers.BaseEventType);
-                        eventNode.setSourceNode(myConveyor.getNodeId());
-                        eventNode.setSourceName(myConveyor.getDisplayName().getText());
-                        eventNode.setTime(DateTime.now());
-                        eventNode.setReceiveTime(DateTime.NULL_VALUE);
-                        eventNode.setMessage(LocalizedText.english("Object Dropoff"));
-                        eventNode.setSeverity(ushort(2));
-                        
-                        //noinspection UnstableApiUsage
-                        getServer().getEventBus().post(eventNode);
-
-                        eventNode.addReference(new Reference(eventNode.getNodeId(), Identifiers.HasEventSource, myConveyor.getNodeId().expanded(), true));
-
-                        eventNode.delete();
-                    } catch (Throwable e) {
-                        logger.error("Error creating EventNode: {}", e.getMessage(), e);
+                    long now = System.nanoTime();
+
+                    // don't try to catch up on more than a second of backlog
+                    if (now - next > TimeUnit.SECONDS.toNanos(1)) {
+                        next = now;
                     }
 
-                    try {
-                        //noinspection BusyWait
-                        Thread.sleep(2_000);
-                    } catch (InterruptedException ignored) {
-                        // ignored
+                    while (next <= now && keepPostingEvents) {
+                        Conveyor conveyor = fleet.get(source);
+                        source = (source + 1) % fleet.size();
+
+                        try {
+                            objectDropoffEvent.emit(conveyor.getNodeId(), conveyor.getName());
+                        } catch (Throwable e) {
+                            logger.error("Error posting event: {}", e.getMessage(), e);
+                        }
+
+                        next += intervalNanos;
                     }
+
+                    LockSupport.parkNanos(next - System.nanoTime());
                 }
-            }, "bogus-event-poster");
+            });
 
             eventThread.start();
         }
@@ -136,6 +304,8 @@ public class DemoNamespace extends ManagedNamespaceWithLifecycle {
 
    
     private void createAndAddNodes() {
+        long startNanos = System.nanoTime();
+
         // Create a "HelloWorld" folder and add it to the node manager
         NodeId folderNodeId = newNodeId("IntelligentIndustry");
 
@@ -156,11 +326,158 @@ public class DemoNamespace extends ManagedNamespaceWithLifecycle {
             false
         ));
 
+        if (browseIndex != null) {
+            browseIndex.link(Identifiers.ObjectsFolder, Identifiers.Organizes, folderNode);
+        }
 
-        addCustomObjectTypeAndInstance(folderNode);
+        UaObjectTypeNode conveyorTypeNode = addConveyorType();
+        addConveyorFleet(folderNode, conveyorTypeNode);
         addConveyorStartMethod(folderNode);
+        addConveyorSetpointsMethod(folderNode);
+        addDiagnosticsNodes(folderNode);
+
+        if (virtualConveyors != null) {
+            addVirtualConveyorType();
+
+            folderNode.addReference(new Reference(
+                folderNode.getNodeId(),
+                Identifiers.Organizes,
+                virtualConveyors.getRootNodeId().expanded(),
+                true
+            ));
+            childrenChanged(folderNode);
+        }
+
+        logger.info(
+            "Built address space in {} ms: {} nodes",
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), getNodeManager().getNodes().size()
+        );
+
+        int eventRate = Settings.getInt(EVENT_RATE, 0);
+
+        if (eventRate > 0) {
+            startBogusEventNotifier(eventRate);
+        }
+    }
+
+    private void addDiagnosticsNodes(UaFolderNode rootFolder) {
+        UaFolderNode diagnosticsFolder = addFolder(rootFolder, "Diagnostics");
+
+        addDiagnostic(diagnosticsFolder, "ReadCount", Identifiers.Int64, metrics::getTotalReads);
+        addDiagnostic(diagnosticsFolder, "WriteCount", Identifiers.Int64, metrics::getTotalWrites);
+        addDiagnostic(diagnosticsFolder, "ConveyorStartCount", Identifiers.Int64,
+            () -> metrics.getConveyorStartLatency().getCount());
+        addDiagnostic(diagnosticsFolder, "ConveyorStartLatencyP50Ms", Identifiers.Double,
+            () -> metrics.getConveyorStartLatency().getValueAtQuantile(0.5) / 1e6);
+        addDiagnostic(diagnosticsFolder, "ConveyorStartLatencyP99Ms", Identifiers.Double,
+            () -> metrics.getConveyorStartLatency().getValueAtQuantile(0.99) / 1e6);
+        addDiagnostic(diagnosticsFolder, "ConveyorStartLatencyMaxMs", Identifiers.Double,
+            () -> metrics.getConveyorStartLatency().getMax() / 1e6);
+        addDiagnostic(diagnosticsFolder, "SimulationTickP99Ms", Identifiers.Double,
+            () -> metrics.getSimulationTickDuration().getValueAtQuantile(0.99) / 1e6);
+        addDiagnostic(diagnosticsFolder, "SimulationTickMaxMs", Identifiers.Double,
+            () -> metrics.getSimulationTickDuration().getMax() / 1e6);
+        addDiagnostic(diagnosticsFolder, "SimulationOverruns", Identifiers.Int64, metrics::getSimulationOverruns);
+        if (alarmEngine != null) {
+            addDiagnostic(diagnosticsFolder, "AlarmEvaluationP99Ms", Identifiers.Double,
+                () -> metrics.getAlarmEvaluationDuration().getValueAtQuantile(0.99) / 1e6);
+            addDiagnostic(diagnosticsFolder, "AlarmEvaluationMaxMs", Identifiers.Double,
+                () -> metrics.getAlarmEvaluationDuration().getMax() / 1e6);
+            addDiagnostic(diagnosticsFolder, "ActiveAlarms", Identifiers.Int32, alarmEngine::getActiveCount);
+        }
+        if (changeExport != null) {
+            addDiagnostic(diagnosticsFolder, "ExportedRecords", Identifiers.Int64, metrics::getExportedRecords);
+            addDiagnostic(diagnosticsFolder, "ExportDroppedRecords", Identifiers.Int64, metrics::getExportDropped);
+        }
+        if (replayEngine != null) {
+            addDiagnostic(diagnosticsFolder, "ReplayRecordsPerSecond", Identifiers.Double,
+                metrics::getReplayedRecordsPerSecond);
+            addDiagnostic(diagnosticsFolder, "ReplayLagMs", Identifiers.Int64, metrics::getReplayLagMillis);
+        }
+        if (ingestPort != null) {
+            addDiagnostic(diagnosticsFolder, "IngestFramesPerSecond", Identifiers.Double,
+                metrics::getIngestedFramesPerSecond);
+            addDiagnostic(diagnosticsFolder, "IngestRejectedFrames", Identifiers.Int64,
+                metrics::getIngestRejectedFrames);
+            addDiagnostic(diagnosticsFolder, "IngestBatchP99Ms", Identifiers.Double,
+                () -> metrics.getIngestBatchDuration().getValueAtQuantile(0.99) / 1e6);
+        }
+        if (browseIndex != null) {
+            addDiagnostic(diagnosticsFolder, "BrowseIndexHits", Identifiers.Int64, metrics::getBrowseIndexHits);
+            addDiagnostic(diagnosticsFolder, "BrowseIndexMisses", Identifiers.Int64, metrics::getBrowseIndexMisses);
+        }
+        if (derivedVariables != null) {
+            addDiagnostic(diagnosticsFolder, "DerivedCacheHits", Identifiers.Int64, metrics::getDerivedHits);
+            addDiagnostic(diagnosticsFolder, "DerivedCacheMisses", Identifiers.Int64, metrics::getDerivedMisses);
+        }
+        if (admissionControl != null) {
+            addDiagnostic(diagnosticsFolder, "AdmissionRejections", Identifiers.Int64,
+                metrics::getAdmissionRejections);
+        }
+        addDiagnostic(diagnosticsFolder, "EventsPosted", Identifiers.Int64, metrics::getEventsPosted);
+        addDiagnostic(diagnosticsFolder, "EventsPerSecond", Identifiers.Double, metrics::getEventsPerSecond);
+        addDiagnostic(diagnosticsFolder, "NotificationsPerSecond", Identifiers.Double,
+            metrics::getNotificationsPerSecond);
+    }
+
+    private void addDiagnostic(UaFolderNode folder, String name, NodeId dataType, Supplier<Object> value) {
+        UaVariableNode node = UaVariableNode.builder(getNodeContext())
+            .setNodeId(newNodeId(folder.getNodeId().getIdentifier() + "/" + name))
+            .setAccessLevel(AccessLevel.READ_ONLY)
+            .setBrowseName(newQualifiedName(name))
+            .setDisplayName(LocalizedText.english(name))
+            .setDataType(dataType)
+            .setTypeDefinition(Identifiers.BaseDataVariableType)
+            .build();
+
+        node.setValue(new DataValue(new Variant(value.get())));
+
+        getNodeManager().addNode(node);
+        folder.addOrganizes(node);
+        childrenChanged(folder);
+
+        diagnosticUpdates.add(() -> node.setValue(new DataValue(new Variant(value.get()))));
+    }
+
+    private void refreshDiagnostics() {
+        try {
+            metrics.sample();
+
+            for (Runnable update : diagnosticUpdates) {
+                update.run();
+            }
+        } catch (Throwable t) {
+            logger.error("Error refreshing diagnostics: {}", t.getMessage(), t);
+        }
+    }
+
+    /**
+     * conveyor_setpoints() applies target speeds and commands to many conveyors in one call.
+     */
+    private void addConveyorSetpointsMethod(UaFolderNode folderNode) {
+        UaMethodNode methodNode = UaMethodNode.builder(getNodeContext())
+            .setNodeId(newNodeId("IntelligentIndustry/conveyor_setpoints()"))
+            .setBrowseName(newQualifiedName("conveyor_setpoints()"))
+            .setDisplayName(new LocalizedText(null, "conveyor_setpoints()"))
+            .setDescription(
+                LocalizedText.english("Applies target speeds and start/stop commands to many conveyors at once"))
+            .build();
+
+        ConveyorSetpointsMethod conveyorSetpointsMethod = new ConveyorSetpointsMethod(
+            methodNode, fleet, simulationEngine);
+        methodNode.setInputArguments(conveyorSetpointsMethod.getInputArguments());
+        methodNode.setOutputArguments(conveyorSetpointsMethod.getOutputArguments());
+        methodNode.setInvocationHandler(conveyorSetpointsMethod);
+
+        getNodeManager().addNode(methodNode);
+        folderNode.addComponent(methodNode);
+        childrenChanged(folderNode);
     }
 
+    /**
+     * The original folder-level conveyor_start(), kept for existing clients. It drives the first conveyor;
+     * every conveyor also has its own conveyor_start() component.
+     */
     private void addConveyorStartMethod(UaFolderNode folderNode) {
         UaMethodNode methodNode = UaMethodNode.builder(getNodeContext())
             .setNodeId(newNodeId("IntelligentIndustry/conveyor_start()"))
@@ -170,7 +487,8 @@ public class DemoNamespace extends ManagedNamespaceWithLifecycle {
                 LocalizedText.english("Starts the conveyor"))
             .build();
 
-        ConveyorStartMethod conveyorStartMethod = new ConveyorStartMethod(methodNode, runningSpeedType);
+        ConveyorStartMethod conveyorStartMethod = new ConveyorStartMethod(
+            methodNode, myConveyor, simulationEngine, metrics, conveyorStartedEvent);
         methodNode.setInputArguments(conveyorStartMethod.getInputArguments());
         methodNode.setOutputArguments(conveyorStartMethod.getOutputArguments());
         methodNode.setInvocationHandler(conveyorStartMethod);
@@ -183,9 +501,10 @@ public class DemoNamespace extends ManagedNamespaceWithLifecycle {
             myConveyor.getNodeId().expanded(),
             false
         ));
+        childrenChanged(myConveyor.getObjectNode());
     }
 
-    private void addCustomObjectTypeAndInstance(UaFolderNode rootFolder) {
+    private UaObjectTypeNode addConveyorType() {
         // Define a new ObjectType called "MyObjectType".
         UaObjectTypeNode conveyorTypeNode = UaObjectTypeNode.builder(getNodeContext())
             .setNodeId(newNodeId("ObjectTypes/ConveyorType"))
@@ -198,6 +517,7 @@ public class DemoNamespace extends ManagedNamespaceWithLifecycle {
         UaVariableNode motorsType = UaVariableNode.builder(getNodeContext())
             .setNodeId(newNodeId("ObjectTypes/ConveyorType.Motors"))
             .setAccessLevel(AccessLevel.READ_WRITE)
+            .setUserAccessLevel(AccessLevel.READ_WRITE)
             .setBrowseName(newQualifiedName("Motors"))
             .setDisplayName(LocalizedText.english("Motors"))
             .setDataType(Identifiers.Int16)
@@ -214,9 +534,10 @@ public class DemoNamespace extends ManagedNamespaceWithLifecycle {
         motorsType.setValue(new DataValue(new Variant(2)));
         conveyorTypeNode.addComponent(motorsType);
 
-        runningSpeedType = UaVariableNode.builder(getNodeContext())
+        UaVariableNode runningSpeedType = UaVariableNode.builder(getNodeContext())
             .setNodeId(newNodeId("ObjectTypes/ConveyorType.RunningSpeed"))
             .setAccessLevel(AccessLevel.READ_WRITE)
+            .setUserAccessLevel(AccessLevel.READ_WRITE)
             .setBrowseName(newQualifiedName("RunningSpeed"))
             .setDisplayName(LocalizedText.english("RunningSpeed"))
             .setDataType(Identifiers.Double)
@@ -234,6 +555,97 @@ public class DemoNamespace extends ManagedNamespaceWithLifecycle {
 
         conveyorTypeNode.addComponent(runningSpeedType);
 
+        // The EURange lets clients subscribe to RunningSpeed with a percent deadband.
+        UaVariableNode euRangeType = UaVariableNode.builder(getNodeContext())
+            .setNodeId(newNodeId("ObjectTypes/ConveyorType.RunningSpeed.EURange"))
+            .setAccessLevel(AccessLevel.READ_ONLY)
+            .setBrowseName(new QualifiedName(0, "EURange"))
+            .setDisplayName(LocalizedText.english("EURange"))
+            .setDataType(Identifiers.Range)
+            .setTypeDefinition(Identifiers.PropertyType)
+            .build();
+
+        euRangeType.addReference(new Reference(
+            euRangeType.getNodeId(),
+            Identifiers.HasModellingRule,
+            Identifiers.ModellingRule_Mandatory.expanded(),
+            true
+        ));
+
+        euRangeType.setValue(new DataValue(new Variant(ExtensionObject.encode(
+            getServer().getSerializationContext(),
+            new Range(0.0, simulationEngine.getProfile().getTargetSpeed())
+        ))));
+
+        runningSpeedType.addReference(new Reference(
+            runningSpeedType.getNodeId(),
+            Identifiers.HasProperty,
+            euRangeType.getNodeId().expanded(),
+            true
+        ));
+
+        UaVariableNode dropoffsType = UaVariableNode.builder(getNodeContext())
+            .setNodeId(newNodeId("ObjectTypes/ConveyorType.Dropoffs"))
+            .setAccessLevel(AccessLevel.READ_ONLY)
+            .setBrowseName(newQualifiedName("Dropoffs"))
+            .setDisplayName(LocalizedText.english("Dropoffs"))
+            .setDataType(Identifiers.Int64)
+            .setTypeDefinition(Identifiers.BaseDataVariableType)
+            .build();
+
+        dropoffsType.addReference(new Reference(
+            dropoffsType.getNodeId(),
+            Identifiers.HasModellingRule,
+            Identifiers.ModellingRule_Mandatory.expanded(),
+            true
+        ));
+
+        dropoffsType.setValue(new DataValue(new Variant(0L)));
+
+        conveyorTypeNode.addComponent(dropoffsType);
+
+        if (derivedVariables != null) {
+            for (int kind = 0; kind < DerivedVariables.NAMES.size(); kind++) {
+                addDerivedVariableType(
+                    conveyorTypeNode, DerivedVariables.NAMES.get(kind), DerivedVariables.DESCRIPTIONS.get(kind));
+            }
+        }
+
+        // conveyor_start() is declared on the type so that NodeFactory gives every instance its own method node.
+        UaMethodNode startMethodType = UaMethodNode.builder(getNodeContext())
+            .setNodeId(newNodeId("ObjectTypes/ConveyorType.conveyor_start()"))
+            .setBrowseName(newQualifiedName("conveyor_start()"))
+            .setDisplayName(new LocalizedText(null, "conveyor_start()"))
+            .setDescription(
+                LocalizedText.english("Starts the conveyor"))
+            .build();
+
+        startMethodType.addReference(new Reference(
+            startMethodType.getNodeId(),
+            Identifiers.HasModellingRule,
+            Identifiers.ModellingRule_Mandatory.expanded(),
+            true
+        ));
+
+        conveyorTypeNode.addComponent(startMethodType);
+
+        UaMethodNode stopMethodType = UaMethodNode.builder(getNodeContext())
+            .setNodeId(newNodeId("ObjectTypes/ConveyorType.conveyor_stop()"))
+            .setBrowseName(newQualifiedName("conveyor_stop()"))
+            .setDisplayName(new LocalizedText(null, "conveyor_stop()"))
+            .setDescription(
+                LocalizedText.english("Ramps the conveyor down, or stops it immediately when abort is true"))
+            .build();
+
+        stopMethodType.addReference(new Reference(
+            stopMethodType.getNodeId(),
+            Identifiers.HasModellingRule,
+            Identifiers.ModellingRule_Mandatory.expanded(),
+            true
+        ));
+
+        conveyorTypeNode.addComponent(stopMethodType);
+
         // Tell the ObjectTypeManager about our new type.
         // This let's us use NodeFactory to instantiate instances of the type.
         getServer().getObjectTypeManager().registerObjectType(
@@ -256,51 +668,438 @@ public class DemoNamespace extends ManagedNamespaceWithLifecycle {
         getNodeManager().addNode(conveyorTypeNode);
         getNodeManager().addNode(motorsType);
         getNodeManager().addNode(runningSpeedType);
+        getNodeManager().addNode(euRangeType);
+        getNodeManager().addNode(dropoffsType);
+        getNodeManager().addNode(startMethodType);
+        getNodeManager().addNode(stopMethodType);
+
+        return conveyorTypeNode;
+    }
+
+    /**
+     * The type of virtual conveyors: the variables of ConveyorType, without the methods and derived variables that
+     * only UaNode-backed conveyors serve.
+     */
+    private void addVirtualConveyorType() {
+        UaObjectTypeNode virtualTypeNode = UaObjectTypeNode.builder(getNodeContext())
+            .setNodeId(newNodeId("ObjectTypes/VirtualConveyorType"))
+            .setBrowseName(newQualifiedName("VirtualConveyorType"))
+            .setDisplayName(LocalizedText.english("VirtualConveyorType"))
+            .setDescription(LocalizedText.english("A conveyor with the variables of ConveyorType and no methods"))
+            .setIsAbstract(false)
+            .build();
+
+        virtualTypeNode.addReference(new Reference(
+            virtualTypeNode.getNodeId(),
+            Identifiers.HasSubtype,
+            Identifiers.BaseObjectType.expanded(),
+            false
+        ));
+
+        getNodeManager().addNode(virtualTypeNode);
+
+        addVariableDeclaration(virtualTypeNode, "Motors", Identifiers.Int16, AccessLevel.READ_WRITE);
+        addVariableDeclaration(virtualTypeNode, "RunningSpeed", Identifiers.Double, AccessLevel.READ_WRITE);
+        addVariableDeclaration(virtualTypeNode, "Dropoffs", Identifiers.Int64, AccessLevel.READ_ONLY);
+    }
+
+    private void addVariableDeclaration(
+        UaObjectTypeNode typeNode,
+        String name,
+        NodeId dataType,
+        Set<AccessLevel> accessLevel) {
+
+        UaVariableNode declaration = UaVariableNode.builder(getNodeContext())
+            .setNodeId(newNodeId(typeNode.getNodeId().getIdentifier() + "." + name))
+            .setAccessLevel(accessLevel)
+            .setUserAccessLevel(accessLevel)
+            .setBrowseName(newQualifiedName(name))
+            .setDisplayName(LocalizedText.english(name))
+            .setDataType(dataType)
+            .setTypeDefinition(Identifiers.BaseDataVariableType)
+            .build();
+
+        declaration.addReference(new Reference(
+            declaration.getNodeId(),
+            Identifiers.HasModellingRule,
+            Identifiers.ModellingRule_Mandatory.expanded(),
+            true
+        ));
+
+        typeNode.addComponent(declaration);
+        getNodeManager().addNode(declaration);
+    }
+
+    /**
+     * A read-only Double on ConveyorType whose instances get their Value from {@link DerivedVariables}.
+     */
+    private void addDerivedVariableType(UaObjectTypeNode conveyorTypeNode, String name, String description) {
+        UaVariableNode derivedType = UaVariableNode.builder(getNodeContext())
+            .setNodeId(newNodeId("ObjectTypes/ConveyorType." + name))
+            .setAccessLevel(AccessLevel.READ_ONLY)
+            .setUserAccessLevel(AccessLevel.READ_ONLY)
+            .setBrowseName(newQualifiedName(name))
+            .setDisplayName(LocalizedText.english(name))
+            .setDescription(LocalizedText.english(description))
+            .setDataType(Identifiers.Double)
+            .setTypeDefinition(Identifiers.BaseDataVariableType)
+            .build();
+
+        derivedType.addReference(new Reference(
+            derivedType.getNodeId(),
+            Identifiers.HasModellingRule,
+            Identifiers.ModellingRule_Mandatory.expanded(),
+            true
+        ));
+
+        derivedType.setValue(new DataValue(new Variant(0.0)));
+
+        conveyorTypeNode.addComponent(derivedType);
+        getNodeManager().addNode(derivedType);
+    }
+
+    private void addConveyorFleet(UaFolderNode rootFolder, UaObjectTypeNode conveyorTypeNode) {
+        long startNanos = System.nanoTime();
+
+        UaFolderNode[] folders = addModelFolders(rootFolder);
+        Conveyor[] conveyors = new Conveyor[plantModel.getConveyorCount()];
+
+        int parallelism = Math.max(1, Math.min(fleetConfig.getParallelism(), conveyors.length));
+        int chunkSize = Math.max(1, conveyors.length / (parallelism * 4));
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "conveyor-fleet-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int from = 0; from < conveyors.length; from += chunkSize) {
+                final int first = from;
+                final int last = Math.min(from + chunkSize, conveyors.length);
+
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < last; i++) {
+                        int folder = plantModel.getConveyorFolder(i);
+                        UaFolderNode parent = folder >= 0 ? folders[folder] : rootFolder;
+
+                        conveyors[i] = addConveyor(i, parent, conveyorTypeNode);
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while creating the conveyor fleet", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("error creating the conveyor fleet: " + e.getCause().getMessage(),
+                e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (conveyors.length == 0) {
+            throw new IllegalStateException("plant model " + plantModel.getSource() + " has no conveyors");
+        }
+
+        fleet = new ConveyorFleet(conveyors);
+        myConveyor = conveyors[0];
+
+        logger.info(
+            "Instantiated {} conveyors in {} folders in {} ms on {} threads",
+            conveyors.length, folders.length,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+            parallelism
+        );
+    }
+
+    private UaFolderNode[] addModelFolders(UaFolderNode rootFolder) {
+        UaFolderNode[] folders = new UaFolderNode[plantModel.getFolderCount()];
+
+        // parents always precede their children in the model
+        for (int folder = 0; folder < folders.length; folder++) {
+            int parent = plantModel.getFolderParent(folder);
+
+            folders[folder] = addFolder(parent >= 0 ? folders[parent] : rootFolder, plantModel.getFolderName(folder));
+        }
+
+        return folders;
+    }
+
+    private UaFolderNode addFolder(UaFolderNode parent, String name) {
+        String path = parent.getNodeId().getIdentifier() + "/" + name;
+
+        UaFolderNode folderNode = new UaFolderNode(
+            getNodeContext(),
+            newNodeId(path),
+            newQualifiedName(name),
+            LocalizedText.english(name)
+        );
+
+        getNodeManager().addNode(folderNode);
+
+        parent.addOrganizes(folderNode);
+        childrenChanged(parent);
+
+        folderNode.addReference(new Reference(
+            folderNode.getNodeId(),
+            Identifiers.Organizes,
+            parent.getNodeId().expanded(),
+            false
+        ));
+
+        return folderNode;
+    }
+
+    private Conveyor addConveyor(int index, UaFolderNode parentFolder, UaObjectTypeNode conveyorTypeNode) {
+        String name = plantModel.getConveyorName(index);
 
         // Use NodeFactory to create instance of MyObjectType called "MyObject".
         // NodeFactory takes care of recursively instantiating MyObject member nodes
         // as well as adding all nodes to the address space.
         try {
-             myConveyor = (UaObjectNode) getNodeFactory().createNode(
-                newNodeId("IntelligentIndustry/Conveyor-1"),
+            UaObjectNode conveyorNode = (UaObjectNode) getNodeFactory().createNode(
+                newNodeId("IntelligentIndustry/" + name),
                 conveyorTypeNode.getNodeId()
             );
-            myConveyor.setBrowseName(newQualifiedName("Conveyor-1"));
-            myConveyor.setDisplayName(LocalizedText.english("Conveyor-1"));
+            conveyorNode.setBrowseName(newQualifiedName(name));
+            conveyorNode.setDisplayName(LocalizedText.english(name));
 
-            // Add forward and inverse references from the root folder.
-            rootFolder.addOrganizes(myConveyor);
+            // Add forward and inverse references from the parent folder.
+            parentFolder.addOrganizes(conveyorNode);
+            childrenChanged(parentFolder);
 
-            myConveyor.addReference(new Reference(
-                myConveyor.getNodeId(),
+            conveyorNode.addReference(new Reference(
+                conveyorNode.getNodeId(),
                 Identifiers.Organizes,
-                rootFolder.getNodeId().expanded(),
+                parentFolder.getNodeId().expanded(),
                 false
             ));
 
+            UaVariableNode motors = (UaVariableNode) findComponent(conveyorNode, "Motors");
+            UaVariableNode runningSpeed = (UaVariableNode) findComponent(conveyorNode, "RunningSpeed");
+            UaMethodNode startMethod = (UaMethodNode) findComponent(conveyorNode, "conveyor_start()");
+            UaMethodNode stopMethod = (UaMethodNode) findComponent(conveyorNode, "conveyor_stop()");
+
+            if (plantModel.hasMotors(index)) {
+                motors.setValue(new DataValue(new Variant(plantModel.getMotors(index))));
+            }
+            if (plantModel.hasRunningSpeed(index)) {
+                runningSpeed.setValue(new DataValue(new Variant(plantModel.getRunningSpeed(index))));
+            }
+
+            UaVariableNode dropoffs = (UaVariableNode) findComponent(conveyorNode, "Dropoffs");
+
+            Conveyor conveyor = new Conveyor(index + 1, conveyorNode, motors, runningSpeed, dropoffs, startMethod);
+
+            if (derivedVariables != null) {
+                UaVariableNode[] derived = new UaVariableNode[DerivedVariables.NAMES.size()];
+
+                for (int kind = 0; kind < derived.length; kind++) {
+                    derived[kind] = (UaVariableNode) findComponent(conveyorNode, DerivedVariables.NAMES.get(kind));
+                }
+
+                derivedVariables.attach(conveyor, derived);
+            }
+
+            motors.getFilterChain().addLast(new AttributeMetricsFilter(metrics.nodeCounters(motors.getNodeId())));
+            runningSpeed.getFilterChain().addLast(
+                new AttributeMetricsFilter(metrics.nodeCounters(runningSpeed.getNodeId())));
+
+            if (historyStore != null) {
+                historyStore.historize(runningSpeed);
+            }
+
+            if (auditLog != null) {
+                AttributeLoggingFilter auditFilter = new AttributeLoggingFilter(auditLog);
+                motors.getFilterChain().addLast(auditFilter);
+                runningSpeed.getFilterChain().addLast(auditFilter);
+            }
+
+            if (changeExport != null) {
+                changeExport.watch(motors);
+                changeExport.watch(runningSpeed);
+                changeExport.watch(dropoffs);
+            }
+
+            ConveyorStartMethod conveyorStartMethod = new ConveyorStartMethod(
+                startMethod, conveyor, simulationEngine, metrics, conveyorStartedEvent);
+            startMethod.setInputArguments(conveyorStartMethod.getInputArguments());
+            startMethod.setOutputArguments(conveyorStartMethod.getOutputArguments());
+            startMethod.setInvocationHandler(conveyorStartMethod);
+
+            ConveyorStopMethod conveyorStopMethod = new ConveyorStopMethod(
+                stopMethod, conveyor, simulationEngine);
+            stopMethod.setInputArguments(conveyorStopMethod.getInputArguments());
+            stopMethod.setOutputArguments(conveyorStopMethod.getOutputArguments());
+            stopMethod.setInvocationHandler(conveyorStopMethod);
+
+            simulationEngine.register(conveyor);
+
+            if (alarmEngine != null) {
+                conveyorNode.setEventNotifier(ubyte(1));
+                alarmEngine.watch(conveyor);
+            }
+
+            return conveyor;
         } catch (UaException e) {
-            logger.error("Error creating ConveyorType instance: {}", e.getMessage(), e);
+            throw new IllegalStateException("error creating ConveyorType instance " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Call after adding hierarchical references to {@code parent}, so the browse index sees its new children.
+     */
+    private void childrenChanged(UaNode parent) {
+        if (browseIndex != null) {
+            browseIndex.invalidate(parent.getNodeId());
+        }
+    }
+
+    private UaNode findComponent(UaObjectNode parent, String browseName) throws UaException {
+        return parent
+            .findNode(newQualifiedName(browseName), r -> Identifiers.HasComponent.equals(r.getReferenceTypeId()))
+            .orElseThrow(() -> new UaException(
+                StatusCodes.Bad_NodeIdUnknown,
+                parent.getBrowseName().getName() + " has no " + browseName
+            ));
+    }
+
+    public ConveyorFleet getFleet() {
+        return fleet;
+    }
+
+    public EventEmitter getEventEmitter() {
+        return eventEmitter;
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public VirtualConveyors getVirtualConveyors() {
+        return virtualConveyors;
+    }
+
+    public SimulationEngine getSimulationEngine() {
+        return simulationEngine;
+    }
+
+    public AlarmEngine getAlarmEngine() {
+        return alarmEngine;
+    }
+
+    public IngestPort getIngestPort() {
+        return ingestPort;
+    }
+
+    public ChangeExport getChangeExport() {
+        return changeExport;
+    }
+
+    public BrowseIndex getBrowseIndex() {
+        return browseIndex;
+    }
+
+    public AdmissionControl getAdmissionControl() {
+        return admissionControl;
+    }
+
+    public DerivedVariables getDerivedVariables() {
+        return derivedVariables;
+    }
+
+    public ReplayEngine getReplayEngine() {
+        return replayEngine;
+    }
+
+    @Override
+    protected Optional<MethodInvocationHandler> getInvocationHandler(NodeId objectId, NodeId methodId) {
+        // alarm conditions are not nodes; Acknowledge and Confirm on their ConditionIds go to the alarm engine
+        if (alarmEngine != null) {
+            Optional<MethodInvocationHandler> handler = alarmEngine.getInvocationHandler(objectId, methodId);
+
+            if (handler.isPresent()) {
+                return handler;
+            }
+        }
+
+        return super.getInvocationHandler(objectId, methodId);
+    }
+
+    @Override
+    public void read(
+        ReadContext context,
+        Double maxAge,
+        TimestampsToReturn timestamps,
+        List<ReadValueId> readValueIds) {
+
+        // Reads and sampling passes over many derived variables compute them in one go
+        if (derivedVariables != null) {
+            derivedVariables.prepare(readValueIds);
+        }
+
+        super.read(context, maxAge, timestamps, readValueIds);
+    }
+
+    @Override
+    public void historyRead(
+        HistoryReadContext context,
+        HistoryReadDetails readDetails,
+        TimestampsToReturn timestamps,
+        List<HistoryReadValueId> readValueIds) {
+
+        if (historyStore != null) {
+            context.success(historyStore.read(readDetails, timestamps, readValueIds));
+        } else {
+            super.historyRead(context, readDetails, timestamps, readValueIds);
         }
     }
 
     @Override
     public void onDataItemsCreated(List<DataItem> dataItems) {
-        subscriptionModel.onDataItemsCreated(dataItems);
+        if (pushSubscriptionModel != null) {
+            pushSubscriptionModel.onDataItemsCreated(dataItems);
+        } else {
+            subscriptionModel.onDataItemsCreated(dataItems);
+        }
     }
 
     @Override
     public void onDataItemsModified(List<DataItem> dataItems) {
-        subscriptionModel.onDataItemsModified(dataItems);
+        if (pushSubscriptionModel != null) {
+            pushSubscriptionModel.onDataItemsModified(dataItems);
+        } else {
+            subscriptionModel.onDataItemsModified(dataItems);
+        }
     }
 
     @Override
     public void onDataItemsDeleted(List<DataItem> dataItems) {
-        subscriptionModel.onDataItemsDeleted(dataItems);
+        if (pushSubscriptionModel != null) {
+            pushSubscriptionModel.onDataItemsDeleted(dataItems);
+        } else {
+            subscriptionModel.onDataItemsDeleted(dataItems);
+        }
     }
 
     @Override
     public void onMonitoringModeChanged(List<MonitoredItem> monitoredItems) {
-        subscriptionModel.onMonitoringModeChanged(monitoredItems);
+        if (pushSubscriptionModel != null) {
+            pushSubscriptionModel.onMonitoringModeChanged(monitoredItems);
+        } else {
+            subscriptionModel.onMonitoringModeChanged(monitoredItems);
+        }
     }
     
 }
@@ -0,0 +1,330 @@
+package org.intelligentindustry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.milo.opcua.sdk.server.nodes.AttributeObserver;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilter;
+import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilterContext.GetAttributeContext;
+import org.eclipse.milo.opcua.sdk.server.nodes.filters.AttributeFilterContext.SetAttributeContext;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+
+/**
+ * KPIs of every conveyor, derived from its Motors and RunningSpeed and computed only when they are read.
+ * <p>
+ * Throughput is the rate of Object Dropoffs at the current RunningSpeed, in objects per hour, and 0 without motors.
+ * UptimeRatio is the share of time since the conveyor was created during which it ran. EnergyEstimate is the energy
+ * used since then, in kWh, with every motor drawing {@code motor-kw} at the target speed and proportionally less below
+ * it.
+ * <p>
+ * A write of Motors or RunningSpeed only closes the running time and energy of the period that ends with it and
+ * invalidates the cached values, which costs a few multiplications. The values themselves are computed by the
+ * attribute filter of the derived variable on read, for clients and subscription sampling alike, and cached until
+ * an input changes; UptimeRatio and EnergyEstimate grow with time as well and are also recomputed once their cached
+ * value is older than {@code max-age-ms}. A Read or sampling pass over many derived variables has them computed up
+ * front in one pass, sharing one clock reading, before the SDK reads them from the cache.
+ */
+public class DerivedVariables {
+
+    public static final String ENABLED = "demo.derived.enabled";
+    public static final String MAX_AGE_MILLIS = "demo.derived.max-age-ms";
+    public static final String MOTOR_KW = "demo.derived.motor-kw";
+
+    public static final int THROUGHPUT = 0;
+    public static final int UPTIME_RATIO = 1;
+    public static final int ENERGY_ESTIMATE = 2;
+
+    /**
+     * Browse names of the derived variables, by kind.
+     */
+    public static final List<String> NAMES = Collections.unmodifiableList(Arrays.asList(
+        "Throughput",
+        "UptimeRatio",
+        "EnergyEstimate"
+    ));
+
+    /**
+     * Descriptions of the derived variables, by kind.
+     */
+    public static final List<String> DESCRIPTIONS = Collections.unmodifiableList(Arrays.asList(
+        "Object Dropoffs per hour at the current RunningSpeed",
+        "Share of time the conveyor has been running since it was created",
+        "Energy used by the motors since the conveyor was created, in kWh"
+    ));
+
+    private static final int KINDS = 3;
+
+    // kW times nanoseconds per kWh
+    private static final double KW_NANOS_PER_KWH = TimeUnit.HOURS.toNanos(1);
+
+    private final Map<NodeId, Binding> bindings = new ConcurrentHashMap<>();
+    private final AtomicLong passes = new AtomicLong();
+
+    private final ServerMetrics metrics;
+    private final long maxAgeNanos;
+    private final double motorKw;
+    private final double targetSpeed;
+    private final double dropoffDistance;
+
+    public DerivedVariables(
+        ServerMetrics metrics,
+        long maxAgeMillis,
+        double motorKw,
+        double targetSpeed,
+        double dropoffDistance) {
+
+        this.metrics = metrics;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxAgeMillis));
+        this.motorKw = motorKw;
+        this.targetSpeed = targetSpeed;
+        this.dropoffDistance = dropoffDistance;
+    }
+
+    /**
+     * @return the configured derived variables, or {@code null} if they are disabled.
+     */
+    public static DerivedVariables fromSettings(ServerMetrics metrics, SpeedProfile profile) {
+        if (!Settings.getBoolean(ENABLED, false)) {
+            return null;
+        }
+
+        return new DerivedVariables(
+            metrics,
+            Settings.getLong(MAX_AGE_MILLIS, 1000),
+            Settings.getDouble(MOTOR_KW, 0.75),
+            profile.getTargetSpeed(),
+            Settings.getDouble(SimulationEngine.DROPOFF_DISTANCE, 100.0)
+        );
+    }
+
+    /**
+     * Derive the values of {@code derived}, indexed by kind, from the inputs of {@code conveyor}. Call before any
+     * other filter is added to Motors and RunningSpeed, so reading their initial values is not counted as a read.
+     */
+    public void attach(Conveyor conveyor, UaVariableNode[] derived) {
+        ConveyorInputs inputs = new ConveyorInputs(conveyor.getMotors(), conveyor.getRunningSpeed());
+
+        conveyor.getMotors().addAttributeObserver(inputs);
+        conveyor.getRunningSpeed().addAttributeObserver(inputs);
+
+        for (int kind = 0; kind < KINDS; kind++) {
+            derived[kind].getFilterChain().addLast(new DerivedValueFilter(inputs, kind));
+            bindings.put(derived[kind].getNodeId(), new Binding(inputs, kind));
+        }
+    }
+
+    /**
+     * @return whether the Value of {@code nodeId} is derived, and so changes without being written.
+     */
+    public boolean isDerived(NodeId nodeId) {
+        return bindings.containsKey(nodeId);
+    }
+
+    /**
+     * Compute the stale derived values among {@code readValueIds} in one pass, ahead of reading them.
+     */
+    public void prepare(List<ReadValueId> readValueIds) {
+        if (readValueIds.size() < 2 || bindings.isEmpty()) {
+            return;
+        }
+
+        // values prefetched by an earlier pass but never read count as hits from now on
+        long pass = passes.incrementAndGet();
+        long now = 0;
+        DateTime time = null;
+
+        for (ReadValueId readValueId : readValueIds) {
+            Binding binding = bindings.get(readValueId.getNodeId());
+
+            if (binding == null || !AttributeId.Value.isEqual(readValueId.getAttributeId())) {
+                continue;
+            }
+            if (time == null) {
+                now = System.nanoTime();
+                time = DateTime.now();
+            }
+
+            binding.inputs.prefetch(binding.kind, now, time, pass);
+        }
+    }
+
+    private static double number(DataValue value) {
+        Object number = value != null ? value.getValue().getValue() : null;
+
+        return number instanceof Number ? ((Number) number).doubleValue() : 0.0;
+    }
+
+    private static final class Binding {
+
+        final ConveyorInputs inputs;
+        final int kind;
+
+        Binding(ConveyorInputs inputs, int kind) {
+            this.inputs = inputs;
+            this.kind = kind;
+        }
+
+    }
+
+    private final class DerivedValueFilter implements AttributeFilter {
+
+        private final ConveyorInputs inputs;
+        private final int kind;
+
+        DerivedValueFilter(ConveyorInputs inputs, int kind) {
+            this.inputs = inputs;
+            this.kind = kind;
+        }
+
+        @Override
+        public Object getAttribute(GetAttributeContext ctx, AttributeId attributeId) {
+            if (attributeId == AttributeId.Value) {
+                return inputs.get(kind);
+            }
+
+            return ctx.getAttribute(attributeId);
+        }
+
+        @Override
+        public void setAttribute(SetAttributeContext ctx, AttributeId attributeId, Object value) {
+            ctx.setAttribute(attributeId, value);
+        }
+
+    }
+
+    /**
+     * The inputs of one conveyor, integrated over time, and the cached values derived from them.
+     */
+    private final class ConveyorInputs implements AttributeObserver {
+
+        private final UaVariableNode motorsNode;
+        private final long createdNanos = System.nanoTime();
+
+        // guarded by this
+        private double motors;
+        private double speed;
+        private long sinceNanos = createdNanos;
+        private long runningNanos;
+        private double energyKwh;
+        private long version;
+
+        private final DataValue[] values = new DataValue[KINDS];
+        private final long[] versions = new long[KINDS];
+        private final long[] computedNanos = new long[KINDS];
+        private final long[] prefetchedPass = new long[KINDS];
+
+        ConveyorInputs(UaVariableNode motorsNode, UaVariableNode runningSpeedNode) {
+            this.motorsNode = motorsNode;
+            this.motors = number(motorsNode.getValue());
+            this.speed = number(runningSpeedNode.getValue());
+
+            Arrays.fill(versions, -1);
+        }
+
+        @Override
+        public void attributeChanged(UaNode node, AttributeId attributeId, Object value) {
+            if (attributeId != AttributeId.Value) {
+                return;
+            }
+
+            double input = number((DataValue) value);
+            long now = System.nanoTime();
+
+            synchronized (this) {
+                long elapsed = now - sinceNanos;
+
+                if (speed > 0) {
+                    runningNanos += elapsed;
+                }
+                energyKwh += power() * elapsed / KW_NANOS_PER_KWH;
+                sinceNanos = now;
+
+                if (node == motorsNode) {
+                    motors = input;
+                } else {
+                    speed = input;
+                }
+
+                version++;
+            }
+        }
+
+        synchronized DataValue get(int kind) {
+            long now = System.nanoTime();
+
+            if (isFresh(kind, now)) {
+                if (prefetchedPass[kind] != 0 && prefetchedPass[kind] == passes.get()) {
+                    // computed for this read by prepare()
+                    prefetchedPass[kind] = 0;
+                    metrics.derivedMiss();
+                } else {
+                    metrics.derivedHit();
+                }
+            } else {
+                compute(kind, now, DateTime.now());
+                metrics.derivedMiss();
+            }
+
+            return values[kind];
+        }
+
+        synchronized void prefetch(int kind, long now, DateTime time, long pass) {
+            if (!isFresh(kind, now)) {
+                compute(kind, now, time);
+                prefetchedPass[kind] = pass;
+            }
+        }
+
+        private boolean isFresh(int kind, long now) {
+            return versions[kind] == version && (kind == THROUGHPUT || now - computedNanos[kind] <= maxAgeNanos);
+        }
+
+        private void compute(int kind, long now, DateTime time) {
+            long elapsed = now - sinceNanos;
+            double value;
+
+            if (kind == THROUGHPUT) {
+                value = dropoffDistance > 0 && motors > 0 && speed > 0 ? speed * 3600.0 / dropoffDistance : 0.0;
+            } else if (kind == UPTIME_RATIO) {
+                long lifetime = now - createdNanos;
+                long running = runningNanos + (speed > 0 ? elapsed : 0);
+
+                value = lifetime > 0 ? Math.min(1.0, running / (double) lifetime) : 0.0;
+            } else {
+                value = energyKwh + power() * elapsed / KW_NANOS_PER_KWH;
+            }
+
+            values[kind] = new DataValue(new Variant(value), StatusCode.GOOD, time, time);
+            versions[kind] = version;
+            computedNanos[kind] = now;
+        }
+
+        /**
+         * @return the power drawn at the current inputs, in kW.
+         */
+        private double power() {
+            if (speed <= 0 || motors <= 0) {
+                return 0.0;
+            }
+
+            double load = targetSpeed > 0 ? Math.min(1.0, speed / targetSpeed) : 1.0;
+
+            return motors * motorKw * load;
+        }
+
+    }
+
+}
@@ -0,0 +1,200 @@
+package org.intelligentindustry;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.milo.opcua.sdk.server.AbstractLifecycle;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.model.nodes.objects.BaseEventTypeNode;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.UaException;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.ushort;
+
+/**
+ * Posts BaseEventType events without creating and deleting an event node per event.
+ * <p>
+ * Each {@link Template} keeps a small pool of event nodes whose constant fields (browse name, type, message,
+ * severity) are set once. Emitting an event borrows a node, updates EventId, Time and - if it changed - the source,
+ * and posts it on the server's EventBus. The EventBus delivers synchronously and monitored event items copy the
+ * selected fields before {@code post} returns, so the node goes straight back to the pool.
+ * <p>
+ * EventIds are 16 bytes: a random prefix chosen per emitter followed by a sequence number, so they are unique across
+ * restarts as well as within one run.
+ */
+public class EventEmitter extends AbstractLifecycle {
+
+    private static final int POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final List<Template> templates = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final long eventIdPrefix = new SecureRandom().nextLong();
+
+    private final OpcUaServer server;
+    private final ServerMetrics metrics;
+
+    public EventEmitter(OpcUaServer server, ServerMetrics metrics) {
+        this.server = server;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Define a kind of event. Templates are cheap to keep around and should be created once, not per event.
+     */
+    public Template template(String name, String message, int severity) {
+        Template template = new Template(name, message, severity);
+        templates.add(template);
+        return template;
+    }
+
+    /**
+     * @return a new, unique EventId.
+     */
+    public ByteString nextEventId() {
+        byte[] bytes = new byte[16];
+
+        ByteBuffer.wrap(bytes)
+            .putLong(eventIdPrefix)
+            .putLong(sequence.incrementAndGet());
+
+        return ByteString.of(bytes);
+    }
+
+    @Override
+    protected void onStartup() {
+    }
+
+    @Override
+    protected void onShutdown() {
+        for (Template template : templates) {
+            template.clear();
+        }
+    }
+
+    public class Template {
+
+        private final BlockingQueue<PooledEvent> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+        private final QualifiedName browseName;
+        private final LocalizedText displayName;
+        private final LocalizedText message;
+        private final int severity;
+
+        private Template(String name, String message, int severity) {
+            this.browseName = new QualifiedName(1, name);
+            this.displayName = LocalizedText.english(name);
+            this.message = LocalizedText.english(message);
+            this.severity = severity;
+        }
+
+        /**
+         * Post one event from {@code sourceNode} to all event subscribers.
+         */
+        public void emit(NodeId sourceNode, String sourceName) throws UaException {
+            emit(sourceNode, sourceName, message);
+        }
+
+        /**
+         * Post one event from {@code sourceNode} with a message of its own rather than the template's. Pooled nodes
+         * only update their Message when it differs from the previous one.
+         */
+        public void emit(NodeId sourceNode, String sourceName, LocalizedText message) throws UaException {
+            PooledEvent event = pool.poll();
+
+            if (event == null) {
+                event = new PooledEvent(createNode(), this.message);
+            }
+
+            try {
+                event.post(sourceNode, sourceName, message);
+            } finally {
+                if (!pool.offer(event)) {
+                    event.node.delete();
+                }
+            }
+
+            metrics.eventPosted();
+        }
+
+        private BaseEventTypeNode createNode() throws UaException {
+            BaseEventTypeNode node = server.getEventFactory().createEvent(
+                new NodeId(1, UUID.randomUUID()),
+                Identifiers.BaseEventType
+            );
+
+            node.setBrowseName(browseName);
+            node.setDisplayName(displayName);
+            node.setEventType(Identifiers.BaseEventType);
+            node.setReceiveTime(DateTime.NULL_VALUE);
+            node.setMessage(message);
+            node.setSeverity(ushort(severity));
+
+            return node;
+        }
+
+        private void clear() {
+            List<PooledEvent> events = new ArrayList<>();
+            pool.drainTo(events);
+
+            for (PooledEvent event : events) {
+                event.node.delete();
+            }
+
+            logger.debug("Deleted {} pooled '{}' event nodes", events.size(), browseName.getName());
+        }
+
+    }
+
+    private class PooledEvent {
+
+        private final BaseEventTypeNode node;
+
+        private NodeId sourceNode;
+        private String sourceName;
+        private LocalizedText message;
+
+        private PooledEvent(BaseEventTypeNode node, LocalizedText message) {
+            this.node = node;
+            this.message = message;
+        }
+
+        void post(NodeId sourceNode, String sourceName, LocalizedText message) {
+            if (!sourceNode.equals(this.sourceNode)) {
+                node.setSourceNode(sourceNode);
+                this.sourceNode = sourceNode;
+            }
+            if (!sourceName.equals(this.sourceName)) {
+                node.setSourceName(sourceName);
+                this.sourceName = sourceName;
+            }
+            if (!message.equals(this.message)) {
+                node.setMessage(message);
+                this.message = message;
+            }
+
+            node.setEventId(nextEventId());
+            node.setTime(DateTime.now());
+
+            //noinspection UnstableApiUsage
+            server.getEventBus().post(node);
+        }
+
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.intelligentindustry;
+
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+
+/**
+ * A reusable slot in the export {@link RingBuffer}: one value change or one event. Producers only copy references
+ * into it; formatting happens on the export thread.
+ */
+public final class ExportRecord {
+
+    public static final char VALUE = 'V';
+    public static final char EVENT = 'E';
+
+    char kind;
+    long timestamp;
+    NodeId nodeId;
+    Object value;
+    StatusCode status;
+    NodeId eventType;
+    String sourceName;
+    int severity;
+
+    public char getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the source time of the value or the Time of the event, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the variable that changed, or the SourceNode of the event.
+     */
+    public NodeId getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return the new value, or the text of the event's Message.
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    public StatusCode getStatus() {
+        return status;
+    }
+
+    public NodeId getEventType() {
+        return eventType;
+    }
+
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    public int getSeverity() {
+        return severity;
+    }
+
+    void set(
+        char kind,
+        long timestamp,
+        NodeId nodeId,
+        Object value,
+        StatusCode status,
+        NodeId eventType,
+        String sourceName,
+        int severity) {
+
+        this.kind = kind;
+        this.timestamp = timestamp;
+        this.nodeId = nodeId;
+        this.value = value;
+        this.status = status;
+        this.eventType = eventType;
+        this.sourceName = sourceName;
+        this.severity = severity;
+    }
+
+    void clear() {
+        nodeId = null;
+        value = null;
+        status = null;
+        eventType = null;
+        sourceName = null;
+    }
+
+}
@@ -0,0 +1,19 @@
+package org.intelligentindustry;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A destination for the lines written by {@link ChangeExport}. Sinks are owned by the single export thread and need
+ * not be thread-safe.
+ */
+public interface ExportSink extends Closeable {
+
+    /**
+     * Write one line, without its terminator. May buffer until {@link #flush()}.
+     */
+    void write(CharSequence line) throws IOException;
+
+    void flush() throws IOException;
+
+}
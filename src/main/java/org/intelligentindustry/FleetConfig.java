@@ -0,0 +1,149 @@
+package org.intelligentindustry;
+
+import java.util.IllegalFormatException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Describes how many ConveyorType instances {@link DemoNamespace} brings up and how they are laid out.
+ * <p>
+ * Conveyors are numbered from 1. When {@code conveyorsPerLine} is positive the conveyors are sharded into
+ * "Line-n" folders, and when {@code linesPerArea} is positive as well those lines are grouped into "Area-n"
+ * folders. NodeIds of the conveyors do not depend on the folder layout.
+ */
+public class FleetConfig {
+
+    public static final String COUNT = "demo.fleet.count";
+    public static final String NAME_PATTERN = "demo.fleet.name-pattern";
+    public static final String CONVEYORS_PER_LINE = "demo.fleet.conveyors-per-line";
+    public static final String LINES_PER_AREA = "demo.fleet.lines-per-area";
+    public static final String PARALLELISM = "demo.fleet.parallelism";
+
+    // a format specifier, or an escaped percent sign or line separator
+    private static final Pattern FORMAT_SPECIFIER = Pattern.compile("%(\\d+\\$)?[-#+ 0,(<]*\\d*(\\.\\d+)?([a-zA-Z%])");
+
+    private final int count;
+    private final String namePattern;
+    private final int conveyorsPerLine;
+    private final int linesPerArea;
+    private final int parallelism;
+
+    public FleetConfig(int count, String namePattern, int conveyorsPerLine, int linesPerArea, int parallelism) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be at least 1: " + count);
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+
+        validateNamePattern(namePattern);
+
+        this.count = count;
+        this.namePattern = namePattern;
+        this.conveyorsPerLine = Math.max(0, conveyorsPerLine);
+        this.linesPerArea = Math.max(0, linesPerArea);
+        this.parallelism = parallelism;
+    }
+
+    public static FleetConfig fromSettings() {
+        return new FleetConfig(
+            Settings.getInt(COUNT, 1),
+            Settings.getString(NAME_PATTERN, "Conveyor-%d"),
+            Settings.getInt(CONVEYORS_PER_LINE, 0),
+            Settings.getInt(LINES_PER_AREA, 0),
+            Settings.getInt(PARALLELISM, Runtime.getRuntime().availableProcessors())
+        );
+    }
+
+    /**
+     * Conveyor names become NodeIds, so the pattern must give every conveyor number its own name: it needs exactly
+     * one decimal integer conversion, such as {@code %d} or {@code %05d}, and no other conversions.
+     */
+    private static void validateNamePattern(String namePattern) {
+        int conversions = 0;
+        Matcher matcher = FORMAT_SPECIFIER.matcher(namePattern);
+
+        while (matcher.find()) {
+            String conversion = matcher.group(3);
+
+            if (conversion.equals("%") || conversion.equals("n")) {
+                continue;
+            }
+            if (!conversion.equals("d")) {
+                throw new IllegalArgumentException(
+                    NAME_PATTERN + " may only contain a %d conversion: " + namePattern);
+            }
+
+            conversions++;
+        }
+
+        if (conversions != 1) {
+            throw new IllegalArgumentException(
+                NAME_PATTERN + " must contain exactly one %d conversion: " + namePattern);
+        }
+
+        try {
+            String.format(namePattern, 1);
+        } catch (IllegalFormatException e) {
+            throw new IllegalArgumentException(NAME_PATTERN + " is not a valid format: " + namePattern, e);
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getConveyorsPerLine() {
+        return conveyorsPerLine;
+    }
+
+    public int getLinesPerArea() {
+        return linesPerArea;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public String conveyorName(int number) {
+        return String.format(namePattern, number);
+    }
+
+    public boolean isSharded() {
+        return conveyorsPerLine > 0;
+    }
+
+    public int lineCount() {
+        return isSharded() ? (count + conveyorsPerLine - 1) / conveyorsPerLine : 0;
+    }
+
+    public int areaCount() {
+        return isSharded() && linesPerArea > 0 ? (lineCount() + linesPerArea - 1) / linesPerArea : 0;
+    }
+
+    /**
+     * @return the zero-based line a conveyor belongs to, or -1 when the fleet is not sharded.
+     */
+    public int lineOf(int number) {
+        return isSharded() ? (number - 1) / conveyorsPerLine : -1;
+    }
+
+    /**
+     * @return the zero-based area a line belongs to, or -1 when lines are not grouped into areas.
+     */
+    public int areaOf(int line) {
+        return linesPerArea > 0 ? line / linesPerArea : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "FleetConfig{" +
+            "count=" + count +
+            ", namePattern='" + namePattern + '\'' +
+            ", conveyorsPerLine=" + conveyorsPerLine +
+            ", linesPerArea=" + linesPerArea +
+            ", parallelism=" + parallelism +
+            '}';
+    }
+
+}
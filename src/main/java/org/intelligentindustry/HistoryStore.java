@@ -0,0 +1,309 @@
+package org.intelligentindustry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.milo.opcua.sdk.core.AccessLevel;
+import org.eclipse.milo.opcua.sdk.server.AbstractLifecycle;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ByteString;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.ExtensionObject;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UByte;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryData;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadDetails;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadResult;
+import org.eclipse.milo.opcua.stack.core.types.structured.HistoryReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadRawModifiedDetails;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records every Value change of historizing variables in a {@link TimeSeriesFile} per node and serves raw history
+ * reads from them.
+ * <p>
+ * Files live in the configured directory, named after the node, and are reopened on restart. Only numeric values are
+ * recorded; they are stored and returned as Double.
+ */
+public class HistoryStore extends AbstractLifecycle {
+
+    public static final String ENABLED = "demo.history.enabled";
+    public static final String DIRECTORY = "demo.history.directory";
+    public static final String CAPACITY = "demo.history.capacity";
+    public static final String MAX_VALUES_PER_READ = "demo.history.max-values-per-read";
+    public static final String MAX_NODES = "demo.history.max-nodes";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Map<NodeId, TimeSeriesFile> series = new ConcurrentHashMap<>();
+
+    private final OpcUaServer server;
+    private final File directory;
+    private final int capacity;
+    private final int maxValuesPerRead;
+    private final int maxNodes;
+
+    private volatile boolean maxNodesReported;
+
+    public HistoryStore(OpcUaServer server, File directory, int capacity, int maxValuesPerRead, int maxNodes) {
+        this.server = server;
+        this.directory = directory;
+        this.capacity = capacity;
+        this.maxValuesPerRead = maxValuesPerRead;
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * @return the configured store, or {@code null} if history is disabled.
+     */
+    public static HistoryStore fromSettings(OpcUaServer server) {
+        if (!Settings.getBoolean(ENABLED, false)) {
+            return null;
+        }
+
+        return new HistoryStore(
+            server,
+            new File(Settings.getString(DIRECTORY, "history")),
+            Settings.getInt(CAPACITY, 10000),
+            Settings.getInt(MAX_VALUES_PER_READ, 10000),
+            Settings.getInt(MAX_NODES, 10000)
+        );
+    }
+
+    @Override
+    protected void onStartup() {
+        logger.info("Recording history in {} ({} values per node)", directory, capacity);
+    }
+
+    @Override
+    protected void onShutdown() {
+        for (TimeSeriesFile file : series.values()) {
+            file.close();
+        }
+        series.clear();
+    }
+
+    /**
+     * Mark {@code node} as historizing and record its Value from now on. Every node gets a mapped file of its own, so
+     * nodes beyond {@code max-nodes} are not historized rather than run the process out of mappings.
+     */
+    public void historize(UaVariableNode node) {
+        if (series.containsKey(node.getNodeId())) {
+            return;
+        }
+        if (series.size() >= maxNodes) {
+            if (!maxNodesReported) {
+                maxNodesReported = true;
+                logger.warn("History is limited to {} nodes ({}), not historizing {} and beyond",
+                    maxNodes, MAX_NODES, node.getNodeId());
+            }
+            return;
+        }
+
+        TimeSeriesFile file;
+
+        try {
+            file = TimeSeriesFile.open(fileFor(node.getNodeId()), capacity);
+        } catch (IOException e) {
+            logger.error("Could not open history for {}: {}", node.getNodeId(), e.getMessage(), e);
+            return;
+        }
+
+        if (series.putIfAbsent(node.getNodeId(), file) != null) {
+            // historized concurrently; keep the other mapping
+            file.close();
+            return;
+        }
+
+        node.setHistorizing(true);
+        node.setAccessLevel(withHistoryRead(node.getAccessLevel()));
+        node.setUserAccessLevel(withHistoryRead(node.getUserAccessLevel()));
+
+        node.addAttributeObserver((n, attributeId, value) -> {
+            if (attributeId == AttributeId.Value && value instanceof DataValue) {
+                record(file, (DataValue) value);
+            }
+        });
+    }
+
+    public boolean isHistorizing(NodeId nodeId) {
+        return series.containsKey(nodeId);
+    }
+
+    public List<HistoryReadResult> read(
+        HistoryReadDetails details,
+        TimestampsToReturn timestamps,
+        List<HistoryReadValueId> readValueIds) {
+
+        List<HistoryReadResult> results = new ArrayList<>(readValueIds.size());
+
+        for (HistoryReadValueId readValueId : readValueIds) {
+            TimeSeriesFile file = series.get(readValueId.getNodeId());
+
+            if (file == null) {
+                results.add(new HistoryReadResult(
+                    new StatusCode(StatusCodes.Bad_HistoryOperationUnsupported), null, null));
+            } else if (!(details instanceof ReadRawModifiedDetails) ||
+                Boolean.TRUE.equals(((ReadRawModifiedDetails) details).getIsReadModified())) {
+
+                // values are never modified after the fact, so there is nothing a ReadModified could return
+                results.add(new HistoryReadResult(
+                    new StatusCode(StatusCodes.Bad_HistoryOperationUnsupported), null, null));
+            } else {
+                results.add(readRaw(file, (ReadRawModifiedDetails) details, timestamps, readValueId));
+            }
+        }
+
+        return results;
+    }
+
+    private HistoryReadResult readRaw(
+        TimeSeriesFile file,
+        ReadRawModifiedDetails details,
+        TimestampsToReturn timestamps,
+        HistoryReadValueId readValueId) {
+
+        long start = utcTimeOf(details.getStartTime());
+        long end = utcTimeOf(details.getEndTime());
+        long numValues = details.getNumValuesPerNode() != null ? details.getNumValuesPerNode().longValue() : 0;
+
+        if ((start < 0 && end < 0) || ((start < 0 || end < 0) && numValues == 0)) {
+            return new HistoryReadResult(new StatusCode(StatusCodes.Bad_HistoryOperationInvalid), null, null);
+        }
+
+        long limit = numValues == 0 ? maxValuesPerRead : Math.min(numValues, maxValuesPerRead);
+        boolean forward = start >= 0 && (end < 0 || start <= end);
+        boolean bounds = Boolean.TRUE.equals(details.getReturnBounds());
+
+        ByteString continuationPoint = readValueId.getContinuationPoint();
+        boolean resumed = continuationPoint != null && continuationPoint.isNotNull();
+
+        List<DataValue> values = new ArrayList<>();
+        long next = -1;
+
+        synchronized (file) {
+            long first = file.firstIndex();
+            long last = file.count() - 1;
+
+            if (forward) {
+                long from = file.ceilingIndex(start);
+                // the end time itself is excluded unless it equals the start time
+                long to = end < 0 ? last : (end == start ? file.floorIndex(end) : file.ceilingIndex(end) - 1);
+
+                if (resumed) {
+                    from = Math.max(first, indexOf(continuationPoint));
+                } else if (bounds && from - 1 >= first && (from > last || file.timeAt(from) != start)) {
+                    values.add(valueAt(file, from - 1, timestamps));
+                }
+
+                long i = from;
+                for (; i <= to && values.size() < limit; i++) {
+                    values.add(valueAt(file, i, timestamps));
+                }
+
+                if (i <= to) {
+                    next = i;
+                } else if (bounds && end >= 0 && to + 1 <= last) {
+                    values.add(valueAt(file, to + 1, timestamps));
+                }
+            } else {
+                // without a start time, read back from the end time; otherwise from start back to (excluding) end
+                long from = start < 0 ? file.floorIndex(end) : file.floorIndex(start);
+                long to = start < 0 ? first : file.floorIndex(end) + 1;
+
+                if (resumed) {
+                    from = Math.min(last, indexOf(continuationPoint));
+                } else if (bounds && start >= 0 && from + 1 <= last && (from < first || file.timeAt(from) != start)) {
+                    values.add(valueAt(file, from + 1, timestamps));
+                }
+
+                long i = from;
+                for (; i >= Math.max(to, first) && values.size() < limit; i--) {
+                    values.add(valueAt(file, i, timestamps));
+                }
+
+                if (i >= Math.max(to, first)) {
+                    next = i;
+                } else if (bounds && end >= 0 && to - 1 >= first) {
+                    values.add(valueAt(file, to - 1, timestamps));
+                }
+            }
+        }
+
+        HistoryData historyData = new HistoryData(values.toArray(new DataValue[0]));
+
+        return new HistoryReadResult(
+            values.isEmpty() ? new StatusCode(StatusCodes.Good_NoData) : StatusCode.GOOD,
+            next >= 0 ? continuationPointOf(next) : null,
+            ExtensionObject.encode(server.getSerializationContext(), historyData)
+        );
+    }
+
+    private void record(TimeSeriesFile file, DataValue value) {
+        Object v = value.getValue().getValue();
+
+        if (!(v instanceof Number)) {
+            return;
+        }
+
+        DateTime time = value.getSourceTime() != null ? value.getSourceTime() : value.getServerTime();
+        long utcTime = time != null ? time.getUtcTime() : DateTime.now().getUtcTime();
+        long status = value.getStatusCode() != null ? value.getStatusCode().getValue() : 0L;
+
+        file.append(utcTime, ((Number) v).doubleValue(), status);
+    }
+
+    private File fileFor(NodeId nodeId) {
+        return new File(directory, nodeId.toParseableString().replaceAll("[^A-Za-z0-9._-]", "_") + ".hist");
+    }
+
+    private static DataValue valueAt(TimeSeriesFile file, long index, TimestampsToReturn timestamps) {
+        DateTime time = new DateTime(file.timeAt(index));
+
+        boolean source = timestamps == TimestampsToReturn.Source || timestamps == TimestampsToReturn.Both;
+        boolean server = timestamps == TimestampsToReturn.Server || timestamps == TimestampsToReturn.Both;
+
+        return new DataValue(
+            new Variant(file.valueAt(index)),
+            new StatusCode(file.statusAt(index)),
+            source ? time : null,
+            server ? time : null
+        );
+    }
+
+    private static UByte withHistoryRead(UByte accessLevel) {
+        EnumSet<AccessLevel> accessLevels = AccessLevel.fromValue(accessLevel);
+        accessLevels.add(AccessLevel.HistoryRead);
+
+        return AccessLevel.toValue(accessLevels);
+    }
+
+    private static long utcTimeOf(DateTime time) {
+        return time == null || time.isNull() ? -1 : time.getUtcTime();
+    }
+
+    private static ByteString continuationPointOf(long index) {
+        return ByteString.of(ByteBuffer.allocate(8).putLong(index).array());
+    }
+
+    private static long indexOf(ByteString continuationPoint) {
+        byte[] bytes = continuationPoint.bytesOrEmpty();
+
+        return bytes.length == 8 ? ByteBuffer.wrap(bytes).getLong() : 0;
+    }
+
+}
@@ -0,0 +1,356 @@
+package org.intelligentindustry;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.eclipse.milo.opcua.sdk.server.AbstractLifecycle;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Southbound port that feeds live values into the address space from a binary stream, e.g. from a PLC gateway.
+ * <p>
+ * The stream is a sequence of {@value #FRAME_SIZE}-byte big-endian frames: a 32-bit tag index, a 64-bit source
+ * timestamp in milliseconds since 1970 (0 stamps the value on arrival) and a 64-bit IEEE 754 value. Tag
+ * {@code 3 * n} is Motors of the n-th conveyor of the fleet, {@code 3 * n + 1} its RunningSpeed and
+ * {@code 3 * n + 2} its Dropoffs; the tags of the virtual conveyors follow those of the fleet in the same layout.
+ * Motors and Dropoffs only accept integral values in the range of their data type.
+ * <p>
+ * Over UDP every datagram carries whole frames; over TCP frames may span reads, and every connection is served by a
+ * thread of its own. Each read is parsed from a direct buffer into primitive arrays, without allocating per frame,
+ * and applied as one batch of at most {@code batch-size} frames that shares a single server timestamp. Applied and
+ * rejected frames and the time taken per batch are recorded in {@link ServerMetrics}.
+ */
+public class IngestPort extends AbstractLifecycle {
+
+    public static final String PORT = "demo.ingest.port";
+    public static final String BIND_ADDRESS = "demo.ingest.bind-address";
+    public static final String TRANSPORT = "demo.ingest.transport";
+    public static final String BATCH_SIZE = "demo.ingest.batch-size";
+
+    public static final int FRAME_SIZE = 20;
+    public static final int TAGS_PER_CONVEYOR = 3;
+
+    // 100 ns intervals between 1601-01-01, the OPC UA epoch, and 1970-01-01
+    private static final long EPOCH_OFFSET = 116444736000000000L;
+    private static final int MAX_DATAGRAM = 65507;
+
+    private static final int MOTORS = 0;
+    private static final int RUNNING_SPEED = 1;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger connectionNumber = new AtomicInteger();
+
+    private final Supplier<ConveyorFleet> fleet;
+    private final VirtualConveyors virtualConveyors;
+    private final ServerMetrics metrics;
+    private final boolean tcp;
+    private final String bindAddress;
+    private final int port;
+    private final int batchSize;
+
+    private volatile boolean running;
+    private volatile DatagramChannel datagramChannel;
+    private volatile ServerSocketChannel serverChannel;
+    private volatile Thread acceptThread;
+
+    /**
+     * @param fleet            the conveyors of the fleet; may supply {@code null} until they exist, in which case
+     *                         frames for them are rejected.
+     * @param virtualConveyors the virtual conveyors, or {@code null} if there are none.
+     */
+    public IngestPort(
+        Supplier<ConveyorFleet> fleet,
+        VirtualConveyors virtualConveyors,
+        ServerMetrics metrics,
+        boolean tcp,
+        String bindAddress,
+        int port,
+        int batchSize) {
+
+        this.fleet = fleet;
+        this.virtualConveyors = virtualConveyors;
+        this.metrics = metrics;
+        this.tcp = tcp;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * @return the configured port, or {@code null} if the port is set to 0.
+     */
+    public static IngestPort fromSettings(
+        Supplier<ConveyorFleet> fleet,
+        VirtualConveyors virtualConveyors,
+        ServerMetrics metrics) {
+
+        int port = Settings.getInt(PORT, 0);
+
+        if (port <= 0) {
+            return null;
+        }
+
+        String transport = Settings.getString(TRANSPORT, "udp");
+
+        if (!transport.equalsIgnoreCase("udp") && !transport.equalsIgnoreCase("tcp")) {
+            throw new IllegalArgumentException("Unknown transport '" + transport + "' in " + TRANSPORT);
+        }
+
+        return new IngestPort(
+            fleet,
+            virtualConveyors,
+            metrics,
+            transport.equalsIgnoreCase("tcp"),
+            Settings.getString(BIND_ADDRESS, "127.0.0.1"),
+            port,
+            Settings.getInt(BATCH_SIZE, 4096)
+        );
+    }
+
+    @Override
+    protected void onStartup() {
+        running = true;
+
+        try {
+            if (tcp) {
+                serverChannel = ServerSocketChannel.open();
+                serverChannel.bind(new InetSocketAddress(bindAddress, port));
+
+                acceptThread = new Thread(this::accept, "ingest-accept");
+            } else {
+                datagramChannel = DatagramChannel.open();
+                datagramChannel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+                datagramChannel.bind(new InetSocketAddress(bindAddress, port));
+
+                acceptThread = new Thread(this::receive, "ingest-udp");
+            }
+        } catch (IOException e) {
+            logger.error("Could not bind ingest port to {}:{}: {}", bindAddress, port, e.getMessage(), e);
+            running = false;
+            return;
+        }
+
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+
+        logger.info("Ingesting {} frames on {}:{} in batches of up to {}",
+            tcp ? "TCP" : "UDP", bindAddress, port, batchSize);
+    }
+
+    @Override
+    protected void onShutdown() {
+        running = false;
+
+        closeQuietly(serverChannel);
+        closeQuietly(datagramChannel);
+
+        for (SocketChannel connection : connections) {
+            closeQuietly(connection);
+        }
+
+        if (acceptThread != null) {
+            try {
+                acceptThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void receive() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM).order(ByteOrder.BIG_ENDIAN);
+        Batch batch = new Batch();
+
+        while (running) {
+            try {
+                buffer.clear();
+                datagramChannel.receive(buffer);
+                buffer.flip();
+
+                if (buffer.remaining() % FRAME_SIZE != 0) {
+                    // a truncated datagram cannot be resynchronized; keep its whole frames
+                    metrics.ingestRejected(1);
+                }
+
+                batch.parse(buffer);
+                batch.apply();
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (Throwable t) {
+                logger.error("Error ingesting datagram: {}", t.getMessage(), t);
+            }
+        }
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                SocketChannel connection = serverChannel.accept();
+                connection.socket().setTcpNoDelay(true);
+                connections.add(connection);
+
+                Thread thread = new Thread(
+                    () -> read(connection),
+                    "ingest-tcp-" + connectionNumber.incrementAndGet()
+                );
+                thread.setDaemon(true);
+                thread.start();
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                logger.warn("Error accepting ingest connection: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void read(SocketChannel connection) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(batchSize * FRAME_SIZE).order(ByteOrder.BIG_ENDIAN);
+        Batch batch = new Batch();
+
+        try {
+            logger.debug("Ingest connection from {}", connection.getRemoteAddress());
+
+            while (running && connection.read(buffer) >= 0) {
+                buffer.flip();
+                batch.parse(buffer);
+                batch.apply();
+                // keep the start of a frame that spans reads
+                buffer.compact();
+            }
+        } catch (ClosedChannelException e) {
+            // shutting down
+        } catch (Throwable t) {
+            logger.warn("Closing ingest connection: {}", t.getMessage());
+        } finally {
+            connections.remove(connection);
+            closeQuietly(connection);
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // ignored
+            }
+        }
+    }
+
+    /**
+     * Frames parsed from one read, owned by the thread serving the channel.
+     */
+    private final class Batch {
+
+        private final int[] tags = new int[batchSize];
+        private final long[] times = new long[batchSize];
+        private final double[] values = new double[batchSize];
+        private int size;
+
+        /**
+         * Parse whole frames until {@code buffer} has less than a frame left, applying whenever the batch is full.
+         */
+        void parse(ByteBuffer buffer) {
+            while (buffer.remaining() >= FRAME_SIZE) {
+                if (size == batchSize) {
+                    apply();
+                }
+
+                tags[size] = buffer.getInt();
+                times[size] = buffer.getLong();
+                values[size] = buffer.getDouble();
+                size++;
+            }
+        }
+
+        void apply() {
+            if (size == 0) {
+                return;
+            }
+
+            long startNanos = System.nanoTime();
+
+            ConveyorFleet conveyors = fleet.get();
+            int fleetTags = conveyors != null ? conveyors.size() * TAGS_PER_CONVEYOR : 0;
+            long virtualTags = virtualConveyors != null ? (long) virtualConveyors.getCount() * TAGS_PER_CONVEYOR : 0;
+
+            DateTime serverTime = DateTime.now();
+            int rejected = 0;
+
+            for (int i = 0; i < size; i++) {
+                int tag = tags[i];
+                long time = times[i] != 0 ? times[i] * 10_000 + EPOCH_OFFSET : serverTime.getUtcTime();
+                boolean applied;
+
+                if (tag >= 0 && tag < fleetTags) {
+                    applied = applyToFleet(conveyors.get(tag / TAGS_PER_CONVEYOR), tag % TAGS_PER_CONVEYOR,
+                        values[i], time, serverTime);
+                } else if (tag >= fleetTags && tag - fleetTags < virtualTags) {
+                    int virtualTag = tag - fleetTags;
+                    applied = virtualConveyors.ingest(virtualTag / TAGS_PER_CONVEYOR, virtualTag % TAGS_PER_CONVEYOR,
+                        values[i], time);
+                } else {
+                    applied = false;
+                }
+
+                if (!applied) {
+                    rejected++;
+                }
+            }
+
+            metrics.ingested(size - rejected);
+            metrics.ingestRejected(rejected);
+            metrics.getIngestBatchDuration().record(System.nanoTime() - startNanos);
+
+            size = 0;
+        }
+
+        private boolean applyToFleet(Conveyor conveyor, int variable, double value, long time, DateTime serverTime) {
+            UaVariableNode node;
+            Object typed;
+
+            if (variable == MOTORS) {
+                if (value != (short) value) {
+                    return false;
+                }
+                node = conveyor.getMotors();
+                typed = (short) value;
+            } else if (variable == RUNNING_SPEED) {
+                node = conveyor.getRunningSpeed();
+                typed = value;
+            } else {
+                if (value != (long) value) {
+                    return false;
+                }
+                node = conveyor.getDropoffs();
+                typed = (long) value;
+            }
+
+            node.setValue(new DataValue(new Variant(typed), StatusCode.GOOD, new DateTime(time), serverTime));
+
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,90 @@
+package org.intelligentindustry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free, fixed-size histogram with HDR-style log-linear buckets.
+ * <p>
+ * Values below 64 get a bucket each; above that every power of two is split into 32 linear buckets, so any
+ * recorded value is reported within about 3% of its true value. Recording is a couple of shifts and one atomic
+ * increment, and the histogram never allocates after construction.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        long v = Math.max(0, value);
+
+        counts.incrementAndGet(bucketOf(v));
+        count.increment();
+        sum.add(v);
+
+        long currentMax = max.get();
+        while (v > currentMax && !max.compareAndSet(currentMax, v)) {
+            currentMax = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param quantile between 0.0 and 1.0.
+     * @return the lowest value of the bucket holding the requested quantile, or 0 if nothing was recorded.
+     */
+    public long getValueAtQuantile(double quantile) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+
+            if (seen >= rank) {
+                return Math.min(valueOf(i), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    static int bucketOf(long value) {
+        int exponent = 63 - Long.numberOfLeadingZeros(value | 1);
+        int shift = Math.max(0, exponent - SUB_BUCKET_BITS);
+
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    static long valueOf(int bucket) {
+        int shift = Math.max(0, (bucket >> SUB_BUCKET_BITS) - 1);
+
+        return (long) (bucket - (shift << SUB_BUCKET_BITS)) << shift;
+    }
+
+}
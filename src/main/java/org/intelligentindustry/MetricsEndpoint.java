@@ -0,0 +1,90 @@
+package org.intelligentindustry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.eclipse.milo.opcua.sdk.server.AbstractLifecycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves {@link ServerMetrics} as plain text on {@code http://<bind-address>:<port>/metrics}.
+ */
+public class MetricsEndpoint extends AbstractLifecycle {
+
+    public static final String ENABLED = "demo.metrics.enabled";
+    public static final String BIND_ADDRESS = "demo.metrics.bind-address";
+    public static final String PORT = "demo.metrics.port";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ServerMetrics metrics;
+    private final String bindAddress;
+    private final int port;
+
+    private HttpServer httpServer;
+
+    public MetricsEndpoint(ServerMetrics metrics, String bindAddress, int port) {
+        this.metrics = metrics;
+        this.bindAddress = bindAddress;
+        this.port = port;
+    }
+
+    /**
+     * @return the configured endpoint, or {@code null} if it is disabled or the port is set to 0.
+     */
+    public static MetricsEndpoint fromSettings(ServerMetrics metrics) {
+        // the endpoint is unauthenticated, so it is only opened on request
+        if (!Settings.getBoolean(ENABLED, false)) {
+            return null;
+        }
+
+        int port = Settings.getInt(PORT, 9464);
+
+        return port > 0 ? new MetricsEndpoint(metrics, Settings.getString(BIND_ADDRESS, "127.0.0.1"), port) : null;
+    }
+
+    @Override
+    protected void onStartup() {
+        try {
+            httpServer = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        } catch (IOException e) {
+            logger.error("Could not bind metrics endpoint to {}:{}: {}", bindAddress, port, e.getMessage(), e);
+            return;
+        }
+
+        httpServer.createContext("/metrics", this::handle);
+        httpServer.start();
+
+        logger.info("Serving metrics on http://{}:{}/metrics", bindAddress, port);
+    }
+
+    @Override
+    protected void onShutdown() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, 0);
+
+            try (OutputStream body = exchange.getResponseBody();
+                 Writer writer = new OutputStreamWriter(body, StandardCharsets.UTF_8)) {
+
+                metrics.writeText(writer);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+}
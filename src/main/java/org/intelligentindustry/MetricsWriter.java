@@ -0,0 +1,112 @@
+package org.intelligentindustry;
+
+import java.io.IOException;
+
+/**
+ * Writes metric families in the Prometheus text exposition format, one {@code # TYPE} line per family followed by
+ * its samples.
+ * <p>
+ * Label values are escaped, so node ids and client addresses can be used as labels as they are.
+ */
+public final class MetricsWriter {
+
+    private final Appendable out;
+
+    public MetricsWriter(Appendable out) {
+        this.out = out;
+    }
+
+    public MetricsWriter counter(String name, long value) throws IOException {
+        return family(name, "counter").sample(name, value);
+    }
+
+    public MetricsWriter gauge(String name, long value) throws IOException {
+        return family(name, "gauge").sample(name, value);
+    }
+
+    public MetricsWriter gauge(String name, double value) throws IOException {
+        return family(name, "gauge").sample(name, value);
+    }
+
+    /**
+     * Write {@code histogram}, recorded in nanoseconds, as a summary in seconds with the given quantiles, its count
+     * and sum, plus a {@code <name>_max} gauge.
+     */
+    public MetricsWriter summary(String name, LatencyHistogram histogram, double... quantiles) throws IOException {
+        family(name, "summary");
+
+        for (double quantile : quantiles) {
+            sample(name, seconds(histogram.getValueAtQuantile(quantile)), "quantile", Double.toString(quantile));
+        }
+
+        sample(name + "_count", histogram.getCount());
+        sample(name + "_sum", seconds(histogram.getSum()));
+
+        return gauge(name + "_max", seconds(histogram.getMax()));
+    }
+
+    /**
+     * Start a family whose samples are written with {@link #sample(String, long, String...)}.
+     */
+    public MetricsWriter family(String name, String type) throws IOException {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    /**
+     * @param labels label names and values, alternating.
+     */
+    public MetricsWriter sample(String name, long value, String... labels) throws IOException {
+        return sample(name, Long.toString(value), labels);
+    }
+
+    /**
+     * @param labels label names and values, alternating.
+     */
+    public MetricsWriter sample(String name, double value, String... labels) throws IOException {
+        return sample(name, Double.toString(value), labels);
+    }
+
+    private MetricsWriter sample(String name, String value, String... labels) throws IOException {
+        out.append(name);
+
+        if (labels.length > 0) {
+            out.append('{');
+
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                if (i > 0) {
+                    out.append(',');
+                }
+
+                out.append(labels[i]).append("=\"");
+                escape(labels[i + 1]);
+                out.append('"');
+            }
+
+            out.append('}');
+        }
+
+        out.append(' ').append(value).append('\n');
+
+        return this;
+    }
+
+    private void escape(String labelValue) throws IOException {
+        for (int i = 0; i < labelValue.length(); i++) {
+            char c = labelValue.charAt(i);
+
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+}
@@ -0,0 +1,446 @@
+package org.intelligentindustry;
+
+import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * The folders and ConveyorType instances {@link DemoNamespace} builds below the IntelligentIndustry folder, with
+ * their initial values.
+ * <p>
+ * A model is either derived from a {@link FleetConfig} or loaded from a model file, one record per line:
+ * <pre>
+ * # comment
+ * folder,Area-1/Line-1
+ * conveyor,Area-1/Line-1,Conveyor-1,4,0.0
+ * </pre>
+ * Folder paths are relative to IntelligentIndustry and every parent must be declared before its children. Conveyors
+ * name their folder (empty for IntelligentIndustry itself) and may give initial Motors and RunningSpeed values;
+ * omitted values keep the ConveyorType defaults. Files are read line by line, so only the model itself is kept in
+ * memory - as flat arrays, not as nodes.
+ * <p>
+ * A model can be compiled into a binary snapshot, which is read back through a memory mapping without any text
+ * parsing. The snapshot header records the length and CRC-32 of the model file it was compiled from, so an edited
+ * model file is recompiled even if its modification time did not change.
+ */
+public class PlantModel {
+
+    public static final String FILE = "demo.model.file";
+    public static final String SNAPSHOT = "demo.model.snapshot";
+
+    private static final int MAGIC = 0x44454d4d; // "DEMM"
+    private static final int VERSION = 2;
+
+    private static final int NO_MOTORS = Integer.MIN_VALUE;
+
+    private final String source;
+
+    private final List<String> folderNames = new ArrayList<>();
+    private int[] folderParents = new int[16];
+
+    private final List<String> conveyorNames = new ArrayList<>();
+    private int[] conveyorFolders = new int[16];
+    private int[] motors = new int[16];
+    private double[] runningSpeeds = new double[16];
+
+    private PlantModel(String source) {
+        this.source = source;
+    }
+
+    /**
+     * @return the model in the configured model file or snapshot, or the layout described by {@code fleetConfig}
+     * if neither is configured.
+     */
+    public static PlantModel fromSettings(FleetConfig fleetConfig) throws IOException {
+        String file = Settings.getString(FILE, null);
+        String snapshot = Settings.getString(SNAPSHOT, null);
+
+        if (file == null && snapshot == null) {
+            return fromFleetConfig(fleetConfig);
+        } else if (snapshot == null) {
+            return readModel(new File(file));
+        } else if (file == null) {
+            return readSnapshot(new File(snapshot));
+        }
+
+        File modelFile = new File(file);
+        File snapshotFile = new File(snapshot);
+        Fingerprint source = Fingerprint.of(modelFile);
+
+        if (!source.equals(Fingerprint.ofSnapshot(snapshotFile))) {
+            readModel(modelFile).writeSnapshot(snapshotFile, source);
+        }
+
+        return readSnapshot(snapshotFile);
+    }
+
+    public static PlantModel fromFleetConfig(FleetConfig fleetConfig) {
+        PlantModel model = new PlantModel(fleetConfig.toString());
+
+        int[] areaFolders = new int[fleetConfig.areaCount()];
+        for (int area = 0; area < areaFolders.length; area++) {
+            areaFolders[area] = model.addFolder(-1, "Area-" + (area + 1));
+        }
+
+        int[] lineFolders = new int[fleetConfig.lineCount()];
+        for (int line = 0; line < lineFolders.length; line++) {
+            int area = fleetConfig.areaOf(line);
+
+            lineFolders[line] = model.addFolder(area >= 0 ? areaFolders[area] : -1, "Line-" + (line + 1));
+        }
+
+        for (int number = 1; number <= fleetConfig.getCount(); number++) {
+            int line = fleetConfig.lineOf(number);
+
+            model.addConveyor(
+                line >= 0 ? lineFolders[line] : -1, fleetConfig.conveyorName(number), NO_MOTORS, Double.NaN);
+        }
+
+        return model;
+    }
+
+    public static PlantModel readModel(File file) throws IOException {
+        PlantModel model = new PlantModel(file.getPath());
+        Map<String, Integer> folders = new HashMap<>();
+        Set<String> conveyors = new HashSet<>();
+
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8), 1 << 16)) {
+
+            String line;
+            int lineNumber = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split(",", -1);
+
+                try {
+                    if (fields[0].equals("folder") && fields.length == 2) {
+                        String path = fields[1].trim();
+                        int slash = path.lastIndexOf('/');
+                        int parent = slash < 0 ? -1 : folderIndex(folders, path.substring(0, slash));
+
+                        if (path.isEmpty() || folders.containsKey(path)) {
+                            throw new IllegalArgumentException("duplicate or empty folder '" + path + "'");
+                        }
+
+                        folders.put(path, model.addFolder(parent, path.substring(slash + 1)));
+                    } else if (fields[0].equals("conveyor") && fields.length >= 3 && fields.length <= 5) {
+                        String name = fields[2].trim();
+
+                        if (name.isEmpty() || !conveyors.add(name)) {
+                            throw new IllegalArgumentException("duplicate or empty conveyor '" + name + "'");
+                        }
+
+                        model.addConveyor(
+                            folderIndex(folders, fields[1].trim()),
+                            name,
+                            fields.length > 3 && !fields[3].trim().isEmpty() ?
+                                Short.parseShort(fields[3].trim()) : NO_MOTORS,
+                            fields.length > 4 && !fields[4].trim().isEmpty() ?
+                                Double.parseDouble(fields[4].trim()) : Double.NaN
+                        );
+                    } else {
+                        throw new IllegalArgumentException("unknown record");
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+
+        return model;
+    }
+
+    public static PlantModel readSnapshot(File file) throws IOException {
+        MappedByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.remaining() < 32 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException(file + " is not a plant model snapshot of version " + VERSION);
+        }
+
+        // the model file it was compiled from
+        buffer.getLong();
+        buffer.getLong();
+
+        PlantModel model = new PlantModel(file.getPath());
+        int folderCount = buffer.getInt();
+        int conveyorCount = buffer.getInt();
+
+        for (int i = 0; i < folderCount; i++) {
+            int parent = buffer.getInt();
+            model.addFolder(parent, readString(buffer));
+        }
+
+        for (int i = 0; i < conveyorCount; i++) {
+            int folder = buffer.getInt();
+            int motors = buffer.getInt();
+            double runningSpeed = buffer.getDouble();
+            model.addConveyor(folder, readString(buffer), motors, runningSpeed);
+        }
+
+        return model;
+    }
+
+    /**
+     * Write the model as a binary snapshot, replacing {@code file} atomically.
+     *
+     * @param source the model file the snapshot is compiled from, or {@code null}.
+     */
+    public void writeSnapshot(File file, Fingerprint source) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("could not create " + parent);
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(source != null ? source.length : -1);
+            out.writeLong(source != null ? source.checksum : -1);
+            out.writeInt(getFolderCount());
+            out.writeInt(getConveyorCount());
+
+            for (int i = 0; i < getFolderCount(); i++) {
+                out.writeInt(folderParents[i]);
+                writeString(out, folderNames.get(i));
+            }
+
+            for (int i = 0; i < getConveyorCount(); i++) {
+                out.writeInt(conveyorFolders[i]);
+                out.writeInt(motors[i]);
+                out.writeDouble(runningSpeeds[i]);
+                writeString(out, conveyorNames.get(i));
+            }
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return where the model came from, for logging.
+     */
+    public String getSource() {
+        return source;
+    }
+
+    public int getFolderCount() {
+        return folderNames.size();
+    }
+
+    public String getFolderName(int folder) {
+        return folderNames.get(folder);
+    }
+
+    /**
+     * @return the index of the parent folder, which is always lower than {@code folder}, or -1 for
+     * IntelligentIndustry.
+     */
+    public int getFolderParent(int folder) {
+        return folderParents[folder];
+    }
+
+    public int getConveyorCount() {
+        return conveyorNames.size();
+    }
+
+    public String getConveyorName(int conveyor) {
+        return conveyorNames.get(conveyor);
+    }
+
+    /**
+     * @return the index of the conveyor's folder, or -1 for IntelligentIndustry.
+     */
+    public int getConveyorFolder(int conveyor) {
+        return conveyorFolders[conveyor];
+    }
+
+    public boolean hasMotors(int conveyor) {
+        return motors[conveyor] != NO_MOTORS;
+    }
+
+    public short getMotors(int conveyor) {
+        return (short) motors[conveyor];
+    }
+
+    public boolean hasRunningSpeed(int conveyor) {
+        return !Double.isNaN(runningSpeeds[conveyor]);
+    }
+
+    public double getRunningSpeed(int conveyor) {
+        return runningSpeeds[conveyor];
+    }
+
+    private int addFolder(int parent, String name) {
+        int index = folderNames.size();
+
+        if (parent < -1 || parent >= index) {
+            throw new IllegalArgumentException("folder '" + name + "' has an invalid parent: " + parent);
+        }
+
+        folderNames.add(name);
+
+        if (index == folderParents.length) {
+            folderParents = Arrays.copyOf(folderParents, index * 2);
+        }
+        folderParents[index] = parent;
+
+        return index;
+    }
+
+    private void addConveyor(int folder, String name, int motors, double runningSpeed) {
+        int index = conveyorNames.size();
+
+        if (folder < -1 || folder >= folderNames.size()) {
+            throw new IllegalArgumentException("conveyor '" + name + "' has an invalid folder: " + folder);
+        }
+
+        conveyorNames.add(name);
+
+        if (index == conveyorFolders.length) {
+            conveyorFolders = Arrays.copyOf(conveyorFolders, index * 2);
+            this.motors = Arrays.copyOf(this.motors, index * 2);
+            runningSpeeds = Arrays.copyOf(runningSpeeds, index * 2);
+        }
+        conveyorFolders[index] = folder;
+        this.motors[index] = motors;
+        runningSpeeds[index] = runningSpeed;
+    }
+
+    private static int folderIndex(Map<String, Integer> folders, String path) {
+        if (path.isEmpty()) {
+            return -1;
+        }
+
+        Integer index = folders.get(path);
+
+        if (index == null) {
+            throw new IllegalArgumentException("folder '" + path + "' is not declared");
+        }
+
+        return index;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Length and CRC-32 of a model file, which tell whether a snapshot was compiled from its current contents.
+     */
+    public static final class Fingerprint {
+
+        private final long length;
+        private final long checksum;
+
+        private Fingerprint(long length, long checksum) {
+            this.length = length;
+            this.checksum = checksum;
+        }
+
+        public static Fingerprint of(File modelFile) throws IOException {
+            CRC32 crc = new CRC32();
+            byte[] chunk = new byte[1 << 16];
+            long length = 0;
+
+            try (InputStream in = Files.newInputStream(modelFile.toPath())) {
+                int n;
+                while ((n = in.read(chunk)) > 0) {
+                    crc.update(chunk, 0, n);
+                    length += n;
+                }
+            }
+
+            return new Fingerprint(length, crc.getValue());
+        }
+
+        /**
+         * @return the fingerprint recorded in {@code snapshotFile}, or {@code null} if it is missing or not a
+         * snapshot of the current version.
+         */
+        static Fingerprint ofSnapshot(File snapshotFile) throws IOException {
+            if (!snapshotFile.isFile()) {
+                return null;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(24);
+
+            try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+                while (header.hasRemaining() && channel.read(header) > 0) {
+                    // read the whole header
+                }
+            }
+
+            header.flip();
+
+            if (header.remaining() < 24 || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+
+            return new Fingerprint(header.getLong(), header.getLong());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+
+            Fingerprint that = (Fingerprint) o;
+
+            return length == that.length && checksum == that.checksum;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(length) * 31 + Long.hashCode(checksum);
+        }
+
+    }
+
+}
@@ -0,0 +1,269 @@
+package org.intelligentindustry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.eclipse.milo.opcua.sdk.server.AbstractLifecycle;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.UaNodeManager;
+import org.eclipse.milo.opcua.sdk.server.api.DataItem;
+import org.eclipse.milo.opcua.sdk.server.api.MonitoredItem;
+import org.eclipse.milo.opcua.sdk.server.nodes.AttributeObserver;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaNode;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.sdk.server.util.SubscriptionModel;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+
+/**
+ * An alternative to {@link SubscriptionModel} that pushes Value changes to DataItems as they are written, instead
+ * of reading every monitored attribute on a timer.
+ * <p>
+ * Each monitored variable gets one {@link AttributeObserver} that fans a change out to its DataItems. A DataItem
+ * receives at most one value per sampling interval; changes arriving faster are coalesced and the latest one is
+ * delivered when the interval elapses. Queue size and discard policy are applied by the DataItem itself.
+ * <p>
+ * Items that cannot be pushed (other attributes, index ranges, nodes outside the node manager, and variables whose
+ * Value is computed on read rather than written) are handed to the polling fallback.
+ */
+public class PushSubscriptionModel extends AbstractLifecycle {
+
+    public static final String MODE = "demo.subscription.mode";
+
+    private final Map<DataItem, PushedItem> pushedItems = new ConcurrentHashMap<>();
+    private final Map<NodeId, NodeObserver> observers = new ConcurrentHashMap<>();
+
+    private final UaNodeManager nodeManager;
+    private final SubscriptionModel fallback;
+    private final Predicate<NodeId> computed;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param computed tells the variables whose Value is computed on read; these are always polled.
+     */
+    public PushSubscriptionModel(
+        OpcUaServer server,
+        UaNodeManager nodeManager,
+        SubscriptionModel fallback,
+        Predicate<NodeId> computed) {
+
+        this.nodeManager = nodeManager;
+        this.fallback = fallback;
+        this.computed = computed;
+        this.scheduler = server.getScheduledExecutorService();
+    }
+
+    /**
+     * @return {@code true} if the namespace should push rather than poll, according to {@link #MODE}.
+     */
+    public static boolean isEnabled() {
+        return "push".equalsIgnoreCase(Settings.getString(MODE, "polling"));
+    }
+
+    @Override
+    protected void onStartup() {
+    }
+
+    @Override
+    protected synchronized void onShutdown() {
+        observers.forEach((nodeId, observer) -> observer.node.removeAttributeObserver(observer));
+        observers.clear();
+        pushedItems.clear();
+    }
+
+    public synchronized void onDataItemsCreated(List<DataItem> dataItems) {
+        List<DataItem> polled = new ArrayList<>();
+
+        for (DataItem item : dataItems) {
+            UaVariableNode node = pushableNode(item.getReadValueId());
+
+            if (node == null) {
+                polled.add(item);
+                continue;
+            }
+
+            NodeObserver observer = observers.computeIfAbsent(node.getNodeId(), id -> {
+                NodeObserver o = new NodeObserver(node);
+                node.addAttributeObserver(o);
+                return o;
+            });
+
+            PushedItem pushedItem = new PushedItem(item);
+            pushedItems.put(item, pushedItem);
+            observer.items.add(pushedItem);
+
+            // the initial sample
+            pushedItem.offer(node.getValue());
+        }
+
+        if (!polled.isEmpty()) {
+            fallback.onDataItemsCreated(polled);
+        }
+    }
+
+    public void onDataItemsModified(List<DataItem> dataItems) {
+        List<DataItem> polled = new ArrayList<>();
+
+        for (DataItem item : dataItems) {
+            // the sampling interval is read from the item on every offer, nothing to reschedule
+            if (!pushedItems.containsKey(item)) {
+                polled.add(item);
+            }
+        }
+
+        if (!polled.isEmpty()) {
+            fallback.onDataItemsModified(polled);
+        }
+    }
+
+    public synchronized void onDataItemsDeleted(List<DataItem> dataItems) {
+        List<DataItem> polled = new ArrayList<>();
+
+        for (DataItem item : dataItems) {
+            PushedItem pushedItem = pushedItems.remove(item);
+
+            if (pushedItem == null) {
+                polled.add(item);
+                continue;
+            }
+
+            NodeId nodeId = item.getReadValueId().getNodeId();
+            NodeObserver observer = observers.get(nodeId);
+
+            if (observer != null) {
+                observer.items.remove(pushedItem);
+
+                if (observer.items.isEmpty()) {
+                    observer.node.removeAttributeObserver(observer);
+                    observers.remove(nodeId);
+                }
+            }
+        }
+
+        if (!polled.isEmpty()) {
+            fallback.onDataItemsDeleted(polled);
+        }
+    }
+
+    public void onMonitoringModeChanged(List<MonitoredItem> monitoredItems) {
+        List<MonitoredItem> polled = new ArrayList<>();
+
+        for (MonitoredItem item : monitoredItems) {
+            PushedItem pushedItem = item instanceof DataItem ? pushedItems.get(item) : null;
+
+            if (pushedItem == null) {
+                polled.add(item);
+            } else if (item.isSamplingEnabled()) {
+                NodeObserver observer = observers.get(item.getReadValueId().getNodeId());
+
+                if (observer != null) {
+                    pushedItem.offer(observer.node.getValue());
+                }
+            }
+        }
+
+        if (!polled.isEmpty()) {
+            fallback.onMonitoringModeChanged(polled);
+        }
+    }
+
+    public int getPushedItemCount() {
+        return pushedItems.size();
+    }
+
+    private UaVariableNode pushableNode(ReadValueId readValueId) {
+        if (!AttributeId.Value.uid().equals(readValueId.getAttributeId())) {
+            return null;
+        }
+
+        String indexRange = readValueId.getIndexRange();
+
+        if (indexRange != null && !indexRange.isEmpty() || computed.test(readValueId.getNodeId())) {
+            return null;
+        }
+
+        UaNode node = nodeManager.getNode(readValueId.getNodeId()).orElse(null);
+
+        return node instanceof UaVariableNode ? (UaVariableNode) node : null;
+    }
+
+    private static class NodeObserver implements AttributeObserver {
+
+        final UaVariableNode node;
+        final List<PushedItem> items = new CopyOnWriteArrayList<>();
+
+        NodeObserver(UaVariableNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public void attributeChanged(UaNode node, AttributeId attributeId, Object value) {
+            if (attributeId == AttributeId.Value) {
+                for (PushedItem item : items) {
+                    item.offer((DataValue) value);
+                }
+            }
+        }
+
+    }
+
+    private class PushedItem {
+
+        final DataItem item;
+
+        long lastSampleNanos;
+        DataValue pending;
+        boolean flushScheduled;
+
+        PushedItem(DataItem item) {
+            this.item = item;
+        }
+
+        synchronized void offer(DataValue value) {
+            if (!item.isSamplingEnabled()) {
+                return;
+            }
+
+            long intervalNanos = (long) (item.getSamplingInterval() * 1_000_000L);
+            long now = System.nanoTime();
+            long dueNanos = lastSampleNanos + intervalNanos - now;
+
+            if (intervalNanos <= 0 || lastSampleNanos == 0 || dueNanos <= 0) {
+                pending = null;
+                deliver(value, now);
+            } else {
+                pending = value;
+
+                if (!flushScheduled) {
+                    flushScheduled = true;
+                    scheduler.schedule(this::flush, dueNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+
+        synchronized void flush() {
+            flushScheduled = false;
+
+            if (pending != null && item.isSamplingEnabled() && pushedItems.containsKey(item)) {
+                deliver(pending, System.nanoTime());
+            }
+
+            pending = null;
+        }
+
+        private void deliver(DataValue value, long now) {
+            lastSampleNanos = now;
+            item.setValue(DataValue.derivedValue(value, item.getTimestampsToReturn()));
+        }
+
+    }
+
+}
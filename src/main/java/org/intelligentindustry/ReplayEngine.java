@@ -0,0 +1,479 @@
+package org.intelligentindustry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import org.eclipse.milo.opcua.sdk.server.AbstractLifecycle;
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays a recording of value changes and events onto the conveyors of the fleet.
+ * <p>
+ * A recording is what the {@code file} sink of {@link ChangeExport} writes: line protocol, optionally gzipped, one
+ * {@code opcua_value} or {@code opcua_event} per line in the order they happened. The file is streamed, never loaded
+ * as a whole, and replayed by a single thread, so the order across nodes is preserved exactly.
+ * <p>
+ * With a speed of 1 records are applied at the pace they were recorded, with 10 ten times as fast; with 0 they are
+ * applied as fast as possible. Values are written to the variable with the same NodeId and stamped with the time
+ * they are replayed; events are posted from their recorded source with their recorded message and severity, as
+ * BaseEventType. Records for nodes the fleet does not have are skipped. The achieved rate and how far the replay
+ * runs behind schedule are logged periodically and recorded in {@link ServerMetrics}.
+ */
+public class ReplayEngine extends AbstractLifecycle {
+
+    public static final String FILE = "demo.replay.file";
+    public static final String SPEED = "demo.replay.speed";
+    public static final String LOOP = "demo.replay.loop";
+    public static final String REPORT_SECONDS = "demo.replay.report-s";
+
+    private static final int MOTORS = 0;
+    private static final int RUNNING_SPEED = 1;
+    private static final int DROPOFFS = 2;
+
+    private static final int MAX_WARNINGS = 10;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Map<String, Target> targets = new HashMap<>();
+    private final Map<String, Conveyor> sources = new HashMap<>();
+    private final Map<Integer, EventEmitter.Template> eventTemplates = new HashMap<>();
+
+    // reused for every line, only touched by the replay thread
+    private final Map<String, String> tags = new HashMap<>();
+    private final Map<String, String> fields = new HashMap<>();
+
+    private final File file;
+    private final double speed;
+    private final boolean loop;
+    private final long reportNanos;
+    private final Supplier<ConveyorFleet> fleet;
+    private final EventEmitter eventEmitter;
+    private final ServerMetrics metrics;
+
+    private volatile boolean running;
+    private volatile Thread replayThread;
+
+    private int warnings;
+
+    public ReplayEngine(
+        File file,
+        double speed,
+        boolean loop,
+        long reportSeconds,
+        Supplier<ConveyorFleet> fleet,
+        EventEmitter eventEmitter,
+        ServerMetrics metrics) {
+
+        this.file = file;
+        this.speed = Math.max(0, speed);
+        this.loop = loop;
+        this.reportNanos = TimeUnit.SECONDS.toNanos(Math.max(1, reportSeconds));
+        this.fleet = fleet;
+        this.eventEmitter = eventEmitter;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the configured replay, or {@code null} if no file is set.
+     */
+    public static ReplayEngine fromSettings(
+        Supplier<ConveyorFleet> fleet,
+        EventEmitter eventEmitter,
+        ServerMetrics metrics) {
+
+        String file = Settings.getString(FILE, "");
+
+        if (file.isEmpty()) {
+            return null;
+        }
+
+        return new ReplayEngine(
+            new File(file),
+            Settings.getDouble(SPEED, 1.0),
+            Settings.getBoolean(LOOP, false),
+            Settings.getLong(REPORT_SECONDS, 10),
+            fleet,
+            eventEmitter,
+            metrics
+        );
+    }
+
+    @Override
+    protected void onStartup() {
+        if (!file.isFile()) {
+            throw new IllegalStateException("replay file " + file + " does not exist");
+        }
+
+        ConveyorFleet conveyors = fleet.get();
+
+        for (Conveyor conveyor : conveyors.getConveyors()) {
+            targets.put(conveyor.getMotors().getNodeId().toParseableString(),
+                new Target(conveyor.getMotors(), MOTORS));
+            targets.put(conveyor.getRunningSpeed().getNodeId().toParseableString(),
+                new Target(conveyor.getRunningSpeed(), RUNNING_SPEED));
+            targets.put(conveyor.getDropoffs().getNodeId().toParseableString(),
+                new Target(conveyor.getDropoffs(), DROPOFFS));
+            sources.put(conveyor.getNodeId().toParseableString(), conveyor);
+        }
+
+        running = true;
+
+        replayThread = new Thread(this::replay, "replay");
+        replayThread.setDaemon(true);
+        replayThread.start();
+
+        logger.info("Replaying {} at {}{}", file, speed > 0 ? speed + "x" : "full speed", loop ? ", looping" : "");
+    }
+
+    @Override
+    protected void onShutdown() {
+        running = false;
+
+        if (replayThread != null) {
+            replayThread.interrupt();
+
+            try {
+                replayThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void replay() {
+        try {
+            long replayed;
+
+            do {
+                replayed = replayOnce();
+            } while (running && loop && replayed > 0);
+        } catch (Throwable t) {
+            logger.error("Replay of {} stopped: {}", file, t.getMessage(), t);
+        } finally {
+            metrics.setReplayLagMillis(0);
+        }
+    }
+
+    /**
+     * @return the number of records applied. A looping replay stops after a pass that applied none, rather than
+     * rereading a file that has nothing for this fleet as fast as it can.
+     */
+    private long replayOnce() throws IOException {
+        long startNanos = System.nanoTime();
+        long lastReportNanos = startNanos;
+        long firstTimestamp = Long.MIN_VALUE;
+        long lastTimestamp = Long.MIN_VALUE;
+        long replayed = 0;
+        long skipped = 0;
+        long lastReported = 0;
+
+        try (BufferedReader reader = open(file)) {
+            String line;
+
+            while (running && (line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.charAt(0) == '#') {
+                    continue;
+                }
+
+                long timestamp;
+
+                try {
+                    timestamp = parse(line);
+                } catch (RuntimeException e) {
+                    warn("Skipping malformed replay line '{}': {}", line, e.getMessage());
+                    skipped++;
+                    continue;
+                }
+
+                if (firstTimestamp == Long.MIN_VALUE) {
+                    firstTimestamp = timestamp;
+                }
+                lastTimestamp = timestamp;
+
+                if (speed > 0) {
+                    long dueNanos = startNanos + (long) ((timestamp - firstTimestamp) / speed);
+                    long waitNanos = dueNanos - System.nanoTime();
+
+                    if (waitNanos > 0) {
+                        metrics.setReplayLagMillis(0);
+                        LockSupport.parkNanos(waitNanos);
+                    } else {
+                        metrics.setReplayLagMillis(TimeUnit.NANOSECONDS.toMillis(-waitNanos));
+                    }
+                }
+
+                if (apply()) {
+                    replayed++;
+                    metrics.replayed();
+                } else {
+                    skipped++;
+                }
+
+                long now = System.nanoTime();
+
+                if (now - lastReportNanos >= reportNanos) {
+                    logger.info(
+                        "Replayed {} records at {} records/s, {} ms behind",
+                        replayed, String.format("%.1f", (replayed - lastReported) / ((now - lastReportNanos) / 1e9)),
+                        metrics.getReplayLagMillis()
+                    );
+                    lastReportNanos = now;
+                    lastReported = replayed;
+                }
+            }
+        }
+
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        double recordedSeconds = firstTimestamp != Long.MIN_VALUE ? (lastTimestamp - firstTimestamp) / 1e9 : 0;
+
+        logger.info(
+            "Replayed {} records ({} skipped) spanning {} s in {} s: {} records/s, {}x real time",
+            replayed, skipped, String.format("%.1f", recordedSeconds), String.format("%.1f", seconds),
+            String.format("%.1f", seconds > 0 ? replayed / seconds : 0),
+            String.format("%.1f", seconds > 0 ? recordedSeconds / seconds : 0)
+        );
+
+        if (replayed == 0 && running && loop) {
+            logger.warn("Replay of {} applied no records, not looping", file);
+        }
+
+        return replayed;
+    }
+
+    /**
+     * Open {@code file}, decompressing it if it starts with the gzip magic bytes: rolled recordings are named
+     * {@code changes.lp.gz.1} and so on, so the name does not tell.
+     */
+    private static BufferedReader open(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+
+        try {
+            in.mark(2);
+            boolean gzip = in.read() == 0x1f && in.read() == 0x8b;
+            in.reset();
+
+            if (gzip) {
+                in = new GZIPInputStream(in, 64 * 1024);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    /**
+     * Split a line of line protocol into {@link #tags}, with the measurement under the empty key, and
+     * {@link #fields}, with strings unquoted.
+     *
+     * @return the timestamp in nanoseconds.
+     */
+    private long parse(String line) {
+        tags.clear();
+        fields.clear();
+
+        int fieldsStart = parsePairs(line, 0, tags, true);
+        int timestampStart = parsePairs(line, fieldsStart, fields, false);
+
+        if (timestampStart >= line.length()) {
+            throw new IllegalArgumentException("no timestamp");
+        }
+
+        return Long.parseLong(line.substring(timestampStart));
+    }
+
+    /**
+     * Parse comma-separated {@code key=value} pairs starting at {@code from} up to the next unescaped space.
+     *
+     * @return the index after that space.
+     */
+    private static int parsePairs(String line, int from, Map<String, String> pairs, boolean tagSet) {
+        StringBuilder key = new StringBuilder();
+        StringBuilder value = new StringBuilder();
+        boolean inValue = false;
+        boolean measurement = tagSet;
+        int i = from;
+
+        while (i < line.length()) {
+            char c = line.charAt(i);
+
+            if (c == '\\' && i + 1 < line.length()) {
+                (inValue ? value : key).append(line.charAt(i + 1));
+                i += 2;
+                continue;
+            }
+
+            if (inValue && !tagSet && c == '"' && value.length() == 0) {
+                // a quoted string field runs to the next unescaped quote
+                i++;
+                while (i < line.length() && line.charAt(i) != '"') {
+                    if (line.charAt(i) == '\\' && i + 1 < line.length()) {
+                        i++;
+                    }
+                    value.append(line.charAt(i));
+                    i++;
+                }
+                i++;
+                continue;
+            }
+
+            if (c == ',' || c == ' ') {
+                if (measurement) {
+                    pairs.put("", key.toString());
+                    measurement = false;
+                } else if (inValue) {
+                    pairs.put(key.toString(), value.toString());
+                }
+
+                key.setLength(0);
+                value.setLength(0);
+                inValue = false;
+                i++;
+
+                if (c == ' ') {
+                    return i;
+                }
+                continue;
+            }
+
+            if (c == '=' && !inValue && !measurement) {
+                inValue = true;
+            } else {
+                (inValue ? value : key).append(c);
+            }
+
+            i++;
+        }
+
+        throw new IllegalArgumentException("unexpected end of line");
+    }
+
+    private boolean apply() {
+        String measurement = tags.get("");
+
+        if ("opcua_value".equals(measurement)) {
+            Target target = targets.get(tags.get("node"));
+            String value = fields.get("value");
+
+            if (target == null || value == null) {
+                return false;
+            }
+
+            Object typed = target.convert(value);
+
+            if (typed == null) {
+                warn("Skipping value '{}' that does not fit {}", value, target.node.getNodeId());
+                return false;
+            }
+
+            String status = fields.get("status");
+            StatusCode statusCode = status != null ? new StatusCode(parseInteger(status)) : StatusCode.GOOD;
+            DateTime now = DateTime.now();
+
+            target.node.setValue(new DataValue(new Variant(typed), statusCode, now, now));
+
+            return true;
+        } else if ("opcua_event".equals(measurement)) {
+            String source = tags.get("source");
+            Conveyor conveyor = sources.get(source);
+            String sourceName = fields.get("source_name");
+            String message = fields.get("message");
+            String severity = fields.get("severity");
+
+            if (conveyor == null) {
+                return false;
+            }
+
+            try {
+                template(severity != null ? (int) parseInteger(severity) : 1).emit(
+                    conveyor.getNodeId(),
+                    sourceName != null ? sourceName : conveyor.getName(),
+                    LocalizedText.english(message != null ? message : "")
+                );
+            } catch (Exception e) {
+                warn("Could not replay event from {}: {}", source, e.getMessage());
+                return false;
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private EventEmitter.Template template(int severity) {
+        return eventTemplates.computeIfAbsent(
+            Math.max(1, Math.min(1000, severity)),
+            s -> eventEmitter.template("Replayed Event", "Replayed Event", s)
+        );
+    }
+
+    private static long parseInteger(String value) {
+        return Long.parseLong(value.endsWith("i") ? value.substring(0, value.length() - 1) : value);
+    }
+
+    private void warn(String format, Object... arguments) {
+        if (warnings < MAX_WARNINGS) {
+            logger.warn(format, arguments);
+
+            if (++warnings == MAX_WARNINGS) {
+                logger.warn("Further replay warnings are suppressed");
+            }
+        }
+    }
+
+    private static final class Target {
+
+        private final UaVariableNode node;
+        private final int variable;
+
+        private Target(UaVariableNode node, int variable) {
+            this.node = node;
+            this.variable = variable;
+        }
+
+        /**
+         * @return {@code value} as the variable's data type, or {@code null} if it does not fit.
+         */
+        Object convert(String value) {
+            double number;
+
+            try {
+                number = value.endsWith("i") ? parseInteger(value) : Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            switch (variable) {
+                case MOTORS:
+                    return number == (short) number ? (Object) (short) number : null;
+                case RUNNING_SPEED:
+                    return number;
+                default:
+                    return number == (long) number ? (Object) (long) number : null;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,119 @@
+package org.intelligentindustry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A bounded, lock-free, multi-producer single-consumer ring of pre-allocated, reusable records such as
+ * {@link AuditRecord} and {@link ExportRecord}.
+ * <p>
+ * Every slot carries a sequence number: a producer may fill slot {@code i} when its sequence equals the claimed
+ * position, and publishes it by advancing the sequence by one; the consumer frees it again by advancing it by the
+ * capacity. A producer {@link #claim() claims} a position, fills the record {@link #get(long) at it} and
+ * {@link #publish(long) publishes} it. A full buffer refuses the claim; whether to drop or retry is up to the caller.
+ */
+public final class RingBuffer<T> {
+
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final Consumer<? super T> clear;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    // only touched by the consumer
+    private long head;
+
+    /**
+     * @param capacity rounded up to the next power of two.
+     * @param factory  creates the record of every slot, once.
+     * @param clear    drops the references a drained record holds, so they do not outlive the drain.
+     */
+    public RingBuffer(int capacity, Supplier<? extends T> factory, Consumer<? super T> clear) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+
+        slots = new Object[size];
+        sequences = new AtomicLongArray(size);
+        mask = size - 1;
+        this.clear = clear;
+
+        for (int i = 0; i < size; i++) {
+            slots[i] = factory.get();
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Claim the next free slot. The record at the returned position must be filled and then published.
+     *
+     * @return the claimed position, or -1 if the buffer is full.
+     */
+    public long claim() {
+        long position = tail.get();
+
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return -1;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * @return the record at a position claimed by the caller.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(long position) {
+        return (T) slots[(int) (position & mask)];
+    }
+
+    /**
+     * Hand the record at a claimed position over to the consumer.
+     */
+    public void publish(long position) {
+        sequences.lazySet((int) (position & mask), position + 1);
+    }
+
+    /**
+     * Hand up to {@code max} published records to {@code consumer}. Must only be called from one thread.
+     *
+     * @return the number of records drained.
+     */
+    public int drain(Consumer<? super T> consumer, int max) {
+        int count = 0;
+
+        while (count < max) {
+            int index = (int) (head & mask);
+
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+
+            T record = get(head);
+            consumer.accept(record);
+            clear.accept(record);
+
+            sequences.lazySet(index, head + slots.length);
+            head++;
+            count++;
+        }
+
+        return count;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+}
@@ -0,0 +1,119 @@
+package org.intelligentindustry;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Appends lines to a file and rolls it over once it exceeds a size limit, keeping a fixed number of old files as
+ * {@code name.1} (newest) to {@code name.n} (oldest).
+ * <p>
+ * A compressing sink writes gzip; appending to an existing file adds a gzip member, which readers such as
+ * {@code zcat} handle transparently. Its size limit is approximate, as it counts characters before compression.
+ * <p>
+ * Not thread-safe; meant to be owned by a single writer thread.
+ */
+public class RollingFileSink implements ExportSink {
+
+    private final File file;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final boolean compress;
+
+    private Writer writer;
+    private long written;
+
+    public RollingFileSink(File file, long maxBytes, int maxFiles) throws IOException {
+        this(file, maxBytes, maxFiles, false);
+    }
+
+    public RollingFileSink(File file, long maxBytes, int maxFiles, boolean compress) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+        this.compress = compress;
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("could not create directory " + parent);
+        }
+
+        open();
+    }
+
+    @Override
+    public void write(CharSequence line) throws IOException {
+        if (written >= maxBytes) {
+            roll();
+        }
+
+        writer.append(line).append('\n');
+
+        // close enough for rolling purposes; avoids encoding every line twice
+        written += line.length() + 1;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void open() throws IOException {
+        OutputStream out = new FileOutputStream(file, true);
+
+        if (compress) {
+            // sync flush, so a flushed line can be read back before the file is closed
+            out = new GZIPOutputStream(out, 64 * 1024, true);
+        }
+
+        writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+
+        written = compress ? 0 : file.length();
+    }
+
+    private void roll() throws IOException {
+        writer.close();
+
+        try {
+            shift();
+        } catch (IOException e) {
+            // keep appending to the current file rather than failing every later write, and try again after
+            // another maxBytes
+            open();
+            written = 0;
+            throw e;
+        }
+
+        open();
+    }
+
+    private void shift() throws IOException {
+        File oldest = new File(file.getPath() + "." + maxFiles);
+        if (oldest.exists() && !oldest.delete()) {
+            throw new IOException("could not delete " + oldest);
+        }
+
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            File source = new File(file.getPath() + "." + i);
+            if (source.exists() && !source.renameTo(new File(file.getPath() + "." + (i + 1)))) {
+                throw new IOException("could not rename " + source);
+            }
+        }
+
+        if (!file.renameTo(new File(file.getPath() + ".1"))) {
+            throw new IOException("could not rename " + file);
+        }
+    }
+
+}
@@ -0,0 +1,475 @@
+package org.intelligentindustry;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.diagnostics.SubscriptionDiagnostics;
+import org.eclipse.milo.opcua.sdk.server.subscriptions.Subscription;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+
+/**
+ * Counters and histograms describing the load on the demo server.
+ * <p>
+ * Recording only touches {@link LongAdder}s and {@link LatencyHistogram}s; rates are derived in {@link #sample()},
+ * which is expected to be called periodically from a single thread.
+ */
+public class ServerMetrics {
+
+    private final Map<NodeId, NodeCounters> nodeCounters = new ConcurrentHashMap<>();
+    private final Map<String, SessionCounters> sessionCounters = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram conveyorStartLatency = new LatencyHistogram();
+    private final LongAdder eventsPosted = new LongAdder();
+    private final LatencyHistogram simulationTickDuration = new LatencyHistogram();
+    private final LongAdder simulationOverruns = new LongAdder();
+    private final LatencyHistogram alarmEvaluationDuration = new LatencyHistogram();
+    private final LongAdder ingestedFrames = new LongAdder();
+    private final LongAdder ingestRejectedFrames = new LongAdder();
+    private final LatencyHistogram ingestBatchDuration = new LatencyHistogram();
+    private final LongAdder exportedRecords = new LongAdder();
+    private final LongAdder exportDroppedRecords = new LongAdder();
+    private final LongAdder replayedRecords = new LongAdder();
+    private final LongAdder browseIndexHits = new LongAdder();
+    private final LongAdder browseIndexMisses = new LongAdder();
+    private final LongAdder admissionRejections = new LongAdder();
+    private final LongAdder derivedHits = new LongAdder();
+    private final LongAdder derivedMisses = new LongAdder();
+
+    private final OpcUaServer server;
+
+    private volatile double eventsPerSecond;
+    private volatile double notificationsPerSecond;
+    private volatile double ingestedFramesPerSecond;
+    private volatile double replayedRecordsPerSecond;
+    private volatile long replayLagMillis;
+    private volatile long notifications;
+
+    private long lastSampleNanos = System.nanoTime();
+    private long lastEventsPosted;
+    private long lastNotifications;
+    private long lastIngestedFrames;
+    private long lastReplayedRecords;
+
+    public ServerMetrics(OpcUaServer server) {
+        this.server = server;
+    }
+
+    /**
+     * @return the counters for {@code nodeId}, created on first use. Callers on a hot path should hold on to the
+     * result rather than look it up per request.
+     */
+    public NodeCounters nodeCounters(NodeId nodeId) {
+        return nodeCounters.computeIfAbsent(nodeId, id -> new NodeCounters());
+    }
+
+    /**
+     * @param session a label that identifies the session in the metrics, e.g. its number.
+     * @param client  the address of the client.
+     * @return the admission counters of the session, created on first use.
+     */
+    public SessionCounters sessionCounters(String session, String client) {
+        return sessionCounters.computeIfAbsent(session, s -> new SessionCounters(client));
+    }
+
+    public void removeSessionCounters(String session) {
+        sessionCounters.remove(session);
+    }
+
+    public void admissionRejected() {
+        admissionRejections.increment();
+    }
+
+    /**
+     * @return requests rejected by admission control, including those of sessions that are gone.
+     */
+    public long getAdmissionRejections() {
+        return admissionRejections.sum();
+    }
+
+    /**
+     * A derived value was served from its cache.
+     */
+    public void derivedHit() {
+        derivedHits.increment();
+    }
+
+    /**
+     * A derived value had to be computed for a read.
+     */
+    public void derivedMiss() {
+        derivedMisses.increment();
+    }
+
+    public long getDerivedHits() {
+        return derivedHits.sum();
+    }
+
+    public long getDerivedMisses() {
+        return derivedMisses.sum();
+    }
+
+    public LatencyHistogram getConveyorStartLatency() {
+        return conveyorStartLatency;
+    }
+
+    public LatencyHistogram getSimulationTickDuration() {
+        return simulationTickDuration;
+    }
+
+    public void simulationOverrun() {
+        simulationOverruns.increment();
+    }
+
+    public long getSimulationOverruns() {
+        return simulationOverruns.sum();
+    }
+
+    public LatencyHistogram getAlarmEvaluationDuration() {
+        return alarmEvaluationDuration;
+    }
+
+    public void ingested(int frames) {
+        ingestedFrames.add(frames);
+    }
+
+    public void ingestRejected(int frames) {
+        ingestRejectedFrames.add(frames);
+    }
+
+    public long getIngestedFrames() {
+        return ingestedFrames.sum();
+    }
+
+    public long getIngestRejectedFrames() {
+        return ingestRejectedFrames.sum();
+    }
+
+    public double getIngestedFramesPerSecond() {
+        return ingestedFramesPerSecond;
+    }
+
+    public LatencyHistogram getIngestBatchDuration() {
+        return ingestBatchDuration;
+    }
+
+    public void exported(int records) {
+        exportedRecords.add(records);
+    }
+
+    public void exportDropped() {
+        exportDroppedRecords.increment();
+    }
+
+    public long getExportedRecords() {
+        return exportedRecords.sum();
+    }
+
+    public long getExportDropped() {
+        return exportDroppedRecords.sum();
+    }
+
+    public void replayed() {
+        replayedRecords.increment();
+    }
+
+    public long getReplayedRecords() {
+        return replayedRecords.sum();
+    }
+
+    public double getReplayedRecordsPerSecond() {
+        return replayedRecordsPerSecond;
+    }
+
+    /**
+     * @param operations browse descriptions, continuation points and browse paths answered from the browse index.
+     */
+    public void browseIndexHits(int operations) {
+        browseIndexHits.add(operations);
+    }
+
+    /**
+     * @param operations browse descriptions, continuation points and browse paths passed on to the SDK.
+     */
+    public void browseIndexMisses(int operations) {
+        browseIndexMisses.add(operations);
+    }
+
+    public long getBrowseIndexHits() {
+        return browseIndexHits.sum();
+    }
+
+    public long getBrowseIndexMisses() {
+        return browseIndexMisses.sum();
+    }
+
+    /**
+     * @param lagMillis how far a replay runs behind its schedule.
+     */
+    public void setReplayLagMillis(long lagMillis) {
+        replayLagMillis = lagMillis;
+    }
+
+    public long getReplayLagMillis() {
+        return replayLagMillis;
+    }
+
+    public void eventPosted() {
+        eventsPosted.increment();
+    }
+
+    public long getEventsPosted() {
+        return eventsPosted.sum();
+    }
+
+    public double getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
+    /**
+     * @return data change and event notifications sent by the subscriptions that are currently alive.
+     */
+    public long getNotifications() {
+        return notifications;
+    }
+
+    public double getNotificationsPerSecond() {
+        return notificationsPerSecond;
+    }
+
+    public long getTotalReads() {
+        long total = 0;
+        for (NodeCounters counters : nodeCounters.values()) {
+            total += counters.getReads();
+        }
+        return total;
+    }
+
+    public long getTotalWrites() {
+        long total = 0;
+        for (NodeCounters counters : nodeCounters.values()) {
+            total += counters.getWrites();
+        }
+        return total;
+    }
+
+    /**
+     * Update the derived rates.
+     */
+    public void sample() {
+        long now = System.nanoTime();
+        double seconds = (now - lastSampleNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        long posted = eventsPosted.sum();
+        long ingested = ingestedFrames.sum();
+        long replayed = replayedRecords.sum();
+
+        long sent = 0;
+        for (Subscription subscription : server.getSubscriptions().values()) {
+            SubscriptionDiagnostics diagnostics = subscription.getSubscriptionDiagnostics();
+            sent += diagnostics.getDataChangeNotificationsCount().sum();
+            sent += diagnostics.getEventNotificationsCount().sum();
+        }
+
+        if (seconds > 0) {
+            eventsPerSecond = (posted - lastEventsPosted) / seconds;
+            ingestedFramesPerSecond = (ingested - lastIngestedFrames) / seconds;
+            replayedRecordsPerSecond = (replayed - lastReplayedRecords) / seconds;
+            // subscriptions that went away take their counts with them
+            notificationsPerSecond = Math.max(0, sent - lastNotifications) / seconds;
+        }
+
+        notifications = sent;
+
+        lastSampleNanos = now;
+        lastEventsPosted = posted;
+        lastIngestedFrames = ingested;
+        lastReplayedRecords = replayed;
+        lastNotifications = sent;
+    }
+
+    /**
+     * Write all metrics in the Prometheus text exposition format.
+     */
+    public void writeText(Appendable out) throws IOException {
+        MetricsWriter writer = new MetricsWriter(out);
+
+        writeNodeCounters(writer);
+        writeSessionCounters(writer);
+
+        writer.summary("demo_conveyor_start_latency_seconds", conveyorStartLatency, 0.5, 0.9, 0.99, 0.999);
+
+        writer.summary("demo_simulation_tick_seconds", simulationTickDuration, 0.5, 0.99)
+            .counter("demo_simulation_overruns_total", getSimulationOverruns());
+
+        writer.summary("demo_alarm_evaluation_seconds", alarmEvaluationDuration, 0.5, 0.99);
+
+        writer.counter("demo_ingest_frames_total", getIngestedFrames())
+            .counter("demo_ingest_rejected_frames_total", getIngestRejectedFrames())
+            .gauge("demo_ingest_frames_per_second", ingestedFramesPerSecond)
+            .summary("demo_ingest_batch_seconds", ingestBatchDuration, 0.5, 0.99);
+
+        writer.counter("demo_export_records_total", getExportedRecords())
+            .counter("demo_export_dropped_total", getExportDropped());
+
+        writer.counter("demo_replay_records_total", getReplayedRecords())
+            .gauge("demo_replay_records_per_second", replayedRecordsPerSecond)
+            .gauge("demo_replay_lag_seconds", replayLagMillis / 1e3);
+
+        writer.counter("demo_browse_index_hits_total", getBrowseIndexHits())
+            .counter("demo_browse_index_misses_total", getBrowseIndexMisses());
+
+        writer.counter("demo_derived_cache_hits_total", getDerivedHits())
+            .counter("demo_derived_cache_misses_total", getDerivedMisses());
+
+        writer.counter("demo_events_posted_total", getEventsPosted())
+            .gauge("demo_events_per_second", eventsPerSecond);
+
+        writer.gauge("demo_notifications_total", notifications)
+            .gauge("demo_notifications_per_second", notificationsPerSecond);
+    }
+
+    private void writeNodeCounters(MetricsWriter writer) throws IOException {
+        writer.counter("demo_reads_total", getTotalReads())
+            .counter("demo_writes_total", getTotalWrites());
+
+        writer.family("demo_node_reads_total", "counter");
+        for (Map.Entry<NodeId, NodeCounters> entry : nodeCounters.entrySet()) {
+            long reads = entry.getValue().getReads();
+            if (reads > 0) {
+                writer.sample("demo_node_reads_total", reads, "node", entry.getKey().toParseableString());
+            }
+        }
+
+        writer.family("demo_node_writes_total", "counter");
+        for (Map.Entry<NodeId, NodeCounters> entry : nodeCounters.entrySet()) {
+            long writes = entry.getValue().getWrites();
+            if (writes > 0) {
+                writer.sample("demo_node_writes_total", writes, "node", entry.getKey().toParseableString());
+            }
+        }
+    }
+
+    private void writeSessionCounters(MetricsWriter writer) throws IOException {
+        writer.counter("demo_admission_rejected_total", getAdmissionRejections());
+
+        writer.family("demo_session_in_flight", "gauge");
+        for (Map.Entry<String, SessionCounters> entry : sessionCounters.entrySet()) {
+            writer.sample("demo_session_in_flight", entry.getValue().getInFlight(),
+                "session", entry.getKey(), "client", entry.getValue().getClient());
+        }
+
+        writer.family("demo_session_rejected_total", "counter");
+        for (Map.Entry<String, SessionCounters> entry : sessionCounters.entrySet()) {
+            SessionCounters counters = entry.getValue();
+
+            for (Rejection reason : Rejection.values()) {
+                long rejected = counters.getRejected(reason);
+                if (rejected > 0) {
+                    writer.sample("demo_session_rejected_total", rejected,
+                        "session", entry.getKey(), "client", counters.getClient(), "reason", reason.label);
+                }
+            }
+        }
+    }
+
+    /**
+     * Why admission control turned a request away.
+     */
+    public enum Rejection {
+
+        IN_FLIGHT("in_flight"),
+        CALL_RATE("call_rate"),
+        MONITORED_ITEMS("monitored_items");
+
+        private final String label;
+
+        Rejection(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+    }
+
+    public static class SessionCounters {
+
+        private final String client;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder[] rejected = new LongAdder[Rejection.values().length];
+
+        SessionCounters(String client) {
+            this.client = client;
+
+            for (int i = 0; i < rejected.length; i++) {
+                rejected[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * @return the number of requests in flight, including this one.
+         */
+        public int enter() {
+            return inFlight.incrementAndGet();
+        }
+
+        public void exit() {
+            inFlight.decrementAndGet();
+        }
+
+        /**
+         * @return whether this is the first rejection of the session for {@code reason}.
+         */
+        public boolean rejected(Rejection reason) {
+            LongAdder counter = rejected[reason.ordinal()];
+            boolean first = counter.sum() == 0;
+
+            counter.increment();
+
+            return first;
+        }
+
+        public String getClient() {
+            return client;
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public long getRejected(Rejection reason) {
+            return rejected[reason.ordinal()].sum();
+        }
+
+    }
+
+    public static class NodeCounters {
+
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder writes = new LongAdder();
+
+        public void read() {
+            reads.increment();
+        }
+
+        public void write() {
+            writes.increment();
+        }
+
+        public long getReads() {
+            return reads.sum();
+        }
+
+        public long getWrites() {
+            return writes.sum();
+        }
+
+    }
+
+}
@@ -0,0 +1,250 @@
+package org.intelligentindustry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.milo.opcua.sdk.server.api.config.OpcUaServerConfigBuilder;
+import org.eclipse.milo.opcua.sdk.server.api.config.OpcUaServerConfigLimits;
+import org.eclipse.milo.opcua.stack.core.channel.EncodingLimits;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+/**
+ * Threading, transport and limit settings of the OPC UA server, applied when {@link App} builds its configuration.
+ * <p>
+ * Thread pool sizes of 0 keep the SDK's shared pools; with {@link VirtualThreads} enabled requests are served on a
+ * virtual thread each and the executor size is ignored. The Netty event loop is shared by the whole SDK and created on
+ * first use; its size is set through Netty's {@code io.netty.eventLoopThreads} property, so it must be configured
+ * before the first server or client is built.
+ */
+public class ServerTuning {
+
+    public static final String BIND_ADDRESSES = "demo.server.bind-addresses";
+    public static final String PORTS = "demo.server.ports";
+    public static final String EXECUTOR_THREADS = "demo.server.executor-threads";
+    public static final String SCHEDULED_THREADS = "demo.server.scheduled-threads";
+    public static final String EVENT_LOOP_THREADS = "demo.server.event-loop-threads";
+    public static final String MAX_MESSAGE_SIZE = "demo.server.max-message-size";
+    public static final String MAX_CHUNK_SIZE = "demo.server.max-chunk-size";
+    public static final String MAX_CHUNK_COUNT = "demo.server.max-chunk-count";
+    public static final String MAX_SESSIONS = "demo.server.max-sessions";
+    public static final String MAX_SESSION_TIMEOUT_MS = "demo.server.max-session-timeout-ms";
+    public static final String MIN_PUBLISHING_INTERVAL_MS = "demo.server.min-publishing-interval-ms";
+    public static final String MAX_PUBLISHING_INTERVAL_MS = "demo.server.max-publishing-interval-ms";
+    public static final String MIN_SAMPLING_INTERVAL_MS = "demo.server.min-sampling-interval-ms";
+    public static final String MAX_MONITORED_ITEMS_PER_CALL = "demo.server.max-monitored-items-per-call";
+    public static final String MAX_NODES_PER_READ = "demo.server.max-nodes-per-read";
+    public static final String MAX_NODES_PER_WRITE = "demo.server.max-nodes-per-write";
+
+    private static final String NETTY_EVENT_LOOP_THREADS = "io.netty.eventLoopThreads";
+
+    private static final OpcUaServerConfigLimits DEFAULT_LIMITS = new OpcUaServerConfigLimits() {};
+
+    private final List<String> bindAddresses;
+    private final List<Integer> ports;
+    private final int executorThreads;
+    private final int scheduledThreads;
+    private final int eventLoopThreads;
+    private final EncodingLimits encodingLimits;
+    private final OpcUaServerConfigLimits limits;
+
+    private final List<ExecutorService> executors = new ArrayList<>();
+
+    public ServerTuning(
+        List<String> bindAddresses,
+        List<Integer> ports,
+        int executorThreads,
+        int scheduledThreads,
+        int eventLoopThreads,
+        EncodingLimits encodingLimits,
+        OpcUaServerConfigLimits limits) {
+
+        this.bindAddresses = bindAddresses;
+        this.ports = ports;
+        this.executorThreads = executorThreads;
+        this.scheduledThreads = scheduledThreads;
+        this.eventLoopThreads = eventLoopThreads;
+        this.encodingLimits = encodingLimits;
+        this.limits = limits;
+    }
+
+    public static ServerTuning fromSettings(int defaultPort) {
+        List<Integer> ports = new ArrayList<>();
+        for (String port : split(Settings.getString(PORTS, String.valueOf(defaultPort)))) {
+            ports.add(Integer.parseInt(port));
+        }
+
+        EncodingLimits encodingLimits = new EncodingLimits(
+            Settings.getInt(MAX_CHUNK_SIZE, EncodingLimits.DEFAULT_MAX_CHUNK_SIZE),
+            Settings.getInt(MAX_CHUNK_COUNT, EncodingLimits.DEFAULT_MAX_CHUNK_COUNT),
+            Settings.getInt(MAX_MESSAGE_SIZE, EncodingLimits.DEFAULT_MAX_MESSAGE_SIZE),
+            EncodingLimits.DEFAULT_MAX_RECURSION_DEPTH
+        );
+
+        UInteger maxSessions = uint(Settings.getLong(MAX_SESSIONS, DEFAULT_LIMITS.getMaxSessionCount().longValue()));
+        double maxSessionTimeout = Settings.getDouble(MAX_SESSION_TIMEOUT_MS, DEFAULT_LIMITS.getMaxSessionTimeout());
+        double minPublishingInterval =
+            Settings.getDouble(MIN_PUBLISHING_INTERVAL_MS, DEFAULT_LIMITS.getMinPublishingInterval());
+        double maxPublishingInterval =
+            Settings.getDouble(MAX_PUBLISHING_INTERVAL_MS, DEFAULT_LIMITS.getMaxPublishingInterval());
+        double minSamplingInterval =
+            Settings.getDouble(MIN_SAMPLING_INTERVAL_MS, DEFAULT_LIMITS.getMinSupportedSampleRate());
+        UInteger maxMonitoredItemsPerCall = uint(Settings.getLong(
+            MAX_MONITORED_ITEMS_PER_CALL, DEFAULT_LIMITS.getMaxMonitoredItemsPerCall().longValue()));
+        UInteger maxNodesPerRead =
+            uint(Settings.getLong(MAX_NODES_PER_READ, DEFAULT_LIMITS.getMaxNodesPerRead().longValue()));
+        UInteger maxNodesPerWrite =
+            uint(Settings.getLong(MAX_NODES_PER_WRITE, DEFAULT_LIMITS.getMaxNodesPerWrite().longValue()));
+
+        OpcUaServerConfigLimits limits = new OpcUaServerConfigLimits() {
+            @Override
+            public UInteger getMaxSessionCount() {
+                return maxSessions;
+            }
+
+            @Override
+            public Double getMaxSessionTimeout() {
+                return maxSessionTimeout;
+            }
+
+            @Override
+            public Double getMinPublishingInterval() {
+                return minPublishingInterval;
+            }
+
+            @Override
+            public Double getMaxPublishingInterval() {
+                return maxPublishingInterval;
+            }
+
+            @Override
+            public Double getMinSupportedSampleRate() {
+                return minSamplingInterval;
+            }
+
+            @Override
+            public UInteger getMaxMonitoredItemsPerCall() {
+                return maxMonitoredItemsPerCall;
+            }
+
+            @Override
+            public UInteger getMaxNodesPerRead() {
+                return maxNodesPerRead;
+            }
+
+            @Override
+            public UInteger getMaxNodesPerWrite() {
+                return maxNodesPerWrite;
+            }
+        };
+
+        return new ServerTuning(
+            split(Settings.getString(BIND_ADDRESSES, "0.0.0.0")),
+            ports,
+            Settings.getInt(EXECUTOR_THREADS, 0),
+            Settings.getInt(SCHEDULED_THREADS, 0),
+            Settings.getInt(EVENT_LOOP_THREADS, 0),
+            encodingLimits,
+            limits
+        );
+    }
+
+    /**
+     * Apply executors and limits to {@code builder}. Endpoints are built by the caller from
+     * {@link #getBindAddresses()} and {@link #getPorts()}.
+     */
+    public void apply(OpcUaServerConfigBuilder builder) {
+        if (eventLoopThreads > 0) {
+            System.setProperty(NETTY_EVENT_LOOP_THREADS, String.valueOf(eventLoopThreads));
+        }
+
+        if (VirtualThreads.isEnabled()) {
+            ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("server-executor");
+            executors.add(executor);
+            builder.setExecutor(executor);
+        } else if (executorThreads > 0) {
+            ExecutorService executor = Executors.newFixedThreadPool(executorThreads, daemonThreads("server-executor"));
+            executors.add(executor);
+            builder.setExecutor(executor);
+        }
+
+        if (scheduledThreads > 0) {
+            ScheduledExecutorService scheduledExecutor =
+                Executors.newScheduledThreadPool(scheduledThreads, daemonThreads("server-scheduled"));
+            executors.add(scheduledExecutor);
+            builder.setScheduledExecutorService(scheduledExecutor);
+        }
+
+        builder.setEncodingLimits(encodingLimits);
+        builder.setLimits(limits);
+    }
+
+    /**
+     * Shut down the executors created by {@link #apply(OpcUaServerConfigBuilder)}, once the server using them has
+     * shut down. The SDK's shared pools are left alone.
+     */
+    public void shutdown() {
+        for (ExecutorService executor : executors) {
+            executor.shutdownNow();
+        }
+
+        executors.clear();
+    }
+
+    public List<String> getBindAddresses() {
+        return Collections.unmodifiableList(bindAddresses);
+    }
+
+    public List<Integer> getPorts() {
+        return Collections.unmodifiableList(ports);
+    }
+
+    /**
+     * @return a one-line summary of the effective settings, with SDK defaults filled in.
+     */
+    public String describe() {
+        return String.format(
+            "bind %s ports %s; executor %s, scheduled %s, event loop %s threads; " +
+                "max message %d bytes, chunk %d bytes x %d; max %s sessions (timeout %.0f ms), " +
+                "publishing %.0f-%.0f ms, sampling from %.0f ms, %s items/call, %s nodes/read, %s nodes/write",
+            bindAddresses, ports,
+            VirtualThreads.isEnabled() ? "virtual" : executorThreads > 0 ? executorThreads : "shared",
+            scheduledThreads > 0 ? scheduledThreads : "shared",
+            System.getProperty(NETTY_EVENT_LOOP_THREADS, "default"),
+            encodingLimits.getMaxMessageSize(), encodingLimits.getMaxChunkSize(), encodingLimits.getMaxChunkCount(),
+            limits.getMaxSessionCount(), limits.getMaxSessionTimeout(),
+            limits.getMinPublishingInterval(), limits.getMaxPublishingInterval(), limits.getMinSupportedSampleRate(),
+            limits.getMaxMonitoredItemsPerCall(), limits.getMaxNodesPerRead(), limits.getMaxNodesPerWrite()
+        );
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        return r -> {
+            Thread thread = new Thread(r, prefix + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static List<String> split(String value) {
+        List<String> values = new ArrayList<>();
+
+        for (String part : value.split(",")) {
+            if (!part.trim().isEmpty()) {
+                values.add(part.trim());
+            }
+        }
+
+        return values;
+    }
+
+}
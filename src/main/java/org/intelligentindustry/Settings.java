@@ -0,0 +1,124 @@
+package org.intelligentindustry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Looks up configuration values by key.
+ * <p>
+ * A key such as {@code demo.fleet.count} is resolved from the system property of the same name first,
+ * then from the environment variable {@code DEMO_FLEET_COUNT}, then from the properties file named by
+ * {@code demo.config} (itself a system property or {@code DEMO_CONFIG}), and finally falls back to the given default.
+ * <p>
+ * Every lookup is remembered together with where its value came from, so the effective configuration can be logged
+ * at startup.
+ */
+public final class Settings {
+
+    public static final String CONFIG = "demo.config";
+
+    private static final Map<String, String> effective = new ConcurrentSkipListMap<>();
+
+    private static volatile Properties file;
+
+    private Settings() {
+    }
+
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        String source = "system property";
+
+        if (value == null) {
+            value = System.getenv(toEnvironmentName(key));
+            source = "environment";
+        }
+        if (value == null) {
+            value = file().getProperty(key);
+            source = System.getProperty(CONFIG, System.getenv(toEnvironmentName(CONFIG)));
+        }
+
+        if (value != null) {
+            value = value.trim();
+            effective.put(key, value + " (" + source + ")");
+        } else {
+            effective.put(key, (defaultValue != null ? defaultValue : "-") + " (default)");
+        }
+
+        return value != null ? value : defaultValue;
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = getString(key, String.valueOf(defaultValue));
+
+        return Integer.parseInt(value);
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = getString(key, String.valueOf(defaultValue));
+
+        return Long.parseLong(value);
+    }
+
+    public static double getDouble(String key, double defaultValue) {
+        String value = getString(key, String.valueOf(defaultValue));
+
+        return Double.parseDouble(value);
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, String.valueOf(defaultValue));
+
+        return Boolean.parseBoolean(value);
+    }
+
+    /**
+     * @return every key looked up so far, sorted, with its value and where that value came from.
+     */
+    public static Map<String, String> getEffectiveSettings() {
+        return effective;
+    }
+
+    static String toEnvironmentName(String key) {
+        return key.toUpperCase().replace('.', '_').replace('-', '_');
+    }
+
+    private static Properties file() {
+        Properties properties = file;
+
+        if (properties == null) {
+            synchronized (Settings.class) {
+                properties = file;
+
+                if (properties == null) {
+                    properties = load(System.getProperty(CONFIG, System.getenv(toEnvironmentName(CONFIG))));
+                    file = properties;
+                }
+            }
+        }
+
+        return properties;
+    }
+
+    private static Properties load(String path) {
+        Properties properties = new Properties();
+
+        if (path == null) {
+            return properties;
+        }
+
+        try (InputStream in = Files.newInputStream(Paths.get(path))) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read configuration file " + path, e);
+        }
+
+        return properties;
+    }
+
+}
@@ -0,0 +1,539 @@
+package org.intelligentindustry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.milo.opcua.sdk.server.AbstractLifecycle;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Advances the state of every registered conveyor in fixed simulation ticks.
+ * <p>
+ * Each tick moves simulation time forward by exactly {@code tickMillis}, whatever the wall clock says, so a run is
+ * reproducible for the same sequence of commands. Starting, stopping and aborting only change a conveyor's phase; they
+ * take effect on the next tick, as do setpoints applied in bulk through {@link #apply(Conveyor[], double[], int[])}. A
+ * tick walks all conveyors in one pass, split into contiguous slices over a small worker pool, and writes RunningSpeed
+ * and Dropoffs only when they change. Running conveyors move their belt; every {@code dropoffDistance} units of travel
+ * an object drops off and an event is posted. Every value written in a tick carries the same timestamp.
+ * <p>
+ * With a time scale of 2 ticks run twice as often as real time, and so on. A time scale of 0 disables the clock
+ * altogether; the simulation then only moves when {@link #tick()} is called.
+ * <p>
+ * Tick duration and overruns - ticks that finished after the next one was due - are recorded in {@link ServerMetrics}.
+ */
+public class SimulationEngine extends AbstractLifecycle {
+
+    public static final String TICK_MILLIS = "demo.simulation.tick-ms";
+    public static final String TIME_SCALE = "demo.simulation.time-scale";
+    public static final String THREADS = "demo.simulation.threads";
+    public static final String DROPOFF_DISTANCE = "demo.simulation.dropoff-distance";
+    public static final String ACKNOWLEDGE_MILLIS = "demo.simulation.acknowledge-ms";
+
+    public static final int COMMAND_NONE = 0;
+    public static final int COMMAND_START = 1;
+    public static final int COMMAND_STOP = 2;
+    public static final int COMMAND_ABORT = 3;
+
+    private static final int IDLE = 0;
+    private static final int STARTING = 1;
+    private static final int RUNNING = 2;
+    private static final int STOPPING = 3;
+    private static final int ABORTING = 4;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Map<NodeId, ConveyorState> states = new ConcurrentHashMap<>();
+    private final Queue<ConveyorState> registrations = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    // only touched while ticking
+    private final List<ConveyorState> batch = new ArrayList<>();
+    private volatile long simulationMillis;
+    private volatile DateTime tickTime = DateTime.now();
+
+    private final SpeedProfile profile;
+    private final long tickMillis;
+    private final double timeScale;
+    private final int threads;
+    private final double dropoffDistance;
+    private final long acknowledgeMillis;
+    private final ServerMetrics metrics;
+    private final EventEmitter.Template dropoffEvent;
+
+    private volatile boolean running;
+    private volatile Thread clockThread;
+    private volatile ExecutorService workers;
+
+    public SimulationEngine(
+        SpeedProfile profile,
+        long tickMillis,
+        double timeScale,
+        int threads,
+        double dropoffDistance,
+        long acknowledgeMillis,
+        ServerMetrics metrics,
+        EventEmitter.Template dropoffEvent) {
+
+        this.profile = profile;
+        this.tickMillis = tickMillis;
+        this.timeScale = timeScale;
+        this.threads = Math.max(1, threads);
+        this.dropoffDistance = dropoffDistance;
+        this.acknowledgeMillis = acknowledgeMillis;
+        this.metrics = metrics;
+        this.dropoffEvent = dropoffEvent;
+    }
+
+    public static SimulationEngine fromSettings(ServerMetrics metrics, EventEmitter.Template dropoffEvent) {
+        return new SimulationEngine(
+            SpeedProfile.fromSettings(),
+            Settings.getLong(TICK_MILLIS, 1000),
+            Settings.getDouble(TIME_SCALE, 1.0),
+            Settings.getInt(THREADS, Math.min(4, Runtime.getRuntime().availableProcessors())),
+            Settings.getDouble(DROPOFF_DISTANCE, 100.0),
+            Settings.getLong(ACKNOWLEDGE_MILLIS, 0),
+            metrics,
+            dropoffEvent
+        );
+    }
+
+    @Override
+    protected void onStartup() {
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "simulation-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (timeScale > 0) {
+            running = true;
+
+            clockThread = new Thread(this::runClock, "simulation-clock");
+            clockThread.setDaemon(true);
+            clockThread.start();
+        }
+
+        logger.info("Simulating in {} ms ticks at {}x real time on {} threads", tickMillis, timeScale, threads);
+    }
+
+    @Override
+    protected void onShutdown() {
+        running = false;
+
+        if (clockThread != null) {
+            try {
+                clockThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        workers.shutdownNow();
+    }
+
+    /**
+     * Add a conveyor to the simulation. Safe to call from any thread; the conveyor joins on the next tick.
+     */
+    public void register(Conveyor conveyor) {
+        ConveyorState state = new ConveyorState(conveyor);
+
+        if (states.putIfAbsent(conveyor.getNodeId(), state) == null) {
+            registrations.add(state);
+        }
+    }
+
+    /**
+     * @return {@code true} once {@link #register(Conveyor)} was called for the conveyor; registrations are never
+     * withdrawn.
+     */
+    public boolean isRegistered(Conveyor conveyor) {
+        return states.containsKey(conveyor.getNodeId());
+    }
+
+    /**
+     * Start the speed profile on {@code conveyor}.
+     *
+     * @return {@code false} if the conveyor is already running or was never registered.
+     */
+    public boolean start(Conveyor conveyor) {
+        ConveyorState state = states.get(conveyor.getNodeId());
+
+        if (state != null && state.phase.compareAndSet(IDLE, STARTING)) {
+            activeCount.incrementAndGet();
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Ramp the conveyor down from its current speed.
+     *
+     * @return {@code false} if the conveyor is not running.
+     */
+    public boolean stop(Conveyor conveyor) {
+        return request(conveyor, STOPPING);
+    }
+
+    /**
+     * Bring the conveyor to standstill on the next tick, without ramping down.
+     *
+     * @return {@code false} if the conveyor is not running.
+     */
+    public boolean abort(Conveyor conveyor) {
+        return request(conveyor, ABORTING);
+    }
+
+    /**
+     * Apply target speeds and commands to many conveyors at once. The batch is applied between two ticks, so the
+     * next tick sees all of it and every resulting value change carries that tick's timestamp.
+     * <p>
+     * A target speed replaces the plateau speed of the profile for that conveyor, from the next tick on if it is
+     * running and otherwise from its next start; {@code NaN} keeps the current one. Commands are
+     * {@link #COMMAND_NONE}, {@link #COMMAND_START}, {@link #COMMAND_STOP} and {@link #COMMAND_ABORT}, with the
+     * semantics of {@link #start(Conveyor)}, {@link #stop(Conveyor)} and {@link #abort(Conveyor)}. Either array may
+     * be empty.
+     *
+     * @return {@code false} for conveyors that were never registered, {@code true} for the others.
+     */
+    public synchronized boolean[] apply(Conveyor[] conveyors, double[] targetSpeeds, int[] commands) {
+        boolean[] applied = new boolean[conveyors.length];
+
+        for (int i = 0; i < conveyors.length; i++) {
+            ConveyorState state = states.get(conveyors[i].getNodeId());
+
+            if (state == null) {
+                continue;
+            }
+
+            if (i < targetSpeeds.length && !Double.isNaN(targetSpeeds[i])) {
+                state.targetSpeed = targetSpeeds[i];
+            }
+
+            int command = i < commands.length ? commands[i] : COMMAND_NONE;
+
+            if (command == COMMAND_START) {
+                start(conveyors[i]);
+            } else if (command == COMMAND_STOP) {
+                request(conveyors[i], STOPPING);
+            } else if (command == COMMAND_ABORT) {
+                request(conveyors[i], ABORTING);
+            }
+
+            applied[i] = true;
+        }
+
+        return applied;
+    }
+
+    /**
+     * Block for the configured acknowledge time, the time a real drive would take to confirm a command. Method
+     * handlers call this after issuing a command, so each in-flight call holds on to its thread meanwhile.
+     */
+    public void awaitAcknowledge() {
+        if (acknowledgeMillis <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(acknowledgeMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning(Conveyor conveyor) {
+        ConveyorState state = states.get(conveyor.getNodeId());
+
+        return state != null && state.phase.get() != IDLE;
+    }
+
+    public SpeedProfile getProfile() {
+        return profile;
+    }
+
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    public int getConveyorCount() {
+        return states.size();
+    }
+
+    /**
+     * @return milliseconds of simulation time since the engine was created.
+     */
+    public long getSimulationMillis() {
+        return simulationMillis;
+    }
+
+    /**
+     * Advance the simulation by one tick and wait until every conveyor has been updated. Calls are serialized with
+     * the engine's own clock, so with a time scale of 0 this is how tests step the simulation.
+     */
+    public synchronized void tick() {
+        long startNanos = System.nanoTime();
+
+        addRegistrations();
+
+        simulationMillis += tickMillis;
+        tickTime = DateTime.now();
+
+        int size = batch.size();
+        int slices = Math.min(threads, size);
+
+        if (slices <= 1 || workers == null) {
+            advance(0, size);
+        } else {
+            CountDownLatch done = new CountDownLatch(slices - 1);
+            int sliceSize = (size + slices - 1) / slices;
+
+            for (int from = sliceSize; from < size; from += sliceSize) {
+                int sliceFrom = from;
+                int sliceTo = Math.min(size, from + sliceSize);
+
+                workers.execute(() -> {
+                    try {
+                        advance(sliceFrom, sliceTo);
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+
+            advance(0, Math.min(size, sliceSize));
+
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        metrics.getSimulationTickDuration().record(System.nanoTime() - startNanos);
+    }
+
+    private void runClock() {
+        long periodNanos = Math.max(1, (long) (TimeUnit.MILLISECONDS.toNanos(tickMillis) / timeScale));
+        long next = System.nanoTime() + periodNanos;
+
+        while (running) {
+            LockSupport.parkNanos(next - System.nanoTime());
+
+            if (System.nanoTime() < next) {
+                continue;
+            }
+
+            try {
+                tick();
+            } catch (Throwable t) {
+                logger.error("Error advancing simulation: {}", t.getMessage(), t);
+            }
+
+            next += periodNanos;
+
+            long now = System.nanoTime();
+
+            if (now > next) {
+                // drop the ticks we missed rather than bunching them up; simulation time falls behind instead
+                metrics.simulationOverrun();
+                next = now + periodNanos;
+            }
+        }
+    }
+
+    private void addRegistrations() {
+        if (registrations.isEmpty()) {
+            return;
+        }
+
+        ConveyorState state;
+        while ((state = registrations.poll()) != null) {
+            batch.add(state);
+        }
+
+        // fleet instantiation is parallel; keep the batch order independent of it
+        batch.sort(Comparator.comparingInt(s -> s.conveyor.getNumber()));
+    }
+
+    private void advance(int from, int to) {
+        for (int i = from; i < to; i++) {
+            ConveyorState state = batch.get(i);
+
+            try {
+                state.advance(simulationMillis);
+            } catch (Throwable t) {
+                logger.error("Error simulating {}: {}", state.conveyor.getName(), t.getMessage(), t);
+                state.finish();
+            }
+        }
+    }
+
+    private DataValue stamped(Object value) {
+        DateTime time = tickTime;
+
+        return new DataValue(new Variant(value), StatusCode.GOOD, time, time);
+    }
+
+    private boolean request(Conveyor conveyor, int requested) {
+        ConveyorState state = states.get(conveyor.getNodeId());
+
+        if (state == null) {
+            return false;
+        }
+
+        while (true) {
+            int phase = state.phase.get();
+
+            if (phase == IDLE) {
+                return false;
+            }
+            if (phase == requested || phase == ABORTING) {
+                return true;
+            }
+            if (state.phase.compareAndSet(phase, requested)) {
+                return true;
+            }
+        }
+    }
+
+    private class ConveyorState {
+
+        final Conveyor conveyor;
+        final AtomicInteger phase = new AtomicInteger(IDLE);
+
+        // only touched while holding the engine's lock
+        double targetSpeed = profile.getTargetSpeed();
+
+        // only touched while ticking
+        boolean started;
+        long startMillis;
+        long stopMillis = -1;
+        double stopFromSpeed;
+        double speed;
+        double distance;
+        long dropoffs;
+
+        ConveyorState(Conveyor conveyor) {
+            this.conveyor = conveyor;
+        }
+
+        void advance(long now) {
+            int currentPhase = phase.get();
+
+            if (currentPhase == IDLE) {
+                return;
+            }
+
+            if (!started) {
+                started = true;
+                startMillis = now - tickMillis;
+                stopMillis = -1;
+                phase.compareAndSet(STARTING, RUNNING);
+            }
+
+            if (currentPhase == ABORTING) {
+                writeSpeed(0.0);
+                finish();
+                return;
+            }
+
+            if (currentPhase == STOPPING && stopMillis < 0) {
+                stopMillis = now - tickMillis;
+                stopFromSpeed = speed;
+            }
+
+            double nextSpeed;
+            boolean finished;
+
+            if (stopMillis >= 0) {
+                long elapsedMillis = now - stopMillis;
+                nextSpeed = profile.rampDown(stopFromSpeed, elapsedMillis);
+                finished = elapsedMillis >= profile.getRampDownMillis();
+            } else {
+                long elapsedMillis = now - startMillis;
+                nextSpeed = profile.speedAt(elapsedMillis, targetSpeed);
+                finished = elapsedMillis >= profile.getDurationMillis();
+            }
+
+            if (!hasMotors()) {
+                nextSpeed = 0.0;
+            }
+
+            move(nextSpeed);
+            writeSpeed(nextSpeed);
+
+            if (finished) {
+                finish();
+            }
+        }
+
+        void finish() {
+            started = false;
+            stopMillis = -1;
+
+            if (phase.getAndSet(IDLE) != IDLE) {
+                activeCount.decrementAndGet();
+            }
+        }
+
+        private boolean hasMotors() {
+            Object motors = conveyor.getMotors().getValue().getValue().getValue();
+
+            return !(motors instanceof Number) || ((Number) motors).intValue() > 0;
+        }
+
+        private void move(double nextSpeed) {
+            if (dropoffDistance <= 0) {
+                return;
+            }
+
+            distance += (speed + nextSpeed) / 2 * tickMillis / 1000.0;
+
+            long before = dropoffs;
+
+            while (distance >= dropoffDistance) {
+                distance -= dropoffDistance;
+                dropoffs++;
+
+                try {
+                    dropoffEvent.emit(conveyor.getNodeId(), conveyor.getName());
+                } catch (Exception e) {
+                    logger.warn("Could not post dropoff event for {}: {}", conveyor.getName(), e.getMessage());
+                }
+            }
+
+            if (dropoffs != before) {
+                conveyor.getDropoffs().setValue(stamped(dropoffs));
+            }
+        }
+
+        private void writeSpeed(double nextSpeed) {
+            if (nextSpeed != speed) {
+                conveyor.getRunningSpeed().setValue(stamped(nextSpeed));
+                speed = nextSpeed;
+            }
+        }
+
+    }
+
+}
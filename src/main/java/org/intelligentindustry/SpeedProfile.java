@@ -0,0 +1,84 @@
+package org.intelligentindustry;
+
+/**
+ * A trapezoidal conveyor speed profile: a linear ramp up to the target speed, a plateau, and a linear ramp down
+ * back to standstill.
+ */
+public class SpeedProfile {
+
+    public static final String TARGET_SPEED = "demo.profile.target-speed";
+    public static final String RAMP_UP_MILLIS = "demo.profile.ramp-up-ms";
+    public static final String PLATEAU_MILLIS = "demo.profile.plateau-ms";
+    public static final String RAMP_DOWN_MILLIS = "demo.profile.ramp-down-ms";
+
+    private final double targetSpeed;
+    private final long rampUpMillis;
+    private final long plateauMillis;
+    private final long rampDownMillis;
+
+    public SpeedProfile(double targetSpeed, long rampUpMillis, long plateauMillis, long rampDownMillis) {
+        this.targetSpeed = targetSpeed;
+        this.rampUpMillis = Math.max(0, rampUpMillis);
+        this.plateauMillis = Math.max(0, plateauMillis);
+        this.rampDownMillis = Math.max(0, rampDownMillis);
+    }
+
+    /**
+     * The default profile follows the original conveyor_start() behaviour: ten seconds up to 20.0, ten seconds at
+     * 20.0 and ten seconds back down.
+     */
+    public static SpeedProfile fromSettings() {
+        return new SpeedProfile(
+            Settings.getDouble(TARGET_SPEED, 20.0),
+            Settings.getLong(RAMP_UP_MILLIS, 10_000),
+            Settings.getLong(PLATEAU_MILLIS, 10_000),
+            Settings.getLong(RAMP_DOWN_MILLIS, 10_000)
+        );
+    }
+
+    public double getTargetSpeed() {
+        return targetSpeed;
+    }
+
+    public long getRampDownMillis() {
+        return rampDownMillis;
+    }
+
+    public long getDurationMillis() {
+        return rampUpMillis + plateauMillis + rampDownMillis;
+    }
+
+    public double speedAt(long elapsedMillis) {
+        return speedAt(elapsedMillis, targetSpeed);
+    }
+
+    /**
+     * @return the speed {@code elapsedMillis} into the profile, with the plateau at {@code targetSpeed} instead of
+     * the configured target speed. The ramp durations stay the same.
+     */
+    public double speedAt(long elapsedMillis, double targetSpeed) {
+        if (elapsedMillis < rampUpMillis) {
+            return targetSpeed * elapsedMillis / rampUpMillis;
+        }
+
+        long plateauEnd = rampUpMillis + plateauMillis;
+
+        if (elapsedMillis < plateauEnd) {
+            return targetSpeed;
+        }
+
+        return rampDown(targetSpeed, elapsedMillis - plateauEnd);
+    }
+
+    /**
+     * @return the speed {@code elapsedMillis} into a ramp down that started at {@code fromSpeed}.
+     */
+    public double rampDown(double fromSpeed, long elapsedMillis) {
+        if (elapsedMillis >= rampDownMillis) {
+            return 0.0;
+        }
+
+        return fromSpeed * (rampDownMillis - elapsedMillis) / rampDownMillis;
+    }
+
+}
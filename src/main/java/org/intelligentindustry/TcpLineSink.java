@@ -0,0 +1,149 @@
+package org.intelligentindustry;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams lines to a TCP listener, such as a metrics agent accepting line protocol.
+ * <p>
+ * The connection is opened lazily and reopened after a failure, at most once per {@code retryMillis}. Lines written
+ * while there is no connection are discarded and counted rather than buffered, so a missing listener never backs up
+ * the export.
+ * <p>
+ * Not thread-safe; meant to be owned by a single writer thread.
+ */
+public class TcpLineSink implements ExportSink {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final String host;
+    private final int port;
+    private final long retryNanos;
+
+    private Socket socket;
+    private Writer writer;
+    private long nextAttemptNanos = System.nanoTime();
+    private long discarded;
+
+    public TcpLineSink(String host, int port, long retryMillis) {
+        this.host = host;
+        this.port = port;
+        this.retryNanos = TimeUnit.MILLISECONDS.toNanos(retryMillis);
+    }
+
+    @Override
+    public void write(CharSequence line) {
+        if (!connected()) {
+            discarded++;
+            return;
+        }
+
+        try {
+            writer.append(line).append('\n');
+        } catch (IOException e) {
+            disconnect(e);
+            discarded++;
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (writer != null) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                disconnect(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (socket != null) {
+            try {
+                writer.flush();
+            } finally {
+                socket.close();
+                socket = null;
+                writer = null;
+            }
+        }
+    }
+
+    /**
+     * @return lines discarded because there was no connection.
+     */
+    public long getDiscardedCount() {
+        return discarded;
+    }
+
+    private boolean connected() {
+        if (socket != null) {
+            return true;
+        }
+
+        long now = System.nanoTime();
+
+        if (now - nextAttemptNanos < 0) {
+            return false;
+        }
+
+        nextAttemptNanos = now + retryNanos;
+
+        Socket s = new Socket();
+
+        try {
+            s.setTcpNoDelay(true);
+            s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+            logger.warn("Could not connect export sink to {}:{}: {}", host, port, e.getMessage());
+            try {
+                s.close();
+            } catch (IOException ignored) {
+                // ignored
+            }
+            return false;
+        }
+
+        socket = s;
+
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), 64 * 1024);
+        } catch (IOException e) {
+            disconnect(e);
+            return false;
+        }
+
+        logger.info("Exporting to {}:{}", host, port);
+
+        return true;
+    }
+
+    private void disconnect(IOException cause) {
+        logger.warn("Export sink {}:{} disconnected: {}", host, port, cause.getMessage());
+
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException ignored) {
+            // ignored
+        }
+
+        socket = null;
+        writer = null;
+        nextAttemptNanos = System.nanoTime() + retryNanos;
+    }
+
+}
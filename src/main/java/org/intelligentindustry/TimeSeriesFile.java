@@ -0,0 +1,190 @@
+package org.intelligentindustry;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A fixed-capacity ring of {@code (time, value, status)} records in a memory-mapped file.
+ * <p>
+ * Records are 24 bytes: the UA UtcTime (100 ns ticks since 1601), the value as a double and the status code. The
+ * header holds the capacity and the total number of records ever appended; the record at logical index {@code i} lives
+ * in slot {@code i % capacity}, and only the last {@code capacity} indices are retained. The count is written after
+ * the record it covers, so a crash can lose at most the record being appended.
+ * <p>
+ * Times never go backwards within a file, which keeps every retained range sorted for binary search. Appending
+ * allocates nothing; all methods synchronize on the file.
+ */
+public class TimeSeriesFile implements Closeable {
+
+    private static final int MAGIC = 0x44454d48; // "DEMH"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 32;
+    private static final int RECORD_BYTES = 24;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int COUNT_OFFSET = 16;
+
+    private final File file;
+    private final int capacity;
+    private final MappedByteBuffer buffer;
+
+    private long count;
+    private long lastTime;
+
+    private TimeSeriesFile(File file, int capacity, MappedByteBuffer buffer) {
+        this.file = file;
+        this.capacity = capacity;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Open {@code file}, keeping its records if it was created with the same capacity, or start it over otherwise.
+     */
+    public static TimeSeriesFile open(File file, int capacity) throws IOException {
+        long size = HEADER_BYTES + (long) RECORD_BYTES * capacity;
+
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("capacity too large: " + capacity);
+        }
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("could not create " + parent);
+        }
+
+        MappedByteBuffer buffer;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            boolean reusable = raf.length() == size;
+
+            raf.setLength(size);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            if (!reusable || buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION ||
+                buffer.getInt(CAPACITY_OFFSET) != capacity) {
+
+                buffer.putInt(MAGIC_OFFSET, MAGIC);
+                buffer.putInt(VERSION_OFFSET, VERSION);
+                buffer.putInt(CAPACITY_OFFSET, capacity);
+                buffer.putLong(COUNT_OFFSET, 0L);
+            }
+        }
+
+        TimeSeriesFile series = new TimeSeriesFile(file, capacity, buffer);
+
+        series.count = buffer.getLong(COUNT_OFFSET);
+        if (series.count > 0) {
+            series.lastTime = series.timeAt(series.count - 1);
+        }
+
+        return series;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of records ever appended; indices below {@link #firstIndex()} have been overwritten.
+     */
+    public synchronized long count() {
+        return count;
+    }
+
+    public synchronized long firstIndex() {
+        return Math.max(0, count - capacity);
+    }
+
+    public synchronized void append(long utcTime, double value, long statusCode) {
+        // keep the ring sorted even if the clock steps back
+        long time = Math.max(utcTime, lastTime);
+        int offset = offsetOf(count);
+
+        buffer.putLong(offset, time);
+        buffer.putDouble(offset + 8, value);
+        buffer.putLong(offset + 16, statusCode);
+
+        count++;
+        lastTime = time;
+
+        buffer.putLong(COUNT_OFFSET, count);
+    }
+
+    public synchronized long timeAt(long index) {
+        return buffer.getLong(offsetOf(index));
+    }
+
+    public synchronized double valueAt(long index) {
+        return buffer.getDouble(offsetOf(index) + 8);
+    }
+
+    public synchronized long statusAt(long index) {
+        return buffer.getLong(offsetOf(index) + 16);
+    }
+
+    /**
+     * @return the first retained index whose time is at or after {@code utcTime}, or {@link #count()} if there is none.
+     */
+    public synchronized long ceilingIndex(long utcTime) {
+        long low = firstIndex();
+        long high = count;
+
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+
+            if (timeAt(mid) < utcTime) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * @return the last retained index whose time is at or before {@code utcTime}, or {@code firstIndex() - 1} if there
+     * is none.
+     */
+    public synchronized long floorIndex(long utcTime) {
+        long low = firstIndex();
+        long high = count;
+
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+
+            if (timeAt(mid) <= utcTime) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low - 1;
+    }
+
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        buffer.force();
+    }
+
+    private int offsetOf(long index) {
+        return HEADER_BYTES + (int) (index % capacity) * RECORD_BYTES;
+    }
+
+}
@@ -0,0 +1,60 @@
+package org.intelligentindustry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket that refills at a fixed rate up to a burst.
+ * <p>
+ * Rather than a token count, the bucket keeps the time at which it would be full again; taking {@code n} tokens
+ * moves that time {@code n} intervals into the future, and is refused if it would then lie more than the burst ahead
+ * of now. Taking tokens is a read and a compare-and-set, without a clock thread refilling the bucket. Taking more
+ * tokens than the burst costs the burst, so a large batch is still let through once the bucket is full.
+ */
+public final class TokenBucket {
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final AtomicLong fullAt = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param tokensPerSecond the refill rate.
+     * @param burst           the tokens available at once; at least 1.
+     */
+    public TokenBucket(double tokensPerSecond, double burst) {
+        this.nanosPerToken = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond));
+        this.burstNanos = (long) (Math.max(1.0, burst) * nanosPerToken);
+    }
+
+    /**
+     * @return whether {@code tokens} tokens were taken; nothing is taken if there are not enough.
+     */
+    public boolean tryAcquire(int tokens) {
+        long cost = cost(tokens);
+
+        while (true) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            long next = Math.max(current, now) + cost;
+
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Return {@code tokens} tokens taken by {@link #tryAcquire(int)} that were not used after all.
+     */
+    public void release(int tokens) {
+        fullAt.addAndGet(-cost(tokens));
+    }
+
+    private long cost(int tokens) {
+        return Math.min(tokens * nanosPerToken, burstNanos);
+    }
+
+}
@@ -0,0 +1,606 @@
+package org.intelligentindustry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.milo.opcua.sdk.core.AccessLevel;
+import org.eclipse.milo.opcua.sdk.core.Reference;
+import org.eclipse.milo.opcua.sdk.server.AbstractLifecycle;
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer;
+import org.eclipse.milo.opcua.sdk.server.api.AddressSpaceFilter;
+import org.eclipse.milo.opcua.sdk.server.api.AddressSpaceFragment;
+import org.eclipse.milo.opcua.sdk.server.api.DataItem;
+import org.eclipse.milo.opcua.sdk.server.api.MonitoredItem;
+import org.eclipse.milo.opcua.sdk.server.api.SimpleAddressSpaceFilter;
+import org.eclipse.milo.opcua.sdk.server.util.SubscriptionModel;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.Identifiers;
+import org.eclipse.milo.opcua.stack.core.StatusCodes;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime;
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId;
+import org.eclipse.milo.opcua.stack.core.types.builtin.QualifiedName;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UShort;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.NodeClass;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.eclipse.milo.opcua.stack.core.types.structured.ViewDescription;
+import org.eclipse.milo.opcua.stack.core.types.structured.WriteValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.ubyte;
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.uint;
+
+/**
+ * ConveyorType instances that exist only as slots in primitive arrays.
+ * <p>
+ * Each virtual conveyor is a Motors (short), RunningSpeed (double) and Dropoffs (long) value plus a source timestamp
+ * per variable; no UaNode is ever created for them. Browse, Read, Write and monitored items are answered on demand
+ * from the arrays, which lets the server expose millions of tags in a few bytes each.
+ * <p>
+ * The conveyors live in their own namespace and are numbered from 0. NodeIds are numeric and encode the slot:
+ * {@code 4 * (n + 1)} is conveyor n, followed by its Motors, RunningSpeed and Dropoffs. Conveyors are grouped into
+ * folders of {@code conveyorsPerFolder} so no single browse has to describe all of them; folder g has the identifier
+ * {@code FOLDER_BASE + g} and the root folder, organized by the IntelligentIndustry folder, has identifier 1.
+ * <p>
+ * Ingest, writes, reads and sampling all touch the arrays from different threads. A value and its timestamp are
+ * read and written together under a lock shared by every {@code LOCK_STRIPES}-th conveyor, which costs one
+ * uncontended monitor per access rather than one object per conveyor.
+ */
+public class VirtualConveyors extends AbstractLifecycle implements AddressSpaceFragment {
+
+    public static final String NAMESPACE_URI = "urn:intelligentindustry:demo-server:virtual";
+
+    public static final String COUNT = "demo.virtual.count";
+    public static final String CONVEYORS_PER_FOLDER = "demo.virtual.conveyors-per-folder";
+
+    private static final long ROOT = 1;
+    private static final long FOLDER_BASE = 0x80000000L;
+
+    private static final int OBJECT = 0;
+    private static final int MOTORS = 1;
+    private static final int RUNNING_SPEED = 2;
+    private static final int DROPOFFS = 3;
+
+    private static final int LOCK_STRIPES = 1024;
+
+    private static final String[] COMPONENTS = {null, "Motors", "RunningSpeed", "Dropoffs"};
+    private static final NodeId[] DATA_TYPES = {null, Identifiers.Int16, Identifiers.Double, Identifiers.Int64};
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final OpcUaServer server;
+    private final SubscriptionModel subscriptionModel;
+    private final UShort namespaceIndex;
+    private final int browseNamespaceIndex;
+    private final NodeId parentFolderId;
+    private final NodeId conveyorTypeId;
+    private final int count;
+    private final int conveyorsPerFolder;
+
+    private final short[] motors;
+    private final double[] runningSpeed;
+    private final long[] dropoffs;
+    private final long[] motorsTime;
+    private final long[] runningSpeedTime;
+    private final long[] dropoffsTime;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final AddressSpaceFilter filter;
+
+    /**
+     * @param parentFolderId       the folder that organizes the virtual root folder.
+     * @param conveyorTypeId       the type the virtual conveyors claim as their type definition; it must declare
+     *                             only Motors, RunningSpeed and Dropoffs, which is all they serve.
+     * @param browseNamespaceIndex namespace of the browse names, so paths match those of real conveyors.
+     */
+    public VirtualConveyors(
+        OpcUaServer server,
+        NodeId parentFolderId,
+        NodeId conveyorTypeId,
+        int browseNamespaceIndex,
+        int count,
+        int conveyorsPerFolder) {
+
+        if (count < 1 || count > (Integer.MAX_VALUE / 4) - 1) {
+            throw new IllegalArgumentException("count out of range: " + count);
+        }
+        if (conveyorsPerFolder < 1) {
+            throw new IllegalArgumentException("conveyorsPerFolder must be at least 1: " + conveyorsPerFolder);
+        }
+
+        this.server = server;
+        this.parentFolderId = parentFolderId;
+        this.conveyorTypeId = conveyorTypeId;
+        this.browseNamespaceIndex = browseNamespaceIndex;
+        this.count = count;
+        this.conveyorsPerFolder = conveyorsPerFolder;
+
+        namespaceIndex = server.getNamespaceTable().addUri(NAMESPACE_URI);
+
+        motors = new short[count];
+        runningSpeed = new double[count];
+        dropoffs = new long[count];
+        motorsTime = new long[count];
+        runningSpeedTime = new long[count];
+        dropoffsTime = new long[count];
+
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        long now = DateTime.now().getUtcTime();
+
+        for (int i = 0; i < count; i++) {
+            motors[i] = 2;
+            motorsTime[i] = now;
+            runningSpeedTime[i] = now;
+            dropoffsTime[i] = now;
+        }
+
+        filter = SimpleAddressSpaceFilter.create(nodeId -> nodeId.getNamespaceIndex().equals(namespaceIndex));
+
+        subscriptionModel = new SubscriptionModel(server, this);
+    }
+
+    /**
+     * @return the configured virtual conveyors, or {@code null} if the count is set to 0.
+     */
+    public static VirtualConveyors fromSettings(
+        OpcUaServer server,
+        NodeId parentFolderId,
+        NodeId conveyorTypeId,
+        int browseNamespaceIndex) {
+
+        int count = Settings.getInt(COUNT, 0);
+
+        if (count <= 0) {
+            return null;
+        }
+
+        return new VirtualConveyors(
+            server,
+            parentFolderId,
+            conveyorTypeId,
+            browseNamespaceIndex,
+            count,
+            Settings.getInt(CONVEYORS_PER_FOLDER, 1000)
+        );
+    }
+
+    @Override
+    protected void onStartup() {
+        subscriptionModel.startup();
+
+        server.getAddressSpaceManager().register(this);
+
+        logger.info("Serving {} virtual conveyors ({} tags) in {}", count, count * 3L, NAMESPACE_URI);
+    }
+
+    @Override
+    protected void onShutdown() {
+        server.getAddressSpaceManager().unregister(this);
+
+        subscriptionModel.shutdown();
+    }
+
+    public NodeId getRootNodeId() {
+        return new NodeId(namespaceIndex, uint(ROOT));
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public NodeId conveyorNodeId(int conveyor) {
+        return nodeId(conveyor, OBJECT);
+    }
+
+    public NodeId runningSpeedNodeId(int conveyor) {
+        return nodeId(conveyor, RUNNING_SPEED);
+    }
+
+    public NodeId motorsNodeId(int conveyor) {
+        return nodeId(conveyor, MOTORS);
+    }
+
+    public double getRunningSpeed(int conveyor) {
+        synchronized (lockOf(conveyor)) {
+            return runningSpeed[conveyor];
+        }
+    }
+
+    public void setRunningSpeed(int conveyor, double speed) {
+        long time = DateTime.now().getUtcTime();
+
+        synchronized (lockOf(conveyor)) {
+            runningSpeed[conveyor] = speed;
+            runningSpeedTime[conveyor] = time;
+        }
+    }
+
+    /**
+     * Set a value fed in from outside the address space, such as {@link IngestPort}.
+     *
+     * @param variable 0 for Motors, 1 for RunningSpeed, 2 for Dropoffs.
+     * @param time     source timestamp as an OPC UA UtcTime.
+     * @return {@code false} if the value does not fit the variable's data type.
+     */
+    public boolean ingest(int conveyor, int variable, double value, long time) {
+        switch (variable + MOTORS) {
+            case MOTORS:
+                if (value != (short) value) {
+                    return false;
+                }
+                synchronized (lockOf(conveyor)) {
+                    motors[conveyor] = (short) value;
+                    motorsTime[conveyor] = time;
+                }
+                return true;
+            case RUNNING_SPEED:
+                synchronized (lockOf(conveyor)) {
+                    runningSpeed[conveyor] = value;
+                    runningSpeedTime[conveyor] = time;
+                }
+                return true;
+            default:
+                if (value != (long) value) {
+                    return false;
+                }
+                synchronized (lockOf(conveyor)) {
+                    dropoffs[conveyor] = (long) value;
+                    dropoffsTime[conveyor] = time;
+                }
+                return true;
+        }
+    }
+
+    @Override
+    public AddressSpaceFilter getFilter() {
+        return filter;
+    }
+
+    @Override
+    public void browse(BrowseContext context, ViewDescription view, NodeId nodeId) {
+        List<Reference> references = referencesOf(nodeId);
+
+        if (references != null) {
+            context.success(references);
+        } else {
+            context.failure(StatusCodes.Bad_NodeIdUnknown);
+        }
+    }
+
+    @Override
+    public void getReferences(BrowseContext context, ViewDescription view, NodeId nodeId) {
+        List<Reference> references = referencesOf(nodeId);
+
+        context.success(references != null ? references : new ArrayList<>());
+    }
+
+    @Override
+    public void read(
+        ReadContext context,
+        Double maxAge,
+        TimestampsToReturn timestamps,
+        List<ReadValueId> readValueIds) {
+
+        List<DataValue> values = new ArrayList<>(readValueIds.size());
+
+        for (ReadValueId readValueId : readValueIds) {
+            values.add(readAttribute(readValueId, timestamps));
+        }
+
+        context.success(values);
+    }
+
+    @Override
+    public void write(WriteContext context, List<WriteValue> writeValues) {
+        List<StatusCode> results = new ArrayList<>(writeValues.size());
+
+        for (WriteValue writeValue : writeValues) {
+            results.add(new StatusCode(writeAttribute(writeValue)));
+        }
+
+        context.success(results);
+    }
+
+    @Override
+    public void onDataItemsCreated(List<DataItem> dataItems) {
+        subscriptionModel.onDataItemsCreated(dataItems);
+    }
+
+    @Override
+    public void onDataItemsModified(List<DataItem> dataItems) {
+        subscriptionModel.onDataItemsModified(dataItems);
+    }
+
+    @Override
+    public void onDataItemsDeleted(List<DataItem> dataItems) {
+        subscriptionModel.onDataItemsDeleted(dataItems);
+    }
+
+    @Override
+    public void onMonitoringModeChanged(List<MonitoredItem> monitoredItems) {
+        subscriptionModel.onMonitoringModeChanged(monitoredItems);
+    }
+
+    private List<Reference> referencesOf(NodeId nodeId) {
+        long id = identifierOf(nodeId);
+
+        if (id == ROOT) {
+            int folders = folderCount();
+            List<Reference> references = new ArrayList<>(folders + 2);
+
+            references.add(reference(nodeId, Identifiers.HasTypeDefinition, Identifiers.FolderType, true));
+            references.add(reference(nodeId, Identifiers.Organizes, parentFolderId, false));
+
+            for (int folder = 0; folder < folders; folder++) {
+                references.add(reference(nodeId, Identifiers.Organizes, nodeIdOf(FOLDER_BASE + folder), true));
+            }
+
+            return references;
+        } else if (id >= FOLDER_BASE && id < FOLDER_BASE + folderCount()) {
+            int first = (int) (id - FOLDER_BASE) * conveyorsPerFolder;
+            int last = (int) Math.min(count, (long) first + conveyorsPerFolder);
+            List<Reference> references = new ArrayList<>(last - first + 2);
+
+            references.add(reference(nodeId, Identifiers.HasTypeDefinition, Identifiers.FolderType, true));
+            references.add(reference(nodeId, Identifiers.Organizes, getRootNodeId(), false));
+
+            for (int conveyor = first; conveyor < last; conveyor++) {
+                references.add(reference(nodeId, Identifiers.Organizes, nodeId(conveyor, OBJECT), true));
+            }
+
+            return references;
+        } else if (isTag(id)) {
+            int conveyor = conveyorOf(id);
+            int component = componentOf(id);
+            List<Reference> references = new ArrayList<>(5);
+
+            if (component == OBJECT) {
+                references.add(reference(nodeId, Identifiers.HasTypeDefinition, conveyorTypeId, true));
+                references.add(reference(nodeId, Identifiers.Organizes, folderOf(conveyor), false));
+
+                for (int c = MOTORS; c <= DROPOFFS; c++) {
+                    references.add(reference(nodeId, Identifiers.HasComponent, nodeId(conveyor, c), true));
+                }
+            } else {
+                references.add(reference(
+                    nodeId, Identifiers.HasTypeDefinition, Identifiers.BaseDataVariableType, true));
+                references.add(reference(nodeId, Identifiers.HasComponent, nodeId(conveyor, OBJECT), false));
+            }
+
+            return references;
+        }
+
+        return null;
+    }
+
+    private DataValue readAttribute(ReadValueId readValueId, TimestampsToReturn timestamps) {
+        long id = identifierOf(readValueId.getNodeId());
+        int attributeId = readValueId.getAttributeId().intValue();
+
+        if (id == ROOT || (id >= FOLDER_BASE && id < FOLDER_BASE + folderCount())) {
+            String name = id == ROOT ? "VirtualConveyors" : "Folder-" + (id - FOLDER_BASE + 1);
+
+            return readObjectAttribute(readValueId.getNodeId(), attributeId, name);
+        } else if (!isTag(id)) {
+            return new DataValue(StatusCodes.Bad_NodeIdUnknown);
+        }
+
+        int conveyor = conveyorOf(id);
+        int component = componentOf(id);
+
+        if (component == OBJECT) {
+            return readObjectAttribute(readValueId.getNodeId(), attributeId, conveyorName(conveyor));
+        }
+
+        AttributeId attribute = AttributeId.from(attributeId).orElse(null);
+
+        if (attribute == null) {
+            return new DataValue(StatusCodes.Bad_AttributeIdInvalid);
+        } else if (attribute == AttributeId.Value &&
+            readValueId.getIndexRange() != null && !readValueId.getIndexRange().isEmpty()) {
+
+            return new DataValue(StatusCodes.Bad_IndexRangeNoData);
+        }
+
+        switch (attribute) {
+            case NodeId:
+                return new DataValue(new Variant(readValueId.getNodeId()));
+            case NodeClass:
+                return new DataValue(new Variant(NodeClass.Variable));
+            case BrowseName:
+                return new DataValue(new Variant(new QualifiedName(browseNamespaceIndex, COMPONENTS[component])));
+            case DisplayName:
+                return new DataValue(new Variant(LocalizedText.english(COMPONENTS[component])));
+            case Description:
+                return new DataValue(new Variant(LocalizedText.NULL_VALUE));
+            case WriteMask:
+            case UserWriteMask:
+                return new DataValue(new Variant(uint(0)));
+            case Value:
+                return readValue(conveyor, component, timestamps);
+            case DataType:
+                return new DataValue(new Variant(DATA_TYPES[component]));
+            case ValueRank:
+                return new DataValue(new Variant(-1));
+            case ArrayDimensions:
+                return new DataValue(Variant.NULL_VALUE);
+            case AccessLevel:
+            case UserAccessLevel:
+                return new DataValue(new Variant(AccessLevel.toValue(
+                    component == DROPOFFS ? AccessLevel.READ_ONLY : AccessLevel.READ_WRITE)));
+            case MinimumSamplingInterval:
+                return new DataValue(new Variant(0.0));
+            case Historizing:
+                return new DataValue(new Variant(false));
+            default:
+                return new DataValue(StatusCodes.Bad_AttributeIdInvalid);
+        }
+    }
+
+    private DataValue readObjectAttribute(NodeId nodeId, int attributeId, String name) {
+        AttributeId attribute = AttributeId.from(attributeId).orElse(null);
+
+        if (attribute == null) {
+            return new DataValue(StatusCodes.Bad_AttributeIdInvalid);
+        }
+
+        switch (attribute) {
+            case NodeId:
+                return new DataValue(new Variant(nodeId));
+            case NodeClass:
+                return new DataValue(new Variant(NodeClass.Object));
+            case BrowseName:
+                return new DataValue(new Variant(new QualifiedName(browseNamespaceIndex, name)));
+            case DisplayName:
+                return new DataValue(new Variant(LocalizedText.english(name)));
+            case Description:
+                return new DataValue(new Variant(LocalizedText.NULL_VALUE));
+            case WriteMask:
+            case UserWriteMask:
+                return new DataValue(new Variant(uint(0)));
+            case EventNotifier:
+                return new DataValue(new Variant(ubyte(0)));
+            default:
+                return new DataValue(StatusCodes.Bad_AttributeIdInvalid);
+        }
+    }
+
+    private DataValue readValue(int conveyor, int component, TimestampsToReturn timestamps) {
+        Variant value;
+        long time;
+
+        synchronized (lockOf(conveyor)) {
+            switch (component) {
+                case MOTORS:
+                    value = new Variant(motors[conveyor]);
+                    time = motorsTime[conveyor];
+                    break;
+                case RUNNING_SPEED:
+                    value = new Variant(runningSpeed[conveyor]);
+                    time = runningSpeedTime[conveyor];
+                    break;
+                default:
+                    value = new Variant(dropoffs[conveyor]);
+                    time = dropoffsTime[conveyor];
+                    break;
+            }
+        }
+
+        boolean source = timestamps == TimestampsToReturn.Source || timestamps == TimestampsToReturn.Both;
+        boolean server = timestamps == TimestampsToReturn.Server || timestamps == TimestampsToReturn.Both;
+
+        return new DataValue(
+            value,
+            StatusCode.GOOD,
+            source ? new DateTime(time) : null,
+            server ? DateTime.now() : null
+        );
+    }
+
+    private long writeAttribute(WriteValue writeValue) {
+        long id = identifierOf(writeValue.getNodeId());
+
+        if (!isTag(id) && id != ROOT && !(id >= FOLDER_BASE && id < FOLDER_BASE + folderCount())) {
+            return StatusCodes.Bad_NodeIdUnknown;
+        }
+
+        int component = isTag(id) ? componentOf(id) : OBJECT;
+
+        if (writeValue.getAttributeId().intValue() != AttributeId.Value.id() ||
+            component == OBJECT || component == DROPOFFS) {
+
+            return StatusCodes.Bad_NotWritable;
+        }
+        if (writeValue.getIndexRange() != null && !writeValue.getIndexRange().isEmpty()) {
+            return StatusCodes.Bad_WriteNotSupported;
+        }
+
+        DataValue dataValue = writeValue.getValue();
+        Object value = dataValue.getValue().getValue();
+        int conveyor = conveyorOf(id);
+
+        DateTime sourceTime = dataValue.getSourceTime();
+        long time = sourceTime != null && !sourceTime.isNull() ? sourceTime.getUtcTime() : DateTime.now().getUtcTime();
+
+        if (component == MOTORS) {
+            if (!(value instanceof Short || value instanceof Integer || value instanceof Byte) ||
+                ((Number) value).intValue() != ((Number) value).shortValue()) {
+
+                return StatusCodes.Bad_TypeMismatch;
+            }
+
+            synchronized (lockOf(conveyor)) {
+                motors[conveyor] = ((Number) value).shortValue();
+                motorsTime[conveyor] = time;
+            }
+        } else {
+            if (!(value instanceof Double || value instanceof Float)) {
+                return StatusCodes.Bad_TypeMismatch;
+            }
+
+            synchronized (lockOf(conveyor)) {
+                runningSpeed[conveyor] = ((Number) value).doubleValue();
+                runningSpeedTime[conveyor] = time;
+            }
+        }
+
+        return StatusCode.GOOD.getValue();
+    }
+
+    private Object lockOf(int conveyor) {
+        return locks[conveyor & (LOCK_STRIPES - 1)];
+    }
+
+    private String conveyorName(int conveyor) {
+        return "VirtualConveyor-" + (conveyor + 1);
+    }
+
+    private int folderCount() {
+        return (count + conveyorsPerFolder - 1) / conveyorsPerFolder;
+    }
+
+    private NodeId folderOf(int conveyor) {
+        return nodeIdOf(FOLDER_BASE + conveyor / conveyorsPerFolder);
+    }
+
+    private boolean isTag(long id) {
+        return id >= 4 && id < 4L * (count + 1);
+    }
+
+    private static int conveyorOf(long id) {
+        return (int) (id / 4) - 1;
+    }
+
+    private static int componentOf(long id) {
+        return (int) (id % 4);
+    }
+
+    private NodeId nodeId(int conveyor, int component) {
+        return nodeIdOf(4L * (conveyor + 1) + component);
+    }
+
+    private NodeId nodeIdOf(long id) {
+        return new NodeId(namespaceIndex, uint(id));
+    }
+
+    private long identifierOf(NodeId nodeId) {
+        if (!nodeId.getNamespaceIndex().equals(namespaceIndex) || !(nodeId.getIdentifier() instanceof Number)) {
+            return -1;
+        }
+
+        return ((Number) nodeId.getIdentifier()).longValue();
+    }
+
+    private static Reference reference(NodeId source, NodeId referenceType, NodeId target, boolean forward) {
+        return new Reference(source, referenceType, target.expanded(), forward);
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.intelligentindustry;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opt-in virtual threads for blocking work, on JDKs that have them.
+ * <p>
+ * The project still compiles for Java 8, so virtual threads are created through reflection. With
+ * {@code demo.threads.virtual} enabled on JDK 21 or later, request handling - including method invocation - runs on
+ * a virtual thread per task, as do the event generator and other mostly idle helper threads. On older JDKs the
+ * setting is ignored with a warning and platform threads are used as before. CPU-bound work such as the simulation
+ * tick stays on platform threads either way.
+ */
+public final class VirtualThreads {
+
+    public static final String ENABLED = "demo.threads.virtual";
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private static volatile Boolean enabled;
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return {@code true} if virtual threads are requested and this JDK supports them.
+     */
+    public static boolean isEnabled() {
+        Boolean value = enabled;
+
+        if (value == null) {
+            boolean requested = Settings.getBoolean(ENABLED, false);
+            value = requested && isSupported();
+
+            if (requested && !value) {
+                logger.warn("{} is set, but this JDK ({}) has no virtual threads; using platform threads",
+                    ENABLED, System.getProperty("java.version"));
+            }
+
+            enabled = value;
+        }
+
+        return value;
+    }
+
+    /**
+     * @return whether virtual threads are final API on this JDK; on 19 and 20 they are a preview that fails without
+     * {@code --enable-preview}.
+     */
+    public static boolean isSupported() {
+        if (featureVersion() < 21) {
+            return false;
+        }
+
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the Java feature version, e.g. 8 for "1.8" and 21 for "21".
+     */
+    static int featureVersion() {
+        String version = System.getProperty("java.specification.version", "");
+
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+
+        try {
+            return Integer.parseInt(version);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return an executor that starts a new virtual thread, named {@code prefix-n}, for every task.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        try {
+            Method newThreadPerTaskExecutor =
+                java.util.concurrent.Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, factory(prefix));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("virtual threads are not available", e);
+        }
+    }
+
+    /**
+     * @return a thread running {@code task}: a virtual thread if enabled, otherwise a daemon platform thread. The
+     * thread is not started.
+     */
+    public static Thread newThread(String name, Runnable task) {
+        if (isEnabled()) {
+            try {
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                builder = builderClass.getMethod("name", String.class).invoke(builder, name);
+
+                return (Thread) builderClass.getMethod("unstarted", Runnable.class).invoke(builder, task);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("virtual threads are not available", e);
+            }
+        }
+
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static ThreadFactory factory(String prefix) throws ReflectiveOperationException {
+        // the builder implementation is not public, so go through the Thread.Builder interface
+        Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix + "-", 1L);
+
+        return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    }
+
+}